@@ -0,0 +1,95 @@
+package com.example.ratelimiter.benchmarks;
+
+import com.example.ratelimiter.core.api.RateLimitAlgorithm;
+import com.example.ratelimiter.core.api.RateLimitDecision;
+import com.example.ratelimiter.core.api.RateLimitPolicy;
+import com.example.ratelimiter.core.api.RateLimitResult;
+import com.example.ratelimiter.core.failure.FailureMode;
+import com.example.ratelimiter.core.impl.DefaultRateLimiter;
+import com.example.ratelimiter.core.store.InMemoryRateLimitStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allocation per decision of {@link DefaultRateLimiter} on the in-memory store.
+ * <p>
+ * {@code tryAcquireInto} is the allocation-free path and should report about 0 B/op in
+ * {@code gc.alloc.rate.norm}; {@code tryAcquire} builds a {@link RateLimitResult} per call for comparison.
+ * {@link AllocationCheck} runs this benchmark and fails if the allocation-free path allocates.
+ * Run with: {@code java -jar rate-limiter-benchmarks/target/benchmarks.jar AllocationBenchmark -prof gc}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(2)
+public class AllocationBenchmark {
+
+    @Param
+    RateLimitAlgorithm algorithm;
+
+    @Param({"SINGLE", "ZIPF"})
+    KeyDistribution distribution;
+
+    @Param({"1024"})
+    int keyCount;
+
+    @Param({"1000"})
+    int limit;
+
+    String[] keys;
+    RateLimitPolicy policy;
+    InMemoryRateLimitStore store;
+    DefaultRateLimiter rateLimiter;
+
+    @Setup
+    public void setUp() {
+        keys = distribution.keys("user-", keyCount);
+        store = new InMemoryRateLimitStore();
+        policy = RateLimitPolicy.builder()
+                .limit(limit)
+                .window(Duration.ofSeconds(1))
+                .algorithm(algorithm)
+                .build();
+        rateLimiter = new DefaultRateLimiter(store, policy, FailureMode.FAIL_CLOSED);
+    }
+
+    @TearDown
+    public void tearDown() {
+        store.close();
+    }
+
+    @Benchmark
+    public boolean tryAcquireInto(Caller caller) {
+        return rateLimiter.tryAcquireInto(caller.next(keys), policy, 1, caller.decision);
+    }
+
+    @Benchmark
+    public RateLimitResult tryAcquire(Caller caller) {
+        return rateLimiter.tryAcquire(caller.next(keys), policy);
+    }
+
+    /**
+     * Per-thread decision holder and position in the shared key sequence.
+     */
+    @State(Scope.Thread)
+    public static class Caller {
+
+        final RateLimitDecision decision = new RateLimitDecision();
+        int position;
+
+        @Setup
+        public void setUp() {
+            position = ThreadLocalRandom.current().nextInt();
+        }
+
+        String next(String[] keys) {
+            return keys[position++ & (keys.length - 1)];
+        }
+    }
+}
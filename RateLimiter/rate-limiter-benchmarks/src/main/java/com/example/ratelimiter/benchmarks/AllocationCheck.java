@@ -0,0 +1,72 @@
+package com.example.ratelimiter.benchmarks;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+
+import java.util.Collection;
+
+/**
+ * Asserts that the allocation-free decision path stays allocation-free.
+ * <p>
+ * Runs {@link AllocationBenchmark#tryAcquireInto} for every algorithm and key distribution with the GC
+ * profiler and exits with status 1 if any run allocates more than {@code -Dalloc.max} bytes per
+ * operation (default 1, leaving room for JMH's own bookkeeping).
+ * Run with: {@code java -cp rate-limiter-benchmarks/target/benchmarks.jar com.example.ratelimiter.benchmarks.AllocationCheck}
+ */
+public final class AllocationCheck {
+
+    private static final String ALLOCATION_METRIC = "gc.alloc.rate.norm";
+
+    private AllocationCheck() {
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        double maxBytesPerOp = Double.parseDouble(System.getProperty("alloc.max", "1"));
+
+        Options options = new OptionsBuilder()
+                .include(AllocationBenchmark.class.getName() + ".tryAcquireInto")
+                .addProfiler(GCProfiler.class)
+                .warmupIterations(3)
+                .warmupTime(TimeValue.seconds(1))
+                .measurementIterations(3)
+                .measurementTime(TimeValue.seconds(1))
+                .forks(1)
+                .build();
+        Collection<RunResult> results = new Runner(options).run();
+
+        int failures = 0;
+        for (RunResult result : results) {
+            Result<?> allocation = result.getSecondaryResults().get(ALLOCATION_METRIC);
+            String params = describe(result.getParams());
+            if (allocation == null) {
+                System.err.println("FAIL " + params + ": no " + ALLOCATION_METRIC + " reported");
+                failures++;
+            } else if (allocation.getScore() > maxBytesPerOp) {
+                System.err.printf("FAIL %s: %.3f B/op (max %.3f)%n", params, allocation.getScore(), maxBytesPerOp);
+                failures++;
+            } else {
+                System.out.printf("OK   %s: %.3f B/op%n", params, allocation.getScore());
+            }
+        }
+
+        if (failures > 0 || results.isEmpty()) {
+            System.err.println(failures + " allocation check(s) failed");
+            System.exit(1);
+        }
+    }
+
+    private static String describe(BenchmarkParams params) {
+        StringBuilder description = new StringBuilder();
+        for (String key : params.getParamsKeys()) {
+            description.append(key).append('=').append(params.getParam(key)).append(' ');
+        }
+        return description.toString().trim();
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.ratelimiter.benchmarks;
+
+import com.example.ratelimiter.core.store.InMemoryRateLimitStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares InMemoryRateLimitStore against a {@code ConcurrentHashMap<String, AtomicLong>} baseline.
+ * <p>
+ * Run with: {@code java -jar rate-limiter-benchmarks/target/benchmarks.jar InMemoryStoreBenchmark -prof gc}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InMemoryStoreBenchmark {
+
+    private static final Duration TTL = Duration.ofMinutes(10);
+
+    @Param({"1", "1024", "65536"})
+    int keyCount;
+
+    String[] keys;
+    InMemoryRateLimitStore store;
+    ConcurrentHashMap<String, AtomicLong> baseline;
+
+    @Setup
+    public void setUp() {
+        keys = new String[keyCount];
+        store = new InMemoryRateLimitStore();
+        baseline = new ConcurrentHashMap<>();
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = "ratelimit:{user-" + i + "}:fixed";
+            store.increment(keys[i], TTL);
+            baseline.computeIfAbsent(keys[i], k -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        store.close();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long storeIncrement() {
+        return store.increment(nextKey(), TTL);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long baselineIncrement() {
+        return baseline.computeIfAbsent(nextKey(), k -> new AtomicLong()).incrementAndGet();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long storeGet() {
+        return store.get(nextKey());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long baselineGet() {
+        AtomicLong value = baseline.get(nextKey());
+        return value != null ? value.get() : 0;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void storeSet() {
+        store.set(nextKey(), 42, TTL);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void baselineSet() {
+        baseline.computeIfAbsent(nextKey(), k -> new AtomicLong()).set(42);
+    }
+
+    private String nextKey() {
+        return keys[ThreadLocalRandom.current().nextInt(keyCount)];
+    }
+}
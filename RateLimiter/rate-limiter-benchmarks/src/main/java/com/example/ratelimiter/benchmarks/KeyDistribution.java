@@ -0,0 +1,80 @@
+package com.example.ratelimiter.benchmarks;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * How benchmark requests are spread over rate limit keys.
+ * <p>
+ * Each distribution is materialized up front as a power-of-two sized sequence of keys, so
+ * picking the next key in a benchmark loop is an array read and costs no random draws.
+ */
+public enum KeyDistribution {
+
+    /**
+     * Every request hits the same key: worst-case contention on one bucket.
+     */
+    SINGLE {
+        @Override
+        int[] sample(int keyCount, int samples, SplittableRandom random) {
+            return new int[samples];
+        }
+    },
+
+    /**
+     * Zipf-distributed ranks (exponent 1): a few hot keys and a long tail, like real tenants.
+     */
+    ZIPF {
+        @Override
+        int[] sample(int keyCount, int samples, SplittableRandom random) {
+            double[] cdf = new double[keyCount];
+            double sum = 0;
+            for (int rank = 0; rank < keyCount; rank++) {
+                sum += 1.0 / (rank + 1);
+                cdf[rank] = sum;
+            }
+
+            int[] ranks = new int[samples];
+            for (int i = 0; i < samples; i++) {
+                int index = Arrays.binarySearch(cdf, random.nextDouble() * sum);
+                ranks[i] = Math.min(keyCount - 1, index >= 0 ? index : -index - 1);
+            }
+            return ranks;
+        }
+    },
+
+    /**
+     * Uniformly random keys: little contention, large working set.
+     */
+    UNIFORM {
+        @Override
+        int[] sample(int keyCount, int samples, SplittableRandom random) {
+            int[] ranks = new int[samples];
+            for (int i = 0; i < samples; i++) {
+                ranks[i] = random.nextInt(keyCount);
+            }
+            return ranks;
+        }
+    };
+
+    private static final int SAMPLES = 1 << 16;
+
+    abstract int[] sample(int keyCount, int samples, SplittableRandom random);
+
+    /**
+     * Returns a sequence of {@code 2^16} keys named {@code prefix + rank}, drawn with a fixed seed.
+     */
+    public String[] keys(String prefix, int keyCount) {
+        String[] names = new String[keyCount];
+        for (int i = 0; i < keyCount; i++) {
+            names[i] = prefix + i;
+        }
+
+        int[] ranks = sample(keyCount, SAMPLES, new SplittableRandom(42));
+        String[] sequence = new String[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            sequence[i] = names[ranks[i]];
+        }
+        return sequence;
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.ratelimiter.benchmarks;
+
+import com.example.ratelimiter.core.api.RateLimitAlgorithm;
+import com.example.ratelimiter.core.api.RateLimitPolicy;
+import com.example.ratelimiter.core.api.RateLimitResult;
+import com.example.ratelimiter.core.api.RateLimitStore;
+import com.example.ratelimiter.core.failure.FailureMode;
+import com.example.ratelimiter.core.impl.DefaultRateLimiter;
+import com.example.ratelimiter.core.store.InMemoryRateLimitStore;
+import com.example.ratelimiter.redis.EmbeddedRedisCluster;
+import com.example.ratelimiter.redis.EmbeddedRedisServer;
+import com.example.ratelimiter.redis.PipelinedRedisRateLimitStore;
+import com.example.ratelimiter.redis.RedisClusterRateLimitStore;
+import com.example.ratelimiter.redis.RedisRateLimitStore;
+import org.openjdk.jmh.annotations.*;
+import redis.clients.jedis.HostAndPort;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end {@link DefaultRateLimiter#tryAcquire(String)} for every algorithm, store and key distribution.
+ * <p>
+ * Reports throughput and sampled latency (p99/p999 in the SampleTime rows). The {@code REDIS} (pooled Jedis)
+ * and {@code PIPELINED} stores run against an {@link EmbeddedRedisServer} unless {@code -p redis=host:port}
+ * points at a real server; the {@code CLUSTER} store runs against a three-node {@link EmbeddedRedisCluster}
+ * unless {@code -p redis=host:port,...} lists seed nodes of a real cluster.
+ * Run with: {@code java -jar rate-limiter-benchmarks/target/benchmarks.jar RateLimiterBenchmark -prof gc},
+ * adding {@code -t N} for a thread count, or use {@link ThreadScalingRunner} to sweep 1..N threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class RateLimiterBenchmark {
+
+    /**
+     * Backing store under test.
+     */
+    public enum StoreType {
+        MEMORY,
+        REDIS,
+        PIPELINED,
+        CLUSTER
+    }
+
+    @Param
+    RateLimitAlgorithm algorithm;
+
+    @Param({"MEMORY", "REDIS", "PIPELINED", "CLUSTER"})
+    StoreType store;
+
+    @Param({"SINGLE", "ZIPF"})
+    KeyDistribution distribution;
+
+    @Param({"10000"})
+    int keyCount;
+
+    @Param({"10000"})
+    int limit;
+
+    /**
+     * {@code embedded} for the in-JVM stand-in, otherwise {@code host:port} of a Redis server
+     * (comma-separated seed nodes for {@code CLUSTER}).
+     */
+    @Param({"embedded"})
+    String redis;
+
+    String[] keys;
+    EmbeddedRedisServer server;
+    EmbeddedRedisCluster cluster;
+    RateLimitStore rateLimitStore;
+    DefaultRateLimiter rateLimiter;
+
+    @Setup
+    public void setUp() throws IOException {
+        keys = distribution.keys("user-", keyCount);
+        rateLimitStore = createStore();
+
+        RateLimitPolicy policy = RateLimitPolicy.builder()
+                .limit(limit)
+                .window(Duration.ofSeconds(1))
+                .algorithm(algorithm)
+                .build();
+        rateLimiter = new DefaultRateLimiter(rateLimitStore, policy, FailureMode.FAIL_CLOSED);
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (rateLimitStore instanceof InMemoryRateLimitStore) {
+            ((InMemoryRateLimitStore) rateLimitStore).close();
+        } else if (rateLimitStore instanceof RedisRateLimitStore) {
+            ((RedisRateLimitStore) rateLimitStore).close();
+        } else if (rateLimitStore instanceof PipelinedRedisRateLimitStore) {
+            ((PipelinedRedisRateLimitStore) rateLimitStore).close();
+        } else if (rateLimitStore instanceof RedisClusterRateLimitStore) {
+            ((RedisClusterRateLimitStore) rateLimitStore).close();
+        }
+        if (server != null) {
+            server.close();
+        }
+        if (cluster != null) {
+            cluster.close();
+        }
+    }
+
+    @Benchmark
+    public RateLimitResult tryAcquire(KeyCursor cursor) {
+        return rateLimiter.tryAcquire(cursor.next(keys));
+    }
+
+    private RateLimitStore createStore() throws IOException {
+        if (store == StoreType.MEMORY) {
+            return new InMemoryRateLimitStore();
+        }
+        if (store == StoreType.CLUSTER) {
+            if (redis.equals("embedded")) {
+                cluster = EmbeddedRedisCluster.start(3);
+                return new RedisClusterRateLimitStore(cluster.getNodes());
+            }
+            Set<HostAndPort> nodes = new LinkedHashSet<>();
+            for (String node : redis.split(",")) {
+                nodes.add(HostAndPort.from(node.trim()));
+            }
+            return new RedisClusterRateLimitStore(nodes);
+        }
+        String host;
+        int port;
+        if (redis.equals("embedded")) {
+            server = EmbeddedRedisServer.start();
+            host = server.getHost();
+            port = server.getPort();
+        } else {
+            int separator = redis.lastIndexOf(':');
+            host = redis.substring(0, separator);
+            port = Integer.parseInt(redis.substring(separator + 1));
+        }
+        return store == StoreType.PIPELINED ? new PipelinedRedisRateLimitStore(host, port) : new RedisRateLimitStore(host, port);
+    }
+
+    /**
+     * Per-thread position in the shared key sequence, started at a random offset.
+     */
+    @State(Scope.Thread)
+    public static class KeyCursor {
+
+        int position;
+
+        @Setup
+        public void setUp() {
+            position = ThreadLocalRandom.current().nextInt();
+        }
+
+        String next(String[] keys) {
+            return keys[position++ & (keys.length - 1)];
+        }
+    }
+}
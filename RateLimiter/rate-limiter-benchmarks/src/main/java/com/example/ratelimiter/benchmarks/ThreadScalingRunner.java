@@ -0,0 +1,47 @@
+package com.example.ratelimiter.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.file.Path;
+
+/**
+ * Runs the selected benchmarks once per thread count (1, 2, 4, ... up to the number of CPUs)
+ * with the GC profiler attached, so throughput, latency and allocation can be compared across
+ * contention levels.
+ * <p>
+ * Accepts the usual JMH command line, e.g.
+ * {@code java -cp rate-limiter-benchmarks/target/benchmarks.jar com.example.ratelimiter.benchmarks.ThreadScalingRunner
+ * RateLimiterBenchmark -p store=MEMORY -rff results.csv}. Set {@code -Dthreads.max=N} to change the upper bound.
+ */
+public final class ThreadScalingRunner {
+
+    private ThreadScalingRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        int maxThreads = Integer.getInteger("threads.max", Runtime.getRuntime().availableProcessors());
+
+        for (int threads = 1; ; threads = Math.min(threads * 2, maxThreads)) {
+            System.out.println("# Thread scaling run: " + threads + " thread(s)");
+            OptionsBuilder options = new OptionsBuilder();
+            options.parent(commandLine)
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class);
+            if (commandLine.getResult().hasValue()) {
+                Path result = Path.of(commandLine.getResult().get());
+                options.result(result.resolveSibling(threads + "-threads-" + result.getFileName()).toString());
+            }
+            new Runner(options.build()).run();
+
+            if (threads >= maxThreads) {
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.ratelimiter.core.api;
+
+/**
+ * Defines whose clock a {@link RateLimitStore} decides built-in scripts with.
+ */
+public enum ClockMode {
+
+    /**
+     * Scripts use the {@code now} argument, read from the caller's {@link TimeSource}.
+     * Clock skew between nodes sharing a store shifts their decisions.
+     */
+    CLIENT,
+
+    /**
+     * Scripts read the store's own clock (e.g. Redis {@code TIME}); callers pass
+     * {@link RateLimitScript#SERVER_TIME} as {@code now}. All nodes decide on one clock,
+     * so skew between them cannot grant extra budget or deny spuriously.
+     */
+    SERVER
+}
@@ -0,0 +1,197 @@
+package com.example.ratelimiter.core.api;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Several policies that must all allow a request, each applied to the key of one dimension
+ * (for example user, tenant or global), such as "10/s and 500/min per user, 10k/s per tenant,
+ * 100k/s global".
+ * <p>
+ * {@link RateLimiter#tryAcquire(CompositeRateLimitPolicy, Map)} evaluates every level in one
+ * all-or-nothing store batch: a request denied at any level consumes no budget at the others.
+ * The levels of a dimension are keyed {@code dimension:key}; levels sharing a dimension and
+ * algorithm are further suffixed with their limit and window so their state stays separate.
+ */
+public final class CompositeRateLimitPolicy {
+
+    /**
+     * Dimension that needs no key: every request shares one limit.
+     */
+    public static final String GLOBAL = "global";
+
+    private static final String GLOBAL_KEY = "*";
+
+    private final List<Level> levels;
+    private final Set<String> dimensions;
+    private final int hashCode;
+
+    private CompositeRateLimitPolicy(List<Level> levels) {
+        if (levels.isEmpty()) {
+            throw new IllegalArgumentException("levels must not be empty");
+        }
+        this.levels = Collections.unmodifiableList(new ArrayList<>(levels));
+
+        Set<String> dimensions = new LinkedHashSet<>();
+        for (Level level : levels) {
+            dimensions.add(level.getDimension());
+        }
+        this.dimensions = Collections.unmodifiableSet(dimensions);
+        this.hashCode = this.levels.hashCode();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public List<Level> getLevels() {
+        return levels;
+    }
+
+    /**
+     * Dimensions of the levels, in level order.
+     */
+    public Set<String> getDimensions() {
+        return dimensions;
+    }
+
+    /**
+     * Binds the levels to the given keys, one per dimension, giving the entries of one batch.
+     *
+     * @param keys key of each dimension; {@link #GLOBAL} may be omitted
+     * @throws IllegalArgumentException if a dimension has no key
+     */
+    public List<KeyPolicy> bind(Map<String, String> keys) {
+        Objects.requireNonNull(keys, "Keys cannot be null");
+        List<KeyPolicy> bound = new ArrayList<>(levels.size());
+        for (Level level : levels) {
+            String key = keys.get(level.getDimension());
+            if (key == null) {
+                if (!GLOBAL.equals(level.getDimension())) {
+                    throw new IllegalArgumentException("No key for dimension " + level.getDimension());
+                }
+                key = GLOBAL_KEY;
+            }
+            bound.add(new KeyPolicy(level.keyPrefix + key + level.keySuffix, level.getPolicy()));
+        }
+        return bound;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return levels.equals(((CompositeRateLimitPolicy) o).levels);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return "CompositeRateLimitPolicy{levels=" + levels + '}';
+    }
+
+    /**
+     * One policy applied to the key of one dimension.
+     */
+    public static final class Level {
+
+        private final String dimension;
+        private final RateLimitPolicy policy;
+        private final String keyPrefix;
+        private final String keySuffix;
+
+        private Level(String dimension, RateLimitPolicy policy, String keySuffix) {
+            this.dimension = dimension;
+            this.policy = policy;
+            this.keyPrefix = dimension + ":";
+            this.keySuffix = keySuffix;
+        }
+
+        public String getDimension() {
+            return dimension;
+        }
+
+        public RateLimitPolicy getPolicy() {
+            return policy;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Level that = (Level) o;
+            return dimension.equals(that.dimension) && policy.equals(that.policy);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(dimension, policy);
+        }
+
+        @Override
+        public String toString() {
+            return dimension + "=" + policy.getLimit() + "/" + policy.getWindow() + " " + policy.getAlgorithm();
+        }
+    }
+
+    public static class Builder {
+        private final List<String> dimensions = new ArrayList<>();
+        private final List<RateLimitPolicy> policies = new ArrayList<>();
+
+        /**
+         * Adds a level applying the policy to the key of the dimension.
+         */
+        public Builder level(String dimension, RateLimitPolicy policy) {
+            Objects.requireNonNull(dimension, "Dimension cannot be null");
+            Objects.requireNonNull(policy, "Policy cannot be null");
+            if (dimension.isEmpty()) {
+                throw new IllegalArgumentException("dimension must not be empty");
+            }
+            dimensions.add(dimension);
+            policies.add(policy);
+            return this;
+        }
+
+        /**
+         * Adds a level shared by every request.
+         */
+        public Builder global(RateLimitPolicy policy) {
+            return level(GLOBAL, policy);
+        }
+
+        public CompositeRateLimitPolicy build() {
+            Set<String> seen = new HashSet<>();
+            Set<String> shared = new HashSet<>();
+            for (int i = 0; i < dimensions.size(); i++) {
+                String state = dimensions.get(i) + ":" + policies.get(i).getAlgorithm();
+                if (!seen.add(state)) {
+                    shared.add(state);
+                }
+            }
+
+            List<Level> levels = new ArrayList<>(dimensions.size());
+            Set<Level> distinct = new HashSet<>();
+            for (int i = 0; i < dimensions.size(); i++) {
+                RateLimitPolicy policy = policies.get(i);
+                boolean sharesState = shared.contains(dimensions.get(i) + ":" + policy.getAlgorithm());
+                Level level = new Level(dimensions.get(i), policy,
+                        sharesState ? ":" + policy.getLimit() + "/" + policy.getWindow().toMillis() + "ms" : "");
+                if (!distinct.add(level)) {
+                    throw new IllegalArgumentException("Duplicate level " + level);
+                }
+                levels.add(level);
+            }
+            return new CompositeRateLimitPolicy(levels);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.ratelimiter.core.api;
+
+import java.util.Objects;
+
+/**
+ * A rate limit key paired with the policy to check it against, used for batch acquisition.
+ */
+public class KeyPolicy {
+
+    private final String key;
+    private final RateLimitPolicy policy;
+
+    public KeyPolicy(String key, RateLimitPolicy policy) {
+        this.key = Objects.requireNonNull(key, "Key cannot be null");
+        this.policy = Objects.requireNonNull(policy, "Policy cannot be null");
+    }
+
+    public static KeyPolicy of(String key, RateLimitPolicy policy) {
+        return new KeyPolicy(key, policy);
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public RateLimitPolicy getPolicy() {
+        return policy;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        KeyPolicy that = (KeyPolicy) o;
+        return key.equals(that.key) && policy.equals(that.policy);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(key, policy);
+    }
+
+    @Override
+    public String toString() {
+        return "KeyPolicy{" +
+                "key='" + key + '\'' +
+                ", policy=" + policy +
+                '}';
+    }
+}
@@ -28,7 +28,7 @@ public enum RateLimitAlgorithm {
 
     /**
      * Leaky bucket: requests are processed at a constant rate.
-     * Smooths out bursts.
+     * Smooths out bursts. Implemented as GCRA with a single stored timestamp per key.
      */
     LEAKY_BUCKET
 }
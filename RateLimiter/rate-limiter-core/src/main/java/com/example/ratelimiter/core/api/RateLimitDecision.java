@@ -0,0 +1,104 @@
+package com.example.ratelimiter.core.api;
+
+import java.time.Duration;
+
+/**
+ * Mutable, reusable holder for a rate limit decision.
+ * <p>
+ * The allocation-free counterpart of {@link RateLimitResult}: a caller keeps one instance (for example
+ * per thread or per connection) and passes it to
+ * {@link RateLimiter#tryAcquireInto(String, RateLimitPolicy, long, RateLimitDecision)}, which
+ * overwrites it. Retry-after is kept in milliseconds. Instances are not thread-safe.
+ */
+public final class RateLimitDecision {
+
+    private boolean allowed;
+    private long remaining;
+    private long retryAfterMillis;
+    private long currentCount;
+    private long limit;
+
+    /**
+     * Records an allowed decision.
+     *
+     * @return this holder
+     */
+    public RateLimitDecision allow(long remaining, long currentCount, long limit) {
+        this.allowed = true;
+        this.remaining = remaining;
+        this.retryAfterMillis = 0;
+        this.currentCount = currentCount;
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * Records a denied decision.
+     *
+     * @return this holder
+     */
+    public RateLimitDecision deny(long retryAfterMillis, long currentCount, long limit) {
+        this.allowed = false;
+        this.remaining = 0;
+        this.retryAfterMillis = retryAfterMillis;
+        this.currentCount = currentCount;
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * Copies the given result into this holder.
+     *
+     * @return this holder
+     */
+    public RateLimitDecision set(RateLimitResult result) {
+        if (result.isAllowed()) {
+            return allow(result.getRemaining(), result.getCurrentCount(), result.getLimit());
+        }
+        return deny(result.getRetryAfter().map(Duration::toMillis).orElse(0L), result.getCurrentCount(), result.getLimit());
+    }
+
+    public boolean isAllowed() {
+        return allowed;
+    }
+
+    public long getRemaining() {
+        return remaining;
+    }
+
+    /**
+     * @return milliseconds until a retry may succeed, or 0 if allowed
+     */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+
+    public long getCurrentCount() {
+        return currentCount;
+    }
+
+    public long getLimit() {
+        return limit;
+    }
+
+    /**
+     * @return an immutable snapshot of this decision
+     */
+    public RateLimitResult toResult() {
+        if (allowed) {
+            return RateLimitResult.allowed(remaining, currentCount, limit);
+        }
+        return RateLimitResult.denied(Duration.ofMillis(retryAfterMillis), currentCount, limit);
+    }
+
+    @Override
+    public String toString() {
+        return "RateLimitDecision{" +
+                "allowed=" + allowed +
+                ", remaining=" + remaining +
+                ", retryAfterMillis=" + retryAfterMillis +
+                ", currentCount=" + currentCount +
+                ", limit=" + limit +
+                '}';
+    }
+}
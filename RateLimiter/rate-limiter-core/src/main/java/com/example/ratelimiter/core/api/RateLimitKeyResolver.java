@@ -3,6 +3,10 @@ package com.example.ratelimiter.core.api;
 /**
  * Strategy for resolving rate limit keys from context.
  * Allows flexible key generation strategies (e.g., by user, IP, API key, etc.)
+ * <p>
+ * These resolvers build a new String per call; on hot paths use
+ * {@link com.example.ratelimiter.core.key.KeyResolverPipeline}, which writes keys into a reusable
+ * buffer and reuses the Strings of recently seen keys.
  */
 @FunctionalInterface
 public interface RateLimitKeyResolver {
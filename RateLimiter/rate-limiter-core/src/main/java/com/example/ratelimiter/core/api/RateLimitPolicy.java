@@ -11,6 +11,7 @@ public class RateLimitPolicy {
     private final int limit;
     private final Duration window;
     private final RateLimitAlgorithm algorithm;
+    private final int hashCode;
 
     public RateLimitPolicy(int limit, Duration window, RateLimitAlgorithm algorithm) {
         if (limit <= 0) {
@@ -24,6 +25,7 @@ public class RateLimitPolicy {
         this.limit = limit;
         this.window = window;
         this.algorithm = Objects.requireNonNull(algorithm, "algorithm must not be null");
+        this.hashCode = Objects.hash(limit, window, algorithm);
     }
 
     public static Builder builder() {
@@ -54,7 +56,8 @@ public class RateLimitPolicy {
 
     @Override
     public int hashCode() {
-        return Objects.hash(limit, window, algorithm);
+        // Policies key per-policy maps on hot paths, so the hash is computed once
+        return hashCode;
     }
 
     public static class Builder {
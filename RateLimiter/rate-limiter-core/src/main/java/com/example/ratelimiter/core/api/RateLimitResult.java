@@ -40,6 +40,17 @@ public class RateLimitResult {
         return Optional.ofNullable(retryAfter);
     }
 
+    /**
+     * Milliseconds until a retry may succeed, rounded up so a denial never reads as "retry now";
+     * 0 if the request was allowed.
+     */
+    public long getRetryAfterMillis() {
+        if (retryAfter == null || retryAfter.isZero() || retryAfter.isNegative()) {
+            return 0;
+        }
+        return Math.max(1, retryAfter.plusNanos(999_999).toMillis());
+    }
+
     public long getCurrentCount() {
         return currentCount;
     }
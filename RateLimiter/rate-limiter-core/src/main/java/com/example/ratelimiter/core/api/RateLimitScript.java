@@ -0,0 +1,92 @@
+package com.example.ratelimiter.core.api;
+
+/**
+ * Atomic operations a {@link RateLimitStore} can execute in a single round trip.
+ * Each script reads and updates its single key atomically, setting the key's expiry in the same
+ * step, and returns a fixed-shape reply.
+ * <p>
+ * The {@code now} argument of every script may be {@link #SERVER_TIME}, in which case the store
+ * reads its own clock when the script runs.
+ */
+public enum RateLimitScript {
+
+    /**
+     * Token bucket: refills, consumes and persists the bucket in one step.
+     * <p>
+     * Keys: bucket key, holding the time (ms) at which the bucket was empty.
+     * Args: capacity, refill period (ms), now (ms), cost, TTL (ms).
+     * Reply: {allowed (1/0), remaining tokens, retry after (ms)}.
+     */
+    TOKEN_BUCKET("token_bucket"),
+
+    /**
+     * Token lease: takes up to the requested number of whole tokens from a token bucket
+     * so a node can serve them locally. Shares state with {@link #TOKEN_BUCKET}.
+     * <p>
+     * Keys: bucket key.
+     * Args: capacity, refill period (ms), now (ms), requested tokens, TTL (ms).
+     * Reply: {granted tokens, remaining tokens, retry after (ms)}.
+     */
+    TOKEN_LEASE("token_lease"),
+
+    /**
+     * Fixed window: checks the window counter and increments it if the request fits.
+     * Windows are aligned to multiples of the window length, so all nodes share the same
+     * boundaries. Denied requests are not counted.
+     * <p>
+     * Keys: window counter key, holding the index and count of its window; a counter of an
+     * earlier window counts as empty.
+     * Args: limit, window (ms), now (ms), cost.
+     * Reply: {allowed (1/0), remaining, retry after (ms)}.
+     */
+    FIXED_WINDOW("fixed_window"),
+
+    /**
+     * Sliding window log: evicts timestamps older than the window, counts the rest
+     * and records the request if it fits.
+     * <p>
+     * Keys: log key.
+     * Args: limit, window (ms), now (ms), cost, nonce (makes log entries unique).
+     * Reply: {allowed (1/0), remaining, retry after (ms)}.
+     */
+    SLIDING_WINDOW_LOG("sliding_window_log"),
+
+    /**
+     * Sliding window counter: weights the previous window counter by its overlap with
+     * the sliding window and adds the current window counter.
+     * <p>
+     * Keys: window counter key, holding the current window's index and count and the previous
+     * window's count; the script moves them on when a new window starts.
+     * Args: limit, window (ms), now (ms), cost.
+     * Reply: {allowed (1/0), remaining, retry after (ms)}.
+     */
+    SLIDING_WINDOW_COUNTER("sliding_window_counter"),
+
+    /**
+     * Leaky bucket as the Generic Cell Rate Algorithm: keeps a single theoretical arrival
+     * time per key and admits a request if it does not run more than one window ahead of now.
+     * <p>
+     * Keys: TAT key.
+     * Args: limit, window (ms), now (ms), cost.
+     * Reply: {allowed (1/0), remaining, retry after (ms)}.
+     */
+    GCRA("gcra");
+
+    /**
+     * Value of the {@code now} argument asking the store to use its own clock, see {@link ClockMode#SERVER}.
+     */
+    public static final long SERVER_TIME = -1;
+
+    private final String scriptName;
+
+    RateLimitScript(String scriptName) {
+        this.scriptName = scriptName;
+    }
+
+    /**
+     * Name under which store implementations look up their native script (e.g. {@code lua/token_bucket.lua}).
+     */
+    public String getScriptName() {
+        return scriptName;
+    }
+}
@@ -2,6 +2,8 @@ package com.example.ratelimiter.core.api;
 
 import java.time.Duration;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 /**
  * Storage backend for rate limit state.
@@ -14,8 +16,9 @@ public interface RateLimitStore {
      * Increments the counter for the given key.
      *
      * @param key the rate limit key
-     * @param ttl time-to-live for the key
+     * @param ttl time-to-live for the key, greater than zero
      * @return the new count after increment
+     * @throws IllegalArgumentException if the ttl is not positive
      */
     long increment(String key, Duration ttl);
 
@@ -32,7 +35,8 @@ public interface RateLimitStore {
      *
      * @param key the rate limit key
      * @param value the value to set
-     * @param ttl time-to-live for the key
+     * @param ttl time-to-live for the key, greater than zero
+     * @throws IllegalArgumentException if the ttl is not positive
      */
     void set(String key, long value, Duration ttl);
 
@@ -54,6 +58,90 @@ public interface RateLimitStore {
      */
     Object executeScript(String script, String[] keys, String[] args);
 
+    /**
+     * Executes one of the built-in rate limiting scripts atomically, in a single round trip.
+     *
+     * @param script the built-in script to execute
+     * @param keys list of keys to pass to the script
+     * @param args list of numeric arguments to pass to the script
+     * @return the script reply, shaped as documented on {@link RateLimitScript}
+     * @throws UnsupportedOperationException if the store does not support the script
+     */
+    default long[] executeScript(RateLimitScript script, String[] keys, long... args) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support script " + script);
+    }
+
+    /**
+     * Executes one of the built-in rate limiting scripts, writing the reply into {@code reply}
+     * instead of allocating a new array. Stores on the allocation-free decision path override it.
+     * <p>
+     * The default implementation copies the reply of {@link #executeScript(RateLimitScript, String[], long...)}.
+     * Implementations must not retain or modify {@code keys} and {@code args}, which callers may reuse.
+     *
+     * @param script the built-in script to execute
+     * @param keys list of keys to pass to the script
+     * @param args list of numeric arguments to pass to the script
+     * @param reply array of at least 3 elements receiving the reply shaped as documented on {@link RateLimitScript}
+     */
+    default void executeScriptInto(RateLimitScript script, String[] keys, long[] args, long[] reply) {
+        long[] result = executeScript(script, keys, args);
+        System.arraycopy(result, 0, reply, 0, Math.min(result.length, reply.length));
+    }
+
+    /**
+     * Executes several built-in scripts atomically in a single round trip, all-or-nothing:
+     * state is only updated if every script allows its request.
+     *
+     * @param scripts the scripts to execute, one per entry
+     * @param keys the keys of each entry
+     * @param args the numeric arguments of each entry
+     * @return one reply per entry, shaped as documented on {@link RateLimitScript}; if any entry
+     *         was denied, the replies describe the decisions but nothing was consumed
+     * @throws UnsupportedOperationException if the store does not support batches
+     */
+    default long[][] executeBatch(RateLimitScript[] scripts, String[][] keys, long[][] args) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support script batches");
+    }
+
+    /**
+     * Executes several built-in scripts atomically without blocking the calling thread, with the
+     * semantics of {@link #executeBatch}.
+     * <p>
+     * The default implementation runs {@link #executeBatch} on the caller's thread; network-backed
+     * stores should override it.
+     *
+     * @return stage completed with one reply per entry, or exceptionally if the store failed
+     * @throws UnsupportedOperationException if the store does not support batches
+     */
+    default CompletionStage<long[][]> executeBatchAsync(RateLimitScript[] scripts, String[][] keys, long[][] args) {
+        try {
+            return CompletableFuture.completedFuture(executeBatch(scripts, keys, args));
+        } catch (UnsupportedOperationException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Executes one of the built-in rate limiting scripts without blocking the calling thread.
+     * <p>
+     * The default implementation runs {@link #executeScript(RateLimitScript, String[], long...)}
+     * on the caller's thread; network-backed stores should override it.
+     *
+     * @param script the built-in script to execute
+     * @param keys list of keys to pass to the script
+     * @param args list of numeric arguments to pass to the script
+     * @return stage completed with the script reply, or exceptionally if the store failed
+     */
+    default CompletionStage<long[]> executeScriptAsync(RateLimitScript script, String[] keys, long... args) {
+        try {
+            return CompletableFuture.completedFuture(executeScript(script, keys, args));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
     /**
      * Gets multiple values atomically.
      *
@@ -62,6 +150,16 @@ public interface RateLimitStore {
      */
     Map<String, Long> multiGet(String... keys);
 
+    /**
+     * Whose clock this store decides built-in scripts with. Under {@link ClockMode#SERVER} callers
+     * pass {@link RateLimitScript#SERVER_TIME} as {@code now}.
+     * <p>
+     * Every store must accept {@link RateLimitScript#SERVER_TIME}; the default is {@link ClockMode#CLIENT}.
+     */
+    default ClockMode getClockMode() {
+        return ClockMode.CLIENT;
+    }
+
     /**
      * Checks if the store is available and healthy.
      *
@@ -1,6 +1,10 @@
 package com.example.ratelimiter.core.api;
 
-import java.util.concurrent.TimeUnit;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 /**
  * Main interface for rate limiting operations
@@ -27,6 +31,187 @@ public interface RateLimiter {
     RateLimitResult tryAcquire(String key, RateLimitPolicy policy);
 
 
+    /**
+     * Attempts to acquire the given number of permits for the key in a single decision,
+     * e.g. to limit by bytes or by query weight. A denied result's retry-after is the wait
+     * until all requested permits are available.
+     *
+     * @param key the unique identifier for rate limiting
+     * @param policy the rate limit policy to apply
+     * @param permits the number of permits to consume, between 1 and the policy limit
+     * @return RateLimitResult containing the decision and metadata
+     * @throws IllegalArgumentException if permits is not positive or exceeds the policy limit
+     */
+    RateLimitResult tryAcquire(String key, RateLimitPolicy policy, long permits);
+
+
+    /**
+     * Attempts to acquire the given number of permits, writing the decision into a caller-owned holder.
+     * <p>
+     * This is the allocation-free variant of {@link #tryAcquire(String, RateLimitPolicy, long)} for
+     * hot paths; the default implementation copies that method's result into the holder.
+     *
+     * @param key the unique identifier for rate limiting
+     * @param policy the rate limit policy to apply
+     * @param permits the number of permits to consume, between 1 and the policy limit
+     * @param decision holder overwritten with the decision and metadata
+     * @return true if the permits were acquired
+     * @throws IllegalArgumentException if permits is not positive or exceeds the policy limit
+     */
+    default boolean tryAcquireInto(String key, RateLimitPolicy policy, long permits, RateLimitDecision decision) {
+        return decision.set(tryAcquire(key, policy, permits)).isAllowed();
+    }
+
+
+    /**
+     * Acquires permission for the given key, blocking until it is granted.
+     *
+     * @param key the unique identifier for rate limiting
+     * @return the allowed result, or the last denied result if the thread was interrupted
+     *         (the interrupt flag is then restored)
+     */
+    default RateLimitResult acquire(String key) {
+        return tryAcquire(key, Duration.ofNanos(Long.MAX_VALUE));
+    }
+
+
+    /**
+     * Attempts to acquire permission for the given key, waiting up to the given timeout.
+     * <p>
+     * The default implementation sleeps for each denial's retry-after and tries again; it returns
+     * immediately if the retry-after already exceeds the remaining timeout.
+     *
+     * @param key the unique identifier for rate limiting
+     * @param timeout the maximum time to wait
+     * @return the allowed result, or the last denied result on timeout or interrupt
+     */
+    default RateLimitResult tryAcquire(String key, Duration timeout) {
+        long deadline = System.nanoTime() + Math.min(Long.MAX_VALUE / 2, timeout.toNanos());
+        while (true) {
+            RateLimitResult result = tryAcquire(key);
+            if (result.isAllowed()) {
+                return result;
+            }
+            long wait = Math.max(1_000_000L, result.getRetryAfter().orElse(Duration.ofMillis(1)).toNanos());
+            if (deadline - System.nanoTime() < wait) {
+                return result;
+            }
+            try {
+                Thread.sleep(wait / 1_000_000L, (int) (wait % 1_000_000L));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return result;
+            }
+        }
+    }
+
+
+    /**
+     * Attempts to acquire permission for all given keys at once, with all-or-nothing semantics:
+     * either every key consumes its budget, or none does.
+     * <p>
+     * The returned result is allowed only if every key was allowed. Its remaining count and limit
+     * are those of the tightest key; when denied, its retry-after is the longest wait among the
+     * denied keys. Each key may appear at most once per algorithm; to take several permits from
+     * one key, use {@link #tryAcquire(String, RateLimitPolicy, long)}.
+     *
+     * @param requests the keys and the policies to check them against
+     * @return the combined decision
+     * @throws IllegalArgumentException if the same key appears twice under policies of the same algorithm
+     * @throws UnsupportedOperationException if the implementation cannot acquire atomically
+     */
+    default RateLimitResult tryAcquireAll(List<KeyPolicy> requests) {
+        throw new UnsupportedOperationException(getClass().getSimpleName() + " does not support batch acquisition");
+    }
+
+
+    /**
+     * Attempts to acquire permission for all given keys at once without blocking the calling thread.
+     * <p>
+     * The default implementation runs {@link #tryAcquireAll(List)} on the caller's thread;
+     * implementations backed by a non-blocking store should override it.
+     *
+     * @param requests the keys and the policies to check them against
+     * @return stage completed with the combined decision; never completed exceptionally by a store failure
+     * @throws UnsupportedOperationException if the implementation cannot acquire atomically
+     * @see #tryAcquireAll(List)
+     */
+    default CompletionStage<RateLimitResult> tryAcquireAllAsync(List<KeyPolicy> requests) {
+        return CompletableFuture.completedFuture(tryAcquireAll(requests));
+    }
+
+
+    /**
+     * Attempts to acquire permission under every level of a composite policy, all-or-nothing:
+     * a request denied at any level consumes no budget at the others.
+     *
+     * @param policy the composite policy to apply
+     * @param keys the key of each dimension of the policy, e.g. {@code user -> alice, tenant -> acme}
+     * @return the combined decision, as for {@link #tryAcquireAll(List)}
+     * @throws IllegalArgumentException if a dimension of the policy has no key
+     * @throws UnsupportedOperationException if the implementation cannot acquire atomically
+     */
+    default RateLimitResult tryAcquire(CompositeRateLimitPolicy policy, Map<String, String> keys) {
+        return tryAcquireAll(policy.bind(keys));
+    }
+
+
+    /**
+     * Attempts to acquire permission under every level of a composite policy without blocking
+     * the calling thread.
+     *
+     * @param policy the composite policy to apply
+     * @param keys the key of each dimension of the policy
+     * @return stage completed with the combined decision; never completed exceptionally by a store failure
+     * @see #tryAcquire(CompositeRateLimitPolicy, Map)
+     */
+    default CompletionStage<RateLimitResult> tryAcquireAsync(CompositeRateLimitPolicy policy, Map<String, String> keys) {
+        return tryAcquireAllAsync(policy.bind(keys));
+    }
+
+
+    /**
+     * Attempts to acquire permission for the given key without blocking the calling thread.
+     * <p>
+     * The default implementation runs {@link #tryAcquire(String)} on the caller's thread;
+     * implementations backed by a non-blocking store should override it.
+     *
+     * @param key the unique identifier for rate limiting
+     * @return stage completed with the decision; never completed exceptionally by a store failure
+     */
+    default CompletionStage<RateLimitResult> tryAcquireAsync(String key) {
+        return CompletableFuture.completedFuture(tryAcquire(key));
+    }
+
+
+    /**
+     * Attempts to acquire permission for the given key with a specific policy without blocking
+     * the calling thread.
+     *
+     * @param key the unique identifier for rate limiting
+     * @param policy the rate limit policy to apply
+     * @return stage completed with the decision; never completed exceptionally by a store failure
+     * @see #tryAcquireAsync(String)
+     */
+    default CompletionStage<RateLimitResult> tryAcquireAsync(String key, RateLimitPolicy policy) {
+        return CompletableFuture.completedFuture(tryAcquire(key, policy));
+    }
+
+
+    /**
+     * Attempts to acquire the given number of permits without blocking the calling thread.
+     *
+     * @param key the unique identifier for rate limiting
+     * @param policy the rate limit policy to apply
+     * @param permits the number of permits to consume, between 1 and the policy limit
+     * @return stage completed with the decision; never completed exceptionally by a store failure
+     * @see #tryAcquire(String, RateLimitPolicy, long)
+     */
+    default CompletionStage<RateLimitResult> tryAcquireAsync(String key, RateLimitPolicy policy, long permits) {
+        return CompletableFuture.completedFuture(tryAcquire(key, policy, permits));
+    }
+
+
     /**
      * Resets the rate limit for the given key.
      *
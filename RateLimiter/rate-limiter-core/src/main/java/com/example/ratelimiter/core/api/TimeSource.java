@@ -0,0 +1,42 @@
+package com.example.ratelimiter.core.api;
+
+/**
+ * Source of raw time readings for rate limit decisions.
+ * <p>
+ * Returns primitives rather than {@code Instant}s so reading the clock never allocates.
+ * Implementations must be thread-safe. Besides {@link #SYSTEM}, see
+ * {@link com.example.ratelimiter.core.time.MonotonicTimeSource} for local state and
+ * {@link com.example.ratelimiter.core.time.CachedTimeSource} for hot paths; a store in
+ * {@link ClockMode#SERVER} ignores the caller's clock.
+ */
+public interface TimeSource {
+
+    /**
+     * The system clock: {@link System#currentTimeMillis()} and {@link System#nanoTime()}.
+     */
+    TimeSource SYSTEM = new TimeSource() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+    };
+
+    /**
+     * Wall-clock time used to place requests in windows.
+     *
+     * @return milliseconds since the epoch
+     */
+    long currentTimeMillis();
+
+    /**
+     * Monotonic time used to measure intervals; only differences between readings are meaningful.
+     *
+     * @return nanoseconds from an arbitrary origin
+     */
+    long nanoTime();
+}
@@ -0,0 +1,112 @@
+package com.example.ratelimiter.core.concurrency;
+
+import java.time.Duration;
+
+/**
+ * Additive increase, multiplicative decrease: the limit grows by one per limit's worth of
+ * successful requests, about one per round trip, and is cut by {@code backoffRatio} on every
+ * dropped request or request slower than {@code timeout}.
+ * <p>
+ * Reacts to loss only, so it fills queues up to the point of failure; prefer {@link GradientLimit}
+ * unless the backend signals overload explicitly (e.g. with 503s).
+ */
+public final class AimdLimit implements ConcurrencyLimit {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long timeoutNanos;
+    private volatile double limit;
+
+    private AimdLimit(Builder builder) {
+        if (builder.minLimit <= 0) {
+            throw new IllegalArgumentException("minLimit must be greater than 0");
+        }
+        if (builder.maxLimit < builder.minLimit) {
+            throw new IllegalArgumentException("maxLimit must be at least minLimit");
+        }
+        if (builder.backoffRatio <= 0 || builder.backoffRatio >= 1) {
+            throw new IllegalArgumentException("backoffRatio must be in (0, 1)");
+        }
+        if (builder.timeout == null || builder.timeout.isZero() || builder.timeout.isNegative()) {
+            throw new IllegalArgumentException("timeout must be greater than 0");
+        }
+        this.minLimit = builder.minLimit;
+        this.maxLimit = builder.maxLimit;
+        this.backoffRatio = builder.backoffRatio;
+        this.timeoutNanos = builder.timeout.toNanos();
+        this.limit = Math.max(minLimit, Math.min(maxLimit, builder.initialLimit));
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    @Override
+    public synchronized void onSample(long rttNanos, int inFlight, boolean dropped) {
+        double current = limit;
+        if (dropped || rttNanos > timeoutNanos) {
+            limit = Math.max(minLimit, current * backoffRatio);
+        } else if (inFlight * 2 >= current) {
+            // Only grow while the limit is actually in use
+            limit = Math.min(maxLimit, current + 1 / current);
+        }
+    }
+
+    public static class Builder {
+        private int initialLimit = 20;
+        private int minLimit = 1;
+        private int maxLimit = 1000;
+        private double backoffRatio = 0.9;
+        private Duration timeout = Duration.ofSeconds(5);
+
+        /**
+         * Limit before any request completed. Default 20.
+         */
+        public Builder initialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+            return this;
+        }
+
+        /**
+         * Lower bound of the limit. Default 1.
+         */
+        public Builder minLimit(int minLimit) {
+            this.minLimit = minLimit;
+            return this;
+        }
+
+        /**
+         * Upper bound of the limit. Default 1000.
+         */
+        public Builder maxLimit(int maxLimit) {
+            this.maxLimit = maxLimit;
+            return this;
+        }
+
+        /**
+         * Factor applied to the limit on a drop. Default 0.9.
+         */
+        public Builder backoffRatio(double backoffRatio) {
+            this.backoffRatio = backoffRatio;
+            return this;
+        }
+
+        /**
+         * Latency from which a request counts as dropped. Default 5s.
+         */
+        public Builder timeout(Duration timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        public AimdLimit build() {
+            return new AimdLimit(this);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.ratelimiter.core.concurrency;
+
+/**
+ * Controller of one key's concurrency limit, fed with the outcome of every completed request.
+ * <p>
+ * Implementations must be thread-safe: samples arrive from every thread completing a request.
+ */
+public interface ConcurrencyLimit {
+
+    /**
+     * Current limit on requests in flight.
+     */
+    int getLimit();
+
+    /**
+     * Adjusts the limit to a completed request.
+     *
+     * @param rttNanos time the request was in flight
+     * @param inFlight requests in flight when it started, itself included
+     * @param dropped  whether the backend failed it as overloaded or it timed out
+     */
+    void onSample(long rttNanos, int inFlight, boolean dropped);
+}
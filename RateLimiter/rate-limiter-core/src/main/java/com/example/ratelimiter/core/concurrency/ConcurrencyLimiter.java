@@ -0,0 +1,248 @@
+package com.example.ratelimiter.core.concurrency;
+
+import com.example.ratelimiter.core.api.TimeSource;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bounds the requests in flight per key (e.g. per backend) by a limit that adapts to the latency
+ * and drops it observes, instead of a fixed rate.
+ * <p>
+ * {@link #tryAcquire} hands out a {@link Permit} while the key has fewer requests in flight than its
+ * {@link ConcurrencyLimit}; the caller completes the permit when the request finishes, which frees
+ * the slot and feeds its latency back to the limit. Rejecting the excess keeps queues at the backend
+ * short, so latency stays low under overload while the limit tracks the concurrency the backend can
+ * actually serve.
+ * <p>
+ * Limits are local to this node. Each key gets its own limit from the factory; once {@code capacity}
+ * keys are tracked, keys with nothing in flight are forgotten and start over from the initial limit.
+ */
+public final class ConcurrencyLimiter {
+
+    private static final ConcurrencyLimiter DISABLED = new ConcurrencyLimiter();
+    // In-flight count of a state being forgotten; acquirers look the key up again
+    private static final int EVICTED = -1;
+    private static final Optional<Permit> UNLIMITED = Optional.of(new Permit(null, 0, TimeSource.SYSTEM));
+
+    private final Supplier<? extends ConcurrencyLimit> limitFactory;
+    private final int capacity;
+    private final TimeSource timeSource;
+    private final Map<String, KeyState> states = new ConcurrentHashMap<>();
+    private final AtomicInteger evictAt;
+
+    private ConcurrencyLimiter(Builder builder) {
+        if (builder.capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be greater than 0");
+        }
+        this.limitFactory = Objects.requireNonNull(builder.limitFactory, "Limit factory cannot be null");
+        this.capacity = builder.capacity;
+        this.timeSource = Objects.requireNonNull(builder.timeSource, "Time source cannot be null");
+        this.evictAt = new AtomicInteger(capacity);
+    }
+
+    private ConcurrencyLimiter() {
+        this.limitFactory = null;
+        this.capacity = 0;
+        this.timeSource = TimeSource.SYSTEM;
+        this.evictAt = null;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * A limiter that grants every request; its permits do nothing.
+     */
+    public static ConcurrencyLimiter disabled() {
+        return DISABLED;
+    }
+
+    public boolean isEnabled() {
+        return limitFactory != null;
+    }
+
+    /**
+     * Takes a slot for a request on the key.
+     *
+     * @return a permit to complete when the request finishes, or empty if the key is at its limit
+     */
+    public Optional<Permit> tryAcquire(String key) {
+        if (limitFactory == null) {
+            return UNLIMITED;
+        }
+        while (true) {
+            KeyState state = state(key);
+            int limit = state.limit.getLimit();
+            int inFlight;
+            do {
+                inFlight = state.inFlight.get();
+                if (inFlight == EVICTED) {
+                    break;
+                }
+                if (inFlight >= limit) {
+                    return Optional.empty();
+                }
+            } while (!state.inFlight.compareAndSet(inFlight, inFlight + 1));
+
+            if (inFlight != EVICTED) {
+                return Optional.of(new Permit(state, inFlight + 1, timeSource));
+            }
+            // Forgotten between the lookup and the increment: retry on the key's new state
+            states.remove(key, state);
+        }
+    }
+
+    /**
+     * The key's current limit, or 0 if the key is not tracked.
+     */
+    public int getLimit(String key) {
+        KeyState state = states.get(key);
+        return state != null ? state.limit.getLimit() : 0;
+    }
+
+    /**
+     * Requests in flight on the key.
+     */
+    public int getInFlight(String key) {
+        KeyState state = states.get(key);
+        return state != null ? Math.max(0, state.inFlight.get()) : 0;
+    }
+
+    private KeyState state(String key) {
+        KeyState state = states.get(key);
+        if (state != null) {
+            return state;
+        }
+        if (states.size() >= evictAt.get()) {
+            // Before inserting, so the caller's own new state is not forgotten right away
+            evictIdle();
+        }
+        return states.computeIfAbsent(key, k -> new KeyState(limitFactory.get()));
+    }
+
+    /**
+     * Forgets the keys with nothing in flight. Keys still in use stay, so the next pass waits until
+     * another {@code capacity / 2} keys were added, which keeps the cost per new key constant.
+     */
+    private void evictIdle() {
+        int threshold = evictAt.get();
+        if (threshold == Integer.MAX_VALUE || !evictAt.compareAndSet(threshold, Integer.MAX_VALUE)) {
+            // Another thread is evicting
+            return;
+        }
+        try {
+            for (Map.Entry<String, KeyState> entry : states.entrySet()) {
+                KeyState candidate = entry.getValue();
+                // Claims the state only while idle; an acquirer that loses the race looks the key up again
+                if (candidate.inFlight.compareAndSet(0, EVICTED)) {
+                    states.remove(entry.getKey(), candidate);
+                }
+            }
+        } finally {
+            evictAt.set(Math.max(capacity, states.size() + capacity / 2));
+        }
+    }
+
+    /**
+     * A slot taken by one request. Complete it exactly once when the request finishes; later calls
+     * are ignored.
+     */
+    public static final class Permit {
+
+        private final KeyState state;
+        private final int inFlight;
+        private final TimeSource timeSource;
+        private final long startNanos;
+        private final AtomicBoolean completed = new AtomicBoolean();
+
+        private Permit(KeyState state, int inFlight, TimeSource timeSource) {
+            this.state = state;
+            this.inFlight = inFlight;
+            this.timeSource = timeSource;
+            this.startNanos = timeSource.nanoTime();
+        }
+
+        /**
+         * The request succeeded; its latency counts towards the limit.
+         */
+        public void onSuccess() {
+            complete(false, true);
+        }
+
+        /**
+         * The backend rejected the request as overloaded or it timed out; the limit backs off.
+         */
+        public void onDropped() {
+            complete(true, true);
+        }
+
+        /**
+         * The request ended without saying anything about the backend (e.g. the client cancelled or
+         * it failed before reaching the backend); only the slot is freed.
+         */
+        public void onIgnore() {
+            complete(false, false);
+        }
+
+        private void complete(boolean dropped, boolean sample) {
+            if (state == null || !completed.compareAndSet(false, true)) {
+                return;
+            }
+            state.inFlight.decrementAndGet();
+            if (sample) {
+                state.limit.onSample(timeSource.nanoTime() - startNanos, inFlight, dropped);
+            }
+        }
+    }
+
+    private static final class KeyState {
+
+        final ConcurrencyLimit limit;
+        final AtomicInteger inFlight = new AtomicInteger();
+
+        KeyState(ConcurrencyLimit limit) {
+            this.limit = Objects.requireNonNull(limit, "Concurrency limit cannot be null");
+        }
+    }
+
+    public static class Builder {
+        private Supplier<? extends ConcurrencyLimit> limitFactory = () -> GradientLimit.builder().build();
+        private int capacity = 1024;
+        private TimeSource timeSource = TimeSource.SYSTEM;
+
+        /**
+         * Creates the limit of each new key. Default a {@link GradientLimit} with its defaults.
+         */
+        public Builder limit(Supplier<? extends ConcurrencyLimit> limitFactory) {
+            this.limitFactory = limitFactory;
+            return this;
+        }
+
+        /**
+         * Number of keys tracked before idle ones are forgotten. Default 1024.
+         */
+        public Builder capacity(int capacity) {
+            this.capacity = capacity;
+            return this;
+        }
+
+        /**
+         * Clock measuring request latency. Default {@link TimeSource#SYSTEM}.
+         */
+        public Builder timeSource(TimeSource timeSource) {
+            this.timeSource = timeSource;
+            return this;
+        }
+
+        public ConcurrencyLimiter build() {
+            return new ConcurrencyLimiter(this);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.ratelimiter.core.concurrency;
+
+/**
+ * Latency-gradient limit: compares the recent latency with the latency without queueing and shrinks the
+ * limit as soon as requests start to queue, before the backend fails.
+ * <p>
+ * Each sample updates a short average of the latency over about 10 samples and a baseline
+ * that follows it down as quickly but up only over {@code longWindow} samples, approximating the
+ * latency without queueing. The gradient {@code tolerance * baseline / short}, clamped
+ * to [0.5, 1], is 1 while latency is stable and drops once it rises; the new limit is
+ * {@code limit * gradient + sqrt(limit)}, the square root being the queue allowed to probe for more
+ * capacity, smoothed into the current limit. Needs no latency target: the backend's own latency
+ * without queueing becomes the baseline, and a lasting change of it is followed within
+ * {@code longWindow} samples.
+ * <p>
+ * The limit does not grow while less than half of it is in use, and a dropped request cuts it like
+ * {@link AimdLimit} does.
+ */
+public final class GradientLimit implements ConcurrencyLimit {
+
+    private static final int SHORT_WINDOW = 10;
+    private static final double DROP_BACKOFF_RATIO = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double smoothing;
+    private final int longWindow;
+    private volatile double limit;
+
+    // Guarded by this
+    private double shortRtt;
+    private double baselineRtt;
+
+    private GradientLimit(Builder builder) {
+        if (builder.minLimit <= 0) {
+            throw new IllegalArgumentException("minLimit must be greater than 0");
+        }
+        if (builder.maxLimit < builder.minLimit) {
+            throw new IllegalArgumentException("maxLimit must be at least minLimit");
+        }
+        if (builder.tolerance < 1) {
+            throw new IllegalArgumentException("tolerance must be at least 1");
+        }
+        if (builder.smoothing <= 0 || builder.smoothing > 1) {
+            throw new IllegalArgumentException("smoothing must be in (0, 1]");
+        }
+        if (builder.longWindow <= SHORT_WINDOW) {
+            throw new IllegalArgumentException("longWindow must be greater than " + SHORT_WINDOW);
+        }
+        this.minLimit = builder.minLimit;
+        this.maxLimit = builder.maxLimit;
+        this.tolerance = builder.tolerance;
+        this.smoothing = builder.smoothing;
+        this.longWindow = builder.longWindow;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, builder.initialLimit));
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    @Override
+    public synchronized void onSample(long rttNanos, int inFlight, boolean dropped) {
+        double current = limit;
+        if (dropped) {
+            limit = Math.max(minLimit, current * DROP_BACKOFF_RATIO);
+            return;
+        }
+
+        if (baselineRtt == 0) {
+            shortRtt = rttNanos;
+            baselineRtt = rttNanos;
+        } else {
+            shortRtt += (rttNanos - shortRtt) / SHORT_WINDOW;
+            // Falls as fast as the short average but rises slowly, so queueing does not become the baseline
+            baselineRtt += (rttNanos - baselineRtt) / (rttNanos < baselineRtt ? SHORT_WINDOW : longWindow);
+        }
+
+        if (inFlight * 2 < current) {
+            // Not using the limit says nothing about whether it is too high or too low
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * baselineRtt / shortRtt));
+        double target = current * gradient + Math.sqrt(current);
+        limit = Math.max(minLimit, Math.min(maxLimit, current * (1 - smoothing) + target * smoothing));
+    }
+
+    public static class Builder {
+        private int initialLimit = 20;
+        private int minLimit = 1;
+        private int maxLimit = 1000;
+        private double tolerance = 1.5;
+        private double smoothing = 0.2;
+        private int longWindow = 600;
+
+        /**
+         * Limit before any request completed. Default 20.
+         */
+        public Builder initialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+            return this;
+        }
+
+        /**
+         * Lower bound of the limit. Default 1.
+         */
+        public Builder minLimit(int minLimit) {
+            this.minLimit = minLimit;
+            return this;
+        }
+
+        /**
+         * Upper bound of the limit. Default 1000.
+         */
+        public Builder maxLimit(int maxLimit) {
+            this.maxLimit = maxLimit;
+            return this;
+        }
+
+        /**
+         * How far recent latency may exceed the baseline latency before the limit shrinks. Default 1.5.
+         */
+        public Builder tolerance(double tolerance) {
+            this.tolerance = tolerance;
+            return this;
+        }
+
+        /**
+         * Weight of each new limit against the current one, in (0, 1]. Default 0.2.
+         */
+        public Builder smoothing(double smoothing) {
+            this.smoothing = smoothing;
+            return this;
+        }
+
+        /**
+         * Samples over which the baseline latency follows a rise. Default 600.
+         */
+        public Builder longWindow(int longWindow) {
+            this.longWindow = longWindow;
+            return this;
+        }
+
+        public GradientLimit build() {
+            return new GradientLimit(this);
+        }
+    }
+}
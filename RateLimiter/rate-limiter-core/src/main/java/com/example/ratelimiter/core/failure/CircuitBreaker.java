@@ -0,0 +1,283 @@
+package com.example.ratelimiter.core.failure;
+
+import com.example.ratelimiter.core.api.TimeSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Store health circuit breaker.
+ * <p>
+ * While {@link State#CLOSED} it counts calls, failures and slow calls over a sliding window of
+ * one-second buckets, and trips to {@link State#OPEN} once the window holds at least
+ * {@code minimumCalls} calls and either the failure rate reaches {@code failureRateThreshold} or the
+ * share of calls slower than {@code slowCallThreshold} exceeds {@code slowCallRateThreshold}.
+ * The latter is a latency percentile check: a slow call rate of 0.01 trips when the p99 latency
+ * exceeds the slow call threshold, which takes a window of at least 100 calls to mean anything;
+ * with fewer, a single slow call would already be more than 1%.
+ * <p>
+ * While open, callers are rejected without touching the store. After {@code openDuration} one caller
+ * wins {@link #tryStartProbe()} and moves the breaker to {@link State#HALF_OPEN}; the probe result
+ * then closes the breaker or reopens it for another {@code openDuration}.
+ * <p>
+ * Counting is approximate: a bucket being recycled may drop a few concurrent calls.
+ */
+public final class CircuitBreaker {
+
+    private static final Logger log = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    private static final long BUCKET_NANOS = 1_000_000_000L;
+
+    private final double failureRateThreshold;
+    private final long slowCallThresholdNanos;
+    private final double slowCallRateThreshold;
+    private final int minimumCalls;
+    private final long openDurationNanos;
+    private final TimeSource timeSource;
+    private final Bucket[] buckets;
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private volatile long openedAtNanos;
+
+    private CircuitBreaker(Builder builder) {
+        if (builder.failureRateThreshold <= 0 || builder.failureRateThreshold > 1) {
+            throw new IllegalArgumentException("failureRateThreshold must be in (0, 1]");
+        }
+        if (builder.slowCallRateThreshold <= 0 || builder.slowCallRateThreshold > 1) {
+            throw new IllegalArgumentException("slowCallRateThreshold must be in (0, 1]");
+        }
+        if (builder.minimumCalls <= 0) {
+            throw new IllegalArgumentException("minimumCalls must be greater than 0");
+        }
+        requirePositive(builder.slowCallThreshold, "slowCallThreshold");
+        requirePositive(builder.window, "window");
+        requirePositive(builder.openDuration, "openDuration");
+
+        this.failureRateThreshold = builder.failureRateThreshold;
+        this.slowCallThresholdNanos = builder.slowCallThreshold.toNanos();
+        this.slowCallRateThreshold = builder.slowCallRateThreshold;
+        this.minimumCalls = builder.minimumCalls;
+        this.openDurationNanos = builder.openDuration.toNanos();
+        this.timeSource = Objects.requireNonNull(builder.timeSource, "Time source cannot be null");
+
+        int bucketCount = (int) Math.max(1, (builder.window.toNanos() + BUCKET_NANOS - 1) / BUCKET_NANOS);
+        this.buckets = new Bucket[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            buckets[i] = new Bucket();
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    /**
+     * Whether a store call may proceed; only in the closed state.
+     */
+    public boolean isCallPermitted() {
+        return state.get() == State.CLOSED;
+    }
+
+    /**
+     * Moves an open breaker whose open duration has elapsed to half-open.
+     *
+     * @return true if the caller should probe the store and report through {@link #onProbeResult}
+     */
+    public boolean tryStartProbe() {
+        return state.get() == State.OPEN
+                && timeSource.nanoTime() - openedAtNanos >= openDurationNanos
+                && state.compareAndSet(State.OPEN, State.HALF_OPEN);
+    }
+
+    /**
+     * Closes the breaker after a healthy probe, or reopens it for another open duration.
+     */
+    public void onProbeResult(boolean healthy) {
+        if (healthy) {
+            for (Bucket bucket : buckets) {
+                bucket.reset(Long.MIN_VALUE);
+            }
+            if (state.compareAndSet(State.HALF_OPEN, State.CLOSED)) {
+                log.info("Store circuit closed: health probe succeeded");
+            }
+        } else {
+            openedAtNanos = timeSource.nanoTime();
+            state.compareAndSet(State.HALF_OPEN, State.OPEN);
+        }
+    }
+
+    /**
+     * Records a completed store call and trips the breaker if the window crosses a threshold.
+     *
+     * @param nanos call latency in nanoseconds
+     * @param failed whether the call failed
+     */
+    public void record(long nanos, boolean failed) {
+        if (state.get() != State.CLOSED) {
+            return;
+        }
+        long now = timeSource.nanoTime();
+        long epoch = now / BUCKET_NANOS;
+        Bucket bucket = buckets[(int) Math.floorMod(epoch, (long) buckets.length)];
+        if (bucket.epoch != epoch) {
+            synchronized (bucket) {
+                if (bucket.epoch != epoch) {
+                    bucket.reset(epoch);
+                }
+            }
+        }
+
+        boolean slow = nanos >= slowCallThresholdNanos;
+        bucket.calls.increment();
+        if (failed) {
+            bucket.failures.increment();
+        }
+        if (slow) {
+            bucket.slowCalls.increment();
+        }
+        // Only failed or slow calls can push a rate over its threshold
+        if (failed || slow) {
+            evaluate(epoch, now);
+        }
+    }
+
+    private void evaluate(long epoch, long now) {
+        long calls = 0;
+        long failures = 0;
+        long slowCalls = 0;
+        for (Bucket bucket : buckets) {
+            if (bucket.epoch > epoch - buckets.length) {
+                calls += bucket.calls.sum();
+                failures += bucket.failures.sum();
+                slowCalls += bucket.slowCalls.sum();
+            }
+        }
+        if (calls < minimumCalls) {
+            return;
+        }
+
+        double failureRate = (double) failures / calls;
+        double slowCallRate = (double) slowCalls / calls;
+        if (failureRate >= failureRateThreshold || slowCallRate > slowCallRateThreshold) {
+            openedAtNanos = now;
+            if (state.compareAndSet(State.CLOSED, State.OPEN)) {
+                log.warn("Store circuit opened: {} calls, failure rate {}, slow call rate {}",
+                        calls, failureRate, slowCallRate);
+            }
+        }
+    }
+
+    private static void requirePositive(Duration duration, String name) {
+        if (duration == null || duration.isZero() || duration.isNegative()) {
+            throw new IllegalArgumentException(name + " must be greater than 0");
+        }
+    }
+
+    public enum State {
+
+        /**
+         * Calls reach the store and are counted.
+         */
+        CLOSED,
+
+        /**
+         * Calls are rejected without reaching the store.
+         */
+        OPEN,
+
+        /**
+         * A health probe is in flight; calls are still rejected.
+         */
+        HALF_OPEN
+    }
+
+    private static final class Bucket {
+
+        volatile long epoch = Long.MIN_VALUE;
+        final LongAdder calls = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        final LongAdder slowCalls = new LongAdder();
+
+        void reset(long epoch) {
+            calls.reset();
+            failures.reset();
+            slowCalls.reset();
+            this.epoch = epoch;
+        }
+    }
+
+    public static class Builder {
+        private double failureRateThreshold = 0.5;
+        private Duration slowCallThreshold = Duration.ofMillis(250);
+        private double slowCallRateThreshold = 0.01;
+        private int minimumCalls = 100;
+        private Duration window = Duration.ofSeconds(10);
+        private Duration openDuration = Duration.ofSeconds(5);
+        private TimeSource timeSource = TimeSource.SYSTEM;
+
+        /**
+         * Share of failed calls in the window that opens the breaker. Default 0.5.
+         */
+        public Builder failureRateThreshold(double failureRateThreshold) {
+            this.failureRateThreshold = failureRateThreshold;
+            return this;
+        }
+
+        /**
+         * Latency from which a call counts as slow. Default 250ms.
+         */
+        public Builder slowCallThreshold(Duration slowCallThreshold) {
+            this.slowCallThreshold = slowCallThreshold;
+            return this;
+        }
+
+        /**
+         * Share of slow calls in the window above which the breaker opens. Default 0.01, i.e. p99.
+         */
+        public Builder slowCallRateThreshold(double slowCallRateThreshold) {
+            this.slowCallRateThreshold = slowCallRateThreshold;
+            return this;
+        }
+
+        /**
+         * Calls the window must hold before the rates are considered. Default 100, the fewest for which
+         * the default slow call rate is a p99 rather than a single slow call.
+         */
+        public Builder minimumCalls(int minimumCalls) {
+            this.minimumCalls = minimumCalls;
+            return this;
+        }
+
+        /**
+         * Length of the sliding window, rounded up to whole seconds. Default 10s.
+         */
+        public Builder window(Duration window) {
+            this.window = window;
+            return this;
+        }
+
+        /**
+         * Time the breaker stays open before probing the store. Default 5s.
+         */
+        public Builder openDuration(Duration openDuration) {
+            this.openDuration = openDuration;
+            return this;
+        }
+
+        public Builder timeSource(TimeSource timeSource) {
+            this.timeSource = timeSource;
+            return this;
+        }
+
+        public CircuitBreaker build() {
+            return new CircuitBreaker(this);
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.example.ratelimiter.core.failure;
+
+import com.example.ratelimiter.core.api.ClockMode;
+import com.example.ratelimiter.core.api.RateLimitScript;
+import com.example.ratelimiter.core.api.RateLimitStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * RateLimitStore decorator that stops calling an unhealthy store.
+ * <p>
+ * Every call's latency and outcome feed the {@link CircuitBreaker}. Once it opens, calls fail
+ * immediately with {@link StoreUnavailableException} instead of waiting for the store to time out,
+ * so the rate limiter's {@link FailureMode} decides at once. After the breaker's open duration the
+ * next rejected call starts one {@link RateLimitStore#isHealthy()} probe on the probe executor; a
+ * healthy store closes the breaker and calls reach the store again.
+ */
+public class CircuitBreakerRateLimitStore implements RateLimitStore {
+
+    private static final Logger log = LoggerFactory.getLogger(CircuitBreakerRateLimitStore.class);
+
+    private static final String UNAVAILABLE_MESSAGE = "Store circuit breaker is open";
+
+    private final RateLimitStore delegate;
+    private final CircuitBreaker circuitBreaker;
+    private final Executor probeExecutor;
+
+    public CircuitBreakerRateLimitStore(RateLimitStore delegate, CircuitBreaker circuitBreaker) {
+        this(delegate, circuitBreaker, ForkJoinPool.commonPool());
+    }
+
+    public CircuitBreakerRateLimitStore(RateLimitStore delegate, CircuitBreaker circuitBreaker, Executor probeExecutor) {
+        this.delegate = Objects.requireNonNull(delegate, "Delegate cannot be null");
+        this.circuitBreaker = Objects.requireNonNull(circuitBreaker, "Circuit breaker cannot be null");
+        this.probeExecutor = Objects.requireNonNull(probeExecutor, "Probe executor cannot be null");
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    @Override
+    public long increment(String key, Duration ttl) {
+        long start = permit();
+        try {
+            long result = delegate.increment(key, ttl);
+            succeeded(start);
+            return result;
+        } catch (RuntimeException e) {
+            failed(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public long get(String key) {
+        long start = permit();
+        try {
+            long result = delegate.get(key);
+            succeeded(start);
+            return result;
+        } catch (RuntimeException e) {
+            failed(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public void set(String key, long value, Duration ttl) {
+        long start = permit();
+        try {
+            delegate.set(key, value, ttl);
+            succeeded(start);
+        } catch (RuntimeException e) {
+            failed(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean delete(String key) {
+        long start = permit();
+        try {
+            boolean result = delegate.delete(key);
+            succeeded(start);
+            return result;
+        } catch (RuntimeException e) {
+            failed(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public Object executeScript(String script, String[] keys, String[] args) {
+        long start = permit();
+        try {
+            Object result = delegate.executeScript(script, keys, args);
+            succeeded(start);
+            return result;
+        } catch (RuntimeException e) {
+            failed(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public long[] executeScript(RateLimitScript script, String[] keys, long... args) {
+        long start = permit();
+        try {
+            long[] result = delegate.executeScript(script, keys, args);
+            succeeded(start);
+            return result;
+        } catch (RuntimeException e) {
+            failed(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public void executeScriptInto(RateLimitScript script, String[] keys, long[] args, long[] reply) {
+        long start = permit();
+        try {
+            delegate.executeScriptInto(script, keys, args, reply);
+            succeeded(start);
+        } catch (RuntimeException e) {
+            failed(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public long[][] executeBatch(RateLimitScript[] scripts, String[][] keys, long[][] args) {
+        long start = permit();
+        try {
+            long[][] result = delegate.executeBatch(scripts, keys, args);
+            succeeded(start);
+            return result;
+        } catch (UnsupportedOperationException e) {
+            // Not a store failure
+            throw e;
+        } catch (RuntimeException e) {
+            failed(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletionStage<long[][]> executeBatchAsync(RateLimitScript[] scripts, String[][] keys, long[][] args) {
+        long start;
+        try {
+            start = permit();
+        } catch (StoreUnavailableException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return delegate.executeBatchAsync(scripts, keys, args)
+                .whenComplete((reply, error) -> circuitBreaker.record(System.nanoTime() - start, error != null));
+    }
+
+    @Override
+    public CompletionStage<long[]> executeScriptAsync(RateLimitScript script, String[] keys, long... args) {
+        long start;
+        try {
+            start = permit();
+        } catch (StoreUnavailableException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return delegate.executeScriptAsync(script, keys, args)
+                .whenComplete((reply, error) -> circuitBreaker.record(System.nanoTime() - start, error != null));
+    }
+
+    @Override
+    public Map<String, Long> multiGet(String... keys) {
+        long start = permit();
+        try {
+            Map<String, Long> result = delegate.multiGet(keys);
+            succeeded(start);
+            return result;
+        } catch (RuntimeException e) {
+            failed(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public ClockMode getClockMode() {
+        return delegate.getClockMode();
+    }
+
+    /**
+     * Reports the delegate's health while the breaker is closed, and false otherwise without
+     * calling the store.
+     */
+    @Override
+    public boolean isHealthy() {
+        return circuitBreaker.isCallPermitted() && delegate.isHealthy();
+    }
+
+    /**
+     * Admits a call through a closed breaker, or rejects it, starting a health probe if one is due.
+     *
+     * @return the call start time for {@link #succeeded} and {@link #failed}
+     */
+    private long permit() {
+        if (!circuitBreaker.isCallPermitted()) {
+            if (circuitBreaker.tryStartProbe()) {
+                try {
+                    probeExecutor.execute(this::probe);
+                } catch (RejectedExecutionException e) {
+                    circuitBreaker.onProbeResult(false);
+                }
+            }
+            throw new StoreUnavailableException(UNAVAILABLE_MESSAGE);
+        }
+        return System.nanoTime();
+    }
+
+    private void succeeded(long start) {
+        circuitBreaker.record(System.nanoTime() - start, false);
+    }
+
+    private void failed(long start) {
+        circuitBreaker.record(System.nanoTime() - start, true);
+    }
+
+    private void probe() {
+        boolean healthy;
+        try {
+            healthy = delegate.isHealthy();
+        } catch (Exception e) {
+            log.debug("Store health probe failed", e);
+            healthy = false;
+        }
+        circuitBreaker.onProbeResult(healthy);
+    }
+}
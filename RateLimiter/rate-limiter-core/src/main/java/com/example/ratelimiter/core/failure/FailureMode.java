@@ -15,5 +15,12 @@ public enum FailureMode {
      * Deny requests when errors occur.
      * Prioritizes rate limiting guarantees over availability.
      */
-    FAIL_CLOSED
+    FAIL_CLOSED,
+
+    /**
+     * Enforce limits approximately in memory on each node when errors occur.
+     * Each node allows its share of the limit (limit / node count), so the cluster as a whole
+     * stays close to the limit while the store is down.
+     */
+    LOCAL_FALLBACK
 }
@@ -0,0 +1,13 @@
+package com.example.ratelimiter.core.failure;
+
+/**
+ * Thrown instead of calling the store while its circuit breaker is open.
+ * <p>
+ * Thrown on every rejected call during an outage, so it carries no stack trace.
+ */
+public class StoreUnavailableException extends RuntimeException {
+
+    public StoreUnavailableException(String message) {
+        super(message, null, false, false);
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.ratelimiter.core.hotkey;
+
+/**
+ * A hot key and its estimated number of recent requests.
+ */
+public record HotKey(String key, long estimate) {
+}
@@ -0,0 +1,147 @@
+package com.example.ratelimiter.core.hotkey;
+
+import com.example.ratelimiter.core.api.RateLimitPolicy;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps abusive keys away from the store: a local negative cache of denials for hot keys.
+ * <p>
+ * Every decision counts its key in a {@link HotKeyTracker}. When the store denies a hot key, the
+ * denial is cached until its retry-after instant, and later requests for that key and policy
+ * asking for at least as many permits are denied locally without a store call. Denied requests do
+ * not consume budget in any of the built-in algorithms, so the store would have given the same
+ * answer until then, unless the key is reset elsewhere. Only hot keys are cached, so a flood of
+ * one-off keys cannot grow the cache beyond the tracker's capacity per policy.
+ * <p>
+ * Lookups and recording do not allocate; caching a denial allocates one entry.
+ */
+public final class HotKeyShield {
+
+    private static final HotKeyShield DISABLED = new HotKeyShield();
+
+    private final HotKeyTracker tracker;
+    private final Map<RateLimitPolicy, ConcurrentHashMap<String, Denial>> denials = new ConcurrentHashMap<>();
+
+    public HotKeyShield(HotKeyTracker tracker) {
+        this.tracker = Objects.requireNonNull(tracker, "Tracker cannot be null");
+    }
+
+    private HotKeyShield() {
+        this.tracker = null;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * A shield that tracks nothing and never denies locally.
+     */
+    public static HotKeyShield disabled() {
+        return DISABLED;
+    }
+
+    public boolean isEnabled() {
+        return tracker != null;
+    }
+
+    /**
+     * The hot keys, heaviest first; empty when disabled.
+     */
+    public List<HotKey> hotKeys() {
+        return tracker == null ? List.of() : tracker.hotKeys();
+    }
+
+    /**
+     * Counts a request for the key and checks for a cached denial covering it.
+     *
+     * @return milliseconds until the cached denial expires, or 0 if the store must decide
+     */
+    public long check(String key, RateLimitPolicy policy, long permits, long nowMillis) {
+        if (tracker == null) {
+            return 0;
+        }
+        tracker.record(key);
+
+        ConcurrentHashMap<String, Denial> policyDenials = denials.get(policy);
+        if (policyDenials == null) {
+            return 0;
+        }
+        Denial denial = policyDenials.get(key);
+        if (denial == null) {
+            return 0;
+        }
+        long retryAfterMillis = denial.untilMillis - nowMillis;
+        if (retryAfterMillis <= 0) {
+            policyDenials.remove(key, denial);
+            return 0;
+        }
+        return permits >= denial.permits ? retryAfterMillis : 0;
+    }
+
+    /**
+     * Caches a store denial if the key is hot.
+     */
+    public void onDenied(String key, RateLimitPolicy policy, long permits, long nowMillis, long retryAfterMillis) {
+        if (tracker == null || retryAfterMillis <= 0 || !tracker.isHot(key)) {
+            return;
+        }
+        ConcurrentHashMap<String, Denial> policyDenials = denials.computeIfAbsent(policy, p -> new ConcurrentHashMap<>());
+        policyDenials.put(key, new Denial(nowMillis + retryAfterMillis, permits));
+        if (policyDenials.size() > tracker.getCapacity()) {
+            // Keys that cooled down or expired without being asked for again
+            policyDenials.entrySet().removeIf(entry ->
+                    entry.getValue().untilMillis <= nowMillis || !tracker.isHot(entry.getKey()));
+        }
+    }
+
+    /**
+     * Drops cached denials for the key under every policy, e.g. after it has been reset.
+     */
+    public void invalidate(String key) {
+        for (ConcurrentHashMap<String, Denial> policyDenials : denials.values()) {
+            policyDenials.remove(key);
+        }
+    }
+
+    private record Denial(long untilMillis, long permits) {
+    }
+
+    public static class Builder {
+        private int sketchWidth = 8192;
+        private int threshold = 64;
+        private int capacity = 1024;
+
+        /**
+         * Counters per count-min sketch row. Default 8192.
+         */
+        public Builder sketchWidth(int sketchWidth) {
+            this.sketchWidth = sketchWidth;
+            return this;
+        }
+
+        /**
+         * Estimated recent requests from which a key is hot and its denials are cached. Default 64.
+         */
+        public Builder threshold(int threshold) {
+            this.threshold = threshold;
+            return this;
+        }
+
+        /**
+         * Maximum number of hot keys tracked by name. Default 1024.
+         */
+        public Builder capacity(int capacity) {
+            this.capacity = capacity;
+            return this;
+        }
+
+        public HotKeyShield build() {
+            return new HotKeyShield(new HotKeyTracker(sketchWidth, threshold, capacity));
+        }
+    }
+}
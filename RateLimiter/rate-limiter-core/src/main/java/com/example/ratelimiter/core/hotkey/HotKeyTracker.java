@@ -0,0 +1,180 @@
+package com.example.ratelimiter.core.hotkey;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Approximate request frequency per key, with the heaviest keys kept by name.
+ * <p>
+ * Frequencies live in a count-min sketch: {@value #DEPTH} rows of {@code width} counters, each key
+ * incrementing one counter per row and estimated as the minimum of its counters, so estimates may
+ * overcount (on collisions) but never undercount. After {@code width * 8} recorded requests every
+ * counter is halved, so the sketch tracks recent traffic rather than all-time totals.
+ * <p>
+ * A key becomes hot once its estimate reaches {@code threshold}. Up to {@code capacity} hot keys are
+ * kept by name; when the set is full the key with the lowest estimate makes room, and keys whose
+ * estimate decays below the threshold are dropped at each halving.
+ * <p>
+ * Admission into a full set scans it under a lock, so a key only gets there once its estimate beats
+ * the lightest hot key found by the last scan. Hot keys' estimates only grow between halvings, so
+ * that floor never turns away a key that would have been admitted, and a spray of warm keys that
+ * cannot get in is turned away without locking.
+ * <p>
+ * {@link #record} does not allocate unless a key becomes hot.
+ */
+public final class HotKeyTracker {
+
+    private static final int DEPTH = 4;
+    private static final int[] SEEDS = {0x97cb3127, 0xab7cfe2f, 0x5a3f2d43, 0xc6b1e96b};
+
+    private final AtomicIntegerArray counters;
+    private final int width;
+    private final int indexShift;
+    private final int resetPeriod;
+    private final int threshold;
+    private final int capacity;
+    private final AtomicInteger additions = new AtomicInteger();
+    private final Set<String> hotKeys = ConcurrentHashMap.newKeySet();
+    // Lowest hot key estimate at the last scan of a full set; 0 while there is room
+    private volatile int admissionFloor;
+
+    /**
+     * @param width counters per sketch row, rounded up to a power of two
+     * @param threshold estimated recent requests from which a key is hot
+     * @param capacity maximum number of hot keys kept by name
+     */
+    public HotKeyTracker(int width, int threshold, int capacity) {
+        if (width <= 0) {
+            throw new IllegalArgumentException("width must be greater than 0");
+        }
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("threshold must be greater than 0");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be greater than 0");
+        }
+        this.width = Math.max(2, Integer.highestOneBit(Math.min(width, 1 << 24) * 2 - 1));
+        this.indexShift = Integer.SIZE - Integer.numberOfTrailingZeros(this.width);
+        this.counters = new AtomicIntegerArray(DEPTH * this.width);
+        this.resetPeriod = this.width * 8;
+        this.threshold = threshold;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Counts one request for the key.
+     *
+     * @return whether the key is hot
+     */
+    public boolean record(String key) {
+        int hash = key.hashCode();
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counters.incrementAndGet(indexOf(hash, row)));
+        }
+        if (additions.incrementAndGet() == resetPeriod) {
+            age();
+        }
+
+        if (estimate < threshold) {
+            return false;
+        }
+        if (estimate > admissionFloor && !hotKeys.contains(key)) {
+            admit(key);
+        }
+        return true;
+    }
+
+    /**
+     * Estimated recent requests for the key.
+     */
+    public int estimate(String key) {
+        int hash = key.hashCode();
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counters.get(indexOf(hash, row)));
+        }
+        return estimate;
+    }
+
+    /**
+     * Maximum number of hot keys kept by name.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Whether the key is currently kept as a hot key.
+     */
+    public boolean isHot(String key) {
+        return hotKeys.contains(key);
+    }
+
+    /**
+     * The hot keys, heaviest first.
+     */
+    public List<HotKey> hotKeys() {
+        List<HotKey> result = new ArrayList<>(hotKeys.size());
+        for (String key : hotKeys) {
+            result.add(new HotKey(key, estimate(key)));
+        }
+        result.sort(Comparator.comparingLong(HotKey::estimate).reversed());
+        return result;
+    }
+
+    private synchronized void admit(String key) {
+        if (hotKeys.contains(key)) {
+            return;
+        }
+        if (hotKeys.size() < capacity) {
+            hotKeys.add(key);
+            return;
+        }
+        String lightest = null;
+        int lightestEstimate = Integer.MAX_VALUE;
+        int nextEstimate = Integer.MAX_VALUE;
+        for (String candidate : hotKeys) {
+            int candidateEstimate = estimate(candidate);
+            if (candidateEstimate < lightestEstimate) {
+                lightest = candidate;
+                nextEstimate = lightestEstimate;
+                lightestEstimate = candidateEstimate;
+            } else if (candidateEstimate < nextEstimate) {
+                nextEstimate = candidateEstimate;
+            }
+        }
+        int keyEstimate = estimate(key);
+        if (lightestEstimate >= keyEstimate) {
+            admissionFloor = lightestEstimate;
+            return;
+        }
+        hotKeys.remove(lightest);
+        hotKeys.add(key);
+        admissionFloor = Math.min(nextEstimate, keyEstimate);
+    }
+
+    /**
+     * Halves every counter and drops hot keys that are no longer hot. Increments racing with the
+     * halving may be lost, which only makes estimates slightly lower.
+     */
+    private synchronized void age() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, counters.get(i) >>> 1);
+        }
+        additions.set(0);
+        hotKeys.removeIf(key -> estimate(key) < threshold);
+        admissionFloor = 0;
+    }
+
+    private int indexOf(int hash, int row) {
+        int h = (hash + SEEDS[row]) * 0x9e3779b9;
+        h ^= h >>> 16;
+        return row * width + (h * SEEDS[row] >>> indexShift);
+    }
+}
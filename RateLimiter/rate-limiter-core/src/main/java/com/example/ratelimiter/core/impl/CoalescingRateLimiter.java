@@ -0,0 +1,392 @@
+package com.example.ratelimiter.core.impl;
+
+import com.example.ratelimiter.core.api.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * RateLimiter decorator that merges concurrent acquires of the same key and policy into one
+ * weighted store call.
+ * <p>
+ * The first caller of a key opens a batch and leads it: it waits until the key's previous batch
+ * was decided, then up to {@code window} for more callers (or until {@code maxBatchSize} have
+ * joined), and asks the delegate for the sum of their permits in a single decision. Callers
+ * arriving while a batch is open join it and park until the leader has decided. With a zero
+ * window a batch only collects the callers that arrive while the previous store call for the key
+ * is in flight, so a key that is not contended pays no extra latency.
+ * <p>
+ * Permits are granted to callers in arrival order. If the merged request is denied while the store
+ * still had budget, the longest prefix of callers that fits is requested again, so each batch
+ * costs one or two store calls instead of one per caller and the per-key limit is unchanged.
+ * A batch never requests more than the policy limit. Callers left over are denied with the store's
+ * answer to a request for their own permits, asked once per distinct permit count, so their
+ * retry-after is not that of the whole batch.
+ * <p>
+ * Blocking acquires are coalesced; asynchronous acquires and batches are passed to the delegate.
+ */
+public class CoalescingRateLimiter implements RateLimiter, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(CoalescingRateLimiter.class);
+
+    private static final int DEFAULT_MAX_BATCH_SIZE = 256;
+
+    private final DefaultRateLimiter delegate;
+    private final RateLimitPolicy defaultPolicy;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final Map<RateLimitPolicy, ConcurrentHashMap<String, Batch>> batches = new ConcurrentHashMap<>();
+
+    public CoalescingRateLimiter(DefaultRateLimiter delegate, RateLimitPolicy defaultPolicy) {
+        this(delegate, defaultPolicy, Duration.ZERO, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    /**
+     * @param window       how long a leader waits for more callers once the key's previous batch was
+     *                     decided; zero batches only callers that arrive during a store call
+     * @param maxBatchSize number of callers after which a batch is decided without waiting further
+     */
+    public CoalescingRateLimiter(DefaultRateLimiter delegate, RateLimitPolicy defaultPolicy,
+                                 Duration window, int maxBatchSize) {
+        Objects.requireNonNull(window, "Window cannot be null");
+        if (window.isNegative()) {
+            throw new IllegalArgumentException("window must not be negative");
+        }
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("maxBatchSize must be greater than 0");
+        }
+
+        this.delegate = Objects.requireNonNull(delegate, "Delegate cannot be null");
+        this.defaultPolicy = Objects.requireNonNull(defaultPolicy, "Default policy cannot be null");
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @Override
+    public RateLimitResult tryAcquire(String key) {
+        return tryAcquire(key, defaultPolicy);
+    }
+
+    @Override
+    public RateLimitResult tryAcquire(String key, RateLimitPolicy policy) {
+        return tryAcquire(key, policy, 1);
+    }
+
+    @Override
+    public RateLimitResult tryAcquire(String key, RateLimitPolicy policy, long permits) {
+        Objects.requireNonNull(key, "Key cannot be null");
+        Objects.requireNonNull(policy, "Policy cannot be null");
+        if (permits <= 0 || permits > policy.getLimit()) {
+            // Rejected by the delegate
+            return delegate.tryAcquire(key, policy, permits);
+        }
+
+        ConcurrentHashMap<String, Batch> policyBatches = batches.computeIfAbsent(policy, p -> new ConcurrentHashMap<>());
+        while (true) {
+            Batch current = policyBatches.get(key);
+            if (current != null) {
+                int member = current.join(permits);
+                if (member >= 0) {
+                    current.awaitDecision();
+                    return result(key, policy, current, member);
+                }
+            }
+
+            // No batch, or it is closed: open the next one, which waits for the closed one's decision
+            Batch next = new Batch(current, policy.getLimit(), maxBatchSize, permits);
+            boolean opened = current == null
+                    ? policyBatches.putIfAbsent(key, next) == null
+                    : policyBatches.replace(key, current, next);
+            if (opened) {
+                lead(policyBatches, key, policy, next);
+                return result(key, policy, next, 0);
+            }
+        }
+    }
+
+    @Override
+    public RateLimitResult tryAcquireAll(List<KeyPolicy> requests) {
+        return delegate.tryAcquireAll(requests);
+    }
+
+    @Override
+    public CompletionStage<RateLimitResult> tryAcquireAllAsync(List<KeyPolicy> requests) {
+        return delegate.tryAcquireAllAsync(requests);
+    }
+
+    /**
+     * Not coalesced, like the other asynchronous acquires: members of a batch wait for its leader's
+     * decision, and an asynchronous caller must not be kept waiting on the calling thread. The
+     * delegate's non-blocking store call is used instead.
+     */
+    @Override
+    public CompletionStage<RateLimitResult> tryAcquireAsync(String key) {
+        return delegate.tryAcquireAsync(key, defaultPolicy);
+    }
+
+    @Override
+    public CompletionStage<RateLimitResult> tryAcquireAsync(String key, RateLimitPolicy policy) {
+        return delegate.tryAcquireAsync(key, policy);
+    }
+
+    @Override
+    public CompletionStage<RateLimitResult> tryAcquireAsync(String key, RateLimitPolicy policy, long permits) {
+        return delegate.tryAcquireAsync(key, policy, permits);
+    }
+
+    @Override
+    public boolean reset(String key) {
+        return delegate.reset(key);
+    }
+
+    /**
+     * Closes the delegate.
+     */
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    /**
+     * Collects callers into the batch, then decides it with one merged store call and, if the
+     * store had less budget than requested, one more for the callers that fit and one per
+     * distinct permit count of the callers denied.
+     */
+    private void lead(ConcurrentHashMap<String, Batch> policyBatches, String key, RateLimitPolicy policy, Batch batch) {
+        try {
+            batch.awaitPrevious();
+            if (windowNanos > 0) {
+                batch.collect(windowNanos);
+            }
+            long total = batch.close();
+
+            long[] available = new long[1];
+            RateLimitResult merged = delegate.tryAcquire(key, policy, total, available);
+            if (merged.isAllowed()) {
+                batch.grant(merged, total);
+                return;
+            }
+
+            long fitting = batch.prefixWithin(available[0]);
+            if (fitting > 0) {
+                RateLimitResult partial = delegate.tryAcquire(key, policy, fitting);
+                if (partial.isAllowed()) {
+                    batch.grant(partial, fitting);
+                    // The merged denial no longer describes the store
+                    merged = null;
+                }
+            }
+            denyRest(key, policy, batch, merged, total);
+        } catch (RuntimeException e) {
+            // Members without a decision ask the delegate themselves
+            log.error("Coalesced acquire failed for key: {}", key, e);
+        } finally {
+            batch.done.countDown();
+            policyBatches.remove(key, batch);
+        }
+    }
+
+    /**
+     * Decides the members the grant did not cover, in arrival order. A member is denied with the
+     * store's answer for its own permits, asked once per permit count; should the store have
+     * regained budget meanwhile, that answer grants the member instead.
+     *
+     * @param merged the denial of the whole batch if nothing was granted since, which answers
+     *               for a member whose permits are the batch total
+     */
+    private void denyRest(String key, RateLimitPolicy policy, Batch batch, RateLimitResult merged, long total) {
+        Map<Long, RateLimitResult> denials = new HashMap<>();
+        if (merged != null) {
+            denials.put(total, merged);
+        }
+        for (int member = batch.firstUndecided(); member < batch.size(); member++) {
+            long permits = batch.permits(member);
+            RateLimitResult result = denials.get(permits);
+            if (result == null) {
+                result = delegate.tryAcquire(key, policy, permits);
+                if (!result.isAllowed()) {
+                    denials.put(permits, result);
+                }
+            }
+            batch.decide(member, result);
+        }
+    }
+
+    private RateLimitResult result(String key, RateLimitPolicy policy, Batch batch, int member) {
+        RateLimitResult result = batch.result(member);
+        return result != null ? result : delegate.tryAcquire(key, policy, batch.permits(member));
+    }
+
+    /**
+     * Callers merged into one store call. Members are numbered in arrival order; {@code ends[i]} is
+     * the running total of permits up to and including member {@code i}.
+     */
+    private static final class Batch {
+
+        final CountDownLatch done = new CountDownLatch(1);
+        private final long limit;
+        private final int maxSize;
+        private final Thread leader = Thread.currentThread();
+        private Batch previous;
+        private long[] ends;
+        private int size;
+        private volatile boolean closed;
+
+        // Decision, published to members by done
+        private RateLimitResult granted;
+        private long grantedPermits;
+        private RateLimitResult[] results;
+
+        Batch(Batch previous, long limit, int maxSize, long leaderPermits) {
+            this.previous = previous;
+            this.limit = limit;
+            this.maxSize = maxSize;
+            this.ends = new long[Math.min(maxSize, 16)];
+            this.ends[0] = leaderPermits;
+            this.size = 1;
+            this.closed = size >= maxSize;
+        }
+
+        /**
+         * Adds a member unless the batch is closed or would exceed the policy limit.
+         *
+         * @return the member number, or -1 if the caller must open another batch
+         */
+        synchronized int join(long permits) {
+            if (closed) {
+                return -1;
+            }
+            long total = ends[size - 1] + permits;
+            if (total > limit) {
+                close();
+                return -1;
+            }
+            if (size == ends.length) {
+                ends = Arrays.copyOf(ends, Math.min(maxSize, size * 2));
+            }
+            ends[size] = total;
+            if (++size >= maxSize) {
+                close();
+            }
+            return size - 1;
+        }
+
+        /**
+         * Stops further members from joining and returns the permits of all members.
+         */
+        synchronized long close() {
+            if (!closed) {
+                closed = true;
+                LockSupport.unpark(leader);
+            }
+            return ends[size - 1];
+        }
+
+        void awaitPrevious() {
+            Batch before = previous;
+            if (before != null) {
+                before.awaitDecision();
+                previous = null;
+            }
+        }
+
+        /**
+         * Parks the leader until the batch is full, the window has passed or the leader is
+         * interrupted; the interrupt stays set and the batch is decided with the members so far.
+         */
+        void collect(long windowNanos) {
+            long deadline = System.nanoTime() + windowNanos;
+            long left;
+            // parkNanos returns at once while interrupted, so waiting on would spin
+            while (!closed && !Thread.currentThread().isInterrupted() && (left = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(this, left);
+            }
+        }
+
+        /**
+         * Running total of the longest prefix of members whose permits fit in {@code available}.
+         */
+        synchronized long prefixWithin(long available) {
+            long fitting = 0;
+            for (int i = 0; i < size && ends[i] <= available; i++) {
+                fitting = ends[i];
+            }
+            return fitting;
+        }
+
+        /**
+         * Grants the members whose running total is within {@code grantedPermits}.
+         */
+        void grant(RateLimitResult granted, long grantedPermits) {
+            this.granted = granted;
+            this.grantedPermits = grantedPermits;
+        }
+
+        /**
+         * Decides a member the grant did not cover.
+         */
+        synchronized void decide(int member, RateLimitResult result) {
+            if (results == null) {
+                results = new RateLimitResult[size];
+            }
+            results[member] = result;
+        }
+
+        /**
+         * The first member the grant does not cover.
+         */
+        synchronized int firstUndecided() {
+            int member = 0;
+            while (member < size && ends[member] <= grantedPermits) {
+                member++;
+            }
+            return member;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        void awaitDecision() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    done.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        synchronized long permits(int member) {
+            return member == 0 ? ends[0] : ends[member] - ends[member - 1];
+        }
+
+        /**
+         * The member's share of the decision, as if members had acquired one after another;
+         * null if the batch failed undecided.
+         */
+        synchronized RateLimitResult result(int member) {
+            long end = ends[member];
+            if (granted != null && end <= grantedPermits) {
+                long remaining = granted.getRemaining() + grantedPermits - end;
+                return RateLimitResult.allowed(remaining, granted.getLimit() - remaining, granted.getLimit());
+            }
+            return results != null ? results[member] : null;
+        }
+    }
+}
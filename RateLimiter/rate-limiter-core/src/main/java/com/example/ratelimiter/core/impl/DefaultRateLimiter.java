@@ -2,30 +2,128 @@ package com.example.ratelimiter.core.impl;
 
 import com.example.ratelimiter.core.api.*;
 import com.example.ratelimiter.core.failure.FailureMode;
+import com.example.ratelimiter.core.failure.StoreUnavailableException;
+import com.example.ratelimiter.core.hotkey.HotKeyShield;
+import com.example.ratelimiter.core.metrics.RateLimiterMetrics;
+import com.example.ratelimiter.core.store.InMemoryRateLimitStore;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.Duration;
-import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ThreadLocalRandom;
 
 
 /**
  * Default implementation of RateLimiter.
  * Supports multiple algorithms and failure modes.
+ * <p>
+ * {@link #tryAcquireInto} does not allocate on the decision path when the store implements
+ * {@link RateLimitStore#executeScriptInto} without allocating: store keys come from a bounded
+ * per-algorithm cache, script arguments and replies use per-thread scratch arrays, and time is read
+ * as raw millis from the {@link TimeSource}.
+ * <p>
+ * When the store runs in {@link ClockMode#SERVER}, scripts are passed {@link RateLimitScript#SERVER_TIME}
+ * and decide on the store's clock, which also picks the current sliding window counter; the
+ * {@link TimeSource} then only times the local denial cache.
+ * <p>
+ * With {@link FailureMode#LOCAL_FALLBACK}, decisions the store cannot make run the same algorithm
+ * against an in-memory store, with each policy's limit divided by {@code fallbackNodeCount}.
+ * The limiter creates that store and {@link #close()} stops it, unless a shared one is passed in.
+ * Wrap the store in a {@link com.example.ratelimiter.core.failure.CircuitBreakerRateLimitStore}
+ * so an unhealthy store is skipped instead of timing out on every request.
+ * <p>
+ * Batches and {@link CompositeRateLimitPolicy composite policies} run as one all-or-nothing store
+ * batch, through {@link RateLimitStore#executeBatchAsync} when asynchronous.
+ * <p>
+ * With a {@link HotKeyShield}, denials of hot keys are cached locally until their retry-after
+ * instant, so a flooding client is rejected without reaching the store.
  */
-public class DefaultRateLimiter implements RateLimiter {
+public class DefaultRateLimiter implements RateLimiter, AutoCloseable {
 
     private static final Logger log = LoggerFactory.getLogger(DefaultRateLimiter.class);
 
+    private static final int DEFAULT_KEY_CACHE_SIZE = 65_536;
+    private static final long FAIL_CLOSED_RETRY_MILLIS = 1000;
+
     private final RateLimitStore store;
     private final RateLimitPolicy defaultPolicy;
     private final FailureMode failureMode;
+    private final TimeSource timeSource;
+    private final boolean serverTime;
+    private final RateLimiterMetrics metrics;
+    private final int fallbackNodeCount;
+    private final InMemoryRateLimitStore fallbackStore;
+    private final boolean ownsFallbackStore;
+    private final HotKeyShield hotKeyShield;
+    private final StoreKeyCache keyCache = new StoreKeyCache(DEFAULT_KEY_CACHE_SIZE);
+    private final ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(Scratch::new);
 
     public DefaultRateLimiter(RateLimitStore store, RateLimitPolicy defaultPolicy, FailureMode failureMode) {
+        this(store, defaultPolicy, failureMode, TimeSource.SYSTEM);
+    }
+
+    public DefaultRateLimiter(RateLimitStore store, RateLimitPolicy defaultPolicy, FailureMode failureMode,
+                              TimeSource timeSource) {
+        this(store, defaultPolicy, failureMode, timeSource, RateLimiterMetrics.NOOP);
+    }
+
+    public DefaultRateLimiter(RateLimitStore store, RateLimitPolicy defaultPolicy, FailureMode failureMode,
+                              TimeSource timeSource, RateLimiterMetrics metrics) {
+        this(store, defaultPolicy, failureMode, timeSource, metrics, 1);
+    }
+
+    public DefaultRateLimiter(RateLimitStore store, RateLimitPolicy defaultPolicy, FailureMode failureMode,
+                              TimeSource timeSource, RateLimiterMetrics metrics, int fallbackNodeCount) {
+        this(store, defaultPolicy, failureMode, timeSource, metrics, fallbackNodeCount, HotKeyShield.disabled());
+    }
+
+    /**
+     * @param fallbackNodeCount number of nodes sharing each limit, used by {@link FailureMode#LOCAL_FALLBACK}
+     *                          to enforce limit / node count per node
+     * @param hotKeyShield      local denial cache for hot keys, or {@link HotKeyShield#disabled()}
+     */
+    public DefaultRateLimiter(RateLimitStore store, RateLimitPolicy defaultPolicy, FailureMode failureMode,
+                              TimeSource timeSource, RateLimiterMetrics metrics, int fallbackNodeCount,
+                              HotKeyShield hotKeyShield) {
+        this(store, defaultPolicy, failureMode, timeSource, metrics, fallbackNodeCount, hotKeyShield, null, true);
+    }
+
+    /**
+     * @param fallbackStore in-memory store that {@link FailureMode#LOCAL_FALLBACK} decides in, e.g. one
+     *                      shared by several limiters; it is left open by {@link #close()}
+     */
+    public DefaultRateLimiter(RateLimitStore store, RateLimitPolicy defaultPolicy, FailureMode failureMode,
+                              TimeSource timeSource, RateLimiterMetrics metrics, int fallbackNodeCount,
+                              HotKeyShield hotKeyShield, InMemoryRateLimitStore fallbackStore) {
+        this(store, defaultPolicy, failureMode, timeSource, metrics, fallbackNodeCount, hotKeyShield,
+                Objects.requireNonNull(fallbackStore, "Fallback store cannot be null"), false);
+    }
+
+    private DefaultRateLimiter(RateLimitStore store, RateLimitPolicy defaultPolicy, FailureMode failureMode,
+                               TimeSource timeSource, RateLimiterMetrics metrics, int fallbackNodeCount,
+                               HotKeyShield hotKeyShield, InMemoryRateLimitStore sharedFallbackStore,
+                               boolean ownsFallbackStore) {
+        if (fallbackNodeCount <= 0) {
+            throw new IllegalArgumentException("fallbackNodeCount must be greater than 0");
+        }
         this.store = Objects.requireNonNull(store, "Store cannot be null");
         this.defaultPolicy = Objects.requireNonNull(defaultPolicy, "Default policy cannot be null");
         this.failureMode = Objects.requireNonNull(failureMode, "Failure mode cannot be null");
+        this.timeSource = Objects.requireNonNull(timeSource, "Time source cannot be null");
+        this.serverTime = store.getClockMode() == ClockMode.SERVER;
+        this.metrics = Objects.requireNonNull(metrics, "Metrics cannot be null");
+        this.fallbackNodeCount = fallbackNodeCount;
+        this.hotKeyShield = Objects.requireNonNull(hotKeyShield, "Hot key shield cannot be null");
+        this.ownsFallbackStore = ownsFallbackStore;
+        this.fallbackStore = ownsFallbackStore && failureMode == FailureMode.LOCAL_FALLBACK
+                ? new InMemoryRateLimitStore() : sharedFallbackStore;
     }
 
     @Override
@@ -35,105 +133,474 @@ public class DefaultRateLimiter implements RateLimiter {
 
     @Override
     public RateLimitResult tryAcquire(String key, RateLimitPolicy policy) {
+        return tryAcquire(key, policy, 1);
+    }
+
+    @Override
+    public RateLimitResult tryAcquire(String key, RateLimitPolicy policy, long permits) {
+        return tryAcquire(key, policy, permits, null);
+    }
+
+    /**
+     * As {@link #tryAcquire(String, RateLimitPolicy, long)}; if the store denies the request and
+     * {@code available} is not null, its first element receives the permits the store still had,
+     * which a denied result does not report (0 for cached denials and store failures).
+     */
+    RateLimitResult tryAcquire(String key, RateLimitPolicy policy, long permits, long[] available) {
         Objects.requireNonNull(key, "Key cannot be null");
         Objects.requireNonNull(policy, "Policy cannot be null");
+        validatePermits(policy, permits);
 
+        if (available != null) {
+            available[0] = 0;
+        }
+        long cachedRetryAfter = checkDenialCache(key, policy, permits);
+        if (cachedRetryAfter > 0) {
+            return RateLimitResult.denied(Duration.ofMillis(cachedRetryAfter), policy.getLimit(), policy.getLimit());
+        }
         try {
-            return executeAlgorithm(key, policy);
+            long[] reply = execute(store, key, policy, policy.getLimit(), permits);
+            onStoreDecision(key, policy, permits, reply);
+            if (available != null && reply[0] != 1) {
+                available[0] = reply[1];
+            }
+            return toResult(reply, policy.getLimit());
         } catch (Exception e) {
-            log.error("Rate limiter error for key: {}", key, e);
-            return handleFailure(policy);
+            logFailure("key", key, e);
+            return handleFailure(key, policy, permits);
+        }
+    }
+
+    @Override
+    public boolean tryAcquireInto(String key, RateLimitPolicy policy, long permits, RateLimitDecision decision) {
+        Objects.requireNonNull(key, "Key cannot be null");
+        Objects.requireNonNull(policy, "Policy cannot be null");
+        Objects.requireNonNull(decision, "Decision cannot be null");
+        validatePermits(policy, permits);
+
+        long cachedRetryAfter = checkDenialCache(key, policy, permits);
+        if (cachedRetryAfter > 0) {
+            decision.deny(cachedRetryAfter, policy.getLimit(), policy.getLimit());
+            return false;
+        }
+        try {
+            long[] reply = execute(store, key, policy, policy.getLimit(), permits);
+            onStoreDecision(key, policy, permits, reply);
+            setDecision(decision, reply, policy.getLimit());
+        } catch (Exception e) {
+            logFailure("key", key, e);
+            metrics.recordFailure(policy.getAlgorithm(), failureMode);
+            switch (failureMode) {
+                case FAIL_OPEN -> decision.allow(policy.getLimit(), 0, policy.getLimit());
+                case FAIL_CLOSED -> decision.deny(FAIL_CLOSED_RETRY_MILLIS, policy.getLimit(), policy.getLimit());
+                case LOCAL_FALLBACK -> {
+                    long limit = fallbackLimit(policy);
+                    setDecision(decision, execute(fallbackStore, key, policy, limit, permits), limit);
+                }
+            }
+        }
+        return decision.isAllowed();
+    }
+
+    @Override
+    public RateLimitResult tryAcquireAll(List<KeyPolicy> requests) {
+        validateBatch(requests);
+        RateLimitResult cachedDenial = checkDenialCache(requests);
+        if (cachedDenial != null) {
+            return cachedDenial;
+        }
+
+        Batch batch = prepareBatch(requests);
+        try {
+            return onBatchDecision(batch, store.executeBatch(batch.scripts(), batch.keys(), batch.args()));
+        } catch (Exception e) {
+            logFailure("batch", requests, e);
+            return handleBatchFailure(batch);
+        }
+    }
+
+    @Override
+    public CompletionStage<RateLimitResult> tryAcquireAllAsync(List<KeyPolicy> requests) {
+        validateBatch(requests);
+        RateLimitResult cachedDenial = checkDenialCache(requests);
+        if (cachedDenial != null) {
+            return CompletableFuture.completedFuture(cachedDenial);
+        }
+
+        Batch batch = prepareBatch(requests);
+        try {
+            return store.executeBatchAsync(batch.scripts(), batch.keys(), batch.args())
+                    .thenApply(replies -> onBatchDecision(batch, replies))
+                    .exceptionally(e -> {
+                        logFailure("batch", requests, e);
+                        return handleBatchFailure(batch);
+                    });
+        } catch (Exception e) {
+            logFailure("batch", requests, e);
+            return CompletableFuture.completedFuture(handleBatchFailure(batch));
+        }
+    }
+
+    @Override
+    public CompletionStage<RateLimitResult> tryAcquireAsync(String key) {
+        return tryAcquireAsync(key, defaultPolicy);
+    }
+
+    @Override
+    public CompletionStage<RateLimitResult> tryAcquireAsync(String key, RateLimitPolicy policy) {
+        return tryAcquireAsync(key, policy, 1);
+    }
+
+    @Override
+    public CompletionStage<RateLimitResult> tryAcquireAsync(String key, RateLimitPolicy policy, long permits) {
+        Objects.requireNonNull(key, "Key cannot be null");
+        Objects.requireNonNull(policy, "Policy cannot be null");
+        validatePermits(policy, permits);
+
+        long cachedRetryAfter = checkDenialCache(key, policy, permits);
+        if (cachedRetryAfter > 0) {
+            return CompletableFuture.completedFuture(RateLimitResult.denied(
+                    Duration.ofMillis(cachedRetryAfter), policy.getLimit(), policy.getLimit()));
+        }
+        try {
+            ScriptCall call = prepare(key, policy, policy.getLimit(), timeSource.currentTimeMillis(), permits);
+            return store.executeScriptAsync(call.script(), call.keys(), call.args())
+                    .thenApply(reply -> {
+                        onStoreDecision(key, policy, permits, reply);
+                        return toResult(reply, policy.getLimit());
+                    })
+                    .exceptionally(e -> {
+                        logFailure("key", key, e);
+                        return handleFailure(key, policy, permits);
+                    });
+        } catch (Exception e) {
+            logFailure("key", key, e);
+            return CompletableFuture.completedFuture(handleFailure(key, policy, permits));
         }
     }
 
     @Override
     public boolean reset(String key) {
         Objects.requireNonNull(key, "Key cannot be null");
+        hotKeyShield.invalidate(key);
         try {
-            return store.delete(key);
+            // The key may have state under any algorithm
+            boolean deleted = false;
+            for (RateLimitAlgorithm algorithm : RateLimitAlgorithm.values()) {
+                for (String storeKey : keyCache.keys(algorithm, key)) {
+                    deleted |= store.delete(storeKey);
+                }
+            }
+            return deleted;
         } catch (Exception e) {
             log.error("Failed to reset key: {}", key, e);
             return false;
         }
     }
 
+    /**
+     * Stops the in-memory store of {@link FailureMode#LOCAL_FALLBACK} if this limiter created it.
+     * The main store is not closed; it belongs to the caller.
+     */
+    @Override
+    public void close() {
+        if (ownsFallbackStore && fallbackStore != null) {
+            fallbackStore.close();
+        }
+    }
 
-    private RateLimitResult executeAlgorithm(String key, RateLimitPolicy policy) {
-        return switch (policy.getAlgorithm()) {
-            case TOKEN_BUCKET -> executeTokenBucket(key, policy);
-            case FIXED_WINDOW -> executeFixedWindow(key, policy);
-            case SLIDING_WINDOW_LOG -> executeSlidingWindowLog(key, policy);
-            case SLIDING_WINDOW_COUNTER -> executeSlidingWindowCounter(key, policy);
-            case LEAKY_BUCKET -> executeLeakyBucket(key, policy);
-        };
+    /**
+     * Counts the request towards hot key detection and answers it from a cached denial if one covers it.
+     *
+     * @return the remaining retry-after of the cached denial in milliseconds, or 0 if the store must decide
+     */
+    private long checkDenialCache(String key, RateLimitPolicy policy, long permits) {
+        if (!hotKeyShield.isEnabled()) {
+            return 0;
+        }
+        long retryAfterMillis = hotKeyShield.check(key, policy, permits, timeSource.currentTimeMillis());
+        if (retryAfterMillis > 0) {
+            metrics.recordCachedDenial(policy.getAlgorithm());
+        }
+        return retryAfterMillis;
+    }
+
+    /**
+     * Rejects a batch in which two entries share a store key. Every entry of a batch is checked
+     * before any is applied, so a key listed twice would pass both checks against the same state
+     * and then consume its budget twice.
+     */
+    private void validateBatch(List<KeyPolicy> requests) {
+        Objects.requireNonNull(requests, "Requests cannot be null");
+        if (requests.isEmpty()) {
+            throw new IllegalArgumentException("requests must not be empty");
+        }
+        Set<String> storeKeys = new HashSet<>();
+        for (KeyPolicy request : requests) {
+            Objects.requireNonNull(request, "Request cannot be null");
+            for (String storeKey : keyCache.keys(request.getPolicy().getAlgorithm(), request.getKey())) {
+                if (!storeKeys.add(storeKey)) {
+                    throw new IllegalArgumentException("requests must not contain the same key twice: " + request);
+                }
+            }
+        }
+    }
+
+    /**
+     * Answers a batch from the denial cache: all or nothing, so one cached denial denies the
+     * batch without consuming anything.
+     *
+     * @return the denial, or null if the store must decide
+     */
+    private RateLimitResult checkDenialCache(List<KeyPolicy> requests) {
+        long cachedRetryAfter = 0;
+        for (KeyPolicy request : requests) {
+            cachedRetryAfter = Math.max(cachedRetryAfter, checkDenialCache(request.getKey(), request.getPolicy(), 1));
+        }
+        if (cachedRetryAfter == 0) {
+            return null;
+        }
+        long limit = tightest(requests).getPolicy().getLimit();
+        return RateLimitResult.denied(Duration.ofMillis(cachedRetryAfter), limit, limit);
     }
 
-    private RateLimitResult executeTokenBucket(String key, RateLimitPolicy policy) {
-        // Token bucket implementation using store
-        String countKey = "ratelimit:" + key + ":count";
-        String timestampKey = "ratelimit:" + key + ":timestamp";
+    private void onStoreDecision(String key, RateLimitPolicy policy, long permits, long[] reply) {
+        boolean allowed = reply[0] == 1;
+        metrics.recordDecision(policy.getAlgorithm(), allowed);
+        if (!allowed) {
+            hotKeyShield.onDenied(key, policy, permits, timeSource.currentTimeMillis(), reply[2]);
+        }
+    }
 
-        long now = Instant.now().toEpochMilli();
-        long lastTimestamp = store.get(timestampKey);
-        long currentTokens = store.get(countKey);
+    /**
+     * Builds one store call per entry, all at the same instant, for a single all-or-nothing batch.
+     */
+    private Batch prepareBatch(List<KeyPolicy> requests) {
+        int size = requests.size();
+        RateLimitScript[] scripts = new RateLimitScript[size];
+        String[][] keys = new String[size][];
+        long[][] args = new long[size][];
+        long now = timeSource.currentTimeMillis();
+        for (int i = 0; i < size; i++) {
+            KeyPolicy request = requests.get(i);
+            ScriptCall call = prepare(request.getKey(), request.getPolicy(), request.getPolicy().getLimit(), now, 1);
+            scripts[i] = call.script();
+            keys[i] = call.keys();
+            args[i] = call.args();
+        }
+        return new Batch(requests, now, scripts, keys, args);
+    }
 
-        if (lastTimestamp == 0) {
-            // First request
-            currentTokens = policy.getLimit() - 1;
-            store.set(countKey, currentTokens, policy.getWindow());
-            store.set(timestampKey, now, policy.getWindow());
-            return RateLimitResult.allowed(currentTokens, 1, policy.getLimit());
+    private RateLimitResult onBatchDecision(Batch batch, long[][] replies) {
+        RateLimitResult combined = combine(replies, batch.args());
+        for (int i = 0; i < replies.length; i++) {
+            KeyPolicy request = batch.requests().get(i);
+            metrics.recordDecision(request.getPolicy().getAlgorithm(), combined.isAllowed());
+            if (replies[i][0] != 1) {
+                hotKeyShield.onDenied(request.getKey(), request.getPolicy(), 1, batch.now(), replies[i][2]);
+            }
         }
+        return combined;
+    }
 
-        // Calculate tokens to add based on elapsed time
-        long elapsed = now - lastTimestamp;
-        long windowMillis = policy.getWindow().toMillis();
-        long tokensToAdd = (elapsed * policy.getLimit()) / windowMillis;
-        long newTokens = Math.min(policy.getLimit(), currentTokens + tokensToAdd);
+    private RateLimitResult handleBatchFailure(Batch batch) {
+        List<KeyPolicy> requests = batch.requests();
+        if (failureMode == FailureMode.LOCAL_FALLBACK) {
+            long[][] args = batch.args();
+            for (int i = 0; i < args.length; i++) {
+                RateLimitPolicy policy = requests.get(i).getPolicy();
+                metrics.recordFailure(policy.getAlgorithm(), failureMode);
+                args[i][0] = fallbackLimit(policy);
+            }
+            return combine(fallbackStore.executeBatch(batch.scripts(), batch.keys(), args), args);
+        }
+        KeyPolicy tightest = tightest(requests);
+        return handleFailure(tightest.getKey(), tightest.getPolicy(), 1);
+    }
 
-        if (newTokens >= 1) {
-            newTokens--;
-            store.set(countKey, newTokens, policy.getWindow());
-            store.set(timestampKey, now, policy.getWindow());
-            long used = policy.getLimit() - newTokens;
-            return RateLimitResult.allowed(newTokens, used, policy.getLimit());
-        } else {
-            long waitTime = (windowMillis - elapsed) / policy.getLimit();
-            return RateLimitResult.denied(Duration.ofMillis(waitTime), policy.getLimit(), policy.getLimit());
+    /**
+     * Runs the decision through the given store using this thread's scratch arrays, enforcing
+     * {@code limit} rather than the policy's own limit when falling back locally.
+     * The returned reply array is reused by the next call on the same thread.
+     */
+    private long[] execute(RateLimitStore store, String key, RateLimitPolicy policy, long limit, long permits) {
+        long now = timeSource.currentTimeMillis();
+        long windowMillis = Math.max(1, policy.getWindow().toMillis());
+        RateLimitAlgorithm algorithm = policy.getAlgorithm();
+
+        Scratch buffers = scratch.get();
+        long[] args = buffers.args(argumentCount(algorithm));
+        fillArguments(args, policy, limit, now, windowMillis, permits);
+        store.executeScriptInto(scriptFor(algorithm), keyCache.keys(algorithm, key), args, buffers.reply);
+        return buffers.reply;
+    }
+
+    /**
+     * Builds the single atomic store call that decides the given key under the policy,
+     * consuming {@code permits} units of its budget.
+     */
+    private ScriptCall prepare(String key, RateLimitPolicy policy, long limit, long now, long permits) {
+        long windowMillis = Math.max(1, policy.getWindow().toMillis());
+        RateLimitAlgorithm algorithm = policy.getAlgorithm();
+
+        long[] args = new long[argumentCount(algorithm)];
+        fillArguments(args, policy, limit, now, windowMillis, permits);
+        return new ScriptCall(scriptFor(algorithm), keyCache.keys(algorithm, key), args);
+    }
+
+    private static RateLimitScript scriptFor(RateLimitAlgorithm algorithm) {
+        return switch (algorithm) {
+            // Refill, consume and persist in a single atomic store call
+            case TOKEN_BUCKET -> RateLimitScript.TOKEN_BUCKET;
+            // Check, increment and expire in one step; denied requests are not counted
+            case FIXED_WINDOW -> RateLimitScript.FIXED_WINDOW;
+            case SLIDING_WINDOW_LOG -> RateLimitScript.SLIDING_WINDOW_LOG;
+            // Weighted counts from current and previous windows, read and updated in one call
+            case SLIDING_WINDOW_COUNTER -> RateLimitScript.SLIDING_WINDOW_COUNTER;
+            // GCRA: one theoretical arrival time per key, one atomic store call
+            case LEAKY_BUCKET -> RateLimitScript.GCRA;
+        };
+    }
+
+
+    /**
+     * Every script takes {@code limit, windowMillis, now, cost}; the token bucket adds the key TTL
+     * and the sliding log a nonce that keeps its entries unique.
+     */
+    private static int argumentCount(RateLimitAlgorithm algorithm) {
+        return algorithm == RateLimitAlgorithm.TOKEN_BUCKET || algorithm == RateLimitAlgorithm.SLIDING_WINDOW_LOG ? 5 : 4;
+    }
+
+    private void fillArguments(long[] args, RateLimitPolicy policy, long limit, long now, long windowMillis,
+                               long permits) {
+        args[0] = limit;
+        args[1] = windowMillis;
+        args[2] = serverTime ? RateLimitScript.SERVER_TIME : now;
+        args[3] = permits;
+        switch (policy.getAlgorithm()) {
+            case TOKEN_BUCKET -> args[4] = windowMillis;
+            case SLIDING_WINDOW_LOG -> args[4] = ThreadLocalRandom.current().nextLong();
+            default -> {
+            }
         }
     }
 
-    private RateLimitResult executeFixedWindow(String key, RateLimitPolicy policy) {
-        String countKey = "ratelimit:" + key + ":fixed";
-        long count = store.increment(countKey, policy.getWindow());
+    /**
+     * Maps a {allowed, remaining, retryAfterMillis} script reply to a result under the enforced limit.
+     */
+    private static RateLimitResult toResult(long[] reply, long limit) {
+        long remaining = reply[1];
+        if (reply[0] == 1) {
+            return RateLimitResult.allowed(remaining, limit - remaining, limit);
+        }
+        return RateLimitResult.denied(Duration.ofMillis(reply[2]), limit, limit);
+    }
 
-        if (count <= policy.getLimit()) {
-            return RateLimitResult.allowed(policy.getLimit() - count, count, policy.getLimit());
+    private static void setDecision(RateLimitDecision decision, long[] reply, long limit) {
+        if (reply[0] == 1) {
+            long remaining = reply[1];
+            decision.allow(remaining, limit - remaining, limit);
         } else {
-            return RateLimitResult.denied(policy.getWindow(), count, policy.getLimit());
+            decision.deny(reply[2], limit, limit);
         }
     }
 
-    private RateLimitResult executeSlidingWindowLog(String key, RateLimitPolicy policy) {
-        // Simplified implementation - in production, use sorted sets or time-series data
-        return executeFixedWindow(key, policy);
+    /**
+     * Folds per-entry batch replies into one result: allowed only if all were allowed,
+     * reporting the tightest entry, or the longest retry-after among denied entries.
+     * Each entry's enforced limit is its first script argument.
+     */
+    private static RateLimitResult combine(long[][] replies, long[][] args) {
+        RateLimitResult combined = null;
+        for (int i = 0; i < replies.length; i++) {
+            RateLimitResult result = toResult(replies[i], args[i][0]);
+            if (combined == null || isStricter(result, combined)) {
+                combined = result;
+            }
+        }
+        return combined;
     }
 
-    private RateLimitResult executeSlidingWindowCounter(String key, RateLimitPolicy policy) {
-        // Simplified implementation - uses weighted counts from current and previous windows
-        return executeFixedWindow(key, policy);
+    private static boolean isStricter(RateLimitResult candidate, RateLimitResult current) {
+        if (candidate.isAllowed() != current.isAllowed()) {
+            return !candidate.isAllowed();
+        }
+        if (!candidate.isAllowed()) {
+            return candidate.getRetryAfter().orElse(Duration.ZERO)
+                    .compareTo(current.getRetryAfter().orElse(Duration.ZERO)) > 0;
+        }
+        return candidate.getRemaining() < current.getRemaining();
+    }
+
+    private static KeyPolicy tightest(List<KeyPolicy> requests) {
+        KeyPolicy tightest = requests.get(0);
+        for (KeyPolicy request : requests) {
+            if (request.getPolicy().getLimit() < tightest.getPolicy().getLimit()) {
+                tightest = request;
+            }
+        }
+        return tightest;
     }
 
-    private RateLimitResult executeLeakyBucket(String key, RateLimitPolicy policy) {
-        // Similar to token bucket but with constant drain rate
-        return executeTokenBucket(key, policy);
+    private static void validatePermits(RateLimitPolicy policy, long permits) {
+        if (permits <= 0) {
+            throw new IllegalArgumentException("permits must be greater than 0");
+        }
+        if (permits > policy.getLimit()) {
+            throw new IllegalArgumentException("permits must not exceed the policy limit of " + policy.getLimit());
+        }
     }
 
-    private RateLimitResult handleFailure(RateLimitPolicy policy) {
+    private RateLimitResult handleFailure(String key, RateLimitPolicy policy, long permits) {
+        metrics.recordFailure(policy.getAlgorithm(), failureMode);
         return switch (failureMode) {
             case FAIL_OPEN -> RateLimitResult.allowed(policy.getLimit(), 0, policy.getLimit());
-            case FAIL_CLOSED -> RateLimitResult.denied(Duration.ofSeconds(1), policy.getLimit(), policy.getLimit());
+            case FAIL_CLOSED -> RateLimitResult.denied(Duration.ofMillis(FAIL_CLOSED_RETRY_MILLIS), policy.getLimit(), policy.getLimit());
+            case LOCAL_FALLBACK -> {
+                long limit = fallbackLimit(policy);
+                yield toResult(execute(fallbackStore, key, policy, limit, permits), limit);
+            }
         };
     }
 
+    /**
+     * This node's share of the policy limit while falling back locally; at least one permit.
+     */
+    private long fallbackLimit(RateLimitPolicy policy) {
+        return Math.max(1, policy.getLimit() / fallbackNodeCount);
+    }
+
+    /**
+     * Logs a store failure; an open circuit breaker rejects every call, so those are not logged as errors.
+     */
+    private static void logFailure(String subjectType, Object subject, Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof StoreUnavailableException) {
+            log.debug("Rate limiter store unavailable for {}: {}", subjectType, subject);
+        } else {
+            log.error("Rate limiter error for {}: {}", subjectType, subject, cause);
+        }
+    }
+
+    /**
+     * The store calls of one batch, one entry per request, prepared at {@code now}.
+     */
+    private record Batch(List<KeyPolicy> requests, long now, RateLimitScript[] scripts, String[][] keys,
+                         long[][] args) {
+    }
+
+    /**
+     * Per-thread argument and reply arrays for the allocation-free decision path.
+     */
+    private static final class Scratch {
+
+        final long[] fourArgs = new long[4];
+        final long[] fiveArgs = new long[5];
+        final long[] reply = new long[3];
+
+        long[] args(int count) {
+            return count == 4 ? fourArgs : fiveArgs;
+        }
+    }
+
 }
@@ -0,0 +1,383 @@
+package com.example.ratelimiter.core.impl;
+
+import com.example.ratelimiter.core.api.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Two-tier RateLimiter that serves hot keys from locally leased token budgets.
+ * <p>
+ * For token bucket policies each node leases a slice of the shared bucket
+ * ({@code leaseFraction} of {@link RateLimitPolicy#getLimit()}) in one atomic store call and then
+ * answers decisions from a local counter until the slice is used up or {@code maxStaleness} passes.
+ * Leased tokens are removed from the shared bucket up front, so the cluster never admits more than
+ * the limit; the error is bounded under-admission of at most one unused lease per node and key.
+ * <p>
+ * Weighted requests are served from the current lease when it holds enough tokens, otherwise
+ * by the delegate. Other algorithms, and any store failure while leasing, are handled by the delegate.
+ * <p>
+ * A key refills its lease with one store call at a time, made outside any lock; concurrent callers
+ * wait for that call, or with {@link #tryAcquireAsync} are completed by it. Leases of keys that went
+ * quiet are dropped about {@code maxStaleness} after they expire.
+ * <p>
+ * Leases are timed on the {@link TimeSource}; a store in {@link ClockMode#SERVER} refills the shared
+ * bucket on its own clock.
+ */
+public class LeasingRateLimiter implements RateLimiter {
+
+    private static final Logger log = LoggerFactory.getLogger(LeasingRateLimiter.class);
+
+    private final RateLimiter delegate;
+    private final RateLimitStore store;
+    private final RateLimitPolicy defaultPolicy;
+    private final double leaseFraction;
+    private final long maxStalenessNanos;
+    private final TimeSource timeSource;
+    private final boolean serverTime;
+    private final Map<RateLimitPolicy, ConcurrentHashMap<String, CompletableFuture<Lease>>> leases = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweepNanos;
+
+    public LeasingRateLimiter(RateLimiter delegate, RateLimitStore store, RateLimitPolicy defaultPolicy,
+                              double leaseFraction, Duration maxStaleness) {
+        this(delegate, store, defaultPolicy, leaseFraction, maxStaleness, TimeSource.SYSTEM);
+    }
+
+    public LeasingRateLimiter(RateLimiter delegate, RateLimitStore store, RateLimitPolicy defaultPolicy,
+                              double leaseFraction, Duration maxStaleness, TimeSource timeSource) {
+        if (leaseFraction <= 0 || leaseFraction > 1) {
+            throw new IllegalArgumentException("leaseFraction must be in (0, 1]");
+        }
+        if (maxStaleness == null || maxStaleness.isZero() || maxStaleness.isNegative()) {
+            throw new IllegalArgumentException("maxStaleness must be greater than 0");
+        }
+
+        this.delegate = Objects.requireNonNull(delegate, "Delegate cannot be null");
+        this.store = Objects.requireNonNull(store, "Store cannot be null");
+        this.defaultPolicy = Objects.requireNonNull(defaultPolicy, "Default policy cannot be null");
+        this.leaseFraction = leaseFraction;
+        this.maxStalenessNanos = maxStaleness.toNanos();
+        this.timeSource = Objects.requireNonNull(timeSource, "Time source cannot be null");
+        this.serverTime = store.getClockMode() == ClockMode.SERVER;
+        this.lastSweepNanos = new AtomicLong(timeSource.nanoTime());
+    }
+
+    @Override
+    public RateLimitResult tryAcquire(String key) {
+        return tryAcquire(key, defaultPolicy);
+    }
+
+    @Override
+    public RateLimitResult tryAcquire(String key, RateLimitPolicy policy, long permits) {
+        Objects.requireNonNull(key, "Key cannot be null");
+        Objects.requireNonNull(policy, "Policy cannot be null");
+        if (permits == 1) {
+            return tryAcquire(key, policy);
+        }
+
+        RateLimitResult result = takeFromLease(key, policy, permits);
+        return result != null ? result : delegate.tryAcquire(key, policy, permits);
+    }
+
+    @Override
+    public RateLimitResult tryAcquire(String key, RateLimitPolicy policy) {
+        Objects.requireNonNull(key, "Key cannot be null");
+        Objects.requireNonNull(policy, "Policy cannot be null");
+
+        if (policy.getAlgorithm() != RateLimitAlgorithm.TOKEN_BUCKET) {
+            return delegate.tryAcquire(key, policy);
+        }
+
+        ConcurrentHashMap<String, CompletableFuture<Lease>> policyLeases = policyLeases(policy);
+        while (true) {
+            long now = timeSource.nanoTime();
+            CompletableFuture<Lease> pending = policyLeases.get(key);
+            if (pending == null || isExpired(pending, now)) {
+                CompletableFuture<Lease> refill = new CompletableFuture<>();
+                if (!install(policyLeases, key, pending, refill)) {
+                    continue;
+                }
+                // Only the caller that installed the refill goes to the store; the others wait for it
+                try {
+                    refill.complete(requestLease(key, policy, now));
+                } catch (RuntimeException e) {
+                    policyLeases.remove(key, refill);
+                    refill.completeExceptionally(e);
+                }
+                pending = refill;
+            }
+
+            Lease lease;
+            try {
+                lease = pending.join();
+            } catch (CompletionException e) {
+                log.error("Failed to lease tokens for key: {}", key, e.getCause());
+                return delegate.tryAcquire(key, policy);
+            }
+
+            RateLimitResult result = take(lease, policy, timeSource.nanoTime());
+            if (result != null) {
+                return result;
+            }
+            // Lease drained by concurrent callers: start over against a fresh lease
+            policyLeases.remove(key, pending);
+        }
+    }
+
+    @Override
+    public CompletionStage<RateLimitResult> tryAcquireAsync(String key) {
+        return tryAcquireAsync(key, defaultPolicy);
+    }
+
+    @Override
+    public CompletionStage<RateLimitResult> tryAcquireAsync(String key, RateLimitPolicy policy, long permits) {
+        Objects.requireNonNull(key, "Key cannot be null");
+        Objects.requireNonNull(policy, "Policy cannot be null");
+        if (permits == 1) {
+            return tryAcquireAsync(key, policy);
+        }
+
+        RateLimitResult result = takeFromLease(key, policy, permits);
+        return result != null ? CompletableFuture.completedFuture(result) : delegate.tryAcquireAsync(key, policy, permits);
+    }
+
+    /**
+     * Same as {@link #tryAcquire(String, RateLimitPolicy)}, with refills issued through
+     * {@link RateLimitStore#executeScriptAsync}; callers arriving during a refill are completed by it.
+     */
+    @Override
+    public CompletionStage<RateLimitResult> tryAcquireAsync(String key, RateLimitPolicy policy) {
+        Objects.requireNonNull(key, "Key cannot be null");
+        Objects.requireNonNull(policy, "Policy cannot be null");
+
+        if (policy.getAlgorithm() != RateLimitAlgorithm.TOKEN_BUCKET) {
+            return delegate.tryAcquireAsync(key, policy);
+        }
+
+        ConcurrentHashMap<String, CompletableFuture<Lease>> policyLeases = policyLeases(policy);
+        long now = timeSource.nanoTime();
+        CompletableFuture<Lease> pending = policyLeases.get(key);
+        if (pending == null || isExpired(pending, now)) {
+            CompletableFuture<Lease> refill = new CompletableFuture<>();
+            if (!install(policyLeases, key, pending, refill)) {
+                return tryAcquireAsync(key, policy);
+            }
+            requestLeaseAsync(key, policy, now).whenComplete((lease, error) -> {
+                if (error != null) {
+                    policyLeases.remove(key, refill);
+                    refill.completeExceptionally(error);
+                } else {
+                    refill.complete(lease);
+                }
+            });
+            pending = refill;
+        }
+
+        CompletableFuture<Lease> leaseFuture = pending;
+        return leaseFuture.handle((lease, error) -> {
+            if (error != null) {
+                log.error("Failed to lease tokens for key: {}", key, unwrap(error));
+                return delegate.tryAcquireAsync(key, policy);
+            }
+            RateLimitResult result = take(lease, policy, timeSource.nanoTime());
+            if (result != null) {
+                return CompletableFuture.completedFuture(result);
+            }
+            policyLeases.remove(key, leaseFuture);
+            return tryAcquireAsync(key, policy);
+        }).thenCompose(stage -> stage);
+    }
+
+    /**
+     * Batches are decided by the delegate against the shared state; local leases are not used.
+     */
+    @Override
+    public RateLimitResult tryAcquireAll(List<KeyPolicy> requests) {
+        return delegate.tryAcquireAll(requests);
+    }
+
+    @Override
+    public CompletionStage<RateLimitResult> tryAcquireAllAsync(List<KeyPolicy> requests) {
+        return delegate.tryAcquireAllAsync(requests);
+    }
+
+    @Override
+    public boolean reset(String key) {
+        Objects.requireNonNull(key, "Key cannot be null");
+        for (ConcurrentHashMap<String, CompletableFuture<Lease>> policyLeases : leases.values()) {
+            policyLeases.remove(key);
+        }
+        return delegate.reset(key);
+    }
+
+    /**
+     * Leases currently held, refills in flight included.
+     */
+    int leaseCount() {
+        return leases.values().stream().mapToInt(Map::size).sum();
+    }
+
+    private ConcurrentHashMap<String, CompletableFuture<Lease>> policyLeases(RateLimitPolicy policy) {
+        return leases.computeIfAbsent(policy, p -> new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Serves a weighted request from the key's current lease, or returns null if it cannot.
+     */
+    private RateLimitResult takeFromLease(String key, RateLimitPolicy policy, long permits) {
+        if (policy.getAlgorithm() != RateLimitAlgorithm.TOKEN_BUCKET || permits <= 0) {
+            return null;
+        }
+        ConcurrentHashMap<String, CompletableFuture<Lease>> policyLeases = leases.get(policy);
+        CompletableFuture<Lease> pending = policyLeases != null ? policyLeases.get(key) : null;
+        if (pending == null || !pending.isDone() || pending.isCompletedExceptionally()) {
+            return null;
+        }
+        Lease lease = pending.join();
+        if (lease.isDenial() || !lease.isUsable(timeSource.nanoTime()) || !lease.tryTake(permits)) {
+            return null;
+        }
+        long available = lease.tokens.get() + lease.sharedRemaining;
+        return RateLimitResult.allowed(available, policy.getLimit() - available, policy.getLimit());
+    }
+
+    /**
+     * Decides one request against a lease, or returns null if the lease is drained.
+     */
+    private static RateLimitResult take(Lease lease, RateLimitPolicy policy, long nowNanos) {
+        if (lease.isDenial()) {
+            long retryAfterNanos = Math.max(1_000_000L, lease.retryAtNanos - nowNanos);
+            return RateLimitResult.denied(Duration.ofNanos(retryAfterNanos), policy.getLimit(), policy.getLimit());
+        }
+
+        long remaining = lease.tokens.decrementAndGet();
+        if (remaining < 0) {
+            return null;
+        }
+        long available = remaining + lease.sharedRemaining;
+        return RateLimitResult.allowed(available, policy.getLimit() - available, policy.getLimit());
+    }
+
+    /**
+     * Replaces the key's expired or missing lease with the refill, unless another caller got there first.
+     */
+    private boolean install(ConcurrentHashMap<String, CompletableFuture<Lease>> policyLeases, String key,
+                            CompletableFuture<Lease> expected, CompletableFuture<Lease> refill) {
+        boolean installed = expected == null
+                ? policyLeases.putIfAbsent(key, refill) == null
+                : policyLeases.replace(key, expected, refill);
+        if (installed) {
+            sweepExpired(timeSource.nanoTime());
+        }
+        return installed;
+    }
+
+    /**
+     * Drops the leases of keys that went quiet. Runs on refills, at most once per {@code maxStaleness};
+     * since every lease expires within {@code maxStaleness}, only keys used within about twice that
+     * are kept.
+     */
+    private void sweepExpired(long nowNanos) {
+        long lastSweep = lastSweepNanos.get();
+        if (nowNanos - lastSweep < maxStalenessNanos || !lastSweepNanos.compareAndSet(lastSweep, nowNanos)) {
+            return;
+        }
+        for (ConcurrentHashMap<String, CompletableFuture<Lease>> policyLeases : leases.values()) {
+            policyLeases.values().removeIf(pending -> isExpired(pending, nowNanos));
+        }
+    }
+
+    /**
+     * A refill still in flight is never expired: callers wait for it instead of starting another.
+     */
+    private static boolean isExpired(CompletableFuture<Lease> pending, long nowNanos) {
+        return pending.isDone() && (pending.isCompletedExceptionally() || !pending.join().isUsable(nowNanos));
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    private Lease requestLease(String key, RateLimitPolicy policy, long nowNanos) {
+        return toLease(store.executeScript(RateLimitScript.TOKEN_LEASE,
+                new String[]{StoreKeys.bucket(key)}, leaseArgs(policy)), nowNanos);
+    }
+
+    private CompletionStage<Lease> requestLeaseAsync(String key, RateLimitPolicy policy, long nowNanos) {
+        try {
+            return store.executeScriptAsync(RateLimitScript.TOKEN_LEASE,
+                            new String[]{StoreKeys.bucket(key)}, leaseArgs(policy))
+                    .thenApply(reply -> toLease(reply, nowNanos));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private long[] leaseArgs(RateLimitPolicy policy) {
+        long windowMillis = Math.max(1, policy.getWindow().toMillis());
+        long leaseSize = Math.max(1, (long) (policy.getLimit() * leaseFraction));
+        long now = serverTime ? RateLimitScript.SERVER_TIME : timeSource.currentTimeMillis();
+        return new long[]{policy.getLimit(), windowMillis, now, leaseSize, windowMillis};
+    }
+
+    private Lease toLease(long[] reply, long nowNanos) {
+        long granted = reply[0];
+        if (granted > 0) {
+            return new Lease(granted, reply[1], 0, nowNanos + maxStalenessNanos);
+        }
+
+        // Nothing left in the shared bucket: remember the denial until tokens refill
+        long retryAt = nowNanos + Duration.ofMillis(Math.max(1, reply[2])).toNanos();
+        long expiresAt = Math.min(retryAt, nowNanos + maxStalenessNanos);
+        return new Lease(0, 0, retryAt, expiresAt);
+    }
+
+    /**
+     * A locally held slice of a key's budget.
+     */
+    private static final class Lease {
+
+        final AtomicLong tokens;
+        final long sharedRemaining;
+        final long retryAtNanos;
+        final long expiresAtNanos;
+
+        Lease(long tokens, long sharedRemaining, long retryAtNanos, long expiresAtNanos) {
+            this.tokens = new AtomicLong(tokens);
+            this.sharedRemaining = sharedRemaining;
+            this.retryAtNanos = retryAtNanos;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        /**
+         * A denial lease caches an empty shared bucket until it is expected to refill.
+         */
+        boolean isDenial() {
+            return retryAtNanos != 0;
+        }
+
+        boolean tryTake(long permits) {
+            long current;
+            do {
+                current = tokens.get();
+                if (current < permits) {
+                    return false;
+                }
+            } while (!tokens.compareAndSet(current, current - permits));
+            return true;
+        }
+
+        boolean isUsable(long nowNanos) {
+            return nowNanos - expiresAtNanos < 0 && (isDenial() || tokens.get() > 0);
+        }
+    }
+}
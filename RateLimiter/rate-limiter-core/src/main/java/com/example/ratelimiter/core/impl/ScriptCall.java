@@ -0,0 +1,10 @@
+package com.example.ratelimiter.core.impl;
+
+import com.example.ratelimiter.core.api.RateLimitScript;
+
+/**
+ * A prepared invocation of a built-in store script: which script, on which keys, with which arguments.
+ * Lets the same decision run through the blocking and the asynchronous store APIs.
+ */
+record ScriptCall(RateLimitScript script, String[] keys, long[] args) {
+}
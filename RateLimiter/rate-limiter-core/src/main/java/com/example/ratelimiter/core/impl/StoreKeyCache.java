@@ -0,0 +1,61 @@
+package com.example.ratelimiter.core.impl;
+
+import com.example.ratelimiter.core.api.RateLimitAlgorithm;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches the store key arrays of each rate limit key so repeated decisions do not rebuild the
+ * {@code ratelimit:{key}:...} strings.
+ * <p>
+ * Store keys depend only on the algorithm (see {@link StoreKeys}), so there is one cache per algorithm.
+ * Each cache holds at most {@code maxKeys} entries and is cleared when full, which bounds memory for
+ * high-cardinality key spaces while keeping hot keys cached. Returned arrays are shared and must not
+ * be modified.
+ */
+final class StoreKeyCache {
+
+    private final int maxKeys;
+    private final ConcurrentHashMap<String, String[]>[] caches;
+
+    @SuppressWarnings("unchecked")
+    StoreKeyCache(int maxKeys) {
+        if (maxKeys <= 0) {
+            throw new IllegalArgumentException("maxKeys must be greater than 0");
+        }
+        this.maxKeys = maxKeys;
+        RateLimitAlgorithm[] algorithms = RateLimitAlgorithm.values();
+        this.caches = new ConcurrentHashMap[algorithms.length];
+        for (int i = 0; i < algorithms.length; i++) {
+            caches[i] = new ConcurrentHashMap<>();
+        }
+    }
+
+    /**
+     * Returns the store keys of the given key under the algorithm.
+     */
+    String[] keys(RateLimitAlgorithm algorithm, String key) {
+        ConcurrentHashMap<String, String[]> cache = caches[algorithm.ordinal()];
+        String[] keys = cache.get(key);
+        if (keys != null) {
+            return keys;
+        }
+
+        if (cache.size() >= maxKeys) {
+            cache.clear();
+        }
+        keys = encode(algorithm, key);
+        cache.put(key, keys);
+        return keys;
+    }
+
+    static String[] encode(RateLimitAlgorithm algorithm, String key) {
+        return switch (algorithm) {
+            case TOKEN_BUCKET -> new String[]{StoreKeys.bucket(key)};
+            case FIXED_WINDOW -> new String[]{StoreKeys.fixedWindow(key)};
+            case SLIDING_WINDOW_LOG -> new String[]{StoreKeys.slidingLog(key)};
+            case SLIDING_WINDOW_COUNTER -> new String[]{StoreKeys.window(key)};
+            case LEAKY_BUCKET -> new String[]{StoreKeys.theoreticalArrival(key)};
+        };
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.ratelimiter.core.impl;
+
+/**
+ * Naming of the store keys backing each algorithm, shared by the limiters in this package
+ * so that they operate on the same state.
+ * <p>
+ * The rate limit key is wrapped in a Redis Cluster hash tag ({@code ratelimit:{key}:bucket}), so every
+ * store key of one logical limiter hashes to the same slot and multi-key scripts stay legal on a cluster.
+ */
+final class StoreKeys {
+
+    private static final String PREFIX = "ratelimit:";
+
+    private StoreKeys() {
+    }
+
+    /**
+     * Hash tag of the key: Redis Cluster hashes only the part between the first braces.
+     */
+    private static String tag(String key) {
+        return "{" + key + "}";
+    }
+
+    /**
+     * Token bucket, as the time at which it was empty.
+     */
+    static String bucket(String key) {
+        return PREFIX + tag(key) + ":bucket";
+    }
+
+    static String fixedWindow(String key) {
+        return PREFIX + tag(key) + ":fixed";
+    }
+
+    static String slidingLog(String key) {
+        return PREFIX + tag(key) + ":log";
+    }
+
+    static String theoreticalArrival(String key) {
+        return PREFIX + tag(key) + ":tat";
+    }
+
+    /**
+     * Current and previous window counters, together with the index of the current window.
+     */
+    static String window(String key) {
+        return PREFIX + tag(key) + ":window";
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.ratelimiter.core.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timing wheel: schedules many short timers with O(1) insertion on a single ticker thread.
+ * <p>
+ * Timers are handed over through a lock-free queue and placed into a bucket on the next tick.
+ * Expired tasks run on the given executor so a slow task never delays the wheel.
+ */
+final class TimerWheel implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(TimerWheel.class);
+
+    private final long tickNanos;
+    private final int mask;
+    private final Queue<Timer>[] buckets;
+    private final Queue<Timer> pending = new ConcurrentLinkedQueue<>();
+    private final Executor executor;
+    private final Thread ticker;
+    private final long startNanos;
+    private volatile boolean running = true;
+    private long tick;
+
+    @SuppressWarnings("unchecked")
+    TimerWheel(Duration tickDuration, int wheelSize, Executor executor, String threadName) {
+        if (tickDuration.isZero() || tickDuration.isNegative()) {
+            throw new IllegalArgumentException("tickDuration must be greater than 0");
+        }
+        int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+        this.tickNanos = tickDuration.toNanos();
+        this.mask = size - 1;
+        this.buckets = new Queue[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.executor = executor;
+        this.startNanos = System.nanoTime();
+        this.ticker = new Thread(this::run, threadName);
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    /**
+     * Runs the task on the executor once {@code deadlineNanos} (a {@link System#nanoTime()} value)
+     * has passed, rounded up to the next tick.
+     */
+    void schedule(Runnable task, long deadlineNanos) {
+        if (!running) {
+            throw new IllegalStateException("Timer wheel is closed");
+        }
+        pending.add(new Timer(task, deadlineNanos));
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(ticker);
+    }
+
+    private void run() {
+        while (running) {
+            long tickDeadline = startNanos + (tick + 1) * tickNanos;
+            long sleep;
+            while ((sleep = tickDeadline - System.nanoTime()) > 0 && running) {
+                LockSupport.parkNanos(this, sleep);
+            }
+
+            transferPending();
+            expire(buckets[(int) (tick & mask)], System.nanoTime());
+            tick++;
+        }
+    }
+
+    private void transferPending() {
+        Timer timer;
+        while ((timer = pending.poll()) != null) {
+            long ticks = Math.max(tick, (timer.deadlineNanos - startNanos + tickNanos - 1) / tickNanos);
+            timer.rounds = (ticks - tick) / buckets.length;
+            buckets[(int) (ticks & mask)].add(timer);
+        }
+    }
+
+    private void expire(Queue<Timer> bucket, long now) {
+        Iterator<Timer> timers = bucket.iterator();
+        while (timers.hasNext()) {
+            Timer timer = timers.next();
+            if (timer.rounds > 0) {
+                timer.rounds--;
+                continue;
+            }
+            timers.remove();
+            if (timer.deadlineNanos - now > 0) {
+                // Not due yet because of rounding: re-queue for a later tick
+                pending.add(timer);
+                continue;
+            }
+            try {
+                executor.execute(timer.task);
+            } catch (RuntimeException e) {
+                log.warn("Failed to dispatch timer task", e);
+            }
+        }
+    }
+
+    private static final class Timer {
+
+        final Runnable task;
+        final long deadlineNanos;
+        long rounds;
+
+        Timer(Runnable task, long deadlineNanos) {
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+}
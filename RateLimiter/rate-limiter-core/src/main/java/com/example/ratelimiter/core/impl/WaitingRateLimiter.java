@@ -0,0 +1,359 @@
+package com.example.ratelimiter.core.impl;
+
+import com.example.ratelimiter.core.api.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * RateLimiter decorator whose blocking and timed acquires coalesce waiters per key.
+ * <p>
+ * A denied caller is queued on its key and parked on a future until granted or timed out.
+ * Each key with waiters has a single timer on a shared {@link TimerWheel}, firing at the store's
+ * retry-after instant; the re-check then grants waiters in arrival order until the store denies
+ * again. A caller arriving while the key has waiters queues behind them without asking the store,
+ * so it neither takes a refilled permit ahead of them nor adds a store call of its own. Thousands of parked threads on one key therefore cost one store re-check per retry
+ * instant (plus one call per grant), not one per waiter. Waiting only uses
+ * {@code java.util.concurrent} parking, so virtual threads unmount while parked.
+ * <p>
+ * Re-checks run on a bounded pool of one thread per processor (at least two), so a spray of keys
+ * queues their re-checks rather than starting a thread per key. {@link #close()} stops the pool and
+ * the timer wheel and wakes every waiter, which returns the denial it last saw.
+ */
+public class WaitingRateLimiter implements RateLimiter, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(WaitingRateLimiter.class);
+
+    private static final Duration DEFAULT_TICK = Duration.ofMillis(5);
+    private static final int DEFAULT_WHEEL_SIZE = 512;
+    private static final long MIN_WAIT_NANOS = 1_000_000L;
+    private static final int RECHECK_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    private final RateLimiter delegate;
+    private final RateLimitPolicy defaultPolicy;
+    private final TimerWheel wheel;
+    private final ThreadPoolExecutor recheckExecutor;
+    private final Map<RateLimitPolicy, ConcurrentHashMap<String, KeyWaiters>> waiters = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    public WaitingRateLimiter(RateLimiter delegate, RateLimitPolicy defaultPolicy) {
+        this(delegate, defaultPolicy, DEFAULT_TICK);
+    }
+
+    public WaitingRateLimiter(RateLimiter delegate, RateLimitPolicy defaultPolicy, Duration tick) {
+        this.delegate = Objects.requireNonNull(delegate, "Delegate cannot be null");
+        this.defaultPolicy = Objects.requireNonNull(defaultPolicy, "Default policy cannot be null");
+        Objects.requireNonNull(tick, "Tick cannot be null");
+
+        this.recheckExecutor = new ThreadPoolExecutor(RECHECK_THREADS, RECHECK_THREADS, 1, TimeUnit.MINUTES,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread thread = new Thread(r, "rate-limiter-recheck");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        recheckExecutor.allowCoreThreadTimeOut(true);
+        this.wheel = new TimerWheel(tick, DEFAULT_WHEEL_SIZE, recheckExecutor, "rate-limiter-timer-wheel");
+    }
+
+    @Override
+    public RateLimitResult tryAcquire(String key) {
+        return delegate.tryAcquire(key, defaultPolicy);
+    }
+
+    @Override
+    public RateLimitResult tryAcquire(String key, RateLimitPolicy policy) {
+        return delegate.tryAcquire(key, policy);
+    }
+
+    @Override
+    public RateLimitResult tryAcquire(String key, RateLimitPolicy policy, long permits) {
+        return delegate.tryAcquire(key, policy, permits);
+    }
+
+    @Override
+    public RateLimitResult tryAcquireAll(List<KeyPolicy> requests) {
+        return delegate.tryAcquireAll(requests);
+    }
+
+    @Override
+    public CompletionStage<RateLimitResult> tryAcquireAllAsync(List<KeyPolicy> requests) {
+        return delegate.tryAcquireAllAsync(requests);
+    }
+
+    @Override
+    public CompletionStage<RateLimitResult> tryAcquireAsync(String key) {
+        return delegate.tryAcquireAsync(key, defaultPolicy);
+    }
+
+    @Override
+    public CompletionStage<RateLimitResult> tryAcquireAsync(String key, RateLimitPolicy policy) {
+        return delegate.tryAcquireAsync(key, policy);
+    }
+
+    @Override
+    public CompletionStage<RateLimitResult> tryAcquireAsync(String key, RateLimitPolicy policy, long permits) {
+        return delegate.tryAcquireAsync(key, policy, permits);
+    }
+
+    @Override
+    public RateLimitResult acquire(String key) {
+        return acquire(key, defaultPolicy);
+    }
+
+    /**
+     * Acquires permission for the given key under the policy, blocking until it is granted.
+     *
+     * @see RateLimiter#acquire(String)
+     */
+    public RateLimitResult acquire(String key, RateLimitPolicy policy) {
+        return tryAcquire(key, policy, Duration.ofNanos(Long.MAX_VALUE));
+    }
+
+    @Override
+    public RateLimitResult tryAcquire(String key, Duration timeout) {
+        return tryAcquire(key, defaultPolicy, timeout);
+    }
+
+    /**
+     * Attempts to acquire permission for the given key under the policy, waiting up to the timeout.
+     * Returns immediately if the store's retry-after already exceeds the timeout. If the key already
+     * has waiters, the caller queues behind them; a caller that times out returns the key's latest
+     * denial.
+     *
+     * @see RateLimiter#tryAcquire(String, Duration)
+     */
+    public RateLimitResult tryAcquire(String key, RateLimitPolicy policy, Duration timeout) {
+        Objects.requireNonNull(key, "Key cannot be null");
+        Objects.requireNonNull(policy, "Policy cannot be null");
+        Objects.requireNonNull(timeout, "Timeout cannot be null");
+
+        long start = System.nanoTime();
+        long timeoutNanos = Math.min(Long.MAX_VALUE / 2, timeout.toNanos());
+        ConcurrentHashMap<String, KeyWaiters> policyWaiters = waiters.computeIfAbsent(policy, p -> new ConcurrentHashMap<>());
+
+        KeyWaiters keyWaiters = policyWaiters.get(key);
+        CompletableFuture<RateLimitResult> grant = keyWaiters != null ? keyWaiters.joinQueue(start + timeoutNanos) : null;
+        if (grant == null) {
+            RateLimitResult result = delegate.tryAcquire(key, policy);
+            if (result.isAllowed() || closed || retryAfterNanos(result) > timeoutNanos) {
+                return result;
+            }
+            do {
+                keyWaiters = policyWaiters.computeIfAbsent(key, k -> new KeyWaiters(k, policy));
+                grant = keyWaiters.enqueue(result, start + retryAfterNanos(result));
+            } while (grant == null && !closed);
+            if (grant == null) {
+                return result;
+            }
+        }
+
+        try {
+            long remaining = timeoutNanos - (System.nanoTime() - start);
+            return grant.get(Math.max(0, remaining), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            return abandon(grant, keyWaiters.lastDenied);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return abandon(grant, keyWaiters.lastDenied);
+        } catch (ExecutionException e) {
+            if (!closed) {
+                log.error("Waiting acquire failed for key: {}", key, e.getCause());
+            }
+            return abandon(grant, keyWaiters.lastDenied);
+        }
+    }
+
+    @Override
+    public boolean reset(String key) {
+        return delegate.reset(key);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        wheel.close();
+        recheckExecutor.shutdownNow();
+        for (ConcurrentHashMap<String, KeyWaiters> policyWaiters : waiters.values()) {
+            for (KeyWaiters keyWaiters : policyWaiters.values()) {
+                keyWaiters.wakeAll();
+            }
+        }
+    }
+
+    /**
+     * Gives up a wait; if the grant raced in first it is still returned rather than wasted.
+     */
+    private static RateLimitResult abandon(CompletableFuture<RateLimitResult> grant, RateLimitResult lastDenied) {
+        if (grant.cancel(false)) {
+            return lastDenied;
+        }
+        RateLimitResult granted = grant.getNow(null);
+        return granted != null ? granted : lastDenied;
+    }
+
+    private static long retryAfterNanos(RateLimitResult result) {
+        return Math.max(MIN_WAIT_NANOS, result.getRetryAfter().map(Duration::toNanos).orElse(MIN_WAIT_NANOS));
+    }
+
+    /**
+     * FIFO of waiters on one key and policy, with at most one pending timer.
+     */
+    private final class KeyWaiters implements Runnable {
+
+        private final String key;
+        private final RateLimitPolicy policy;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final ArrayDeque<CompletableFuture<RateLimitResult>> queue = new ArrayDeque<>();
+        private boolean scheduled;
+        // Set once the queue drained and this was removed from the map; callers then start a new one
+        private boolean retired;
+        private long recheckAtNanos;
+        private volatile RateLimitResult lastDenied;
+
+        KeyWaiters(String key, RateLimitPolicy policy) {
+            this.key = key;
+            this.policy = policy;
+        }
+
+        /**
+         * Queues a caller the store just denied, arming the timer if it is not.
+         *
+         * @return the waiter's grant, or null once retired or closed
+         */
+        CompletableFuture<RateLimitResult> enqueue(RateLimitResult denied, long recheckAtNanos) {
+            CompletableFuture<RateLimitResult> grant = new CompletableFuture<>();
+            lock.lock();
+            try {
+                if (retired || closed) {
+                    return null;
+                }
+                lastDenied = denied;
+                queue.addLast(grant);
+                if (!scheduled) {
+                    scheduled = true;
+                    this.recheckAtNanos = recheckAtNanos;
+                    wheel.schedule(this, recheckAtNanos);
+                }
+            } finally {
+                lock.unlock();
+            }
+            return grant;
+        }
+
+        /**
+         * Queues a new caller behind the current waiters, without asking the store.
+         *
+         * @return the waiter's grant, already completed with the latest denial if the next re-check
+         *         comes after {@code deadlineNanos}; or null if there are no waiters to queue behind
+         */
+        CompletableFuture<RateLimitResult> joinQueue(long deadlineNanos) {
+            lock.lock();
+            try {
+                if (retired || closed || queue.isEmpty()) {
+                    return null;
+                }
+                if (recheckAtNanos - deadlineNanos > 0) {
+                    return CompletableFuture.completedFuture(lastDenied);
+                }
+                CompletableFuture<RateLimitResult> grant = new CompletableFuture<>();
+                queue.addLast(grant);
+                return grant;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Fails every waiter, so each returns its last denial; called once closed.
+         */
+        void wakeAll() {
+            lock.lock();
+            try {
+                CompletableFuture<RateLimitResult> grant;
+                while ((grant = queue.pollFirst()) != null) {
+                    grant.completeExceptionally(new IllegalStateException("Rate limiter is closed"));
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Timer callback: grants waiters in order until the store denies, then re-arms the timer.
+         */
+        @Override
+        public void run() {
+            while (!closed) {
+                CompletableFuture<RateLimitResult> head = nextLiveWaiter();
+                if (head == null) {
+                    return;
+                }
+
+                RateLimitResult result;
+                try {
+                    result = delegate.tryAcquire(key, policy);
+                } catch (RuntimeException e) {
+                    log.error("Re-check failed for key: {}", key, e);
+                    result = RateLimitResult.denied(Duration.ofNanos(MIN_WAIT_NANOS), policy.getLimit(), policy.getLimit());
+                }
+
+                if (!result.isAllowed()) {
+                    long recheckAt = System.nanoTime() + retryAfterNanos(result);
+                    lock.lock();
+                    try {
+                        lastDenied = result;
+                        recheckAtNanos = recheckAt;
+                    } finally {
+                        lock.unlock();
+                    }
+                    wheel.schedule(this, recheckAt);
+                    return;
+                }
+
+                lock.lock();
+                try {
+                    if (queue.peekFirst() == head) {
+                        queue.pollFirst();
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                if (!head.complete(result)) {
+                    // Waiter timed out between the check and the grant; the permit is lost
+                    log.debug("Waiter on key {} gave up before its grant", key);
+                }
+            }
+        }
+
+        /**
+         * Drops abandoned waiters and returns the head, or retires this queue if none are left.
+         */
+        private CompletableFuture<RateLimitResult> nextLiveWaiter() {
+            lock.lock();
+            try {
+                CompletableFuture<RateLimitResult> head;
+                while ((head = queue.peekFirst()) != null && head.isDone()) {
+                    queue.pollFirst();
+                }
+                if (head == null) {
+                    scheduled = false;
+                    retired = true;
+                    ConcurrentHashMap<String, KeyWaiters> policyWaiters = waiters.get(policy);
+                    if (policyWaiters != null) {
+                        policyWaiters.remove(key, this);
+                    }
+                }
+                return head;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
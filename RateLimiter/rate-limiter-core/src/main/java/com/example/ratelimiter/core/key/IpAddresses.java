@@ -0,0 +1,244 @@
+package com.example.ratelimiter.core.key;
+
+/**
+ * Allocation-free parsing of textual IP addresses and {@code X-Forwarded-For} headers.
+ * <p>
+ * Addresses are parsed into two longs: an IPv4 address is the low 32 bits of {@code out[1]} with
+ * {@code out[0]} zero, an IPv6 address is its high and low 64 bits. IPv4-mapped IPv6 addresses
+ * ({@code ::ffff:a.b.c.d}) parse as IPv4, so both spellings of a client give the same key.
+ */
+public final class IpAddresses {
+
+    /**
+     * Not a valid address.
+     */
+    public static final int INVALID = 0;
+
+    public static final int IPV4 = 4;
+
+    public static final int IPV6 = 6;
+
+    private IpAddresses() {
+    }
+
+    /**
+     * Parses {@code text[start, end)} as an IPv4 or IPv6 address. Surrounding brackets are allowed
+     * around IPv6 addresses, and a trailing port after an IPv4 address or a bracketed IPv6 address
+     * is ignored.
+     *
+     * @param out receives the address, see the class documentation
+     * @return {@link #IPV4}, {@link #IPV6} or {@link #INVALID}
+     */
+    public static int parse(CharSequence text, int start, int end, long[] out) {
+        if (start >= end) {
+            return INVALID;
+        }
+        if (text.charAt(start) == '[') {
+            int close = indexOf(text, ']', start, end);
+            if (close < 0 || (close + 1 < end && text.charAt(close + 1) != ':')) {
+                return INVALID;
+            }
+            return parseIpv6(text, start + 1, close, out) ? normalize(out) : INVALID;
+        }
+
+        int firstColon = indexOf(text, ':', start, end);
+        if (firstColon < 0 || indexOf(text, ':', firstColon + 1, end) < 0) {
+            // IPv4, optionally with a port
+            int addressEnd = firstColon < 0 ? end : firstColon;
+            long address = parseIpv4(text, start, addressEnd);
+            if (address < 0) {
+                return INVALID;
+            }
+            out[0] = 0;
+            out[1] = address;
+            return IPV4;
+        }
+        return parseIpv6(text, start, end, out) ? normalize(out) : INVALID;
+    }
+
+    /**
+     * Parses the client address of an {@code X-Forwarded-For} header: its first, left-most entry.
+     *
+     * @param bounds receives the start and end index of the trimmed first entry, so callers can
+     *               use the raw text when it is not an address (e.g. {@code unknown})
+     * @return the address family as for {@link #parse}; {@link #INVALID} for an empty header
+     */
+    public static int parseForwardedFor(CharSequence header, long[] out, int[] bounds) {
+        int end = indexOf(header, ',', 0, header.length());
+        if (end < 0) {
+            end = header.length();
+        }
+        int start = 0;
+        while (start < end && header.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && header.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        bounds[0] = start;
+        bounds[1] = end;
+        return parse(header, start, end, out);
+    }
+
+    /**
+     * Appends the address parsed into {@code out} in its canonical text form.
+     */
+    public static void appendTo(KeyBuffer buffer, int family, long[] out) {
+        if (family == IPV4) {
+            buffer.appendIpv4((int) out[1]);
+        } else {
+            buffer.appendIpv6(out[0], out[1]);
+        }
+    }
+
+    /**
+     * @return the address as an unsigned 32-bit value, or -1 when invalid
+     */
+    private static long parseIpv4(CharSequence text, int start, int end) {
+        long address = 0;
+        int octets = 0;
+        int value = -1;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = value < 0 ? c - '0' : value * 10 + (c - '0');
+                if (value > 255) {
+                    return -1;
+                }
+            } else if (c == '.' && value >= 0 && octets < 3) {
+                address = (address << 8) | value;
+                octets++;
+                value = -1;
+            } else {
+                return -1;
+            }
+        }
+        if (value < 0 || octets != 3) {
+            return -1;
+        }
+        return (address << 8) | value;
+    }
+
+    /**
+     * Parses groups into two 128-bit registers, the groups before {@code ::} and those after it,
+     * and joins them with the compressed zero groups in between.
+     */
+    private static boolean parseIpv6(CharSequence text, int start, int end, long[] out) {
+        int percent = indexOf(text, '%', start, end);
+        if (percent >= 0) {
+            // Zone id, e.g. fe80::1%eth0
+            end = percent;
+        }
+
+        long headHigh = 0;
+        long headLow = 0;
+        long tailHigh = 0;
+        long tailLow = 0;
+        int headCount = 0;
+        int tailCount = 0;
+        boolean compressed = false;
+        int i = start;
+        if (end - start >= 2 && text.charAt(start) == ':' && text.charAt(start + 1) == ':') {
+            compressed = true;
+            i = start + 2;
+        } else if (start < end && text.charAt(start) == ':') {
+            return false;
+        }
+
+        while (i < end) {
+            int groupEnd = i;
+            int value = 0;
+            while (groupEnd < end && groupEnd - i < 4 && Character.digit(text.charAt(groupEnd), 16) >= 0) {
+                value = (value << 4) | Character.digit(text.charAt(groupEnd), 16);
+                groupEnd++;
+            }
+
+            int groups = 1;
+            long bits = value;
+            if (groupEnd < end && text.charAt(groupEnd) == '.') {
+                // Embedded IPv4 in the last 32 bits
+                long ipv4 = parseIpv4(text, i, end);
+                if (ipv4 < 0) {
+                    return false;
+                }
+                groups = 2;
+                bits = ipv4;
+                groupEnd = end;
+            } else if (groupEnd == i) {
+                return false;
+            }
+
+            if (headCount + tailCount + groups > 8) {
+                return false;
+            }
+            int shift = 16 * groups;
+            if (compressed) {
+                tailHigh = (tailHigh << shift) | (tailLow >>> (64 - shift));
+                tailLow = (tailLow << shift) | bits;
+                tailCount += groups;
+            } else {
+                headHigh = (headHigh << shift) | (headLow >>> (64 - shift));
+                headLow = (headLow << shift) | bits;
+                headCount += groups;
+            }
+
+            i = groupEnd;
+            if (i == end) {
+                break;
+            }
+            if (text.charAt(i) != ':') {
+                return false;
+            }
+            i++;
+            if (i < end && text.charAt(i) == ':') {
+                if (compressed) {
+                    return false;
+                }
+                compressed = true;
+                i++;
+            } else if (i == end) {
+                return false;
+            }
+        }
+
+        int count = headCount + tailCount;
+        if (compressed ? count > 7 : count != 8) {
+            return false;
+        }
+        // Move the head groups to the top; the tail groups are already at the bottom
+        int shift = 16 * (8 - headCount);
+        if (shift >= 128) {
+            headHigh = 0;
+            headLow = 0;
+        } else if (shift >= 64) {
+            headHigh = headLow << (shift - 64);
+            headLow = 0;
+        } else if (shift > 0) {
+            headHigh = (headHigh << shift) | (headLow >>> (64 - shift));
+            headLow = headLow << shift;
+        }
+        out[0] = headHigh | tailHigh;
+        out[1] = headLow | tailLow;
+        return true;
+    }
+
+    /**
+     * Reports IPv4-mapped IPv6 addresses as IPv4.
+     */
+    private static int normalize(long[] out) {
+        if (out[0] == 0 && (out[1] >>> 32) == 0xffffL) {
+            out[1] &= 0xffffffffL;
+            return IPV4;
+        }
+        return IPV6;
+    }
+
+    private static int indexOf(CharSequence text, char c, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,228 @@
+package com.example.ratelimiter.core.key;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reusable, growable byte buffer a rate limit key is written into, as UTF-8.
+ * <p>
+ * Appending does not allocate once the buffer has grown to the longest key written, and the content
+ * can be hashed to 64 or 128 bits without building a String. Instances are not thread-safe; keep
+ * one per thread.
+ */
+public final class KeyBuffer {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final long SECOND_LANE_SEED = 0x9e3779b97f4a7c15L;
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private byte[] bytes;
+    private int length;
+
+    public KeyBuffer() {
+        this(64);
+    }
+
+    public KeyBuffer(int initialCapacity) {
+        if (initialCapacity <= 0) {
+            throw new IllegalArgumentException("initialCapacity must be greater than 0");
+        }
+        this.bytes = new byte[initialCapacity];
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public KeyBuffer reset() {
+        length = 0;
+        return this;
+    }
+
+    public KeyBuffer append(byte b) {
+        ensureCapacity(1);
+        bytes[length++] = b;
+        return this;
+    }
+
+    public KeyBuffer append(char c) {
+        if (c < 0x80) {
+            return append((byte) c);
+        }
+        ensureCapacity(3);
+        if (c < 0x800) {
+            bytes[length++] = (byte) (0xc0 | (c >> 6));
+        } else {
+            bytes[length++] = (byte) (0xe0 | (c >> 12));
+            bytes[length++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+        }
+        bytes[length++] = (byte) (0x80 | (c & 0x3f));
+        return this;
+    }
+
+    public KeyBuffer append(CharSequence text) {
+        return append(text, 0, text.length());
+    }
+
+    /**
+     * Appends {@code text[start, end)} encoded as UTF-8; unpaired surrogates become {@code ?}.
+     */
+    public KeyBuffer append(CharSequence text, int start, int end) {
+        ensureCapacity(end - start);
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                ensureCapacity(1);
+                bytes[length++] = (byte) c;
+            } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                ensureCapacity(4);
+                bytes[length++] = (byte) (0xf0 | (codePoint >> 18));
+                bytes[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                bytes[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                bytes[length++] = (byte) (0x80 | (codePoint & 0x3f));
+            } else if (Character.isSurrogate(c)) {
+                append('?');
+            } else {
+                append(c);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Appends the decimal digits of the value.
+     */
+    public KeyBuffer appendDecimal(long value) {
+        if (value == Long.MIN_VALUE) {
+            return append("-9223372036854775808");
+        }
+        if (value < 0) {
+            append('-');
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        ensureCapacity(digits);
+        for (int i = length + digits - 1; i >= length; i--) {
+            bytes[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        length += digits;
+        return this;
+    }
+
+    /**
+     * Appends an IPv4 address in dotted-decimal form.
+     */
+    public KeyBuffer appendIpv4(int address) {
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            appendDecimal((address >>> shift) & 0xff);
+            if (shift > 0) {
+                append('.');
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Appends an IPv6 address in the canonical form of RFC 5952: lower-case hex groups without
+     * leading zeros, and the longest run of two or more zero groups (the first, on a tie)
+     * compressed to {@code ::}.
+     */
+    public KeyBuffer appendIpv6(long high, long low) {
+        int runStart = -1;
+        int runLength = 1;
+        for (int group = 0, zeros = 0; group < 8; group++) {
+            zeros = ipv6Group(high, low, group) == 0 ? zeros + 1 : 0;
+            if (zeros > runLength) {
+                runStart = group - zeros + 1;
+                runLength = zeros;
+            }
+        }
+
+        for (int group = 0; group < 8; group++) {
+            if (group == runStart) {
+                append(group == 0 ? "::" : ":");
+                group += runLength - 1;
+                continue;
+            }
+            int value = ipv6Group(high, low, group);
+            boolean started = false;
+            for (int shift = 12; shift >= 0; shift -= 4) {
+                int nibble = (value >>> shift) & 0xf;
+                if (started || nibble != 0 || shift == 0) {
+                    append(HEX[nibble]);
+                    started = true;
+                }
+            }
+            if (group < 7) {
+                append(':');
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 64-bit hash of the content (FNV-1a with a final avalanche).
+     */
+    public long hash64() {
+        return hash(FNV_OFFSET);
+    }
+
+    /**
+     * 128-bit hash of the content: two independently seeded 64-bit lanes.
+     *
+     * @param out receives the high lane at index 0 and the low lane at index 1
+     */
+    public void hash128(long[] out) {
+        out[0] = hash(FNV_OFFSET);
+        out[1] = hash(FNV_OFFSET ^ SECOND_LANE_SEED);
+    }
+
+    /**
+     * Whether the content equals the given bytes.
+     */
+    public boolean contentEquals(byte[] other) {
+        return Arrays.equals(bytes, 0, length, other, 0, other.length);
+    }
+
+    /**
+     * A copy of the content.
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(bytes, length);
+    }
+
+    @Override
+    public String toString() {
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private long hash(long seed) {
+        long hash = seed;
+        for (int i = 0; i < length; i++) {
+            hash ^= bytes[i] & 0xff;
+            hash *= FNV_PRIME;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static int ipv6Group(long high, long low, int group) {
+        long half = group < 4 ? high : low;
+        return (int) (half >>> (48 - 16 * (group & 3))) & 0xffff;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+        }
+    }
+}
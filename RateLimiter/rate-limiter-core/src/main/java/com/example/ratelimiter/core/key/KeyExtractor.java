@@ -0,0 +1,16 @@
+package com.example.ratelimiter.core.key;
+
+/**
+ * Writes one component of a rate limit key, taken from the request context, into a {@link KeyBuffer}.
+ * Implementations should append without allocating.
+ *
+ * @param <C> the request context type
+ */
+@FunctionalInterface
+public interface KeyExtractor<C> {
+
+    /**
+     * Appends this component of the key for the given context.
+     */
+    void appendTo(C context, KeyBuffer buffer);
+}
@@ -0,0 +1,104 @@
+package com.example.ratelimiter.core.key;
+
+import java.security.Principal;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Typed {@link KeyExtractor}s for the usual key components. None of them allocate per call, provided
+ * the given accessor functions do not.
+ */
+public final class KeyExtractors {
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private KeyExtractors() {
+    }
+
+    /**
+     * A constant component, e.g. a namespace like {@code ip}.
+     */
+    public static <C> KeyExtractor<C> literal(String text) {
+        Objects.requireNonNull(text, "Text cannot be null");
+        return (context, buffer) -> buffer.append(text);
+    }
+
+    /**
+     * A header or other text value, or {@code fallback} when absent or empty.
+     */
+    public static <C> KeyExtractor<C> header(Function<C, ? extends CharSequence> header, String fallback) {
+        Objects.requireNonNull(header, "Header accessor cannot be null");
+        Objects.requireNonNull(fallback, "Fallback cannot be null");
+        return (context, buffer) -> {
+            CharSequence value = header.apply(context);
+            buffer.append(value != null && value.length() > 0 ? value : fallback);
+        };
+    }
+
+    /**
+     * The name of the authenticated principal, or {@code fallback} when unauthenticated.
+     */
+    public static <C> KeyExtractor<C> principal(Function<C, ? extends Principal> principal, String fallback) {
+        Objects.requireNonNull(principal, "Principal accessor cannot be null");
+        Objects.requireNonNull(fallback, "Fallback cannot be null");
+        return (context, buffer) -> {
+            Principal value = principal.apply(context);
+            String name = value != null ? value.getName() : null;
+            buffer.append(name != null ? name : fallback);
+        };
+    }
+
+    /**
+     * A textual IP address, written in canonical form so different spellings of one client give
+     * the same key; text that is not an address is written as is, absent text as {@code fallback}.
+     */
+    public static <C> KeyExtractor<C> ip(Function<C, ? extends CharSequence> address, String fallback) {
+        Objects.requireNonNull(address, "Address accessor cannot be null");
+        Objects.requireNonNull(fallback, "Fallback cannot be null");
+        return (context, buffer) -> {
+            CharSequence value = address.apply(context);
+            if (value == null || value.length() == 0) {
+                buffer.append(fallback);
+                return;
+            }
+            long[] parsed = SCRATCH.get().address;
+            int family = IpAddresses.parse(value, 0, value.length(), parsed);
+            if (family == IpAddresses.INVALID) {
+                buffer.append(value);
+            } else {
+                IpAddresses.appendTo(buffer, family, parsed);
+            }
+        };
+    }
+
+    /**
+     * The client address: the first {@code X-Forwarded-For} entry in canonical form, or, without
+     * that header, the {@code remote} component (e.g. the connection's peer address).
+     */
+    public static <C> KeyExtractor<C> forwardedFor(Function<C, ? extends CharSequence> forwardedFor,
+                                                   KeyExtractor<C> remote) {
+        Objects.requireNonNull(forwardedFor, "Forwarded-for accessor cannot be null");
+        Objects.requireNonNull(remote, "Remote extractor cannot be null");
+        return (context, buffer) -> {
+            CharSequence header = forwardedFor.apply(context);
+            if (header == null || header.length() == 0) {
+                remote.appendTo(context, buffer);
+                return;
+            }
+            Scratch scratch = SCRATCH.get();
+            int family = IpAddresses.parseForwardedFor(header, scratch.address, scratch.bounds);
+            if (family != IpAddresses.INVALID) {
+                IpAddresses.appendTo(buffer, family, scratch.address);
+            } else if (scratch.bounds[1] > scratch.bounds[0]) {
+                buffer.append(header, scratch.bounds[0], scratch.bounds[1]);
+            } else {
+                remote.appendTo(context, buffer);
+            }
+        };
+    }
+
+    private static final class Scratch {
+        final long[] address = new long[2];
+        final int[] bounds = new int[2];
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.ratelimiter.core.key;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded cache from key bytes to the String key, so a client seen before gets the same String
+ * instance without allocating.
+ * <p>
+ * A direct-mapped table indexed by the 64-bit hash of the bytes; each slot holds the last key that
+ * hashed to it, compared byte for byte on lookup, so a collision costs a new String but never returns
+ * the wrong key. Reusing String instances also lets their cached hash codes serve the per-key maps
+ * downstream.
+ */
+final class KeyInterner {
+
+    private final AtomicReferenceArray<Entry> slots;
+    private final int mask;
+
+    KeyInterner(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be greater than 0");
+        }
+        int size = Integer.highestOneBit(Math.min(capacity, 1 << 30) * 2 - 1);
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    String intern(KeyBuffer buffer, long hash) {
+        int slot = (int) (hash ^ (hash >>> 32)) & mask;
+        Entry entry = slots.get(slot);
+        if (entry != null && entry.hash == hash && buffer.contentEquals(entry.bytes)) {
+            return entry.key;
+        }
+        String key = buffer.toString();
+        slots.lazySet(slot, new Entry(hash, buffer.toByteArray(), key));
+        return key;
+    }
+
+    private record Entry(long hash, byte[] bytes, String key) {
+    }
+}
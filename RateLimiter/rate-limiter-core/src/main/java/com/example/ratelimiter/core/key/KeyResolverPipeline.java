@@ -0,0 +1,119 @@
+package com.example.ratelimiter.core.key;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Resolves rate limit keys by running {@link KeyExtractor}s into a per-thread {@link KeyBuffer},
+ * joined by a separator.
+ * <p>
+ * {@link #resolve} returns the key as a String through a bounded interner, so a key seen recently
+ * comes back as the same instance without allocating; {@link #hash64} and {@link #hash128} skip the
+ * String entirely for callers that key their own state by hash. Unlike
+ * {@link com.example.ratelimiter.core.api.RateLimitKeyResolver}, nothing here builds intermediate
+ * Strings, StringBuilders or split arrays.
+ * <pre>
+ * KeyResolverPipeline&lt;Request&gt; clientIp = KeyResolverPipeline.&lt;Request&gt;builder()
+ *         .add(KeyExtractors.literal("ip"))
+ *         .add(KeyExtractors.forwardedFor(r -&gt; r.header("X-Forwarded-For"), KeyExtractors.ip(Request::peer, "unknown")))
+ *         .build();
+ * </pre>
+ *
+ * @param <C> the request context type
+ */
+public final class KeyResolverPipeline<C> {
+
+    private static final int DEFAULT_INTERN_CAPACITY = 16_384;
+
+    private final KeyExtractor<C>[] extractors;
+    private final char separator;
+    private final KeyInterner interner;
+    private final ThreadLocal<KeyBuffer> buffers = ThreadLocal.withInitial(KeyBuffer::new);
+
+    @SuppressWarnings("unchecked")
+    private KeyResolverPipeline(Builder<C> builder) {
+        if (builder.extractors.isEmpty()) {
+            throw new IllegalArgumentException("extractors must not be empty");
+        }
+        this.extractors = builder.extractors.toArray(new KeyExtractor[0]);
+        this.separator = builder.separator;
+        this.interner = new KeyInterner(builder.internCapacity);
+    }
+
+    public static <C> Builder<C> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * Resolves the key of the context; recently seen keys are returned without allocating.
+     */
+    public String resolve(C context) {
+        KeyBuffer buffer = write(context);
+        return interner.intern(buffer, buffer.hash64());
+    }
+
+    /**
+     * 64-bit hash of the key of the context.
+     */
+    public long hash64(C context) {
+        return write(context).hash64();
+    }
+
+    /**
+     * 128-bit hash of the key of the context.
+     *
+     * @param out receives the hash, see {@link KeyBuffer#hash128}
+     */
+    public void hash128(C context, long[] out) {
+        write(context).hash128(out);
+    }
+
+    /**
+     * Writes the key of the context into this thread's buffer, valid until the next call on this thread.
+     */
+    public KeyBuffer write(C context) {
+        KeyBuffer buffer = buffers.get().reset();
+        for (int i = 0; i < extractors.length; i++) {
+            if (i > 0) {
+                buffer.append(separator);
+            }
+            extractors[i].appendTo(context, buffer);
+        }
+        return buffer;
+    }
+
+    public static class Builder<C> {
+        private final List<KeyExtractor<C>> extractors = new ArrayList<>();
+        private char separator = ':';
+        private int internCapacity = DEFAULT_INTERN_CAPACITY;
+
+        /**
+         * Appends a key component.
+         */
+        public Builder<C> add(KeyExtractor<C> extractor) {
+            extractors.add(Objects.requireNonNull(extractor, "Extractor cannot be null"));
+            return this;
+        }
+
+        /**
+         * Separator written between components. Default {@code :}.
+         */
+        public Builder<C> separator(char separator) {
+            this.separator = separator;
+            return this;
+        }
+
+        /**
+         * Number of recently resolved keys kept for reuse. Default 16384.
+         */
+        public Builder<C> internCapacity(int internCapacity) {
+            this.internCapacity = internCapacity;
+            return this;
+        }
+
+        public KeyResolverPipeline<C> build() {
+            return new KeyResolverPipeline<>(this);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.ratelimiter.core.metrics;
+
+import com.example.ratelimiter.core.api.RateLimitAlgorithm;
+import com.example.ratelimiter.core.failure.FailureMode;
+
+/**
+ * Instrumentation hooks for rate limiters, stores and integrations.
+ * <p>
+ * Called on the decision hot path, so implementations must be thread-safe, must not block and
+ * should not allocate per call (e.g. pre-register one counter per tag combination and index it
+ * by enum ordinal). All methods default to no-ops, so implementations override only what they record.
+ */
+public interface RateLimiterMetrics {
+
+    /**
+     * Records nothing.
+     */
+    RateLimiterMetrics NOOP = new RateLimiterMetrics() {
+    };
+
+    /**
+     * Records a decision made by the store.
+     *
+     * @param algorithm the algorithm of the policy applied
+     * @param allowed whether the request was allowed
+     */
+    default void recordDecision(RateLimitAlgorithm algorithm, boolean allowed) {
+    }
+
+    /**
+     * Records a request denied from the local denial cache of a hot key, without a store call.
+     *
+     * @param algorithm the algorithm of the policy applied
+     */
+    default void recordCachedDenial(RateLimitAlgorithm algorithm) {
+    }
+
+    /**
+     * Records a decision made by the failure mode because the store failed.
+     *
+     * @param algorithm the algorithm of the policy applied
+     * @param failureMode the failure mode that decided
+     */
+    default void recordFailure(RateLimitAlgorithm algorithm, FailureMode failureMode) {
+    }
+
+    /**
+     * Records the latency of a store operation, including any time waiting for a connection.
+     *
+     * @param operation the store operation
+     * @param nanos elapsed time in nanoseconds
+     */
+    default void recordStoreLatency(StoreOperation operation, long nanos) {
+    }
+
+    /**
+     * Records the time spent waiting for a pooled store connection.
+     *
+     * @param nanos elapsed time in nanoseconds
+     */
+    default void recordPoolWait(long nanos) {
+    }
+
+    /**
+     * Records the latency a gateway filter added to a request before forwarding or rejecting it.
+     *
+     * @param nanos elapsed time in nanoseconds
+     */
+    default void recordFilterLatency(long nanos) {
+    }
+}
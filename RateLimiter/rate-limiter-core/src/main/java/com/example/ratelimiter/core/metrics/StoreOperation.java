@@ -0,0 +1,27 @@
+package com.example.ratelimiter.core.metrics;
+
+/**
+ * Store operations whose latency is recorded by {@link RateLimiterMetrics#recordStoreLatency}.
+ */
+public enum StoreOperation {
+
+    /**
+     * A built-in or raw script: one rate limit decision.
+     */
+    SCRIPT,
+
+    /**
+     * An all-or-nothing batch of built-in scripts.
+     */
+    BATCH,
+
+    INCREMENT,
+
+    GET,
+
+    SET,
+
+    DELETE,
+
+    MULTI_GET
+}
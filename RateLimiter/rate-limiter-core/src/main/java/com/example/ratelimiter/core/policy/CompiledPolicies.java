@@ -0,0 +1,182 @@
+package com.example.ratelimiter.core.policy;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Immutable lookup structure compiled from an ordered rule list; the first matching rule wins.
+ * <p>
+ * Each rule is indexed by its most selective criterion: rules with a path in a segment trie, rules
+ * with a header (and no path) in a hash index by header name and value, rules with only a key
+ * prefix in a character trie. A lookup walks the path trie and key trie once each and probes one
+ * hash entry per indexed header name, so its cost depends on the path and key lengths, not on the
+ * number of rules. Candidates are then checked against their remaining criteria.
+ */
+final class CompiledPolicies {
+
+    static final CompiledPolicies EMPTY = new CompiledPolicies(List.of());
+
+    private static final int NONE = Integer.MAX_VALUE;
+
+    private final List<PolicyRule> rules;
+    private final PathNode pathRoot = new PathNode();
+    private final Map<String, Map<String, List<Integer>>> headerIndex = new HashMap<>();
+    private final KeyNode keyRoot = new KeyNode();
+    private int catchAll = NONE;
+
+    CompiledPolicies(List<PolicyRule> rules) {
+        this.rules = List.copyOf(rules);
+        for (int i = 0; i < this.rules.size(); i++) {
+            PolicyRule rule = this.rules.get(i);
+            if (rule.getPath() != null) {
+                pathRoot.insert(rule.getPath(), i);
+            } else if (rule.getHeaderName() != null) {
+                headerIndex.computeIfAbsent(rule.getHeaderName(), name -> new HashMap<>())
+                        .computeIfAbsent(rule.getHeaderValue(), value -> new ArrayList<>())
+                        .add(i);
+            } else if (rule.getKeyPrefix() != null) {
+                keyRoot.insert(rule.getKeyPrefix(), i);
+            } else if (catchAll == NONE) {
+                catchAll = i;
+            }
+        }
+    }
+
+    List<PolicyRule> rules() {
+        return rules;
+    }
+
+    /**
+     * @return the first rule matching the request, or null
+     */
+    PolicyRule match(String key, String path, Function<String, String> headers) {
+        int best = catchAll;
+        if (path != null) {
+            best = pathRoot.match(path, 0, key, headers, best);
+        }
+        for (Map.Entry<String, Map<String, List<Integer>>> header : headerIndex.entrySet()) {
+            String value = headers.apply(header.getKey());
+            if (value != null) {
+                best = first(header.getValue().get(value), key, headers, best);
+            }
+        }
+        if (key != null) {
+            best = keyRoot.match(key, best);
+        }
+        return best == NONE ? null : rules.get(best);
+    }
+
+    /**
+     * The lowest rule index among {@code candidates} that matches and is below {@code best}.
+     */
+    private int first(List<Integer> candidates, String key, Function<String, String> headers, int best) {
+        if (candidates == null) {
+            return best;
+        }
+        for (int candidate : candidates) {
+            if (candidate >= best) {
+                break;
+            }
+            PolicyRule rule = rules.get(candidate);
+            if (rule.matchesHeader(headers) && rule.matchesKey(key)) {
+                return candidate;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Segment trie node; rules ending here match paths with exactly this many segments, tail rules
+     * ({@code **}) match any remaining segments.
+     */
+    private final class PathNode {
+
+        final Map<String, PathNode> literals = new HashMap<>();
+        PathNode wildcard;
+        final List<Integer> exact = new ArrayList<>();
+        final List<Integer> tail = new ArrayList<>();
+
+        void insert(String template, int rule) {
+            PathNode node = this;
+            for (String segment : template.split("/")) {
+                if (segment.isEmpty()) {
+                    continue;
+                }
+                if (segment.equals("**")) {
+                    node.tail.add(rule);
+                    return;
+                }
+                if (segment.equals("*") || (segment.startsWith("{") && segment.endsWith("}"))) {
+                    if (node.wildcard == null) {
+                        node.wildcard = new PathNode();
+                    }
+                    node = node.wildcard;
+                } else {
+                    node = node.literals.computeIfAbsent(segment, s -> new PathNode());
+                }
+            }
+            node.exact.add(rule);
+        }
+
+        /**
+         * Matches the path from offset {@code from}, trying literal and wildcard branches.
+         */
+        int match(String path, int from, String key, Function<String, String> headers, int best) {
+            best = first(tail, key, headers, best);
+
+            int start = from;
+            while (start < path.length() && path.charAt(start) == '/') {
+                start++;
+            }
+            if (start >= path.length()) {
+                return first(exact, key, headers, best);
+            }
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = path.length();
+            }
+
+            if (!literals.isEmpty()) {
+                PathNode literal = literals.get(path.substring(start, end));
+                if (literal != null) {
+                    best = literal.match(path, end, key, headers, best);
+                }
+            }
+            if (wildcard != null) {
+                best = wildcard.match(path, end, key, headers, best);
+            }
+            return best;
+        }
+    }
+
+    /**
+     * Character trie node of key prefixes.
+     */
+    private final class KeyNode {
+
+        final Map<Character, KeyNode> children = new HashMap<>();
+        final List<Integer> rules = new ArrayList<>();
+
+        void insert(String prefix, int rule) {
+            KeyNode node = this;
+            for (int i = 0; i < prefix.length(); i++) {
+                node = node.children.computeIfAbsent(prefix.charAt(i), c -> new KeyNode());
+            }
+            node.rules.add(rule);
+        }
+
+        int match(String key, int best) {
+            KeyNode node = this;
+            for (int i = 0; node != null; i++) {
+                if (!node.rules.isEmpty() && node.rules.get(0) < best) {
+                    best = node.rules.get(0);
+                }
+                node = i < key.length() ? node.children.get(key.charAt(i)) : null;
+            }
+            return best;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.ratelimiter.core.policy;
+
+import com.example.ratelimiter.core.api.RateLimitPolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Resolves the policy of each request from an ordered list of {@link PolicyRule}s; the first
+ * matching rule wins.
+ * <p>
+ * Rules are compiled into tries and hash indexes (see {@link CompiledPolicies}), so resolution does not
+ * scan the rule list. The compiled rules are an immutable snapshot behind a volatile reference:
+ * {@link #reload} compiles a new snapshot off to the side and swaps it in atomically, so requests
+ * never take a lock and always see either the old or the new rules in full.
+ */
+public class PolicyRegistry {
+
+    private static final Logger log = LoggerFactory.getLogger(PolicyRegistry.class);
+
+    private volatile CompiledPolicies snapshot = CompiledPolicies.EMPTY;
+
+    public PolicyRegistry() {
+    }
+
+    public PolicyRegistry(List<PolicyRule> rules) {
+        reload(rules);
+    }
+
+    /**
+     * Resolves the policy of a request.
+     *
+     * @param key the rate limit key, or null
+     * @param path the request path, or null
+     * @param headers looks up the first value of a request header by lower-case name; null if absent
+     * @return the policy of the first matching rule, or null if none matches
+     */
+    public RateLimitPolicy resolve(String key, String path, Function<String, String> headers) {
+        PolicyRule rule = resolveRule(key, path, headers);
+        return rule != null ? rule.getPolicy() : null;
+    }
+
+    /**
+     * Resolves the rule of a request. Apply its policy to the key suffixed with
+     * {@link PolicyRule#getStateSuffix()}, so every rule keeps its own state.
+     *
+     * @return the first matching rule, or null if none matches
+     */
+    public PolicyRule resolveRule(String key, String path, Function<String, String> headers) {
+        Objects.requireNonNull(headers, "Headers cannot be null");
+        return snapshot.match(key, path, headers);
+    }
+
+    /**
+     * Resolves the policy of a request, falling back to the given default.
+     */
+    public RateLimitPolicy resolve(String key, String path, Function<String, String> headers,
+                                   RateLimitPolicy defaultPolicy) {
+        RateLimitPolicy policy = resolve(key, path, headers);
+        return policy != null ? policy : defaultPolicy;
+    }
+
+    /**
+     * The rules of the current snapshot, in match order.
+     */
+    public List<PolicyRule> getRules() {
+        return snapshot.rules();
+    }
+
+    /**
+     * Atomically replaces all rules.
+     */
+    public void reload(List<PolicyRule> rules) {
+        Objects.requireNonNull(rules, "Rules cannot be null");
+        CompiledPolicies compiled = new CompiledPolicies(rules);
+        snapshot = compiled;
+        log.info("Loaded {} rate limit policy rules", compiled.rules().size());
+    }
+
+    /**
+     * Atomically replaces all rules with {@code baseRules} followed by the rules of the file,
+     * in the format read by {@link PolicyRules#parse}. On a read or parse error the current rules
+     * are kept.
+     *
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the file contains an invalid rule
+     */
+    public void reload(List<PolicyRule> baseRules, Path file) throws IOException {
+        List<PolicyRule> fileRules;
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            fileRules = PolicyRules.parse(reader);
+        }
+        reload(PolicyRules.concat(baseRules, fileRules));
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.ratelimiter.core.policy;
+
+import com.example.ratelimiter.core.api.RateLimitPolicy;
+
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * A rule selecting the policy of matching requests.
+ * <p>
+ * A rule matches when every criterion it sets matches; a rule without criteria matches every request:
+ * <ul>
+ *   <li>{@code path}: a path template of {@code /}-separated segments, each a literal, a single-segment
+ *       wildcard ({@code *} or {@code {name}}), or, as the last segment, {@code **} matching any remaining
+ *       segments (including none)</li>
+ *   <li>{@code header}: a request header with exactly the given value (names are case-insensitive)</li>
+ *   <li>{@code keyPrefix}: the rate limit key starts with the given prefix, e.g. {@code tenant:acme:}</li>
+ * </ul>
+ * Each rule keeps its own store state: callers append {@link #getStateSuffix()} to the key, so two rules
+ * with the same algorithm never read or write each other's counters.
+ */
+public final class PolicyRule {
+
+    private final String path;
+    private final String headerName;
+    private final String headerValue;
+    private final String keyPrefix;
+    private final RateLimitPolicy policy;
+    private final String stateSuffix;
+
+    private PolicyRule(Builder builder) {
+        if ((builder.headerName == null) != (builder.headerValue == null)) {
+            throw new IllegalArgumentException("header name and value must be set together");
+        }
+        if (builder.path != null) {
+            validatePath(builder.path);
+        }
+        this.path = builder.path;
+        this.headerName = builder.headerName != null ? builder.headerName.toLowerCase() : null;
+        this.headerValue = builder.headerValue;
+        this.keyPrefix = builder.keyPrefix;
+        this.policy = Objects.requireNonNull(builder.policy, "Policy cannot be null");
+        String criteria = criteria();
+        this.stateSuffix = ":" + (criteria.isEmpty() ? "*" : criteria) + ":" + stateSuffix(policy);
+    }
+
+    /**
+     * Suffix naming the state of a policy by its limit and window, e.g. {@code 10/1000ms}.
+     */
+    public static String stateSuffix(RateLimitPolicy policy) {
+        return policy.getLimit() + "/" + policy.getWindow().toMillis() + "ms";
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    /**
+     * Lower-cased header name, or null.
+     */
+    public String getHeaderName() {
+        return headerName;
+    }
+
+    public String getHeaderValue() {
+        return headerValue;
+    }
+
+    public String getKeyPrefix() {
+        return keyPrefix;
+    }
+
+    public RateLimitPolicy getPolicy() {
+        return policy;
+    }
+
+    /**
+     * Appended to the rate limit key of matching requests: the rule's criteria and its policy's limit
+     * and window, stable across reloads of an unchanged rule.
+     */
+    public String getStateSuffix() {
+        return stateSuffix;
+    }
+
+    boolean matchesHeader(Function<String, String> headers) {
+        return headerName == null || headerValue.equals(headers.apply(headerName));
+    }
+
+    boolean matchesKey(String key) {
+        return keyPrefix == null || (key != null && key.startsWith(keyPrefix));
+    }
+
+    private static void validatePath(String path) {
+        if (!path.startsWith("/")) {
+            throw new IllegalArgumentException("path must start with /: " + path);
+        }
+        int tail = path.indexOf("**");
+        if (tail >= 0 && (tail != path.length() - 2 || path.charAt(tail - 1) != '/')) {
+            throw new IllegalArgumentException("** must be the last path segment: " + path);
+        }
+    }
+
+    private String criteria() {
+        StringBuilder criteria = new StringBuilder();
+        if (path != null) {
+            criteria.append("path=").append(path).append(' ');
+        }
+        if (headerName != null) {
+            criteria.append("header=").append(headerName).append(':').append(headerValue).append(' ');
+        }
+        if (keyPrefix != null) {
+            criteria.append("key=").append(keyPrefix).append(' ');
+        }
+        return criteria.toString().trim();
+    }
+
+    @Override
+    public String toString() {
+        String criteria = criteria();
+        StringBuilder rule = new StringBuilder(criteria);
+        if (!criteria.isEmpty()) {
+            rule.append(' ');
+        }
+        return rule.append("limit=").append(policy.getLimit())
+                .append(" window=").append(policy.getWindow())
+                .append(" algorithm=").append(policy.getAlgorithm())
+                .toString();
+    }
+
+    public static class Builder {
+        private String path;
+        private String headerName;
+        private String headerValue;
+        private String keyPrefix;
+        private RateLimitPolicy policy;
+
+        public Builder path(String path) {
+            this.path = path;
+            return this;
+        }
+
+        public Builder header(String name, String value) {
+            this.headerName = name;
+            this.headerValue = value;
+            return this;
+        }
+
+        public Builder keyPrefix(String keyPrefix) {
+            this.keyPrefix = keyPrefix;
+            return this;
+        }
+
+        public Builder policy(RateLimitPolicy policy) {
+            this.policy = policy;
+            return this;
+        }
+
+        public PolicyRule build() {
+            return new PolicyRule(this);
+        }
+    }
+}
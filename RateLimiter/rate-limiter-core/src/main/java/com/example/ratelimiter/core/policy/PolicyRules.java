@@ -0,0 +1,102 @@
+package com.example.ratelimiter.core.policy;
+
+import com.example.ratelimiter.core.api.RateLimitAlgorithm;
+import com.example.ratelimiter.core.api.RateLimitPolicy;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads policy rules from text, one rule per line in match order:
+ * <pre>
+ * # comment
+ * path=/api/tenants/{tenant}/orders/** header=X-Plan:free limit=100 window=PT1M
+ * key=tenant:acme: limit=10000 window=PT1S algorithm=SLIDING_WINDOW_COUNTER
+ * limit=100 window=PT1M
+ * </pre>
+ * Fields are {@code name=value} pairs separated by whitespace: {@code path}, {@code header}
+ * ({@code Name:value}), {@code key} (key prefix), {@code limit}, {@code window} (ISO-8601 duration)
+ * and {@code algorithm} (default TOKEN_BUCKET). {@code limit} and {@code window} are required.
+ */
+public final class PolicyRules {
+
+    private PolicyRules() {
+    }
+
+    /**
+     * @throws IllegalArgumentException if a line is not a valid rule, naming the line
+     */
+    public static List<PolicyRule> parse(Reader reader) throws IOException {
+        BufferedReader lines = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        List<PolicyRule> rules = new ArrayList<>();
+        String line;
+        int number = 0;
+        while ((line = lines.readLine()) != null) {
+            number++;
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            try {
+                rules.add(parseRule(line));
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid policy rule on line " + number + ": " + e.getMessage(), e);
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * Parses a single rule in the line format.
+     */
+    public static PolicyRule parseRule(String line) {
+        PolicyRule.Builder rule = PolicyRule.builder();
+        RateLimitPolicy.Builder policy = RateLimitPolicy.builder();
+        boolean hasLimit = false;
+        boolean hasWindow = false;
+        for (String field : line.trim().split("\\s+")) {
+            int separator = field.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("expected name=value but got " + field);
+            }
+            String value = field.substring(separator + 1);
+            switch (field.substring(0, separator)) {
+                case "path" -> rule.path(value);
+                case "header" -> {
+                    int colon = value.indexOf(':');
+                    if (colon <= 0) {
+                        throw new IllegalArgumentException("header must be Name:value but got " + value);
+                    }
+                    rule.header(value.substring(0, colon), value.substring(colon + 1));
+                }
+                case "key" -> rule.keyPrefix(value);
+                case "limit" -> {
+                    policy.limit(Integer.parseInt(value));
+                    hasLimit = true;
+                }
+                case "window" -> {
+                    policy.window(Duration.parse(value));
+                    hasWindow = true;
+                }
+                case "algorithm" -> policy.algorithm(RateLimitAlgorithm.valueOf(value.toUpperCase()));
+                default -> throw new IllegalArgumentException("unknown field " + field.substring(0, separator));
+            }
+        }
+        if (!hasLimit || !hasWindow) {
+            throw new IllegalArgumentException("limit and window are required");
+        }
+        return rule.policy(policy.build()).build();
+    }
+
+    static List<PolicyRule> concat(List<PolicyRule> first, List<PolicyRule> second) {
+        List<PolicyRule> rules = new ArrayList<>(first.size() + second.size());
+        rules.addAll(first);
+        rules.addAll(second);
+        return rules;
+    }
+}
@@ -0,0 +1,845 @@
+package com.example.ratelimiter.core.store;
+
+import com.example.ratelimiter.core.api.RateLimitScript;
+import com.example.ratelimiter.core.api.RateLimitStore;
+import com.example.ratelimiter.core.api.TimeSource;
+import com.example.ratelimiter.core.time.MonotonicTimeSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * In-process implementation of RateLimitStore for single-node deployments.
+ * <p>
+ * Keys are spread over lock stripes; each stripe is an open-addressing table with
+ * primitive {@code long} value and expiry slots, so {@code increment}, {@code get} and
+ * {@code set} do not allocate once a key is present. Reads are optimistic and take no lock
+ * unless they race with a writer. Expired entries are ignored on access and reclaimed by an
+ * incremental background sweeper that visits a bounded number of slots per tick.
+ * Sliding window logs keep their timestamps in a per-key primitive {@code long} ring, and sliding
+ * window counters their window index in the value slot and both counts in a two-slot {@code long} array.
+ * <p>
+ * Expiry is measured on the store's {@link TimeSource}, a {@link MonotonicTimeSource} by default, so
+ * stepping the system clock does not expire or revive entries. Scripts passed
+ * {@link RateLimitScript#SERVER_TIME} decide on that clock as well.
+ */
+public class InMemoryRateLimitStore implements RateLimitStore {
+
+    private static final Logger log = LoggerFactory.getLogger(InMemoryRateLimitStore.class);
+
+    private static final int DEFAULT_STRIPE_CAPACITY = 64;
+    private static final Duration DEFAULT_SWEEP_INTERVAL = Duration.ofMillis(100);
+    private static final int SWEEP_SLOTS_PER_TICK = 4096;
+    private static final int LOG_HEADER = 3;
+    private static final int INITIAL_LOG_CAPACITY = 8;
+    // Largest ring that still fits a Java array with its header
+    private static final int MAX_LOG_CAPACITY = Integer.MAX_VALUE - 8 - LOG_HEADER;
+
+    private final Stripe[] stripes;
+    private final TimeSource timeSource;
+    private final int stripeMask;
+    private final ScheduledExecutorService sweeper;
+    private int sweepStripe;
+    private int sweepCursor;
+
+    public InMemoryRateLimitStore() {
+        this(Runtime.getRuntime().availableProcessors() * 4, DEFAULT_STRIPE_CAPACITY, DEFAULT_SWEEP_INTERVAL);
+    }
+
+    public InMemoryRateLimitStore(int concurrency, int initialStripeCapacity, Duration sweepInterval) {
+        this(concurrency, initialStripeCapacity, sweepInterval, new MonotonicTimeSource());
+    }
+
+    public InMemoryRateLimitStore(int concurrency, int initialStripeCapacity, Duration sweepInterval,
+                                  TimeSource timeSource) {
+        if (concurrency <= 0 || initialStripeCapacity <= 0) {
+            throw new IllegalArgumentException("concurrency and initialStripeCapacity must be greater than 0");
+        }
+        Objects.requireNonNull(sweepInterval, "Sweep interval cannot be null");
+        this.timeSource = Objects.requireNonNull(timeSource, "Time source cannot be null");
+
+        int stripeCount = Integer.highestOneBit(concurrency - 1) << 1;
+        this.stripes = new Stripe[Math.max(1, stripeCount)];
+        this.stripeMask = stripes.length - 1;
+        int capacity = Math.max(4, Integer.highestOneBit(initialStripeCapacity - 1) << 1);
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe(capacity);
+        }
+
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "rate-limiter-store-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = Math.max(1, sweepInterval.toMillis());
+        sweeper.scheduleWithFixedDelay(this::sweep, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public long increment(String key, Duration ttl) {
+        long ttlMillis = ttlMillis(ttl);
+        int hash = hash(key);
+        Stripe stripe = stripeFor(hash);
+        long now = timeSource.currentTimeMillis();
+        long stamp = stripe.lock.writeLock();
+        try {
+            int index = stripe.indexOf(key, hash, now);
+            if (index < 0) {
+                index = stripe.insert(key, hash);
+                stripe.write(index, 1, expiry(now, ttlMillis));
+                return 1;
+            }
+            return ++stripe.table.values[index];
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public long get(String key) {
+        int hash = hash(key);
+        Stripe stripe = stripeFor(hash);
+        long now = timeSource.currentTimeMillis();
+
+        long stamp = stripe.lock.tryOptimisticRead();
+        if (stamp != 0) {
+            long value = stripe.read(key, hash, now);
+            if (stripe.lock.validate(stamp)) {
+                return value;
+            }
+        }
+
+        stamp = stripe.lock.readLock();
+        try {
+            return stripe.read(key, hash, now);
+        } finally {
+            stripe.lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void set(String key, long value, Duration ttl) {
+        long ttlMillis = ttlMillis(ttl);
+        int hash = hash(key);
+        Stripe stripe = stripeFor(hash);
+        long now = timeSource.currentTimeMillis();
+        long stamp = stripe.lock.writeLock();
+        try {
+            stripe.write(key, hash, value, expiry(now, ttlMillis), now);
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean delete(String key) {
+        int hash = hash(key);
+        Stripe stripe = stripeFor(hash);
+        long now = timeSource.currentTimeMillis();
+        long stamp = stripe.lock.writeLock();
+        try {
+            int index = stripe.indexOf(key, hash, now);
+            if (index < 0) {
+                return false;
+            }
+            stripe.remove(index);
+            return true;
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Object executeScript(String script, String[] keys, String[] args) {
+        throw new UnsupportedOperationException("In-memory store does not evaluate Lua scripts");
+    }
+
+    @Override
+    public long[] executeScript(RateLimitScript script, String[] keys, long... args) {
+        long[] reply = new long[3];
+        executeScriptInto(script, keys, args, reply);
+        return reply;
+    }
+
+    /**
+     * Runs the script under the lock of its key's stripe without allocating.
+     */
+    @Override
+    public void executeScriptInto(RateLimitScript script, String[] keys, long[] args, long[] reply) {
+        int hash = hash(keys[0]);
+        Stripe stripe = stripeFor(hash);
+        long stamp = stripe.lock.writeLock();
+        try {
+            run(script, keys[0], hash, args, reply);
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Runs all entries under the locks of every involved stripe. If any entry is denied,
+     * the previous state of every touched key is restored before the locks are released.
+     */
+    @Override
+    public long[][] executeBatch(RateLimitScript[] scripts, String[][] keys, long[][] args) {
+        int keyCount = 0;
+        int[][] hashes = new int[keys.length][];
+        for (int i = 0; i < keys.length; i++) {
+            hashes[i] = new int[keys[i].length];
+            for (int j = 0; j < keys[i].length; j++) {
+                hashes[i][j] = hash(keys[i][j]);
+            }
+            keyCount += keys[i].length;
+        }
+        int[] allHashes = new int[keyCount];
+        int position = 0;
+        for (int[] entryHashes : hashes) {
+            System.arraycopy(entryHashes, 0, allHashes, position, entryHashes.length);
+            position += entryHashes.length;
+        }
+
+        long[] stamps = lockAll(allHashes);
+        try {
+            long clock = timeSource.currentTimeMillis();
+            Snapshot[] snapshots = new Snapshot[keyCount];
+            position = 0;
+            for (int i = 0; i < keys.length; i++) {
+                for (int j = 0; j < keys[i].length; j++) {
+                    snapshots[position++] = new Snapshot(stripeFor(hashes[i][j]), keys[i][j], hashes[i][j], clock);
+                }
+            }
+
+            long[][] replies = new long[scripts.length][];
+            boolean allowed = true;
+            for (int i = 0; i < scripts.length; i++) {
+                replies[i] = new long[3];
+                run(scripts[i], keys[i][0], hashes[i][0], args[i], replies[i]);
+                allowed &= replies[i][0] > 0;
+            }
+
+            if (!allowed) {
+                for (int i = snapshots.length - 1; i >= 0; i--) {
+                    snapshots[i].restore(clock);
+                }
+            }
+            return replies;
+        } finally {
+            unlockAll(stamps);
+        }
+    }
+
+    @Override
+    public Map<String, Long> multiGet(String... keys) {
+        Map<String, Long> result = new HashMap<>();
+        for (String key : keys) {
+            result.put(key, get(key));
+        }
+        return result;
+    }
+
+    @Override
+    public boolean isHealthy() {
+        return !sweeper.isShutdown();
+    }
+
+    public void close() {
+        sweeper.shutdownNow();
+    }
+
+    /**
+     * Runs one built-in script; every built-in script uses a single key.
+     */
+    private void run(RateLimitScript script, String key, int hash, long[] args, long[] reply) {
+        switch (script) {
+            case TOKEN_BUCKET -> tokenBucket(key, hash, args, false, reply);
+            case TOKEN_LEASE -> tokenBucket(key, hash, args, true, reply);
+            case FIXED_WINDOW -> fixedWindow(key, hash, args, reply);
+            case SLIDING_WINDOW_LOG -> slidingWindowLog(key, hash, args, reply);
+            case SLIDING_WINDOW_COUNTER -> slidingWindowCounter(key, hash, args, reply);
+            case GCRA -> gcra(key, hash, args, reply);
+        }
+    }
+
+    /**
+     * The {@code now} script argument, or the store clock for {@link RateLimitScript#SERVER_TIME}.
+     */
+    private static long now(long argument, long clock) {
+        return argument == RateLimitScript.SERVER_TIME ? clock : argument;
+    }
+
+    private static void reply(long[] reply, long allowed, long remaining, long retryAfter) {
+        reply[0] = allowed;
+        reply[1] = remaining;
+        reply[2] = retryAfter;
+    }
+
+    /**
+     * Token bucket with the same semantics as {@code token_bucket.lua}, or {@code token_lease.lua}
+     * when {@code partial} grants up to the requested cost. The time at which the bucket was empty
+     * is kept as raw double bits in the long slot.
+     */
+    private void tokenBucket(String key, int hash, long[] args, boolean partial, long[] reply) {
+        long capacity = args[0];
+        long refillPeriod = args[1];
+        long cost = args[3];
+        long ttl = args[4];
+
+        long clock = timeSource.currentTimeMillis();
+        long now = now(args[2], clock);
+        Stripe stripe = stripeFor(hash);
+        int index = stripe.indexOf(key, hash, clock);
+
+        double tokens = capacity;
+        if (index >= 0) {
+            double emptyAt = Double.longBitsToDouble(stripe.value(index));
+            tokens = Math.max(0, Math.min(capacity, (now - emptyAt) * capacity / refillPeriod));
+        }
+
+        if (partial) {
+            cost = Math.min(cost, (long) Math.floor(tokens));
+            if (cost < 1) {
+                reply(reply, 0, 0, (long) Math.ceil((1 - tokens) * refillPeriod / capacity));
+                return;
+            }
+        }
+
+        if (tokens >= cost) {
+            tokens -= cost;
+            double emptyAt = now - tokens * refillPeriod / capacity;
+            stripe.write(key, hash, Double.doubleToRawLongBits(emptyAt), expiry(clock, ttl), clock);
+            reply(reply, partial ? cost : 1, (long) Math.floor(tokens), 0);
+            return;
+        }
+
+        long retryAfter = (long) Math.ceil((cost - tokens) * refillPeriod / capacity);
+        reply(reply, 0, (long) Math.floor(tokens), retryAfter);
+    }
+
+    /**
+     * Fixed window with the same semantics as {@code fixed_window.lua}. The long slot holds the
+     * window index and a one-element log array the count, reused from window to window.
+     */
+    private void fixedWindow(String key, int hash, long[] args, long[] reply) {
+        long limit = args[0];
+        long window = args[1];
+        long cost = args[3];
+
+        long clock = timeSource.currentTimeMillis();
+        long now = now(args[2], clock);
+        long windowIndex = now / window;
+        long windowLeft = window - now % window;
+
+        Stripe stripe = stripeFor(hash);
+        int index = stripe.indexOf(key, hash, clock);
+        long[] counts = index >= 0 ? stripe.log(index) : null;
+        long count = 0;
+        if (counts != null && counts.length == 1) {
+            long stored = stripe.value(index);
+            if (stored > windowIndex) {
+                // A caller whose clock is ahead already moved the window on: count into it rather than go back
+                windowIndex = stored;
+                windowLeft = (windowIndex + 1) * window - now;
+            }
+            if (stored == windowIndex) {
+                count = counts[0];
+            }
+        }
+
+        if (count + cost <= limit) {
+            if (index < 0) {
+                index = stripe.insert(key, hash);
+            }
+            if (counts == null || counts.length != 1) {
+                counts = new long[1];
+                stripe.log(index, counts);
+            }
+            counts[0] = count + cost;
+            // Kept one window longer, so a clock that lags the window's end still finds its count
+            stripe.write(index, windowIndex, expiry(clock, windowLeft + window));
+            reply(reply, 1, limit - count - cost, 0);
+            return;
+        }
+
+        reply(reply, 0, Math.max(0, limit - count), windowLeft);
+    }
+
+    /**
+     * Sliding window log with the same semantics as {@code sliding_window_log.lua}.
+     * The ring is laid out as {@code [head, count, limit, t0, t1, ...]}; it starts small and doubles
+     * as the log fills, up to {@code limit} timestamps, so a generous limit costs nothing until used.
+     * A limit beyond the largest ring a Java array can hold admits at most that many requests.
+     */
+    private void slidingWindowLog(String key, int hash, long[] args, long[] reply) {
+        long limit = args[0];
+        int maxCapacity = (int) Math.max(0, Math.min(limit, MAX_LOG_CAPACITY));
+        long window = args[1];
+        long cost = args[3];
+
+        long clock = timeSource.currentTimeMillis();
+        long now = now(args[2], clock);
+        Stripe stripe = stripeFor(hash);
+        int index = stripe.indexOf(key, hash, clock);
+        if (index < 0) {
+            index = stripe.insert(key, hash);
+        }
+        long[] ring = stripe.log(index);
+        if (ring == null || ring.length < LOG_HEADER || ring[2] != limit) {
+            ring = new long[LOG_HEADER + Math.min(maxCapacity, INITIAL_LOG_CAPACITY)];
+            ring[2] = limit;
+            stripe.log(index, ring);
+        }
+
+        int capacity = ring.length - LOG_HEADER;
+        int head = (int) ring[0];
+        int count = (int) ring[1];
+        while (count > 0 && ring[LOG_HEADER + head] <= now - window) {
+            head = (head + 1) % capacity;
+            count--;
+        }
+
+        if (count + cost <= maxCapacity) {
+            if (count + cost > capacity) {
+                ring = growLog(ring, head, count, (int) Math.min(maxCapacity, Math.max(2L * capacity, count + cost)));
+                stripe.log(index, ring);
+                capacity = ring.length - LOG_HEADER;
+                head = 0;
+            }
+            for (int i = 0; i < cost; i++) {
+                ring[LOG_HEADER + (head + count) % capacity] = now;
+                count++;
+            }
+            reply(reply, 1, limit - count, 0);
+        } else if (cost > limit) {
+            reply(reply, 0, limit - count, window);
+        } else {
+            long needed = count + cost - maxCapacity;
+            long oldest = ring[LOG_HEADER + (int) ((head + needed - 1) % capacity)];
+            reply(reply, 0, limit - count, Math.max(1, oldest + window - now));
+        }
+
+        ring[0] = head;
+        ring[1] = count;
+        stripe.write(index, count, expiry(clock, window));
+    }
+
+    /**
+     * Copies the ring's timestamps, oldest first, into a ring with the given capacity.
+     */
+    private static long[] growLog(long[] ring, int head, int count, int capacity) {
+        int oldCapacity = ring.length - LOG_HEADER;
+        long[] grown = new long[LOG_HEADER + capacity];
+        grown[2] = ring[2];
+        for (int i = 0; i < count; i++) {
+            grown[LOG_HEADER + i] = ring[LOG_HEADER + (head + i) % oldCapacity];
+        }
+        return grown;
+    }
+
+    /**
+     * Sliding window counter with the same semantics as {@code sliding_window_counter.lua}.
+     * The current window index is kept in the long slot and the current and previous counts in a
+     * two-slot array, allocated once per key.
+     */
+    private void slidingWindowCounter(String key, int hash, long[] args, long[] reply) {
+        long limit = args[0];
+        long window = args[1];
+        long cost = args[3];
+
+        long clock = timeSource.currentTimeMillis();
+        long now = now(args[2], clock);
+        long windowIndex = now / window;
+        long elapsed = now % window;
+
+        Stripe stripe = stripeFor(hash);
+        int index = stripe.indexOf(key, hash, clock);
+        long[] counts = index >= 0 ? stripe.log(index) : null;
+        long current = 0;
+        long previous = 0;
+        if (counts != null && counts.length == 2) {
+            long stored = stripe.value(index);
+            if (stored > windowIndex) {
+                // A caller whose clock is ahead already moved the window on: count into it rather than go back
+                windowIndex = stored;
+                elapsed = 0;
+            }
+            if (stored == windowIndex) {
+                current = counts[0];
+                previous = counts[1];
+            } else if (stored == windowIndex - 1) {
+                previous = counts[0];
+            }
+        }
+
+        double estimated = (double) previous * (window - elapsed) / window + current;
+
+        if (estimated + cost <= limit) {
+            if (index < 0) {
+                index = stripe.insert(key, hash);
+            }
+            if (counts == null || counts.length != 2) {
+                counts = new long[2];
+                stripe.log(index, counts);
+            }
+            counts[0] = current + cost;
+            counts[1] = previous;
+            // Gone once it can no longer be the current or previous window
+            stripe.write(index, windowIndex, expiry(clock, (windowIndex + 2) * window - now));
+            reply(reply, 1, (long) Math.floor(limit - estimated - cost), 0);
+            return;
+        }
+
+        long retryAfter;
+        if (previous > 0 && current + cost <= limit) {
+            double targetElapsed = window - (double) (limit - current - cost) * window / previous;
+            retryAfter = (long) Math.ceil(targetElapsed - elapsed);
+        } else {
+            // This window alone is over: it becomes the previous one at the boundary, then decays
+            double targetElapsed = window - (double) (limit - cost) * window / current;
+            retryAfter = window - elapsed + (long) Math.ceil(targetElapsed);
+        }
+        reply(reply, 0, Math.max(0, (long) Math.floor(limit - estimated)), Math.max(1, retryAfter));
+    }
+
+    /**
+     * GCRA with the same semantics as {@code gcra.lua}.
+     * The theoretical arrival time is kept as raw double bits in the long slot.
+     */
+    private void gcra(String key, int hash, long[] args, long[] reply) {
+        long limit = args[0];
+        long window = args[1];
+        long cost = args[3];
+
+        long clock = timeSource.currentTimeMillis();
+        long now = now(args[2], clock);
+        Stripe stripe = stripeFor(hash);
+        int index = stripe.indexOf(key, hash, clock);
+        double emissionInterval = (double) window / limit;
+
+        double tat = index >= 0 ? Double.longBitsToDouble(stripe.value(index)) : now;
+        tat = Math.max(tat, now);
+
+        double newTat = tat + cost * emissionInterval;
+        double allowAt = newTat - window;
+        if (allowAt > now) {
+            long remaining = Math.max(0, (long) Math.floor((window - (tat - now)) / emissionInterval));
+            reply(reply, 0, remaining, (long) Math.ceil(allowAt - now));
+            return;
+        }
+
+        long ttl = Math.max(1, (long) Math.ceil(newTat - now));
+        stripe.write(key, hash, Double.doubleToRawLongBits(newTat), expiry(clock, ttl), clock);
+        reply(reply, 1, (long) Math.floor((window - (newTat - now)) / emissionInterval), 0);
+    }
+
+    /**
+     * Write-locks the stripes of all given hashes in stripe order to avoid deadlocks.
+     * The returned array holds one stamp per stripe (0 where the stripe was not locked).
+     */
+    private long[] lockAll(int[] hashes) {
+        long[] stamps = new long[stripes.length];
+        int previous = -1;
+        while (true) {
+            int next = Integer.MAX_VALUE;
+            for (int hash : hashes) {
+                int index = hash & stripeMask;
+                if (index > previous && index < next) {
+                    next = index;
+                }
+            }
+            if (next == Integer.MAX_VALUE) {
+                return stamps;
+            }
+            stamps[next] = stripes[next].lock.writeLock();
+            previous = next;
+        }
+    }
+
+    private void unlockAll(long[] stamps) {
+        for (int i = stamps.length - 1; i >= 0; i--) {
+            if (stamps[i] != 0) {
+                stripes[i].lock.unlockWrite(stamps[i]);
+            }
+        }
+    }
+
+    /**
+     * Visits a bounded window of slots and reclaims expired entries, one stripe at a time.
+     */
+    private void sweep() {
+        try {
+            Stripe stripe = stripes[sweepStripe];
+            long now = timeSource.currentTimeMillis();
+            long stamp = stripe.lock.writeLock();
+            try {
+                sweepCursor = stripe.sweep(sweepCursor, SWEEP_SLOTS_PER_TICK, now);
+            } finally {
+                stripe.lock.unlockWrite(stamp);
+            }
+            if (sweepCursor == 0) {
+                sweepStripe = (sweepStripe + 1) & stripeMask;
+            }
+        } catch (RuntimeException e) {
+            log.warn("In-memory store sweep failed", e);
+        }
+    }
+
+    private Stripe stripeFor(int hash) {
+        return stripes[hash & stripeMask];
+    }
+
+    /**
+     * Rounds a TTL up to whole milliseconds, so a sub-millisecond TTL does not read as no expiry.
+     */
+    private static long ttlMillis(Duration ttl) {
+        if (ttl.isZero() || ttl.isNegative()) {
+            throw new IllegalArgumentException("ttl must be greater than 0");
+        }
+        return ttl.plusNanos(999_999).toMillis();
+    }
+
+    private static long expiry(long now, long ttlMillis) {
+        return ttlMillis > 0 ? now + ttlMillis : Long.MAX_VALUE;
+    }
+
+    private static int hash(String key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * State of one key before a batch, restored if the batch is denied. Caller holds the stripe lock.
+     */
+    private static final class Snapshot {
+
+        final Stripe stripe;
+        final String key;
+        final int hash;
+        final boolean present;
+        final long value;
+        final long expiresAt;
+        final long[] log;
+
+        Snapshot(Stripe stripe, String key, int hash, long now) {
+            this.stripe = stripe;
+            this.key = key;
+            this.hash = hash;
+            int index = stripe.indexOf(key, hash, now);
+            this.present = index >= 0;
+            this.value = present ? stripe.value(index) : 0;
+            this.expiresAt = present ? stripe.expiresAt(index) : 0;
+            long[] ring = present ? stripe.log(index) : null;
+            this.log = ring != null ? ring.clone() : null;
+        }
+
+        void restore(long now) {
+            int index = stripe.indexOf(key, hash, now);
+            if (!present) {
+                if (index >= 0) {
+                    stripe.remove(index);
+                }
+                return;
+            }
+            if (index < 0) {
+                index = stripe.insert(key, hash);
+            }
+            stripe.write(index, value, expiresAt);
+            stripe.log(index, log);
+        }
+    }
+
+    /**
+     * One lock stripe: a linear-probing table guarded by its own StampedLock.
+     * Removed slots become tombstones so probe chains stay intact until the next rehash.
+     */
+    private static final class Stripe {
+
+        private static final String TOMBSTONE = new String("<removed>");
+
+        final StampedLock lock = new StampedLock();
+        Table table;
+        int size;
+        int tombstones;
+
+        Stripe(int capacity) {
+            this.table = new Table(capacity);
+        }
+
+        /**
+         * Returns the slot of a live entry, or -1 if absent or expired.
+         * Safe to call under an optimistic read: a single table snapshot is used.
+         */
+        int indexOf(String key, int hash, long now) {
+            return table.indexOf(key, hash, now);
+        }
+
+        long read(String key, int hash, long now) {
+            Table table = this.table;
+            int index = table.indexOf(key, hash, now);
+            return index >= 0 ? table.values[index] : 0;
+        }
+
+        long value(int index) {
+            return table.values[index];
+        }
+
+        long expiresAt(int index) {
+            return table.expiresAt[index];
+        }
+
+        void write(String key, int hash, long value, long expiresAt, long now) {
+            int index = indexOf(key, hash, now);
+            if (index < 0) {
+                index = insert(key, hash);
+            }
+            table.values[index] = value;
+            table.expiresAt[index] = expiresAt;
+        }
+
+        void write(int index, long value, long expiresAt) {
+            table.values[index] = value;
+            table.expiresAt[index] = expiresAt;
+        }
+
+        long[] log(int index) {
+            return table.logs[index];
+        }
+
+        void log(int index, long[] ring) {
+            table.logs[index] = ring;
+        }
+
+        /**
+         * Inserts a key known to be absent (or expired), reusing its old slot if present.
+         */
+        int insert(String key, int hash) {
+            int capacity = table.keys.length;
+            if ((size + tombstones + 1) * 4 > capacity * 3) {
+                rehash(size * 4 >= capacity ? capacity * 2 : capacity);
+            }
+            Table table = this.table;
+            int mask = table.keys.length - 1;
+            int index = (hash >>> 8) & mask;
+            int firstFree = -1;
+            while (true) {
+                String candidate = table.keys[index];
+                if (candidate == null) {
+                    break;
+                }
+                if (candidate == TOMBSTONE) {
+                    if (firstFree < 0) {
+                        firstFree = index;
+                    }
+                } else if (table.hashes[index] == hash && candidate.equals(key)) {
+                    // Expired entry for the same key: overwrite in place
+                    table.logs[index] = null;
+                    return index;
+                }
+                index = (index + 1) & mask;
+            }
+            if (firstFree >= 0) {
+                index = firstFree;
+                tombstones--;
+            }
+            table.keys[index] = key;
+            table.hashes[index] = hash;
+            table.logs[index] = null;
+            size++;
+            return index;
+        }
+
+        void remove(int index) {
+            table.keys[index] = TOMBSTONE;
+            table.values[index] = 0;
+            table.expiresAt[index] = 0;
+            table.logs[index] = null;
+            size--;
+            tombstones++;
+        }
+
+        /**
+         * Removes expired entries in {@code [from, from + count)} and returns the next cursor,
+         * or 0 once the end of the table was reached.
+         */
+        int sweep(int from, int count, long now) {
+            Table table = this.table;
+            int end = Math.min(table.keys.length, from + count);
+            for (int i = from; i < end; i++) {
+                String key = table.keys[i];
+                if (key != null && key != TOMBSTONE && table.expiresAt[i] <= now) {
+                    remove(i);
+                }
+            }
+            return end >= table.keys.length ? 0 : end;
+        }
+
+        private void rehash(int capacity) {
+            Table old = table;
+            Table fresh = new Table(capacity);
+            int mask = capacity - 1;
+            int live = 0;
+            for (int i = 0; i < old.keys.length; i++) {
+                String key = old.keys[i];
+                if (key == null || key == TOMBSTONE) {
+                    continue;
+                }
+                int index = (old.hashes[i] >>> 8) & mask;
+                while (fresh.keys[index] != null) {
+                    index = (index + 1) & mask;
+                }
+                fresh.keys[index] = key;
+                fresh.hashes[index] = old.hashes[i];
+                fresh.values[index] = old.values[i];
+                fresh.expiresAt[index] = old.expiresAt[i];
+                fresh.logs[index] = old.logs[i];
+                live++;
+            }
+            table = fresh;
+            size = live;
+            tombstones = 0;
+        }
+    }
+
+    /**
+     * Parallel slot arrays of one stripe, swapped as a unit on rehash.
+     */
+    private static final class Table {
+
+        final String[] keys;
+        final int[] hashes;
+        final long[] values;
+        final long[] expiresAt;
+        final long[][] logs;
+
+        Table(int capacity) {
+            keys = new String[capacity];
+            hashes = new int[capacity];
+            values = new long[capacity];
+            expiresAt = new long[capacity];
+            logs = new long[capacity][];
+        }
+
+        int indexOf(String key, int hash, long now) {
+            int mask = keys.length - 1;
+            int index = (hash >>> 8) & mask;
+            for (int probes = 0; probes <= mask; probes++) {
+                String candidate = keys[index];
+                if (candidate == null) {
+                    return -1;
+                }
+                if (candidate != Stripe.TOMBSTONE && hashes[index] == hash && candidate.equals(key)) {
+                    return expiresAt[index] > now ? index : -1;
+                }
+                index = (index + 1) & mask;
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.ratelimiter.core.time;
+
+import com.example.ratelimiter.core.api.TimeSource;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Coarse TimeSource for hot paths: a daemon thread reads the source clock once per tick and
+ * {@link #currentTimeMillis()} returns that reading, a single volatile read.
+ * <p>
+ * Readings lag the source by at most one tick (plus scheduling delay) and never decrease, even if
+ * the source does. {@link #nanoTime()} is not cached, since it measures intervals.
+ * The no-argument constructor caches {@link TimeSource#SYSTEM}, whose readings agree across nodes
+ * sharing a store; wrap a {@link MonotonicTimeSource} only for state that lives in one process.
+ * Call {@link #close()} to stop the thread.
+ */
+public final class CachedTimeSource implements TimeSource, AutoCloseable {
+
+    private static final Duration DEFAULT_TICK = Duration.ofMillis(1);
+
+    private final TimeSource source;
+    private final long tickNanos;
+    private final Thread ticker;
+    private volatile long currentTimeMillis;
+    private volatile boolean running = true;
+
+    public CachedTimeSource() {
+        this(TimeSource.SYSTEM, DEFAULT_TICK);
+    }
+
+    public CachedTimeSource(TimeSource source, Duration tick) {
+        this.source = Objects.requireNonNull(source, "Source cannot be null");
+        if (tick == null || tick.isZero() || tick.isNegative()) {
+            throw new IllegalArgumentException("tick must be greater than 0");
+        }
+        this.tickNanos = tick.toNanos();
+        this.currentTimeMillis = source.currentTimeMillis();
+
+        this.ticker = new Thread(this::tick, "rate-limiter-clock");
+        ticker.setDaemon(true);
+        ticker.start();
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return currentTimeMillis;
+    }
+
+    @Override
+    public long nanoTime() {
+        return source.nanoTime();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(ticker);
+    }
+
+    private void tick() {
+        while (running) {
+            long now = source.currentTimeMillis();
+            if (now > currentTimeMillis) {
+                currentTimeMillis = now;
+            }
+            LockSupport.parkNanos(this, tickNanos);
+        }
+    }
+}
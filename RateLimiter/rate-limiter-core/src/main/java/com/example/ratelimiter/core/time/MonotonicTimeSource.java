@@ -0,0 +1,32 @@
+package com.example.ratelimiter.core.time;
+
+import com.example.ratelimiter.core.api.TimeSource;
+
+/**
+ * TimeSource whose wall-clock readings advance with {@link System#nanoTime()} from the epoch
+ * millis read at construction.
+ * <p>
+ * Readings never move backwards when the system clock is stepped (e.g. by NTP), so a local store
+ * cannot refill a bucket twice or reopen a window; they may drift from the system clock over long
+ * uptimes. Use it for state that lives in one process, not for time shared between nodes.
+ */
+public final class MonotonicTimeSource implements TimeSource {
+
+    private final long originMillis;
+    private final long originNanos;
+
+    public MonotonicTimeSource() {
+        this.originMillis = System.currentTimeMillis();
+        this.originNanos = System.nanoTime();
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return originMillis + (System.nanoTime() - originNanos) / 1_000_000;
+    }
+
+    @Override
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+}
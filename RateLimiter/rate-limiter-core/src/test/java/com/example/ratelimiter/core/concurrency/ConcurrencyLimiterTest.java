@@ -0,0 +1,102 @@
+package com.example.ratelimiter.core.concurrency;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrencyLimiterTest {
+
+    private static ConcurrencyLimiter limiter(int limit, int capacity) {
+        return ConcurrencyLimiter.builder()
+                .limit(() -> new FixedLimit(limit))
+                .capacity(capacity)
+                .build();
+    }
+
+    @Test
+    void newKeyIsBoundedOnceCapacityIsReached() {
+        ConcurrencyLimiter limiter = limiter(1, 2);
+        limiter.tryAcquire("a").orElseThrow().onSuccess();
+        limiter.tryAcquire("b").orElseThrow().onSuccess();
+
+        assertTrue(limiter.tryAcquire("c").isPresent());
+        assertTrue(limiter.tryAcquire("c").isEmpty());
+        assertEquals(1, limiter.getInFlight("c"));
+    }
+
+    @Test
+    void idleKeysAreForgottenAndBusyKeysKept() {
+        ConcurrencyLimiter limiter = limiter(1, 2);
+        limiter.tryAcquire("idle").orElseThrow().onSuccess();
+        ConcurrencyLimiter.Permit busy = limiter.tryAcquire("busy").orElseThrow();
+
+        for (int i = 0; i < 10; i++) {
+            limiter.tryAcquire("key-" + i).orElseThrow().onSuccess();
+        }
+
+        assertEquals(0, limiter.getLimit("idle"));
+        assertEquals(1, limiter.getInFlight("busy"));
+        assertTrue(limiter.tryAcquire("busy").isEmpty());
+        busy.onSuccess();
+        assertTrue(limiter.tryAcquire("busy").isPresent());
+    }
+
+    @Test
+    void limitHoldsWhileKeysAreForgottenConcurrently() throws Exception {
+        int keys = 8;
+        ConcurrencyLimiter limiter = limiter(1, 2);
+        AtomicIntegerArray inFlight = new AtomicIntegerArray(keys);
+        AtomicInteger violations = new AtomicInteger();
+
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int seed = t;
+            Thread worker = new Thread(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    int key = (seed + i) % keys;
+                    Optional<ConcurrencyLimiter.Permit> permit = limiter.tryAcquire("key-" + key);
+                    if (permit.isPresent()) {
+                        if (inFlight.incrementAndGet(key) > 1) {
+                            violations.incrementAndGet();
+                        }
+                        Thread.yield();
+                        inFlight.decrementAndGet(key);
+                        permit.get().onIgnore();
+                    }
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertEquals(0, violations.get());
+    }
+
+    private static final class FixedLimit implements ConcurrencyLimit {
+
+        private final int limit;
+
+        FixedLimit(int limit) {
+            this.limit = limit;
+        }
+
+        @Override
+        public int getLimit() {
+            return limit;
+        }
+
+        @Override
+        public void onSample(long rttNanos, int inFlight, boolean dropped) {
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.ratelimiter.core.failure;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CircuitBreakerTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void onePercentSlowCallsDoNotOpenByDefault() {
+        CircuitBreaker breaker = CircuitBreaker.builder().build();
+        for (int i = 0; i < 99; i++) {
+            breaker.record(FAST, false);
+        }
+        breaker.record(SLOW, false);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void slowPercentileOpensOnceTheWindowIsFull() {
+        CircuitBreaker breaker = CircuitBreaker.builder().build();
+        for (int i = 0; i < 19; i++) {
+            breaker.record(FAST, false);
+        }
+        breaker.record(SLOW, false);
+        // One slow call in 20 says nothing about the p99 yet
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        for (int i = 0; i < 79; i++) {
+            breaker.record(FAST, false);
+        }
+        breaker.record(SLOW, false);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.ratelimiter.core.hotkey;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HotKeyTrackerTest {
+
+    private static void record(HotKeyTracker tracker, String key, int times) {
+        for (int i = 0; i < times; i++) {
+            tracker.record(key);
+        }
+    }
+
+    @Test
+    void heavierKeyDisplacesTheLightestOnceTheSetIsFull() {
+        HotKeyTracker tracker = new HotKeyTracker(1 << 16, 5, 2);
+        record(tracker, "a", 20);
+        record(tracker, "b", 10);
+
+        record(tracker, "c", 8);
+        assertFalse(tracker.isHot("c"));
+        assertTrue(tracker.isHot("b"));
+
+        record(tracker, "c", 3);
+        assertTrue(tracker.isHot("c"));
+        assertFalse(tracker.isHot("b"));
+        assertTrue(tracker.isHot("a"));
+    }
+
+    @Test
+    void sprayOfWarmKeysLeavesTheHotSetAlone() {
+        HotKeyTracker tracker = new HotKeyTracker(1 << 16, 5, 2);
+        record(tracker, "a", 50);
+        record(tracker, "b", 50);
+
+        for (int i = 0; i < 1000; i++) {
+            record(tracker, "warm-" + i, 6);
+        }
+
+        assertTrue(tracker.isHot("a"));
+        assertTrue(tracker.isHot("b"));
+        // Turned away below the floor, yet still reported hot to the caller
+        assertTrue(tracker.record("warm-0"));
+        assertFalse(tracker.isHot("warm-0"));
+    }
+}
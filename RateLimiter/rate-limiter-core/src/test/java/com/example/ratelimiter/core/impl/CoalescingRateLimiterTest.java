@@ -0,0 +1,167 @@
+package com.example.ratelimiter.core.impl;
+
+import com.example.ratelimiter.core.api.RateLimitAlgorithm;
+import com.example.ratelimiter.core.api.RateLimitPolicy;
+import com.example.ratelimiter.core.api.RateLimitResult;
+import com.example.ratelimiter.core.api.RateLimitScript;
+import com.example.ratelimiter.core.failure.FailureMode;
+import com.example.ratelimiter.core.store.InMemoryRateLimitStore;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CoalescingRateLimiterTest {
+
+    private static final RateLimitPolicy POLICY = RateLimitPolicy.builder()
+            .limit(5)
+            .window(Duration.ofMinutes(1))
+            .algorithm(RateLimitAlgorithm.FIXED_WINDOW)
+            .build();
+
+    private final AtomicInteger storeCalls = new AtomicInteger();
+    private final InMemoryRateLimitStore store = new InMemoryRateLimitStore() {
+        @Override
+        public void executeScriptInto(RateLimitScript script, String[] keys, long[] args, long[] reply) {
+            storeCalls.incrementAndGet();
+            super.executeScriptInto(script, keys, args, reply);
+        }
+    };
+
+    @Test
+    void membersShareOneStoreCall() throws Exception {
+        DefaultRateLimiter delegate = new DefaultRateLimiter(store, POLICY, FailureMode.FAIL_CLOSED);
+        CoalescingRateLimiter limiter = new CoalescingRateLimiter(delegate, POLICY, Duration.ofSeconds(10), 4);
+
+        List<CompletableFuture<RateLimitResult>> results = new ArrayList<>();
+        results.add(leader(limiter, 1));
+        for (int i = 0; i < 3; i++) {
+            results.add(CompletableFuture.supplyAsync(() -> limiter.tryAcquire("key", POLICY, 1)));
+        }
+
+        long allowed = 0;
+        for (CompletableFuture<RateLimitResult> result : results) {
+            allowed += result.get(5, TimeUnit.SECONDS).isAllowed() ? 1 : 0;
+        }
+        assertEquals(4, allowed);
+        assertEquals(1, storeCalls.get());
+        assertEquals(0, delegate.tryAcquire("key", POLICY, 1).getRemaining());
+    }
+
+    @Test
+    void deniedBatchGrantsTheLongestPrefixThatFits() throws Exception {
+        DefaultRateLimiter delegate = new DefaultRateLimiter(store, POLICY, FailureMode.FAIL_CLOSED);
+        CoalescingRateLimiter limiter = new CoalescingRateLimiter(delegate, POLICY, Duration.ofSeconds(10), 2);
+        assertTrue(delegate.tryAcquire("key", POLICY, 2).isAllowed());
+
+        // 2 + 2 permits against 3 left: the first member still fits, the second does not
+        CompletableFuture<RateLimitResult> first = leader(limiter, 2);
+        RateLimitResult second = limiter.tryAcquire("key", POLICY, 2);
+
+        assertTrue(first.get(5, TimeUnit.SECONDS).isAllowed());
+        assertEquals(1, first.get().getRemaining());
+        assertFalse(second.isAllowed());
+        // Merged, partial, and the second member's own permits
+        assertEquals(4, storeCalls.get());
+        assertTrue(delegate.tryAcquire("key", POLICY, 1).isAllowed());
+    }
+
+    @Test
+    void deniedMembersGetTheRetryAfterOfTheirOwnPermits() throws Exception {
+        RateLimitPolicy bucket = RateLimitPolicy.builder()
+                .limit(4)
+                .window(Duration.ofMinutes(1))
+                .algorithm(RateLimitAlgorithm.TOKEN_BUCKET)
+                .build();
+        DefaultRateLimiter delegate = new DefaultRateLimiter(store, bucket, FailureMode.FAIL_CLOSED);
+        CoalescingRateLimiter limiter = new CoalescingRateLimiter(delegate, bucket, Duration.ofSeconds(10), 3);
+        assertTrue(delegate.tryAcquire("key", bucket, 4).isAllowed());
+
+        // A token every 15s: the batch as a whole would wait 60s
+        CompletableFuture<RateLimitResult> first = leader(limiter, bucket, 1);
+        CompletableFuture<RateLimitResult> second = CompletableFuture.supplyAsync(() -> limiter.tryAcquire("key", bucket, 1));
+        RateLimitResult third = limiter.tryAcquire("key", bucket, 2);
+
+        for (RateLimitResult denied : List.of(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS))) {
+            assertFalse(denied.isAllowed());
+            assertTrue(denied.getRetryAfterMillis() > 14_000 && denied.getRetryAfterMillis() <= 15_000,
+                    "retry after " + denied.getRetryAfterMillis());
+        }
+        assertFalse(third.isAllowed());
+        assertTrue(third.getRetryAfterMillis() > 29_000 && third.getRetryAfterMillis() <= 30_000,
+                "retry after " + third.getRetryAfterMillis());
+        // Merged, then one call per distinct permit count
+        assertEquals(4, storeCalls.get());
+    }
+
+    @Test
+    void membersAskTheDelegateThemselvesWhenTheLeaderFails() throws Exception {
+        AtomicBoolean failNext = new AtomicBoolean(true);
+        DefaultRateLimiter delegate = new DefaultRateLimiter(store, POLICY, FailureMode.FAIL_CLOSED) {
+            @Override
+            RateLimitResult tryAcquire(String key, RateLimitPolicy policy, long permits, long[] available) {
+                if (failNext.getAndSet(false)) {
+                    throw new IllegalStateException("delegate failed");
+                }
+                return super.tryAcquire(key, policy, permits, available);
+            }
+        };
+        CoalescingRateLimiter limiter = new CoalescingRateLimiter(delegate, POLICY, Duration.ofSeconds(10), 2);
+
+        CompletableFuture<RateLimitResult> first = leader(limiter, 1);
+        RateLimitResult second = limiter.tryAcquire("key", POLICY, 1);
+
+        assertTrue(first.get(5, TimeUnit.SECONDS).isAllowed());
+        assertTrue(second.isAllowed());
+        assertEquals(2, storeCalls.get());
+        assertEquals(2, delegate.tryAcquire("key", POLICY, 1).getRemaining());
+    }
+
+    @Test
+    void interruptedLeaderStopsWaitingForMembers() {
+        DefaultRateLimiter delegate = new DefaultRateLimiter(store, POLICY, FailureMode.FAIL_CLOSED);
+        CoalescingRateLimiter limiter = new CoalescingRateLimiter(delegate, POLICY, Duration.ofSeconds(10), 4);
+
+        Thread.currentThread().interrupt();
+        long start = System.nanoTime();
+        RateLimitResult result;
+        try {
+            result = limiter.tryAcquire("key");
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+
+        assertTrue(result.isAllowed());
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+    }
+
+    /**
+     * Starts a caller and returns once it leads the key's batch, parked waiting for members.
+     */
+    private static CompletableFuture<RateLimitResult> leader(CoalescingRateLimiter limiter, long permits)
+            throws InterruptedException {
+        return leader(limiter, POLICY, permits);
+    }
+
+    private static CompletableFuture<RateLimitResult> leader(CoalescingRateLimiter limiter, RateLimitPolicy policy,
+                                                             long permits) throws InterruptedException {
+        CompletableFuture<RateLimitResult> result = new CompletableFuture<>();
+        Thread thread = new Thread(() -> result.complete(limiter.tryAcquire("key", policy, permits)));
+        thread.start();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (thread.getState() != Thread.State.TIMED_WAITING && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        return result;
+    }
+}
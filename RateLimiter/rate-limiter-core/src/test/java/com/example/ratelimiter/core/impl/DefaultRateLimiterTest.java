@@ -0,0 +1,270 @@
+package com.example.ratelimiter.core.impl;
+
+import com.example.ratelimiter.core.api.CompositeRateLimitPolicy;
+import com.example.ratelimiter.core.api.KeyPolicy;
+import com.example.ratelimiter.core.api.RateLimitAlgorithm;
+import com.example.ratelimiter.core.api.RateLimitPolicy;
+import com.example.ratelimiter.core.api.RateLimitResult;
+import com.example.ratelimiter.core.api.RateLimitScript;
+import com.example.ratelimiter.core.api.RateLimitStore;
+import com.example.ratelimiter.core.api.TimeSource;
+import com.example.ratelimiter.core.failure.FailureMode;
+import com.example.ratelimiter.core.failure.StoreUnavailableException;
+import com.example.ratelimiter.core.hotkey.HotKeyShield;
+import com.example.ratelimiter.core.metrics.RateLimiterMetrics;
+import com.example.ratelimiter.core.store.InMemoryRateLimitStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DefaultRateLimiterTest {
+
+    private final ManualTimeSource time = new ManualTimeSource();
+    private final InMemoryRateLimitStore store = new InMemoryRateLimitStore(4, 16, Duration.ofMinutes(1), time);
+
+    @AfterEach
+    void closeStore() {
+        store.close();
+    }
+
+    private static RateLimitPolicy policy(int limit, RateLimitAlgorithm algorithm) {
+        return RateLimitPolicy.builder()
+                .limit(limit)
+                .window(Duration.ofMinutes(1))
+                .algorithm(algorithm)
+                .build();
+    }
+
+    private DefaultRateLimiter limiter(RateLimitPolicy policy) {
+        return new DefaultRateLimiter(store, policy, FailureMode.FAIL_CLOSED, time);
+    }
+
+    @ParameterizedTest
+    @EnumSource(RateLimitAlgorithm.class)
+    void deniesOverTheLimitUntilTheRetryAfter(RateLimitAlgorithm algorithm) {
+        DefaultRateLimiter limiter = limiter(policy(3, algorithm));
+
+        for (int i = 0; i < 3; i++) {
+            RateLimitResult result = limiter.tryAcquire("key");
+            assertTrue(result.isAllowed(), "request " + i);
+            assertEquals(2 - i, result.getRemaining(), "request " + i);
+        }
+        RateLimitResult denied = limiter.tryAcquire("key");
+        assertFalse(denied.isAllowed());
+        long retryAfter = denied.getRetryAfterMillis();
+        assertTrue(retryAfter > 0 && retryAfter <= Duration.ofMinutes(1).toMillis(), "retry after " + retryAfter);
+        // Other keys have their own budget
+        assertTrue(limiter.tryAcquire("other").isAllowed());
+
+        time.advance(Duration.ofMillis(retryAfter - 1));
+        assertFalse(limiter.tryAcquire("key").isAllowed());
+        time.advance(Duration.ofMillis(1));
+        assertTrue(limiter.tryAcquire("key").isAllowed());
+    }
+
+    @Test
+    void deniedBatchLeavesTheOtherKeysUntouched() {
+        RateLimitPolicy loose = policy(2, RateLimitAlgorithm.TOKEN_BUCKET);
+        RateLimitPolicy tight = policy(1, RateLimitAlgorithm.FIXED_WINDOW);
+        DefaultRateLimiter limiter = limiter(loose);
+        assertTrue(limiter.tryAcquire("b", tight).isAllowed());
+
+        List<KeyPolicy> batch = List.of(KeyPolicy.of("a", loose), KeyPolicy.of("b", tight));
+        RateLimitResult denied = limiter.tryAcquireAll(batch);
+        assertFalse(denied.isAllowed());
+        assertTrue(denied.getRetryAfterMillis() > 0);
+        assertFalse(limiter.tryAcquireAllAsync(batch).toCompletableFuture().join().isAllowed());
+
+        // Neither denied batch consumed any of a's budget
+        assertEquals(1, limiter.tryAcquire("a").getRemaining());
+        assertEquals(0, limiter.tryAcquire("a").getRemaining());
+    }
+
+    @Test
+    void allowedBatchConsumesEveryKey() {
+        RateLimitPolicy policy = policy(2, RateLimitAlgorithm.SLIDING_WINDOW_LOG);
+        DefaultRateLimiter limiter = limiter(policy);
+
+        RateLimitResult allowed = limiter.tryAcquireAll(List.of(KeyPolicy.of("a", policy), KeyPolicy.of("b", policy)));
+        assertTrue(allowed.isAllowed());
+        assertEquals(1, allowed.getRemaining());
+        assertEquals(0, limiter.tryAcquire("a").getRemaining());
+        assertEquals(0, limiter.tryAcquire("b").getRemaining());
+    }
+
+    @Test
+    void compositeLevelsKeepSeparateBudgets() {
+        CompositeRateLimitPolicy composite = CompositeRateLimitPolicy.builder()
+                .level("user", policy(1, RateLimitAlgorithm.FIXED_WINDOW))
+                .level("tenant", policy(3, RateLimitAlgorithm.FIXED_WINDOW))
+                .build();
+        DefaultRateLimiter limiter = limiter(policy(1, RateLimitAlgorithm.FIXED_WINDOW));
+
+        // The same value in both dimensions names two different keys
+        assertTrue(limiter.tryAcquire(composite, Map.of("user", "acme", "tenant", "acme")).isAllowed());
+        assertFalse(limiter.tryAcquire(composite, Map.of("user", "acme", "tenant", "acme")).isAllowed());
+        // Denied at the user level, so the tenant kept its budget
+        assertTrue(limiter.tryAcquire(composite, Map.of("user", "bob", "tenant", "acme")).isAllowed());
+        assertTrue(limiter.tryAcquire(composite, Map.of("user", "carol", "tenant", "acme")).isAllowed());
+        assertFalse(limiter.tryAcquire(composite, Map.of("user", "dave", "tenant", "acme")).isAllowed());
+        // Nor does either level share state with the bare key
+        assertTrue(limiter.tryAcquire("acme").isAllowed());
+        assertThrows(IllegalArgumentException.class, () -> limiter.tryAcquire(composite, Map.of("user", "acme")));
+    }
+
+    @Test
+    void weightedRequestsAreBoundedByTheLimit() {
+        RateLimitPolicy policy = policy(5, RateLimitAlgorithm.LEAKY_BUCKET);
+        DefaultRateLimiter limiter = limiter(policy);
+
+        assertThrows(IllegalArgumentException.class, () -> limiter.tryAcquire("key", policy, 6));
+        assertThrows(IllegalArgumentException.class, () -> limiter.tryAcquire("key", policy, 0));
+        assertThrows(IllegalArgumentException.class, () -> limiter.tryAcquireAsync("key", policy, 6));
+
+        assertTrue(limiter.tryAcquire("key", policy, 4).isAllowed());
+        assertFalse(limiter.tryAcquire("key", policy, 2).isAllowed());
+        assertTrue(limiter.tryAcquire("key", policy, 1).isAllowed());
+    }
+
+    @Test
+    void batchRejectsTheSameKeyTwice() {
+        RateLimitPolicy policy = policy(1, RateLimitAlgorithm.FIXED_WINDOW);
+        DefaultRateLimiter limiter = limiter(policy);
+        List<KeyPolicy> duplicated = List.of(KeyPolicy.of("a", policy), KeyPolicy.of("a", policy));
+
+        // Both entries would pass the check against the same count, then overdraw the key
+        assertThrows(IllegalArgumentException.class, () -> limiter.tryAcquireAll(duplicated));
+        assertThrows(IllegalArgumentException.class, () -> limiter.tryAcquireAllAsync(duplicated));
+        // Policies of the same algorithm share the key's state
+        assertThrows(IllegalArgumentException.class, () -> limiter.tryAcquireAll(
+                List.of(KeyPolicy.of("a", policy), KeyPolicy.of("a", policy(5, RateLimitAlgorithm.FIXED_WINDOW)))));
+        assertTrue(limiter.tryAcquire("a").isAllowed());
+
+        // Different algorithms keep separate state
+        assertTrue(limiter.tryAcquireAll(List.of(KeyPolicy.of("b", policy),
+                KeyPolicy.of("b", policy(1, RateLimitAlgorithm.TOKEN_BUCKET)))).isAllowed());
+        assertFalse(limiter.tryAcquire("b").isAllowed());
+    }
+
+    @Test
+    void closeStopsTheFallbackStoreItCreated() throws InterruptedException {
+        int before = sweeperThreads();
+        DefaultRateLimiter limiter = new DefaultRateLimiter(store, policy(1, RateLimitAlgorithm.FIXED_WINDOW),
+                FailureMode.LOCAL_FALLBACK);
+        assertEquals(before + 1, sweeperThreads());
+
+        limiter.close();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (sweeperThreads() > before && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(before, sweeperThreads());
+    }
+
+    @Test
+    void closeLeavesASharedFallbackStoreOpen() {
+        InMemoryRateLimitStore shared = new InMemoryRateLimitStore();
+        try {
+            RateLimitPolicy policy = policy(1, RateLimitAlgorithm.FIXED_WINDOW);
+            DefaultRateLimiter first = new DefaultRateLimiter(new UnavailableStore(), policy, FailureMode.LOCAL_FALLBACK,
+                    time, RateLimiterMetrics.NOOP, 1, HotKeyShield.disabled(), shared);
+            DefaultRateLimiter second = new DefaultRateLimiter(new UnavailableStore(), policy, FailureMode.LOCAL_FALLBACK,
+                    time, RateLimiterMetrics.NOOP, 1, HotKeyShield.disabled(), shared);
+
+            // Both limiters fall back to the same counts
+            assertTrue(first.tryAcquire("key").isAllowed());
+            assertFalse(second.tryAcquire("key").isAllowed());
+            first.close();
+            assertTrue(shared.isHealthy());
+        } finally {
+            shared.close();
+        }
+    }
+
+    private static int sweeperThreads() {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.isAlive() && thread.getName().equals("rate-limiter-store-sweeper")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static final class ManualTimeSource implements TimeSource {
+
+        private final AtomicLong nanos = new AtomicLong(TimeUnit.SECONDS.toNanos(1_000));
+
+        void advance(Duration duration) {
+            nanos.addAndGet(duration.toNanos());
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(nanos.get());
+        }
+
+        @Override
+        public long nanoTime() {
+            return nanos.get();
+        }
+    }
+
+    /**
+     * A store that is down: every call fails.
+     */
+    private static final class UnavailableStore implements RateLimitStore {
+
+        @Override
+        public long increment(String key, Duration ttl) {
+            throw new StoreUnavailableException("down");
+        }
+
+        @Override
+        public long get(String key) {
+            throw new StoreUnavailableException("down");
+        }
+
+        @Override
+        public void set(String key, long value, Duration ttl) {
+            throw new StoreUnavailableException("down");
+        }
+
+        @Override
+        public boolean delete(String key) {
+            throw new StoreUnavailableException("down");
+        }
+
+        @Override
+        public Object executeScript(String script, String[] keys, String[] args) {
+            throw new StoreUnavailableException("down");
+        }
+
+        @Override
+        public long[] executeScript(RateLimitScript script, String[] keys, long... args) {
+            throw new StoreUnavailableException("down");
+        }
+
+        @Override
+        public Map<String, Long> multiGet(String... keys) {
+            throw new StoreUnavailableException("down");
+        }
+
+        @Override
+        public boolean isHealthy() {
+            return false;
+        }
+    }
+}
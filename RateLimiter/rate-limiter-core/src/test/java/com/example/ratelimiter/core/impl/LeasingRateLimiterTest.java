@@ -0,0 +1,152 @@
+package com.example.ratelimiter.core.impl;
+
+import com.example.ratelimiter.core.api.RateLimitAlgorithm;
+import com.example.ratelimiter.core.api.RateLimitPolicy;
+import com.example.ratelimiter.core.api.RateLimitResult;
+import com.example.ratelimiter.core.api.RateLimitScript;
+import com.example.ratelimiter.core.api.TimeSource;
+import com.example.ratelimiter.core.failure.FailureMode;
+import com.example.ratelimiter.core.store.InMemoryRateLimitStore;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LeasingRateLimiterTest {
+
+    private static final RateLimitPolicy POLICY = RateLimitPolicy.builder()
+            .limit(100)
+            .window(Duration.ofSeconds(1))
+            .algorithm(RateLimitAlgorithm.TOKEN_BUCKET)
+            .build();
+
+    private static LeasingRateLimiter leasing(InMemoryRateLimitStore store, TimeSource timeSource) {
+        DefaultRateLimiter delegate = new DefaultRateLimiter(store, POLICY, FailureMode.FAIL_CLOSED);
+        return new LeasingRateLimiter(delegate, store, POLICY, 0.1, Duration.ofMillis(100), timeSource);
+    }
+
+    @Test
+    void quietKeysAreDropped() {
+        ManualTimeSource time = new ManualTimeSource();
+        LeasingRateLimiter limiter = leasing(new InMemoryRateLimitStore(), time);
+
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(limiter.tryAcquire("key-" + i).isAllowed());
+        }
+        assertEquals(1000, limiter.leaseCount());
+
+        // Past maxStaleness every lease is expired; the next refill sweeps them
+        time.advance(Duration.ofMillis(250));
+        assertTrue(limiter.tryAcquire("active").isAllowed());
+        assertEquals(1, limiter.leaseCount());
+    }
+
+    @Test
+    void concurrentCallersShareOneRefillMadeOutsideTheMap() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger leaseCalls = new AtomicInteger();
+        InMemoryRateLimitStore store = new InMemoryRateLimitStore() {
+            @Override
+            public long[] executeScript(RateLimitScript script, String[] keys, long... args) {
+                if (script == RateLimitScript.TOKEN_LEASE && keys[0].contains("slow")) {
+                    leaseCalls.incrementAndGet();
+                    entered.countDown();
+                    await(release);
+                }
+                return super.executeScript(script, keys, args);
+            }
+        };
+        LeasingRateLimiter limiter = leasing(store, TimeSource.SYSTEM);
+
+        CompletableFuture<RateLimitResult> first = CompletableFuture.supplyAsync(() -> limiter.tryAcquire("slow"));
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        CompletableFuture<RateLimitResult> second = CompletableFuture.supplyAsync(() -> limiter.tryAcquire("slow"));
+
+        // Keys in the same map stay available while the slow refill is pending
+        assertTrue(limiter.tryAcquire("other").isAllowed());
+        assertFalse(second.isDone());
+
+        release.countDown();
+        assertTrue(first.get(5, TimeUnit.SECONDS).isAllowed());
+        assertTrue(second.get(5, TimeUnit.SECONDS).isAllowed());
+        assertEquals(1, leaseCalls.get());
+    }
+
+    @Test
+    void asyncAcquireDoesNotBlockOnTheStore() throws Exception {
+        CompletableFuture<long[]> reply = new CompletableFuture<>();
+        AtomicInteger leaseCalls = new AtomicInteger();
+        InMemoryRateLimitStore store = new InMemoryRateLimitStore() {
+            @Override
+            public CompletionStage<long[]> executeScriptAsync(RateLimitScript script, String[] keys, long... args) {
+                leaseCalls.incrementAndGet();
+                return reply;
+            }
+        };
+        LeasingRateLimiter limiter = leasing(store, TimeSource.SYSTEM);
+
+        CompletableFuture<RateLimitResult> first = limiter.tryAcquireAsync("key").toCompletableFuture();
+        CompletableFuture<RateLimitResult> second = limiter.tryAcquireAsync("key").toCompletableFuture();
+        assertFalse(first.isDone());
+        assertFalse(second.isDone());
+
+        reply.complete(new long[]{10, 80, 0});
+        assertTrue(first.get(5, TimeUnit.SECONDS).isAllowed());
+        assertTrue(second.get(5, TimeUnit.SECONDS).isAllowed());
+        assertEquals(1, leaseCalls.get());
+    }
+
+    @Test
+    void asyncStoreFailureFallsBackToDelegate() throws Exception {
+        InMemoryRateLimitStore store = new InMemoryRateLimitStore() {
+            @Override
+            public CompletionStage<long[]> executeScriptAsync(RateLimitScript script, String[] keys, long... args) {
+                if (script == RateLimitScript.TOKEN_LEASE) {
+                    return CompletableFuture.failedFuture(new IllegalStateException("store down"));
+                }
+                return super.executeScriptAsync(script, keys, args);
+            }
+        };
+        LeasingRateLimiter limiter = leasing(store, TimeSource.SYSTEM);
+
+        assertTrue(limiter.tryAcquireAsync("key").toCompletableFuture().get(5, TimeUnit.SECONDS).isAllowed());
+        assertEquals(0, limiter.leaseCount());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class ManualTimeSource implements TimeSource {
+
+        private final AtomicLong nanos = new AtomicLong(TimeUnit.SECONDS.toNanos(1_000));
+
+        void advance(Duration duration) {
+            nanos.addAndGet(duration.toNanos());
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            return TimeUnit.NANOSECONDS.toMillis(nanos.get());
+        }
+
+        @Override
+        public long nanoTime() {
+            return nanos.get();
+        }
+    }
+}
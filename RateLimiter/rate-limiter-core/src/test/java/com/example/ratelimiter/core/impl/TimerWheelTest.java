@@ -0,0 +1,66 @@
+package com.example.ratelimiter.core.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimerWheelTest {
+
+    @Test
+    void timersFireAtOrAfterTheirDeadline() throws Exception {
+        try (TimerWheel wheel = new TimerWheel(Duration.ofMillis(1), 64, Runnable::run, "test-wheel")) {
+            long now = System.nanoTime();
+            long[] deadlines = {now + TimeUnit.MILLISECONDS.toNanos(45), now, now + TimeUnit.MILLISECONDS.toNanos(20),
+                    now + TimeUnit.MILLISECONDS.toNanos(3)};
+            List<CompletableFuture<Long>> fired = new ArrayList<>();
+            for (long deadline : deadlines) {
+                fired.add(schedule(wheel, deadline));
+            }
+            for (int i = 0; i < deadlines.length; i++) {
+                assertOnTime(deadlines[i], fired.get(i));
+            }
+        }
+    }
+
+    @Test
+    void timersFireAcrossRotationsOfTheWheel() throws Exception {
+        // 4 buckets of 1ms: a 50ms timer waits out about a dozen rotations
+        try (TimerWheel wheel = new TimerWheel(Duration.ofMillis(1), 4, Runnable::run, "test-wheel")) {
+            long now = System.nanoTime();
+            long late = now + TimeUnit.MILLISECONDS.toNanos(50);
+            long early = now + TimeUnit.MILLISECONDS.toNanos(9);
+            CompletableFuture<Long> lateFired = schedule(wheel, late);
+            CompletableFuture<Long> earlyFired = schedule(wheel, early);
+
+            assertOnTime(early, earlyFired);
+            assertOnTime(late, lateFired);
+            assertTrue(earlyFired.get() < lateFired.get());
+        }
+    }
+
+    @Test
+    void closedWheelRejectsTimers() {
+        TimerWheel wheel = new TimerWheel(Duration.ofMillis(1), 4, Runnable::run, "test-wheel");
+        wheel.close();
+        assertThrows(IllegalStateException.class, () -> wheel.schedule(() -> { }, System.nanoTime()));
+    }
+
+    private static CompletableFuture<Long> schedule(TimerWheel wheel, long deadline) {
+        CompletableFuture<Long> fired = new CompletableFuture<>();
+        wheel.schedule(() -> fired.complete(System.nanoTime()), deadline);
+        return fired;
+    }
+
+    private static void assertOnTime(long deadline, CompletableFuture<Long> fired) throws Exception {
+        long firedAt = fired.get(5, TimeUnit.SECONDS);
+        assertTrue(firedAt - deadline >= 0, "fired " + (deadline - firedAt) + "ns early");
+        assertTrue(firedAt - deadline < TimeUnit.SECONDS.toNanos(1), "fired " + (firedAt - deadline) + "ns late");
+    }
+}
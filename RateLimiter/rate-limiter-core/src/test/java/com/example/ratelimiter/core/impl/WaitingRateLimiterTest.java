@@ -0,0 +1,199 @@
+package com.example.ratelimiter.core.impl;
+
+import com.example.ratelimiter.core.api.RateLimitAlgorithm;
+import com.example.ratelimiter.core.api.RateLimitPolicy;
+import com.example.ratelimiter.core.api.RateLimitResult;
+import com.example.ratelimiter.core.api.RateLimiter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WaitingRateLimiterTest {
+
+    private static final RateLimitPolicy POLICY = RateLimitPolicy.builder()
+            .limit(1)
+            .window(Duration.ofSeconds(1))
+            .algorithm(RateLimitAlgorithm.FIXED_WINDOW)
+            .build();
+
+    private final ScriptedLimiter store = new ScriptedLimiter();
+    private final WaitingRateLimiter limiter = new WaitingRateLimiter(store, POLICY, Duration.ofMillis(1));
+
+    @AfterEach
+    void close() {
+        limiter.close();
+    }
+
+    @Test
+    void timedAcquireSucceedsOnceTheRetryAfterHasPassed() {
+        store.permits.set(1);
+        store.openAt.set(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100));
+
+        long start = System.nanoTime();
+        RateLimitResult result = limiter.tryAcquire("key", Duration.ofSeconds(5));
+
+        assertTrue(result.isAllowed());
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+        // The denial, then the re-check at its retry-after
+        assertEquals(2, store.calls.get());
+    }
+
+    @Test
+    void retryAfterBeyondTheTimeoutReturnsAtOnce() {
+        store.openAt.set(System.nanoTime() + TimeUnit.SECONDS.toNanos(10));
+
+        long start = System.nanoTime();
+        RateLimitResult result = limiter.tryAcquire("key", Duration.ofSeconds(1));
+
+        assertFalse(result.isAllowed());
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(500));
+    }
+
+    @Test
+    void timeoutReturnsTheLastDenial() {
+        long start = System.nanoTime();
+        RateLimitResult result = limiter.tryAcquire("key", Duration.ofMillis(150));
+        long elapsed = System.nanoTime() - start;
+
+        assertFalse(result.isAllowed());
+        assertEquals(ScriptedLimiter.RETRY_AFTER, result.getRetryAfter().orElseThrow());
+        assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(150));
+        assertTrue(elapsed < TimeUnit.SECONDS.toNanos(2));
+        // Re-checked every retry-after while waiting
+        assertTrue(store.calls.get() > 2);
+    }
+
+    @Test
+    void interruptedWaiterReturnsItsDenialAndKeepsTheInterrupt() throws Exception {
+        CompletableFuture<Boolean> interrupted = new CompletableFuture<>();
+        CompletableFuture<RateLimitResult> result = new CompletableFuture<>();
+        Thread waiter = new Thread(() -> {
+            result.complete(limiter.tryAcquire("key", Duration.ofSeconds(30)));
+            interrupted.complete(Thread.currentThread().isInterrupted());
+        });
+        waiter.start();
+        awaitParked(waiter);
+
+        waiter.interrupt();
+
+        assertFalse(result.get(2, TimeUnit.SECONDS).isAllowed());
+        assertTrue(interrupted.get(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void waitersAreGrantedInArrivalOrder() throws Exception {
+        List<Integer> granted = new ArrayList<>();
+        List<Thread> waiters = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            int id = i;
+            Thread waiter = new Thread(() -> {
+                if (limiter.tryAcquire("key", Duration.ofSeconds(30)).isAllowed()) {
+                    synchronized (granted) {
+                        granted.add(id);
+                    }
+                }
+            });
+            waiter.start();
+            awaitParked(waiter);
+            waiters.add(waiter);
+        }
+
+        for (Thread waiter : waiters) {
+            store.permits.incrementAndGet();
+            waiter.join(TimeUnit.SECONDS.toMillis(5));
+        }
+
+        assertEquals(List.of(0, 1, 2, 3, 4), granted);
+    }
+
+    @Test
+    void parkedWaitersShareOneReCheckPerKey() throws Exception {
+        store.retryAfter.set(TimeUnit.MILLISECONDS.toNanos(400));
+        long start = System.nanoTime();
+        List<Thread> waiters = new ArrayList<>();
+        AtomicInteger allowed = new AtomicInteger();
+        for (int i = 0; i < 20; i++) {
+            Thread waiter = new Thread(() -> {
+                if (limiter.tryAcquire("key", Duration.ofSeconds(30)).isAllowed()) {
+                    allowed.incrementAndGet();
+                }
+            });
+            waiter.start();
+            awaitParked(waiter);
+            waiters.add(waiter);
+        }
+        // Only the first caller asked the store; the others queued behind it
+        assertEquals(1, store.calls.get());
+
+        Thread.sleep(Math.max(0, TimeUnit.MILLISECONDS.toNanos(600) - (System.nanoTime() - start)) / 1_000_000);
+        // One re-check for all 20 waiters at the retry-after instant
+        assertEquals(2, store.calls.get());
+
+        store.permits.set(20);
+        for (Thread waiter : waiters) {
+            waiter.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        assertEquals(20, allowed.get());
+        // Plus one call per grant
+        assertEquals(22, store.calls.get());
+    }
+
+    private static void awaitParked(Thread thread) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (thread.getState() != Thread.State.TIMED_WAITING && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Allows while it has permits and is open, otherwise denies with a fixed retry-after.
+     */
+    private static final class ScriptedLimiter implements RateLimiter {
+
+        static final Duration RETRY_AFTER = Duration.ofMillis(20);
+
+        final AtomicLong permits = new AtomicLong();
+        final AtomicLong openAt = new AtomicLong(System.nanoTime());
+        final AtomicLong retryAfter = new AtomicLong(RETRY_AFTER.toNanos());
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Override
+        public RateLimitResult tryAcquire(String key) {
+            return tryAcquire(key, POLICY, 1);
+        }
+
+        @Override
+        public RateLimitResult tryAcquire(String key, RateLimitPolicy policy) {
+            return tryAcquire(key, policy, 1);
+        }
+
+        @Override
+        public RateLimitResult tryAcquire(String key, RateLimitPolicy policy, long permits) {
+            calls.incrementAndGet();
+            long untilOpen = openAt.get() - System.nanoTime();
+            if (untilOpen > 0) {
+                return RateLimitResult.denied(Duration.ofNanos(untilOpen), 1, 1);
+            }
+            if (this.permits.getAndUpdate(p -> Math.max(0, p - 1)) > 0) {
+                return RateLimitResult.allowed(0, 1, 1);
+            }
+            return RateLimitResult.denied(Duration.ofNanos(retryAfter.get()), 1, 1);
+        }
+
+        @Override
+        public boolean reset(String key) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.ratelimiter.core.key;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IpAddressesTest {
+
+    private static String canonical(String text) {
+        long[] out = new long[2];
+        int family = IpAddresses.parse(text, 0, text.length(), out);
+        if (family == IpAddresses.INVALID) {
+            return null;
+        }
+        KeyBuffer buffer = new KeyBuffer();
+        IpAddresses.appendTo(buffer, family, out);
+        return buffer.toString();
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "192.168.0.1                             | 192.168.0.1",
+            "0.0.0.0                                 | 0.0.0.0",
+            "255.255.255.255                         | 255.255.255.255",
+            "010.001.000.001                         | 10.1.0.1",
+            "10.0.0.1:8080                           | 10.0.0.1",
+            "::                                      | ::",
+            "::1                                     | ::1",
+            "1::                                     | 1::",
+            "2001:db8::1                             | 2001:db8::1",
+            "2001:DB8::1                             | 2001:db8::1",
+            "2001:0db8:0000:0000:0000:0000:0000:0001 | 2001:db8::1",
+            "2001:db8:0:0:0:0:0:1                    | 2001:db8::1",
+            "1:0:0:0:0:0:0:0                         | 1::",
+            "0:0:0:0:0:0:0:1                         | ::1",
+            "2001:db8:0:1:1:1:1:1                    | 2001:db8:0:1:1:1:1:1",
+            "2001:0:0:1:0:0:0:1                      | 2001:0:0:1::1",
+            "2001:db8:0:0:1:0:0:1                    | 2001:db8::1:0:0:1",
+            "fe80::1%eth0                            | fe80::1",
+            "[2001:db8::1]                           | 2001:db8::1",
+            "[2001:db8::1]:443                       | 2001:db8::1",
+            "[fe80::1%25eth0]:80                     | fe80::1",
+            "::ffff:192.0.2.1                        | 192.0.2.1",
+            "::FFFF:c000:0201                        | 192.0.2.1",
+            "[::ffff:192.0.2.1]:80                   | 192.0.2.1",
+            "::192.0.2.1                             | ::c000:201",
+            "64:ff9b::192.0.2.1                      | 64:ff9b::c000:201",
+    })
+    void parsesToTheCanonicalForm(String text, String expected) {
+        assertEquals(expected, canonical(text));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "", " ", "unknown", "1.2.3", "1.2.3.4.5", "256.1.1.1", "1..2.3", "1.2.3.4 ", "-1.2.3.4",
+            ":", ":::", ":1::", "1:", "1:2:3:4:5:6:7", "1:2:3:4:5:6:7:8:9", "1:2:3:4:5:6:7:8::", "1::2::3",
+            "12345::", "2001:db8::g", "::ffff:1.2.3", "::1.2.3.4.5", "[::1", "[::1]x", "[1.2.3.4]x",
+    })
+    void rejectsWhatIsNotAnAddress(String text) {
+        assertEquals(null, canonical(text));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "::", "::1", "1::", "2001:db8::1", "2001:db8:85a3::8a2e:370:7334", "fe80::abcd:ef01:2345:6789",
+            "ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff", "1:2:3:4:5:6:7:8", "::192.0.2.1", "64:ff9b::192.0.2.1",
+    })
+    void readsTheSameBitsAsInetAddress(String text) throws Exception {
+        long[] out = new long[2];
+        assertEquals(IpAddresses.IPV6, IpAddresses.parse(text, 0, text.length(), out));
+
+        ByteBuffer expected = ByteBuffer.wrap(InetAddress.getByName(text).getAddress());
+        assertEquals(expected.getLong(), out[0], text);
+        assertEquals(expected.getLong(), out[1], text);
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "203.0.113.7                 | 203.0.113.7 | 0  | 11",
+            "203.0.113.7, 10.0.0.1       | 203.0.113.7 | 0  | 11",
+            "'  203.0.113.7  ,10.0.0.1'  | 203.0.113.7 | 2  | 13",
+            "'\t2001:db8::1\t'           | 2001:db8::1 | 1  | 12",
+            "unknown, 10.0.0.1           | -           | 0  | 7",
+            "', 10.0.0.1'                | -           | 0  | 0",
+            "'   '                       | -           | 3  | 3",
+            "''                          | -           | 0  | 0",
+    })
+    void parsesTheFirstForwardedForEntry(String header, String expected, int start, int end) {
+        long[] out = new long[2];
+        int[] bounds = new int[2];
+        int family = IpAddresses.parseForwardedFor(header, out, bounds);
+
+        if (expected.equals("-")) {
+            assertEquals(IpAddresses.INVALID, family);
+        } else {
+            KeyBuffer buffer = new KeyBuffer();
+            IpAddresses.appendTo(buffer, family, out);
+            assertEquals(expected, buffer.toString());
+        }
+        assertEquals(start, bounds[0]);
+        assertEquals(end, bounds[1]);
+    }
+}
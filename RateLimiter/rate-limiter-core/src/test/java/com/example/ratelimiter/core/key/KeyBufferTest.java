@@ -0,0 +1,86 @@
+package com.example.ratelimiter.core.key;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class KeyBufferTest {
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "0000000000000000 | 0000000000000000 | ::",
+            "0000000000000000 | 0000000000000001 | ::1",
+            "0001000000000000 | 0000000000000000 | 1::",
+            "20010db800000000 | 0000000000000001 | 2001:db8::1",
+            "20010db800000001 | 0001000100010001 | 2001:db8:0:1:1:1:1:1",
+            "20010db800000000 | 0001000000000001 | 2001:db8::1:0:0:1",
+            "2001000000000001 | 0000000000000001 | 2001:0:0:1::1",
+            "0000000000000000 | 00000000c0000201 | ::c000:201",
+            "0001000200030004 | 0005000600070008 | 1:2:3:4:5:6:7:8",
+            "0001000000030000 | 0005000000070000 | 1:0:3:0:5:0:7:0",
+            "abcd00000000ef01 | 0000000000000000 | abcd:0:0:ef01::",
+            "ffffffffffffffff | ffffffffffffffff | ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff",
+    })
+    void writesIpv6InRfc5952Form(String high, String low, String expected) {
+        KeyBuffer buffer = new KeyBuffer();
+        buffer.appendIpv6(Long.parseUnsignedLong(high, 16), Long.parseUnsignedLong(low, 16));
+        assertEquals(expected, buffer.toString());
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "00000000 | 0.0.0.0",
+            "7f000001 | 127.0.0.1",
+            "c0000201 | 192.0.2.1",
+            "ffffffff | 255.255.255.255",
+    })
+    void writesIpv4DottedDecimal(String address, String expected) {
+        KeyBuffer buffer = new KeyBuffer();
+        buffer.appendIpv4(Integer.parseUnsignedInt(address, 16));
+        assertEquals(expected, buffer.toString());
+    }
+
+    @ParameterizedTest
+    @ValueSource(longs = {0, 7, -7, 10, 1_000_000, Long.MAX_VALUE, Long.MIN_VALUE})
+    void writesDecimals(long value) {
+        assertEquals(Long.toString(value), new KeyBuffer(1).appendDecimal(value).toString());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "ascii", "café", "€100", "😀 face", "中文"})
+    void encodesUtf8(String text) {
+        KeyBuffer buffer = new KeyBuffer(1).append(text);
+        assertArrayEquals(text.getBytes(StandardCharsets.UTF_8), buffer.toByteArray());
+        assertEquals(text, buffer.toString());
+        assertTrue(buffer.contentEquals(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void replacesUnpairedSurrogates() {
+        assertEquals("a?b?", new KeyBuffer().append("a\ud83db\ude00").toString());
+    }
+
+    @Test
+    void hashesDependOnlyOnTheContent() {
+        KeyBuffer grown = new KeyBuffer(1);
+        grown.append("a much longer key that makes the buffer grow").reset().append("ip:").appendDecimal(42);
+        KeyBuffer fresh = new KeyBuffer().append("ip:42");
+
+        assertEquals(fresh.hash64(), grown.hash64());
+        long[] first = new long[2];
+        long[] second = new long[2];
+        fresh.hash128(first);
+        grown.hash128(second);
+        assertArrayEquals(first, second);
+        assertNotEquals(first[0], first[1]);
+        assertNotEquals(fresh.hash64(), new KeyBuffer().append("ip:43").hash64());
+    }
+}
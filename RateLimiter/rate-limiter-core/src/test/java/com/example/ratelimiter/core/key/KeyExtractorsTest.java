@@ -0,0 +1,116 @@
+package com.example.ratelimiter.core.key;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.NullAndEmptySource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.security.Principal;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class KeyExtractorsTest {
+
+    private static final KeyExtractor<String> FORWARDED_FOR =
+            KeyExtractors.forwardedFor(Function.identity(), KeyExtractors.literal("remote"));
+
+    private static final KeyExtractor<String> IP = KeyExtractors.ip(Function.identity(), "unknown");
+
+    private static <C> String extract(KeyExtractor<C> extractor, C context) {
+        KeyBuffer buffer = new KeyBuffer();
+        extractor.appendTo(context, buffer);
+        return buffer.toString();
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "203.0.113.7                        | 203.0.113.7",
+            "203.0.113.7, 10.0.0.1              | 203.0.113.7",
+            "'  203.0.113.7  ,10.0.0.1'         | 203.0.113.7",
+            "203.0.113.7:51234                  | 203.0.113.7",
+            "2001:DB8:0:0:0:0:0:1, 10.0.0.1     | 2001:db8::1",
+            "[2001:db8::1]:443                  | 2001:db8::1",
+            "fe80::1%eth0                       | fe80::1",
+            "::ffff:203.0.113.7                 | 203.0.113.7",
+            "unknown, 10.0.0.1                  | unknown",
+            "'  not an address  , 10.0.0.1'     | not an address",
+            "1.2.3.4.5                          | 1.2.3.4.5",
+            "', 10.0.0.1'                       | remote",
+            "',10.0.0.1'                        | remote",
+            "'   '                              | remote",
+    })
+    void forwardedForUsesTheFirstEntry(String header, String expected) {
+        assertEquals(expected, extract(FORWARDED_FOR, header));
+    }
+
+    @ParameterizedTest
+    @NullAndEmptySource
+    void forwardedForFallsBackToTheRemoteAddress(String header) {
+        assertEquals("remote", extract(FORWARDED_FOR, header));
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "192.0.2.1               | 192.0.2.1",
+            "::ffff:192.0.2.1        | 192.0.2.1",
+            "[::1]:8080              | ::1",
+            "0:0:0:0:0:0:0:1         | ::1",
+            "2001:db8::1             | 2001:db8::1",
+            "not-an-ip               | not-an-ip",
+            "'1.2.3.4 '              | '1.2.3.4 '",
+    })
+    void ipWritesAddressesCanonicallyAndOtherTextAsIs(String address, String expected) {
+        assertEquals(expected, extract(IP, address));
+    }
+
+    @ParameterizedTest
+    @NullAndEmptySource
+    void ipFallsBackWhenAbsent(String address) {
+        assertEquals("unknown", extract(IP, address));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "2001:db8::1", "2001:DB8::1", "2001:0db8::0001", "2001:db8:0:0:0:0:0:1",
+            "2001:0db8:0000:0000:0000:0000:0000:0001", "[2001:db8::1]", "[2001:db8::1]:443", "2001:db8::1%eth0",
+    })
+    void spellingsOfOneAddressGiveOneKey(String spelling) {
+        assertEquals("2001:db8::1", extract(IP, spelling));
+        assertEquals("2001:db8::1", extract(FORWARDED_FOR, spelling + ", 10.0.0.1"));
+    }
+
+    @Test
+    void mappedAndPlainIpv4GiveOneKey() {
+        Set<String> keys = new HashSet<>();
+        for (String spelling : List.of("192.0.2.1", "192.0.2.1:80", "::ffff:192.0.2.1", "::FFFF:C000:201",
+                "[::ffff:192.0.2.1]:80", "0:0:0:0:0:ffff:c000:0201")) {
+            keys.add(extract(IP, spelling));
+        }
+        assertEquals(Set.of("192.0.2.1"), keys);
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "alice     | alice",
+            "''        | anonymous",
+            "          | anonymous",
+    })
+    void headerFallsBackWhenAbsentOrEmpty(String value, String expected) {
+        assertEquals(expected, extract(KeyExtractors.<String>header(Function.identity(), "anonymous"), value));
+    }
+
+    @Test
+    void principalFallsBackWhenUnauthenticated() {
+        KeyExtractor<Principal> principal = KeyExtractors.principal(Function.identity(), "anonymous");
+
+        assertEquals("alice", extract(principal, () -> "alice"));
+        assertEquals("anonymous", extract(principal, () -> null));
+        assertEquals("anonymous", extract(principal, null));
+        assertEquals("ip", extract(KeyExtractors.literal("ip"), null));
+    }
+}
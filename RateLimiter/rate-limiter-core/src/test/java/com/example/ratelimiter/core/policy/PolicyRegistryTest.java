@@ -0,0 +1,58 @@
+package com.example.ratelimiter.core.policy;
+
+import com.example.ratelimiter.core.api.RateLimitAlgorithm;
+import com.example.ratelimiter.core.api.RateLimitPolicy;
+import com.example.ratelimiter.core.failure.FailureMode;
+import com.example.ratelimiter.core.impl.DefaultRateLimiter;
+import com.example.ratelimiter.core.store.InMemoryRateLimitStore;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PolicyRegistryTest {
+
+    private static RateLimitPolicy policy(int limit) {
+        return RateLimitPolicy.builder()
+                .limit(limit)
+                .window(Duration.ofSeconds(1))
+                .algorithm(RateLimitAlgorithm.TOKEN_BUCKET)
+                .build();
+    }
+
+    @Test
+    void rulesWithTheSameAlgorithmKeepSeparateState() {
+        PolicyRegistry registry = new PolicyRegistry(List.of(
+                PolicyRule.builder().path("/search").policy(policy(2)).build(),
+                PolicyRule.builder().path("/**").policy(policy(1000)).build()));
+        DefaultRateLimiter limiter = new DefaultRateLimiter(new InMemoryRateLimitStore(), policy(1000),
+                FailureMode.FAIL_CLOSED);
+
+        PolicyRule search = registry.resolveRule("10.0.0.1", "/search", Map.<String, String>of()::get);
+        PolicyRule other = registry.resolveRule("10.0.0.1", "/orders", Map.<String, String>of()::get);
+        assertNotEquals(search.getStateSuffix(), other.getStateSuffix());
+
+        // Spending the loose rule's budget leaves the strict rule's untouched, and vice versa
+        for (int i = 0; i < 50; i++) {
+            assertTrue(limiter.tryAcquire("10.0.0.1" + other.getStateSuffix(), other.getPolicy()).isAllowed());
+        }
+        assertTrue(limiter.tryAcquire("10.0.0.1" + search.getStateSuffix(), search.getPolicy()).isAllowed());
+        assertTrue(limiter.tryAcquire("10.0.0.1" + search.getStateSuffix(), search.getPolicy()).isAllowed());
+        assertFalse(limiter.tryAcquire("10.0.0.1" + search.getStateSuffix(), search.getPolicy()).isAllowed());
+        assertTrue(limiter.tryAcquire("10.0.0.1" + other.getStateSuffix(), other.getPolicy()).isAllowed());
+    }
+
+    @Test
+    void stateSuffixIsStableAcrossReloads() {
+        String line = "path=/search limit=10 window=PT1S";
+        assertEquals(PolicyRules.parseRule(line).getStateSuffix(), PolicyRules.parseRule(line).getStateSuffix());
+        assertNotEquals(PolicyRules.parseRule(line).getStateSuffix(),
+                PolicyRules.parseRule("path=/search limit=20 window=PT1S").getStateSuffix());
+    }
+}
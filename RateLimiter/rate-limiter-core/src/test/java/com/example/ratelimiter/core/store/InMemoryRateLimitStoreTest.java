@@ -0,0 +1,65 @@
+package com.example.ratelimiter.core.store;
+
+import com.example.ratelimiter.core.api.RateLimitScript;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class InMemoryRateLimitStoreTest {
+
+    private static final String[] KEYS = {"ratelimit:{key}:log"};
+    private static final long NOW = 1_000_000L;
+
+    private final InMemoryRateLimitStore store = new InMemoryRateLimitStore();
+
+    private long[] log(long limit, long now, long cost) {
+        return store.executeScript(RateLimitScript.SLIDING_WINDOW_LOG, KEYS, limit, 1000, now, cost);
+    }
+
+    @Test
+    void slidingLogAcceptsTheLargestLimit() {
+        assertArrayEquals(new long[]{1, Integer.MAX_VALUE - 1L, 0}, log(Integer.MAX_VALUE, NOW, 1));
+        assertArrayEquals(new long[]{1, Integer.MAX_VALUE - 3L, 0}, log(Integer.MAX_VALUE, NOW, 2));
+    }
+
+    @Test
+    void slidingLogKeepsItsTimestampsAcrossGrowth() {
+        // Starts after a wrap-around so growing has to unroll the ring
+        for (int i = 0; i < 5; i++) {
+            assertEquals(1, log(100, NOW + i, 1)[0]);
+        }
+        for (int i = 0; i < 5; i++) {
+            assertEquals(1, log(100, NOW + 1000 + i, 1)[0]);
+        }
+        for (int i = 5; i < 100; i++) {
+            assertEquals(1, log(100, NOW + 1000 + i, 1)[0]);
+        }
+
+        long[] denied = log(100, NOW + 1100, 1);
+        assertEquals(0, denied[0]);
+        // The oldest entry, stamped at NOW + 1000, is the one that frees the next slot
+        assertEquals(900, denied[2]);
+        assertEquals(1, log(100, NOW + 2000, 1)[0]);
+    }
+
+    @Test
+    void slidingLogStartsOverWhenTheLimitChanges() {
+        assertEquals(1, log(3, NOW, 3)[0]);
+        assertEquals(0, log(3, NOW, 1)[0]);
+        assertArrayEquals(new long[]{1, 4, 0}, log(5, NOW, 1));
+    }
+
+    @Test
+    void nonPositiveTtlIsRejectedWithoutStoringTheKey() {
+        assertThrows(IllegalArgumentException.class, () -> store.increment("key", Duration.ZERO));
+        assertThrows(IllegalArgumentException.class, () -> store.set("key", 5, Duration.ofMillis(-1)));
+        assertEquals(0, store.get("key"));
+
+        // Sub-millisecond TTLs still round up rather than being rejected
+        assertEquals(1, store.increment("key", Duration.ofNanos(1)));
+    }
+}
@@ -1,22 +1,62 @@
 package com.example.ratelimiter.gateway;
 
+import com.example.ratelimiter.core.api.CompositeRateLimitPolicy;
 import com.example.ratelimiter.core.api.RateLimitPolicy;
 import com.example.ratelimiter.core.api.RateLimitResult;
 import com.example.ratelimiter.core.api.RateLimiter;
+import com.example.ratelimiter.core.concurrency.ConcurrencyLimiter;
+import com.example.ratelimiter.core.key.KeyBuffer;
+import com.example.ratelimiter.core.key.KeyExtractors;
+import com.example.ratelimiter.core.key.KeyResolverPipeline;
+import com.example.ratelimiter.core.metrics.RateLimiterMetrics;
+import com.example.ratelimiter.core.policy.PolicyRegistry;
+import com.example.ratelimiter.core.policy.PolicyRule;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.cloud.gateway.filter.GatewayFilter;
+import org.springframework.cloud.gateway.filter.GatewayFilterChain;
 import org.springframework.cloud.gateway.filter.factory.AbstractGatewayFilterFactory;
+import org.springframework.cloud.gateway.route.Route;
+import org.springframework.cloud.gateway.support.ServerWebExchangeUtils;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
 
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 
 /**
  * Spring Cloud Gateway filter for rate limiting.
+ * <p>
+ * The latency the filter adds, from entering the filter to the rate limit decision, is recorded
+ * through {@link RateLimiterMetrics#recordFilterLatency}.
+ * <p>
+ * With a {@link Config#setCompositePolicy composite policy}, whose dimensions are {@link KeyType}
+ * names (e.g. {@code user}, {@code ip}, {@code global}), every level is checked in one atomic
+ * decision instead of one filter and round trip per level.
+ * <p>
+ * Otherwise the policy comes from the first {@link PolicyRegistry} rule matching the key, path and
+ * headers of the request, then from {@link Config#getPolicy()}, then from the limiter's default. A rule's
+ * or route's policy counts on the key suffixed with the rule ({@link PolicyRule#getStateSuffix()}) or the
+ * policy's limit and window, so policies with the same algorithm never share state.
+ * <p>
+ * Client IPs are resolved without splitting the {@code X-Forwarded-For} header or formatting the peer
+ * address: both are parsed into a reusable buffer, written in canonical form and mapped to a cached
+ * key String (see {@link KeyResolverPipeline}).
+ * <p>
+ * Allowed requests also need a {@link ConcurrencyLimiter} permit for their route, held until the
+ * response completes; its latency, or a 502/503/504 or error as a drop, adapts the route's limit.
+ * Requests over the limit get 503 without reaching the backend.
  */
 @Component
 public class RateLimitGatewayFilter extends AbstractGatewayFilterFactory<RateLimitGatewayFilter.Config> {
@@ -26,47 +66,159 @@ public class RateLimitGatewayFilter extends AbstractGatewayFilterFactory<RateLim
     private static final String X_RATE_LIMIT_LIMIT = "X-RateLimit-Limit";
     private static final String X_RATE_LIMIT_REMAINING = "X-RateLimit-Remaining";
     private static final String X_RATE_LIMIT_RESET = "X-RateLimit-Reset";
+    private static final String X_RATE_LIMIT_RETRY_AFTER_MS = "X-RateLimit-Retry-After-Ms";
+
+    private static final KeyResolverPipeline<ServerHttpRequest> CLIENT_IP = KeyResolverPipeline.<ServerHttpRequest>builder()
+            .add(KeyExtractors.forwardedFor(request -> request.getHeaders().getFirst("X-Forwarded-For"),
+                    RateLimitGatewayFilter::appendRemoteAddress))
+            .build();
 
     private final RateLimiter rateLimiter;
+    private final RateLimiterMetrics metrics;
+    private final PolicyRegistry policyRegistry;
+    private final ConcurrencyLimiter concurrencyLimiter;
 
     public RateLimitGatewayFilter(RateLimiter rateLimiter) {
+        this(rateLimiter, RateLimiterMetrics.NOOP);
+    }
+
+    public RateLimitGatewayFilter(RateLimiter rateLimiter, RateLimiterMetrics metrics) {
+        this(rateLimiter, metrics, new PolicyRegistry());
+    }
+
+    public RateLimitGatewayFilter(RateLimiter rateLimiter, RateLimiterMetrics metrics, PolicyRegistry policyRegistry) {
+        this(rateLimiter, metrics, policyRegistry, ConcurrencyLimiter.disabled());
+    }
+
+    @Autowired
+    public RateLimitGatewayFilter(RateLimiter rateLimiter, RateLimiterMetrics metrics, PolicyRegistry policyRegistry,
+                                  ConcurrencyLimiter concurrencyLimiter) {
         super(Config.class);
         this.rateLimiter = Objects.requireNonNull(rateLimiter, "RateLimiter cannot be null");
+        this.metrics = Objects.requireNonNull(metrics, "Metrics cannot be null");
+        this.policyRegistry = Objects.requireNonNull(policyRegistry, "Policy registry cannot be null");
+        this.concurrencyLimiter = Objects.requireNonNull(concurrencyLimiter, "Concurrency limiter cannot be null");
     }
 
     @Override
     public GatewayFilter apply(Config config) {
+        CompositeRateLimitPolicy compositePolicy = config.getCompositePolicy();
+        Map<String, KeyType> dimensions = compositePolicy != null ? keyTypes(compositePolicy) : Map.of();
+        RateLimitPolicy routePolicy = config.getPolicy();
+        String routeSuffix = routePolicy != null ? ":" + PolicyRule.stateSuffix(routePolicy) : null;
+        // Holds every dimension's key without rehashing
+        int keysCapacity = (int) (dimensions.size() / 0.75f) + 1;
+
         return (exchange, chain) -> {
+            long start = System.nanoTime();
             ServerHttpRequest request = exchange.getRequest();
-            String key = resolveKey(request, config);
+            // Logged as is: SLF4J formats a composite request's key map only when the level is enabled
+            Object logKey;
+            Mono<RateLimitResult> decision;
+            // Non-blocking decision: the store replies on its own I/O threads, not the event loop
+            if (compositePolicy != null) {
+                Map<String, String> keys = new HashMap<>(keysCapacity);
+                for (Map.Entry<String, KeyType> dimension : dimensions.entrySet()) {
+                    keys.put(dimension.getKey(), resolveKey(request, dimension.getValue()));
+                }
+                logKey = keys;
+                decision = Mono.fromCompletionStage(() -> rateLimiter.tryAcquireAsync(compositePolicy, keys));
+            } else {
+                String key = resolveKey(request, config.getKeyType());
+                logKey = key;
+                PolicyRule rule = policyRegistry.resolveRule(key, request.getPath().value(),
+                        name -> request.getHeaders().getFirst(name));
+                if (rule != null) {
+                    String stateKey = key + rule.getStateSuffix();
+                    decision = Mono.fromCompletionStage(() -> rateLimiter.tryAcquireAsync(stateKey, rule.getPolicy()));
+                } else if (routePolicy != null) {
+                    String stateKey = key + routeSuffix;
+                    decision = Mono.fromCompletionStage(() -> rateLimiter.tryAcquireAsync(stateKey, routePolicy));
+                } else {
+                    decision = Mono.fromCompletionStage(() -> rateLimiter.tryAcquireAsync(key));
+                }
+            }
+
+            log.debug("Rate limiting request for key: {}", logKey);
+
+            return decision.flatMap(result -> {
+                metrics.recordFilterLatency(System.nanoTime() - start);
+                ServerHttpResponse response = exchange.getResponse();
+                addRateLimitHeaders(response, result);
+
+                if (result.isAllowed()) {
+                    log.debug("Request allowed for key: {}", logKey);
+                    return forward(exchange, chain);
+                } else {
+                    log.warn("Request denied for key: {} - limit exceeded", logKey);
+                    response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
 
-            log.debug("Rate limiting request for key: {}", key);
+                    long retryAfterMillis = result.getRetryAfterMillis();
+                    if (retryAfterMillis > 0) {
+                        // Retry-After only carries whole seconds; round up so sub-second waits are not sent as 0
+                        response.getHeaders().add("Retry-After", String.valueOf((retryAfterMillis + 999) / 1000));
+                        response.getHeaders().add(X_RATE_LIMIT_RETRY_AFTER_MS, String.valueOf(retryAfterMillis));
+                    }
 
-            RateLimitResult result = config.getPolicy() != null
-                    ? rateLimiter.tryAcquire(key, config.getPolicy())
-                    : rateLimiter.tryAcquire(key);
+                    return response.setComplete();
+                }
+            });
+        };
+    }
 
+    /**
+     * Passes the request on within its route's concurrency limit and reports how it completed.
+     */
+    private Mono<Void> forward(ServerWebExchange exchange, GatewayFilterChain chain) {
+        if (!concurrencyLimiter.isEnabled()) {
+            return chain.filter(exchange);
+        }
+        Route route = exchange.getAttribute(ServerWebExchangeUtils.GATEWAY_ROUTE_ATTR);
+        String routeId = route != null ? route.getId() : "default";
+        Optional<ConcurrencyLimiter.Permit> permit = concurrencyLimiter.tryAcquire(routeId);
+        if (permit.isEmpty()) {
+            log.warn("Request rejected for route: {} - concurrency limit {} reached", routeId,
+                    concurrencyLimiter.getLimit(routeId));
             ServerHttpResponse response = exchange.getResponse();
-            addRateLimitHeaders(response, result);
+            response.setStatusCode(HttpStatus.SERVICE_UNAVAILABLE);
+            return response.setComplete();
+        }
+        return chain.filter(exchange)
+                .doFinally(signal -> complete(permit.get(), signal, exchange.getResponse().getStatusCode()));
+    }
 
-            if (result.isAllowed()) {
-                log.debug("Request allowed for key: {}", key);
-                return chain.filter(exchange);
-            } else {
-                log.warn("Request denied for key: {} - limit exceeded", key);
-                response.setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+    private static void complete(ConcurrencyLimiter.Permit permit, SignalType signal, HttpStatusCode status) {
+        if (signal == SignalType.CANCEL) {
+            // The client went away; says nothing about the backend
+            permit.onIgnore();
+        } else if (signal == SignalType.ON_ERROR || isOverloaded(status)) {
+            permit.onDropped();
+        } else {
+            permit.onSuccess();
+        }
+    }
 
-                result.getRetryAfter().ifPresent(retryAfter ->
-                        response.getHeaders().add("Retry-After", String.valueOf(retryAfter.getSeconds()))
-                );
+    private static boolean isOverloaded(HttpStatusCode status) {
+        return status != null && (status.value() == 502 || status.value() == 503 || status.value() == 504);
+    }
 
-                return response.setComplete();
+    /**
+     * Maps each dimension of the composite policy to the key type it names.
+     */
+    private static Map<String, KeyType> keyTypes(CompositeRateLimitPolicy policy) {
+        Map<String, KeyType> keyTypes = new HashMap<>();
+        for (String dimension : policy.getDimensions()) {
+            try {
+                keyTypes.put(dimension, KeyType.valueOf(dimension.toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Composite policy dimension " + dimension + " is not a key type", e);
             }
-        };
+        }
+        return keyTypes;
     }
 
-    private String resolveKey(ServerHttpRequest request, Config config) {
-        return switch (config.getKeyType()) {
+    private String resolveKey(ServerHttpRequest request, KeyType keyType) {
+        return switch (keyType) {
             case IP -> getClientIp(request);
             case USER -> getUserId(request);
             case API_KEY -> getApiKey(request);
@@ -76,16 +228,28 @@ public class RateLimitGatewayFilter extends AbstractGatewayFilterFactory<RateLim
     }
 
     private String getClientIp(ServerHttpRequest request) {
-        String xForwardedFor = request.getHeaders().getFirst("X-Forwarded-For");
-        if (xForwardedFor != null && !xForwardedFor.isEmpty()) {
-            return xForwardedFor.split(",")[0].trim();
-        }
+        return CLIENT_IP.resolve(request);
+    }
 
-        if (request.getRemoteAddress() != null) {
-            return request.getRemoteAddress().getAddress().getHostAddress();
+    private static void appendRemoteAddress(ServerHttpRequest request, KeyBuffer buffer) {
+        InetSocketAddress remote = request.getRemoteAddress();
+        InetAddress address = remote != null ? remote.getAddress() : null;
+        if (address == null) {
+            buffer.append("unknown");
+            return;
+        }
+        byte[] bytes = address.getAddress();
+        if (bytes.length == 4) {
+            buffer.appendIpv4(((bytes[0] & 0xff) << 24) | ((bytes[1] & 0xff) << 16) | ((bytes[2] & 0xff) << 8) | (bytes[3] & 0xff));
+        } else {
+            long high = 0;
+            long low = 0;
+            for (int i = 0; i < 8; i++) {
+                high = (high << 8) | (bytes[i] & 0xff);
+                low = (low << 8) | (bytes[i + 8] & 0xff);
+            }
+            buffer.appendIpv6(high, low);
         }
-
-        return "unknown";
     }
 
     private String getUserId(ServerHttpRequest request) {
@@ -103,15 +267,17 @@ public class RateLimitGatewayFilter extends AbstractGatewayFilterFactory<RateLim
         response.getHeaders().add(X_RATE_LIMIT_LIMIT, String.valueOf(result.getLimit()));
         response.getHeaders().add(X_RATE_LIMIT_REMAINING, String.valueOf(result.getRemaining()));
 
-        result.getRetryAfter().ifPresent(retryAfter ->
-                response.getHeaders().add(X_RATE_LIMIT_RESET, String.valueOf(System.currentTimeMillis() + retryAfter.toMillis()))
-        );
+        long retryAfterMillis = result.getRetryAfterMillis();
+        if (retryAfterMillis > 0) {
+            response.getHeaders().add(X_RATE_LIMIT_RESET, String.valueOf(System.currentTimeMillis() + retryAfterMillis));
+        }
     }
 
     public static class Config {
 
         private KeyType keyType = KeyType.IP;
         private RateLimitPolicy policy;
+        private CompositeRateLimitPolicy compositePolicy;
 
         public KeyType getKeyType() {
             return keyType;
@@ -128,6 +294,18 @@ public class RateLimitGatewayFilter extends AbstractGatewayFilterFactory<RateLim
         public void setPolicy(RateLimitPolicy policy) {
             this.policy = policy;
         }
+
+        public CompositeRateLimitPolicy getCompositePolicy() {
+            return compositePolicy;
+        }
+
+        /**
+         * Checks every level of the policy at once, keyed by the {@link KeyType} each dimension names;
+         * takes precedence over the key type and policy.
+         */
+        public void setCompositePolicy(CompositeRateLimitPolicy compositePolicy) {
+            this.compositePolicy = compositePolicy;
+        }
     }
 
     public enum KeyType {
@@ -0,0 +1,142 @@
+package com.example.ratelimiter.spring;
+
+import com.example.ratelimiter.core.api.RateLimitAlgorithm;
+import com.example.ratelimiter.core.failure.FailureMode;
+import com.example.ratelimiter.core.metrics.RateLimiterMetrics;
+import com.example.ratelimiter.core.metrics.StoreOperation;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link RateLimiterMetrics} backed by a Micrometer {@link MeterRegistry}.
+ * <p>
+ * Every meter is registered up front, one per tag combination, and looked up by enum ordinal, so
+ * recording never builds tags or touches the registry. Decision and failure counts go to
+ * {@link LongAdder}s read by {@link FunctionCounter}s; latencies go to {@link Timer}s that publish
+ * p50/p99/p99.9 and a percentile histogram (HDR histograms internally).
+ * <p>
+ * Meters:
+ * <ul>
+ *   <li>{@code ratelimiter.decisions} tagged {@code algorithm} and {@code outcome} (allowed, denied)</li>
+ *   <li>{@code ratelimiter.decisions.cached} tagged {@code algorithm}: denials answered from the hot key cache</li>
+ *   <li>{@code ratelimiter.failures} tagged {@code algorithm} and {@code failure.mode}</li>
+ *   <li>{@code ratelimiter.store.latency} tagged {@code operation}</li>
+ *   <li>{@code ratelimiter.store.pool.wait}</li>
+ *   <li>{@code ratelimiter.gateway.filter.latency}</li>
+ * </ul>
+ */
+public class MicrometerRateLimiterMetrics implements RateLimiterMetrics {
+
+    private static final double[] PERCENTILES = {0.5, 0.99, 0.999};
+    private static final Duration MIN_EXPECTED_LATENCY = Duration.ofNanos(10_000);
+    private static final Duration MAX_EXPECTED_LATENCY = Duration.ofSeconds(10);
+
+    private final LongAdder[] allowed;
+    private final LongAdder[] denied;
+    private final LongAdder[] cachedDenials;
+    private final LongAdder[][] failures;
+    private final Timer[] storeLatency;
+    private final Timer poolWait;
+    private final Timer filterLatency;
+
+    public MicrometerRateLimiterMetrics(MeterRegistry registry) {
+        Objects.requireNonNull(registry, "Registry cannot be null");
+
+        RateLimitAlgorithm[] algorithms = RateLimitAlgorithm.values();
+        FailureMode[] failureModes = FailureMode.values();
+        this.allowed = new LongAdder[algorithms.length];
+        this.denied = new LongAdder[algorithms.length];
+        this.cachedDenials = new LongAdder[algorithms.length];
+        this.failures = new LongAdder[algorithms.length][failureModes.length];
+        for (RateLimitAlgorithm algorithm : algorithms) {
+            int i = algorithm.ordinal();
+            allowed[i] = decisionCounter(registry, algorithm, "allowed");
+            denied[i] = decisionCounter(registry, algorithm, "denied");
+            LongAdder cached = new LongAdder();
+            FunctionCounter.builder("ratelimiter.decisions.cached", cached, LongAdder::sum)
+                    .description("Requests for hot keys denied from the local denial cache without a store call")
+                    .tag("algorithm", algorithm.name())
+                    .register(registry);
+            cachedDenials[i] = cached;
+            for (FailureMode failureMode : failureModes) {
+                LongAdder count = new LongAdder();
+                FunctionCounter.builder("ratelimiter.failures", count, LongAdder::sum)
+                        .description("Decisions made by the failure mode because the store failed")
+                        .tag("algorithm", algorithm.name())
+                        .tag("failure.mode", failureMode.name())
+                        .register(registry);
+                failures[i][failureMode.ordinal()] = count;
+            }
+        }
+
+        StoreOperation[] operations = StoreOperation.values();
+        this.storeLatency = new Timer[operations.length];
+        for (StoreOperation operation : operations) {
+            storeLatency[operation.ordinal()] = latencyTimer("ratelimiter.store.latency",
+                    "Latency of store operations, including connection pool wait")
+                    .tag("operation", operation.name())
+                    .register(registry);
+        }
+        this.poolWait = latencyTimer("ratelimiter.store.pool.wait",
+                "Time spent waiting for a pooled store connection")
+                .register(registry);
+        this.filterLatency = latencyTimer("ratelimiter.gateway.filter.latency",
+                "Latency added by the gateway rate limit filter")
+                .register(registry);
+    }
+
+    @Override
+    public void recordDecision(RateLimitAlgorithm algorithm, boolean allowed) {
+        (allowed ? this.allowed : this.denied)[algorithm.ordinal()].increment();
+    }
+
+    @Override
+    public void recordCachedDenial(RateLimitAlgorithm algorithm) {
+        cachedDenials[algorithm.ordinal()].increment();
+    }
+
+    @Override
+    public void recordFailure(RateLimitAlgorithm algorithm, FailureMode failureMode) {
+        failures[algorithm.ordinal()][failureMode.ordinal()].increment();
+    }
+
+    @Override
+    public void recordStoreLatency(StoreOperation operation, long nanos) {
+        storeLatency[operation.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordPoolWait(long nanos) {
+        poolWait.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordFilterLatency(long nanos) {
+        filterLatency.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static LongAdder decisionCounter(MeterRegistry registry, RateLimitAlgorithm algorithm, String outcome) {
+        LongAdder count = new LongAdder();
+        FunctionCounter.builder("ratelimiter.decisions", count, LongAdder::sum)
+                .description("Rate limit decisions made by the store")
+                .tag("algorithm", algorithm.name())
+                .tag("outcome", outcome)
+                .register(registry);
+        return count;
+    }
+
+    private static Timer.Builder latencyTimer(String name, String description) {
+        return Timer.builder(name)
+                .description(description)
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(MIN_EXPECTED_LATENCY)
+                .maximumExpectedValue(MAX_EXPECTED_LATENCY);
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.ratelimiter.spring;
+
+import com.example.ratelimiter.core.policy.PolicyRegistry;
+import com.example.ratelimiter.core.policy.PolicyRule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reloads a {@link PolicyRegistry} from a rules file whenever the file's modification time changes.
+ * <p>
+ * The file is polled on a single daemon thread. An unreadable or invalid file is logged and the
+ * registry keeps its current rules until the file is fixed.
+ */
+public class PolicyFileReloader implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(PolicyFileReloader.class);
+
+    private final PolicyRegistry registry;
+    private final List<PolicyRule> baseRules;
+    private final Path file;
+    private final ScheduledExecutorService executor;
+    private FileTime lastModified;
+
+    public PolicyFileReloader(PolicyRegistry registry, List<PolicyRule> baseRules, Path file, Duration interval) {
+        this.registry = Objects.requireNonNull(registry, "Registry cannot be null");
+        this.baseRules = List.copyOf(baseRules);
+        this.file = Objects.requireNonNull(file, "File cannot be null");
+        if (interval == null || interval.isZero() || interval.isNegative()) {
+            throw new IllegalArgumentException("interval must be greater than 0");
+        }
+
+        reloadIfChanged();
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "rate-limiter-policy-reload");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::reloadIfChanged, interval.toMillis(), interval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    private void reloadIfChanged() {
+        try {
+            FileTime modified = Files.getLastModifiedTime(file);
+            if (modified.equals(lastModified)) {
+                return;
+            }
+            // A broken file is reported once, then again only after it changes
+            lastModified = modified;
+            registry.reload(baseRules, file);
+        } catch (IOException | IllegalArgumentException e) {
+            log.error("Failed to load rate limit policy rules from {}, keeping current rules", file, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -1,25 +1,61 @@
 package com.example.ratelimiter.spring;
 
+import com.example.ratelimiter.core.api.ClockMode;
 import com.example.ratelimiter.core.api.RateLimitAlgorithm;
 import com.example.ratelimiter.core.api.RateLimitPolicy;
 import com.example.ratelimiter.core.api.RateLimitStore;
 import com.example.ratelimiter.core.api.RateLimiter;
+import com.example.ratelimiter.core.api.TimeSource;
+import com.example.ratelimiter.core.concurrency.AimdLimit;
+import com.example.ratelimiter.core.concurrency.ConcurrencyLimit;
+import com.example.ratelimiter.core.concurrency.ConcurrencyLimiter;
+import com.example.ratelimiter.core.concurrency.GradientLimit;
+import com.example.ratelimiter.core.failure.CircuitBreaker;
+import com.example.ratelimiter.core.failure.CircuitBreakerRateLimitStore;
 import com.example.ratelimiter.core.failure.FailureMode;
+import com.example.ratelimiter.core.hotkey.HotKeyShield;
+import com.example.ratelimiter.core.impl.CoalescingRateLimiter;
 import com.example.ratelimiter.core.impl.DefaultRateLimiter;
+import com.example.ratelimiter.core.metrics.RateLimiterMetrics;
+import com.example.ratelimiter.core.policy.PolicyRegistry;
+import com.example.ratelimiter.core.policy.PolicyRule;
+import com.example.ratelimiter.core.policy.PolicyRules;
+import com.example.ratelimiter.core.time.CachedTimeSource;
+import com.example.ratelimiter.core.time.MonotonicTimeSource;
+import com.example.ratelimiter.gossip.GossipRateLimitStore;
+import com.example.ratelimiter.redis.LettuceRateLimitStore;
+import com.example.ratelimiter.redis.PipelinedRedisRateLimitStore;
+import com.example.ratelimiter.redis.RedisClusterRateLimitStore;
 import com.example.ratelimiter.redis.RedisRateLimitStore;
+import io.lettuce.core.RedisURI;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import redis.clients.jedis.HostAndPort;
 
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
 
 /**
  * Spring Boot auto-configuration for Rate Limiter.
+ * <p>
+ * Decisions, store latency and gateway filter latency are reported to Micrometer when
+ * micrometer-core is on the classpath and a {@link MeterRegistry} bean exists (e.g. with Spring
+ * Boot Actuator); otherwise {@link RateLimiterMetrics#NOOP} is used.
  */
 @AutoConfiguration
 @ConditionalOnClass(RateLimiter.class)
@@ -29,16 +65,64 @@ public class RateLimiterAutoConfiguration {
 
     private static final Logger log = LoggerFactory.getLogger(RateLimiterAutoConfiguration.class);
 
+    /**
+     * Gossip store in place of Redis; declared first so the Redis store backs off.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "rate-limiter.gossip", name = "enabled", havingValue = "true")
+    public GossipRateLimitStore gossipRateLimitStore(RateLimiterProperties properties) {
+        RateLimiterProperties.GossipProperties gossip = properties.getGossip();
+        List<InetSocketAddress> peers = new ArrayList<>();
+        for (String peer : gossip.getPeers()) {
+            peers.add(socketAddress(peer));
+        }
+        return new GossipRateLimitStore(socketAddress(gossip.getAddress()), peers, Duration.parse(gossip.getInterval()));
+    }
+
     @Bean
     @ConditionalOnMissingBean
     @ConditionalOnProperty(prefix = "rate-limiter.redis", name = "enabled", havingValue = "true", matchIfMissing = true)
-    public RateLimitStore rateLimitStore(RateLimiterProperties properties) {
-        log.info("Configuring Redis rate limit store with host: {}, port: {}",
-                properties.getRedis().getHost(), properties.getRedis().getPort());
+    public RateLimitStore rateLimitStore(RateLimiterProperties properties, RateLimiterMetrics metrics) {
+        ClockMode clockMode = ClockMode.valueOf(properties.getRedis().getClockMode().toUpperCase());
+        if (!properties.getRedis().getClusterNodes().isEmpty()) {
+            log.info("Configuring Redis Cluster rate limit store with seed nodes: {}", properties.getRedis().getClusterNodes());
+
+            Set<HostAndPort> nodes = new LinkedHashSet<>();
+            for (String node : properties.getRedis().getClusterNodes()) {
+                nodes.add(HostAndPort.from(node.trim()));
+            }
+            return new RedisClusterRateLimitStore(nodes, metrics, clockMode);
+        }
+
+        log.info("Configuring Redis rate limit store with host: {}, port: {}, client: {}, clock: {}",
+                properties.getRedis().getHost(), properties.getRedis().getPort(), properties.getRedis().getClient(),
+                clockMode);
+
+        if ("LETTUCE".equalsIgnoreCase(properties.getRedis().getClient())) {
+            return new LettuceRateLimitStore(
+                    RedisURI.create(properties.getRedis().getHost(), properties.getRedis().getPort()),
+                    metrics,
+                    clockMode
+            );
+        }
+
+        if ("PIPELINED".equalsIgnoreCase(properties.getRedis().getClient())) {
+            return new PipelinedRedisRateLimitStore(
+                    properties.getRedis().getHost(),
+                    properties.getRedis().getPort(),
+                    properties.getRedis().getConnections(),
+                    Duration.parse(properties.getRedis().getTimeout()),
+                    metrics,
+                    clockMode
+            );
+        }
 
         return new RedisRateLimitStore(
                 properties.getRedis().getHost(),
-                properties.getRedis().getPort()
+                properties.getRedis().getPort(),
+                metrics,
+                clockMode
         );
     }
 
@@ -57,14 +141,167 @@ public class RateLimiterAutoConfiguration {
                 .build();
     }
 
+    /**
+     * Route- and tenant-specific policies from {@code rate-limiter.rules}; empty unless configured.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public PolicyRegistry policyRegistry(RateLimiterProperties properties) {
+        return new PolicyRegistry(configuredRules(properties));
+    }
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "rate-limiter", name = "rules-file")
+    public PolicyFileReloader policyFileReloader(PolicyRegistry policyRegistry, RateLimiterProperties properties) {
+        log.info("Loading rate limit policy rules from {}, checking for changes every {}",
+                properties.getRulesFile(), properties.getRulesReloadInterval());
+        return new PolicyFileReloader(policyRegistry, configuredRules(properties), Path.of(properties.getRulesFile()),
+                Duration.parse(properties.getRulesReloadInterval()));
+    }
+
+    /**
+     * Closed with the context, which stops the in-memory store of the LOCAL_FALLBACK failure mode.
+     */
     @Bean
     @ConditionalOnMissingBean
     public RateLimiter rateLimiter(RateLimitStore store,
                                    RateLimitPolicy defaultPolicy,
-                                   RateLimiterProperties properties) {
-        log.info("Configuring rate limiter with failure mode: {}", properties.getFailureMode());
+                                   RateLimiterProperties properties,
+                                   RateLimiterMetrics metrics,
+                                   HotKeyShield hotKeyShield,
+                                   TimeSource timeSource) {
+        log.info("Configuring rate limiter with failure mode: {}, circuit breaker enabled: {}",
+                properties.getFailureMode(), properties.getCircuitBreaker().isEnabled());
 
         FailureMode failureMode = FailureMode.valueOf(properties.getFailureMode().toUpperCase());
-        return new DefaultRateLimiter(store, defaultPolicy, failureMode);
+        RateLimiterProperties.CircuitBreakerProperties circuitBreaker = properties.getCircuitBreaker();
+        if (circuitBreaker.isEnabled()) {
+            store = new CircuitBreakerRateLimitStore(store, CircuitBreaker.builder()
+                    .failureRateThreshold(circuitBreaker.getFailureRateThreshold())
+                    .slowCallThreshold(Duration.parse(circuitBreaker.getSlowCallThreshold()))
+                    .slowCallRateThreshold(circuitBreaker.getSlowCallRateThreshold())
+                    .minimumCalls(circuitBreaker.getMinimumCalls())
+                    .window(Duration.parse(circuitBreaker.getWindow()))
+                    .openDuration(Duration.parse(circuitBreaker.getOpenDuration()))
+                    .build());
+        }
+        DefaultRateLimiter rateLimiter = new DefaultRateLimiter(store, defaultPolicy, failureMode, timeSource, metrics,
+                properties.getFallbackNodeCount(), hotKeyShield);
+
+        RateLimiterProperties.CoalescingProperties coalescing = properties.getCoalescing();
+        if (!coalescing.isEnabled()) {
+            return rateLimiter;
+        }
+        log.info("Coalescing concurrent acquires per key: window={}, max batch size={}",
+                coalescing.getWindow(), coalescing.getMaxBatchSize());
+        return new CoalescingRateLimiter(rateLimiter, defaultPolicy, Duration.parse(coalescing.getWindow()),
+                coalescing.getMaxBatchSize());
+    }
+
+    /**
+     * Clock of the rate limiter; a CACHED source's refresh thread is stopped with the context.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public TimeSource rateLimiterTimeSource(RateLimiterProperties properties) {
+        return switch (properties.getTimeSource().toUpperCase()) {
+            case "SYSTEM" -> TimeSource.SYSTEM;
+            case "MONOTONIC" -> new MonotonicTimeSource();
+            case "CACHED" -> new CachedTimeSource();
+            default -> throw new IllegalArgumentException(
+                    "Invalid rate-limiter.time-source: " + properties.getTimeSource());
+        };
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public HotKeyShield hotKeyShield(RateLimiterProperties properties) {
+        RateLimiterProperties.HotKeyProperties hotKeys = properties.getHotKeys();
+        if (!hotKeys.isEnabled()) {
+            return HotKeyShield.disabled();
+        }
+        log.info("Configuring hot key shield: threshold={}, capacity={}", hotKeys.getThreshold(), hotKeys.getCapacity());
+        return HotKeyShield.builder()
+                .threshold(hotKeys.getThreshold())
+                .capacity(hotKeys.getCapacity())
+                .sketchWidth(hotKeys.getSketchWidth())
+                .build();
+    }
+
+    /**
+     * Per-route limit on requests in flight, adapted from the latency the gateway filter reports.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public ConcurrencyLimiter concurrencyLimiter(RateLimiterProperties properties) {
+        RateLimiterProperties.ConcurrencyProperties concurrency = properties.getConcurrency();
+        if (!concurrency.isEnabled()) {
+            return ConcurrencyLimiter.disabled();
+        }
+        log.info("Configuring adaptive concurrency limit: algorithm={}, initial={}, min={}, max={}",
+                concurrency.getAlgorithm(), concurrency.getInitialLimit(), concurrency.getMinLimit(),
+                concurrency.getMaxLimit());
+        Supplier<ConcurrencyLimit> limit = switch (concurrency.getAlgorithm().toUpperCase()) {
+            case "GRADIENT" -> () -> GradientLimit.builder()
+                    .initialLimit(concurrency.getInitialLimit())
+                    .minLimit(concurrency.getMinLimit())
+                    .maxLimit(concurrency.getMaxLimit())
+                    .build();
+            case "AIMD" -> () -> AimdLimit.builder()
+                    .initialLimit(concurrency.getInitialLimit())
+                    .minLimit(concurrency.getMinLimit())
+                    .maxLimit(concurrency.getMaxLimit())
+                    .build();
+            default -> throw new IllegalArgumentException(
+                    "Invalid rate-limiter.concurrency.algorithm: " + concurrency.getAlgorithm());
+        };
+        // Validates the settings at startup rather than on the first request
+        limit.get();
+        return ConcurrencyLimiter.builder()
+                .limit(limit)
+                .build();
+    }
+
+    private static InetSocketAddress socketAddress(String hostAndPort) {
+        HostAndPort address = HostAndPort.from(hostAndPort.trim());
+        return new InetSocketAddress(address.getHost(), address.getPort());
+    }
+
+    private static List<PolicyRule> configuredRules(RateLimiterProperties properties) {
+        List<PolicyRule> rules = new ArrayList<>(properties.getRules().size());
+        for (int i = 0; i < properties.getRules().size(); i++) {
+            try {
+                rules.add(PolicyRules.parseRule(properties.getRules().get(i)));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid rate-limiter.rules[" + i + "]: " + e.getMessage(), e);
+            }
+        }
+        return rules;
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public RateLimiterMetrics rateLimiterMetrics() {
+        return RateLimiterMetrics.NOOP;
+    }
+
+    /**
+     * Registers Micrometer metrics ahead of the no-op fallback when Micrometer is on the classpath.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(MeterRegistry.class)
+    static class MicrometerMetricsConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean
+        public RateLimiterMetrics rateLimiterMetrics(ObjectProvider<MeterRegistry> registry) {
+            MeterRegistry meterRegistry = registry.getIfAvailable();
+            if (meterRegistry == null) {
+                return RateLimiterMetrics.NOOP;
+            }
+            log.info("Publishing rate limiter metrics to {}", meterRegistry.getClass().getSimpleName());
+            return new MicrometerRateLimiterMetrics(meterRegistry);
+        }
     }
 }
@@ -2,6 +2,9 @@ package com.example.ratelimiter.spring;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Configuration properties for Rate Limiter.
  */
@@ -33,11 +36,65 @@ public class RateLimiterProperties {
      */
     private String failureMode = "FAIL_OPEN";
 
+    /**
+     * Number of nodes sharing each limit; with the LOCAL_FALLBACK failure mode each node enforces
+     * limit / node count in memory while the store is unavailable.
+     */
+    private int fallbackNodeCount = 1;
+
+    /**
+     * Clock of the rate limiter: SYSTEM, MONOTONIC (immune to system clock steps) or CACHED
+     * (the system clock, read once per millisecond by a background thread for hot paths).
+     */
+    private String timeSource = "SYSTEM";
+
+    /**
+     * Route- and tenant-specific policy rules, one per entry in match order, e.g.
+     * {@code path=/api/orders/** header=X-Tenant-Id:acme limit=1000 window=PT1M}.
+     * Requests matching no rule use the default policy.
+     */
+    private List<String> rules = new ArrayList<>();
+
+    /**
+     * File of further policy rules, one per line, matched after {@code rules}; reloaded when it changes.
+     */
+    private String rulesFile;
+
+    /**
+     * How often the rules file is checked for changes (ISO-8601 duration format).
+     */
+    private String rulesReloadInterval = "PT10S";
+
+    /**
+     * Store circuit breaker configuration.
+     */
+    private CircuitBreakerProperties circuitBreaker = new CircuitBreakerProperties();
+
+    /**
+     * Hot key detection and local denial cache configuration.
+     */
+    private HotKeyProperties hotKeys = new HotKeyProperties();
+
+    /**
+     * Coalescing of concurrent acquires on the same key into one store call.
+     */
+    private CoalescingProperties coalescing = new CoalescingProperties();
+
+    /**
+     * Adaptive limit on requests in flight per gateway route.
+     */
+    private ConcurrencyProperties concurrency = new ConcurrencyProperties();
+
     /**
      * Redis configuration.
      */
     private RedisProperties redis = new RedisProperties();
 
+    /**
+     * Peer-to-peer gossip store, used instead of Redis when enabled.
+     */
+    private GossipProperties gossip = new GossipProperties();
+
     public boolean isEnabled() {
         return enabled;
     }
@@ -78,6 +135,78 @@ public class RateLimiterProperties {
         this.failureMode = failureMode;
     }
 
+    public int getFallbackNodeCount() {
+        return fallbackNodeCount;
+    }
+
+    public void setFallbackNodeCount(int fallbackNodeCount) {
+        this.fallbackNodeCount = fallbackNodeCount;
+    }
+
+    public List<String> getRules() {
+        return rules;
+    }
+
+    public void setRules(List<String> rules) {
+        this.rules = rules;
+    }
+
+    public String getRulesFile() {
+        return rulesFile;
+    }
+
+    public void setRulesFile(String rulesFile) {
+        this.rulesFile = rulesFile;
+    }
+
+    public String getRulesReloadInterval() {
+        return rulesReloadInterval;
+    }
+
+    public void setRulesReloadInterval(String rulesReloadInterval) {
+        this.rulesReloadInterval = rulesReloadInterval;
+    }
+
+    public CircuitBreakerProperties getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public void setCircuitBreaker(CircuitBreakerProperties circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    public HotKeyProperties getHotKeys() {
+        return hotKeys;
+    }
+
+    public void setHotKeys(HotKeyProperties hotKeys) {
+        this.hotKeys = hotKeys;
+    }
+
+    public CoalescingProperties getCoalescing() {
+        return coalescing;
+    }
+
+    public void setCoalescing(CoalescingProperties coalescing) {
+        this.coalescing = coalescing;
+    }
+
+    public ConcurrencyProperties getConcurrency() {
+        return concurrency;
+    }
+
+    public void setConcurrency(ConcurrencyProperties concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    public String getTimeSource() {
+        return timeSource;
+    }
+
+    public void setTimeSource(String timeSource) {
+        this.timeSource = timeSource;
+    }
+
     public RedisProperties getRedis() {
         return redis;
     }
@@ -86,6 +215,14 @@ public class RateLimiterProperties {
         this.redis = redis;
     }
 
+    public GossipProperties getGossip() {
+        return gossip;
+    }
+
+    public void setGossip(GossipProperties gossip) {
+        this.gossip = gossip;
+    }
+
     public static class RedisProperties {
 
         /**
@@ -113,6 +250,34 @@ public class RateLimiterProperties {
          */
         private int database = 0;
 
+        /**
+         * Redis client: JEDIS (pooled, blocking), LETTUCE (non-blocking, for reactive gateways) or
+         * PIPELINED (a few multiplexed connections pipelining the commands of all callers).
+         */
+        private String client = "JEDIS";
+
+        /**
+         * Number of multiplexed connections of the PIPELINED client.
+         */
+        private int connections = 2;
+
+        /**
+         * Connect timeout, and how long the PIPELINED client waits for a reply before failing the call
+         * and replacing the connection (ISO-8601 duration format).
+         */
+        private String timeout = "PT2S";
+
+        /**
+         * Redis Cluster seed nodes as host:port; when set, a cluster store is used instead of host and port.
+         */
+        private List<String> clusterNodes = new ArrayList<>();
+
+        /**
+         * Clock the scripts decide with: CLIENT (each node's time source) or SERVER (Redis TIME,
+         * immune to clock skew between nodes).
+         */
+        private String clockMode = "CLIENT";
+
         public boolean isEnabled() {
             return enabled;
         }
@@ -121,6 +286,14 @@ public class RateLimiterProperties {
             this.enabled = enabled;
         }
 
+        public String getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(String timeout) {
+            this.timeout = timeout;
+        }
+
         public String getHost() {
             return host;
         }
@@ -152,5 +325,352 @@ public class RateLimiterProperties {
         public void setDatabase(int database) {
             this.database = database;
         }
+
+        public int getConnections() {
+            return connections;
+        }
+
+        public void setConnections(int connections) {
+            this.connections = connections;
+        }
+
+        public String getClient() {
+            return client;
+        }
+
+        public void setClient(String client) {
+            this.client = client;
+        }
+
+        public List<String> getClusterNodes() {
+            return clusterNodes;
+        }
+
+        public void setClusterNodes(List<String> clusterNodes) {
+            this.clusterNodes = clusterNodes;
+        }
+
+        public String getClockMode() {
+            return clockMode;
+        }
+
+        public void setClockMode(String clockMode) {
+            this.clockMode = clockMode;
+        }
+    }
+
+    public static class CircuitBreakerProperties {
+
+        /**
+         * Stop calling the store while it fails or is slow, letting the failure mode decide at once.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Share of failed store calls in the window that opens the circuit.
+         */
+        private double failureRateThreshold = 0.5;
+
+        /**
+         * Latency from which a store call counts as slow (ISO-8601 duration format).
+         */
+        private String slowCallThreshold = "PT0.25S";
+
+        /**
+         * Share of slow store calls above which the circuit opens; 0.01 opens when p99 exceeds the slow call threshold.
+         */
+        private double slowCallRateThreshold = 0.01;
+
+        /**
+         * Store calls the window must hold before the circuit can open; 100 makes the 0.01 slow call rate a p99.
+         */
+        private int minimumCalls = 100;
+
+        /**
+         * Sliding window over which store calls are counted (ISO-8601 duration format).
+         */
+        private String window = "PT10S";
+
+        /**
+         * Time the circuit stays open before probing store health (ISO-8601 duration format).
+         */
+        private String openDuration = "PT5S";
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public double getFailureRateThreshold() {
+            return failureRateThreshold;
+        }
+
+        public void setFailureRateThreshold(double failureRateThreshold) {
+            this.failureRateThreshold = failureRateThreshold;
+        }
+
+        public String getSlowCallThreshold() {
+            return slowCallThreshold;
+        }
+
+        public void setSlowCallThreshold(String slowCallThreshold) {
+            this.slowCallThreshold = slowCallThreshold;
+        }
+
+        public double getSlowCallRateThreshold() {
+            return slowCallRateThreshold;
+        }
+
+        public void setSlowCallRateThreshold(double slowCallRateThreshold) {
+            this.slowCallRateThreshold = slowCallRateThreshold;
+        }
+
+        public int getMinimumCalls() {
+            return minimumCalls;
+        }
+
+        public void setMinimumCalls(int minimumCalls) {
+            this.minimumCalls = minimumCalls;
+        }
+
+        public String getWindow() {
+            return window;
+        }
+
+        public void setWindow(String window) {
+            this.window = window;
+        }
+
+        public String getOpenDuration() {
+            return openDuration;
+        }
+
+        public void setOpenDuration(String openDuration) {
+            this.openDuration = openDuration;
+        }
+    }
+
+    public static class HotKeyProperties {
+
+        /**
+         * Deny hot keys from a local cache until their retry-after instead of calling the store.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Estimated recent requests from which a key is hot and its denials are cached.
+         */
+        private int threshold = 64;
+
+        /**
+         * Maximum number of hot keys tracked by name.
+         */
+        private int capacity = 1024;
+
+        /**
+         * Counters per row of the count-min sketch estimating key frequencies.
+         */
+        private int sketchWidth = 8192;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getThreshold() {
+            return threshold;
+        }
+
+        public void setThreshold(int threshold) {
+            this.threshold = threshold;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public void setCapacity(int capacity) {
+            this.capacity = capacity;
+        }
+
+        public int getSketchWidth() {
+            return sketchWidth;
+        }
+
+        public void setSketchWidth(int sketchWidth) {
+            this.sketchWidth = sketchWidth;
+        }
+    }
+
+    public static class CoalescingProperties {
+
+        /**
+         * Merge concurrent blocking acquires of one key and policy into one weighted store call.
+         */
+        private boolean enabled = false;
+
+        /**
+         * How long a batch waits for more callers once the key's previous store call returned
+         * (ISO-8601 duration format); PT0S only merges callers arriving during a store call.
+         */
+        private String window = "PT0S";
+
+        /**
+         * Number of callers after which a batch goes to the store without waiting further.
+         */
+        private int maxBatchSize = 256;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getWindow() {
+            return window;
+        }
+
+        public void setWindow(String window) {
+            this.window = window;
+        }
+
+        public int getMaxBatchSize() {
+            return maxBatchSize;
+        }
+
+        public void setMaxBatchSize(int maxBatchSize) {
+            this.maxBatchSize = maxBatchSize;
+        }
+    }
+
+    public static class ConcurrencyProperties {
+
+        /**
+         * Bound requests in flight per route by a limit adapted to the backend's latency.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Limit controller: GRADIENT (shrinks as latency rises) or AIMD (backs off on drops only).
+         */
+        private String algorithm = "GRADIENT";
+
+        /**
+         * Limit before any request completed.
+         */
+        private int initialLimit = 20;
+
+        /**
+         * Lower bound of the limit.
+         */
+        private int minLimit = 1;
+
+        /**
+         * Upper bound of the limit.
+         */
+        private int maxLimit = 1000;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getAlgorithm() {
+            return algorithm;
+        }
+
+        public void setAlgorithm(String algorithm) {
+            this.algorithm = algorithm;
+        }
+
+        public int getInitialLimit() {
+            return initialLimit;
+        }
+
+        public void setInitialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+        }
+
+        public int getMinLimit() {
+            return minLimit;
+        }
+
+        public void setMinLimit(int minLimit) {
+            this.minLimit = minLimit;
+        }
+
+        public int getMaxLimit() {
+            return maxLimit;
+        }
+
+        public void setMaxLimit(int maxLimit) {
+            this.maxLimit = maxLimit;
+        }
+    }
+
+    public static class GossipProperties {
+
+        /**
+         * Decide in local memory and gossip counts between the nodes instead of using Redis.
+         */
+        private boolean enabled = false;
+
+        /**
+         * host:port this node listens on for gossip, as its peers list it.
+         */
+        private String address = "localhost:7420";
+
+        /**
+         * host:port of every other node.
+         */
+        private List<String> peers = new ArrayList<>();
+
+        /**
+         * Time between gossip rounds (ISO-8601 duration format); the error bound is per round.
+         */
+        private String interval = "PT0.01S";
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public String getAddress() {
+            return address;
+        }
+
+        public void setAddress(String address) {
+            this.address = address;
+        }
+
+        public List<String> getPeers() {
+            return peers;
+        }
+
+        public void setPeers(List<String> peers) {
+            this.peers = peers;
+        }
+
+        public String getInterval() {
+            return interval;
+        }
+
+        public void setInterval(String interval) {
+            this.interval = interval;
+        }
     }
 }
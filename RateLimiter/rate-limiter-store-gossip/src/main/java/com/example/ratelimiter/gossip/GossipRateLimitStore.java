@@ -0,0 +1,545 @@
+package com.example.ratelimiter.gossip;
+
+import com.example.ratelimiter.core.api.RateLimitScript;
+import com.example.ratelimiter.core.api.RateLimitStore;
+import com.example.ratelimiter.core.api.TimeSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * RateLimitStore for deployments without Redis: every node decides locally and the nodes gossip
+ * their counts to each other.
+ * <p>
+ * Each key is a window counter ({@link WindowCounter}) holding a PN-counter per node for the current
+ * and previous window. Decisions read and update local memory only. Once per gossip interval every
+ * node sends the counts it changed to all peers over non-blocking TCP ({@link GossipTransport}), and
+ * peers merge them by taking the per-node maximum, so the nodes converge on the same counts however
+ * gossip is delayed or repeated.
+ * <p>
+ * Between two gossip rounds a node does not see what its peers admit. To bound the resulting error,
+ * a node admits at most its share, {@code ceil(remaining / nodes)}, of the budget it saw remaining
+ * before its counts of the last two rounds were sent (the last round's may still be in flight); a
+ * request with nothing unconfirmed is always decided on the global view alone. While gossip arrives
+ * within a round, the cluster as a whole therefore exceeds a limit by at most one request per node
+ * per round. A node cut off from its peers keeps deciding on its last view.
+ * <p>
+ * {@link RateLimitScript#FIXED_WINDOW} counts the aligned fixed window; every other script is
+ * decided as a sliding window counter over the same limit and window (the token bucket's capacity
+ * per refill period), since buckets and logs have no conflict-free merge. {@code increment},
+ * {@code get} and {@code set} use a fixed window of the TTL's length. Scripts passed
+ * {@link RateLimitScript#SERVER_TIME} decide on this node's clock.
+ * <p>
+ * Keys longer than {@link WindowCounter#MAX_KEY_BYTES} in UTF-8 are counted and gossiped under a
+ * SHA-256 digest of the key.
+ * <p>
+ * Nodes are identified by their {@code host:port} as given here: every node must list the same
+ * addresses, its own included (as {@code bindAddress}), and needs a connection to every peer.
+ */
+public class GossipRateLimitStore implements RateLimitStore {
+
+    private static final Logger log = LoggerFactory.getLogger(GossipRateLimitStore.class);
+
+    private static final Duration DEFAULT_GOSSIP_INTERVAL = Duration.ofMillis(10);
+    private static final int FRAME_HEADER_SIZE = 3 * Integer.BYTES;
+    private static final String KEY_DIGEST_PREFIX = "sha256:";
+
+    private final Map<String, WindowCounter> counters = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Map.Entry<String, WindowCounter>> changed = new ConcurrentLinkedQueue<>();
+    private final int self;
+    private final int nodes;
+    private final long intervalMillis;
+    private final TimeSource timeSource;
+    private final GossipTransport transport;
+
+    // Gossip thread only
+    private final ByteBuffer frame = ByteBuffer.allocate(Integer.BYTES + GossipTransport.MAX_FRAME_SIZE);
+
+    public GossipRateLimitStore(InetSocketAddress bindAddress, List<InetSocketAddress> peers) {
+        this(bindAddress, peers, DEFAULT_GOSSIP_INTERVAL);
+    }
+
+    public GossipRateLimitStore(InetSocketAddress bindAddress, List<InetSocketAddress> peers, Duration gossipInterval) {
+        this(bindAddress, peers, gossipInterval, TimeSource.SYSTEM);
+    }
+
+    /**
+     * @param bindAddress    address this node listens on, and its identity in the cluster
+     * @param peers          addresses of the other nodes
+     * @param gossipInterval time between gossip rounds; the error bound is per round
+     * @param timeSource     clock for TTLs, sweeping and {@link RateLimitScript#SERVER_TIME}
+     */
+    public GossipRateLimitStore(InetSocketAddress bindAddress, List<InetSocketAddress> peers, Duration gossipInterval,
+                                TimeSource timeSource) {
+        Objects.requireNonNull(bindAddress, "Bind address cannot be null");
+        Objects.requireNonNull(peers, "Peers cannot be null");
+        Objects.requireNonNull(gossipInterval, "Gossip interval cannot be null");
+        if (gossipInterval.isZero() || gossipInterval.isNegative()) {
+            throw new IllegalArgumentException("gossipInterval must be greater than 0");
+        }
+        this.timeSource = Objects.requireNonNull(timeSource, "Time source cannot be null");
+
+        // Every node sorts the same addresses, so all agree on each node's slot
+        List<String> members = new ArrayList<>();
+        members.add(nodeId(bindAddress));
+        for (InetSocketAddress peer : peers) {
+            String id = nodeId(peer);
+            if (members.contains(id)) {
+                throw new IllegalArgumentException("Duplicate gossip node " + id);
+            }
+            members.add(id);
+        }
+        members.sort(null);
+        this.self = members.indexOf(nodeId(bindAddress));
+        this.nodes = members.size();
+        this.intervalMillis = Math.max(1, gossipInterval.toMillis());
+
+        log.info("Starting gossip rate limit store {} with peers {}, interval {}", nodeId(bindAddress), peers, gossipInterval);
+        this.transport = new GossipTransport(this, bindAddress, List.copyOf(peers), gossipInterval);
+    }
+
+    @Override
+    public long increment(String key, Duration ttl) {
+        long ttlMillis = ttlMillis(ttl);
+        long now = timeSource.currentTimeMillis();
+        WindowCounter counter = lock(key);
+        try {
+            counter.advance(ttlMillis, now);
+            counter.add(1);
+            changed(key, counter, now);
+            return counter.current();
+        } finally {
+            counter.lock.unlock();
+        }
+    }
+
+    @Override
+    public long get(String key) {
+        WindowCounter counter = find(key);
+        if (counter == null) {
+            return 0;
+        }
+        try {
+            if (counter.window() > 0) {
+                counter.advance(counter.window(), timeSource.currentTimeMillis());
+            }
+            return counter.current();
+        } finally {
+            counter.lock.unlock();
+        }
+    }
+
+    @Override
+    public void set(String key, long value, Duration ttl) {
+        long ttlMillis = ttlMillis(ttl);
+        long now = timeSource.currentTimeMillis();
+        WindowCounter counter = lock(key);
+        try {
+            counter.advance(ttlMillis, now);
+            counter.add(value - counter.current());
+            changed(key, counter, now);
+        } finally {
+            counter.lock.unlock();
+        }
+    }
+
+    /**
+     * Cancels the key's counts on every node; takes effect on peers with the next gossip round.
+     */
+    @Override
+    public boolean delete(String key) {
+        WindowCounter counter = find(key);
+        if (counter == null) {
+            return false;
+        }
+        try {
+            boolean counted = counter.reset();
+            changed(key, counter, timeSource.currentTimeMillis());
+            return counted;
+        } finally {
+            counter.lock.unlock();
+        }
+    }
+
+    @Override
+    public Object executeScript(String script, String[] keys, String[] args) {
+        throw new UnsupportedOperationException("Gossip store does not evaluate Lua scripts");
+    }
+
+    @Override
+    public long[] executeScript(RateLimitScript script, String[] keys, long... args) {
+        long[] reply = new long[3];
+        executeScriptInto(script, keys, args, reply);
+        return reply;
+    }
+
+    /**
+     * Decides under the key's lock, on local state only.
+     */
+    @Override
+    public void executeScriptInto(RateLimitScript script, String[] keys, long[] args, long[] reply) {
+        WindowCounter counter = lock(keys[0]);
+        try {
+            run(script, keys[0], counter, args, reply);
+        } finally {
+            counter.lock.unlock();
+        }
+    }
+
+    /**
+     * Decides all entries under the locks of every involved key, taken in key order. If any entry
+     * is denied, the permits taken by the others are given back before anything is gossiped.
+     */
+    @Override
+    public long[][] executeBatch(RateLimitScript[] scripts, String[][] keys, long[][] args) {
+        String[] ordered = new String[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            ordered[i] = keys[i][0];
+        }
+        Arrays.sort(ordered);
+
+        Map<String, WindowCounter> locked = new HashMap<>();
+        try {
+            for (String key : ordered) {
+                if (!locked.containsKey(key)) {
+                    locked.put(key, lock(key));
+                }
+            }
+
+            long[][] replies = new long[scripts.length][];
+            long[] taken = new long[scripts.length];
+            boolean allowed = true;
+            for (int i = 0; i < scripts.length; i++) {
+                replies[i] = new long[3];
+                taken[i] = run(scripts[i], keys[i][0], locked.get(keys[i][0]), args[i], replies[i]);
+                allowed &= replies[i][0] > 0;
+            }
+
+            if (!allowed) {
+                for (int i = scripts.length - 1; i >= 0; i--) {
+                    locked.get(keys[i][0]).undo(taken[i]);
+                }
+            }
+            return replies;
+        } finally {
+            for (WindowCounter counter : locked.values()) {
+                counter.lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public Map<String, Long> multiGet(String... keys) {
+        Map<String, Long> result = new HashMap<>();
+        for (String key : keys) {
+            result.put(key, get(key));
+        }
+        return result;
+    }
+
+    /**
+     * Healthy while the gossip transport runs; decisions stay local even when peers are unreachable.
+     */
+    @Override
+    public boolean isHealthy() {
+        return transport.isOpen();
+    }
+
+    /**
+     * Number of peers this node currently gossips to.
+     */
+    public int getConnectedPeers() {
+        return transport.connectedPeers();
+    }
+
+    public void close() {
+        transport.close();
+    }
+
+    /**
+     * Runs one built-in script on the locked counter.
+     *
+     * @return the permits taken from this node's count
+     */
+    private long run(RateLimitScript script, String key, WindowCounter counter, long[] args, long[] reply) {
+        long limit = args[0];
+        long window = Math.max(1, args[1]);
+        long clock = timeSource.currentTimeMillis();
+        long now = args[2] == RateLimitScript.SERVER_TIME ? clock : args[2];
+        long cost = args[3];
+
+        counter.advance(window, now);
+        // Zero if a node whose clock is ahead already started this window
+        long elapsed = Math.max(0, now - counter.index() * window);
+        long current = counter.current();
+        double estimated = script == RateLimitScript.FIXED_WINDOW
+                ? current
+                : (double) counter.previous() * (window - elapsed) / window + current;
+
+        // Budget this node may spend before peers hear about it
+        long unconfirmed = counter.unconfirmed();
+        long share = (long) Math.ceil((limit - estimated + unconfirmed) / nodes);
+        long shareLeft = unconfirmed == 0 ? Long.MAX_VALUE : share - unconfirmed;
+        long available = (long) Math.floor(limit - estimated);
+
+        long granted;
+        if (script == RateLimitScript.TOKEN_LEASE) {
+            granted = Math.min(cost, Math.min(available, shareLeft));
+        } else {
+            granted = cost <= available && cost <= shareLeft ? cost : 0;
+        }
+
+        if (granted > 0) {
+            counter.add(granted);
+            changed(key, counter, clock);
+            long remaining = Math.max(0, available - granted);
+            reply(reply, script == RateLimitScript.TOKEN_LEASE ? granted : 1, remaining, 0);
+            return granted;
+        }
+
+        long wanted = script == RateLimitScript.TOKEN_LEASE ? 1 : cost;
+        long retryAfter;
+        if (wanted <= available) {
+            // Denied by the share only: the next round frees it
+            retryAfter = intervalMillis;
+        } else if (script != RateLimitScript.FIXED_WINDOW && counter.previous() > 0 && current + wanted <= limit) {
+            // Previous window decays until the estimate leaves room for this request
+            double targetElapsed = window - (double) (limit - current - wanted) * window / counter.previous();
+            retryAfter = (long) Math.ceil(targetElapsed - elapsed);
+        } else {
+            retryAfter = window - Math.min(elapsed, window - 1);
+        }
+        reply(reply, 0, Math.max(0, available), Math.max(1, retryAfter));
+        return 0;
+    }
+
+    /**
+     * Encodes counters into gossip frames: the counters changed since the last round, marking them
+     * as sent, or all counters for a peer that just connected. A changed counter is sent again the
+     * round after, so its count is confirmed once both rounds went out. Called on the gossip thread
+     * only.
+     */
+    List<ByteBuffer> encode(boolean full) {
+        List<ByteBuffer> frames = new ArrayList<>();
+        List<Map.Entry<String, WindowCounter>> resend = new ArrayList<>();
+        startFrame();
+        int records = 0;
+
+        Iterator<Map.Entry<String, WindowCounter>> entries = full ? counters.entrySet().iterator() : null;
+        Map.Entry<String, WindowCounter> entry;
+        while ((entry = full ? (entries.hasNext() ? entries.next() : null) : changed.poll()) != null) {
+            WindowCounter counter = entry.getValue();
+            counter.lock.lock();
+            try {
+                if (!full) {
+                    counter.queued = false;
+                }
+                if (counter.removed || counter.window() == 0) {
+                    continue;
+                }
+                byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+                if (frame.remaining() < WindowCounter.recordSize(key)) {
+                    frames.add(finishFrame(records));
+                    startFrame();
+                    records = 0;
+                }
+                counter.write(frame, key, !full);
+                records++;
+                if (!full && counter.unconfirmed() > 0) {
+                    // Sent once more next round, after which peers have had a round to merge it
+                    counter.queued = true;
+                    resend.add(entry);
+                }
+            } finally {
+                counter.lock.unlock();
+            }
+        }
+
+        if (records > 0) {
+            frames.add(finishFrame(records));
+        }
+        changed.addAll(resend);
+        return frames;
+    }
+
+    /**
+     * Merges one frame from a peer. Called on the gossip thread only.
+     */
+    void merge(ByteBuffer in) {
+        int node = in.getInt();
+        int records = in.getInt();
+        if (node < 0 || node >= nodes) {
+            throw new IllegalArgumentException("Unknown gossip node " + node);
+        }
+        long clock = timeSource.currentTimeMillis();
+        for (int i = 0; i < records; i++) {
+            int keyLength = Short.toUnsignedInt(in.getShort());
+            if (keyLength > WindowCounter.MAX_KEY_BYTES) {
+                throw new IllegalArgumentException("Invalid gossip key length " + keyLength);
+            }
+            byte[] keyBytes = new byte[keyLength];
+            in.get(keyBytes);
+            long window = in.getLong();
+            long index = in.getLong();
+            long currentP = in.getLong();
+            long currentN = in.getLong();
+            long previousP = in.getLong();
+            long previousN = in.getLong();
+            if (window <= 0) {
+                continue;
+            }
+
+            WindowCounter counter = lock(new String(keyBytes, StandardCharsets.UTF_8));
+            try {
+                counter.merge(node, window, index, currentP, currentN, previousP, previousN);
+                counter.touchedAt = clock;
+            } finally {
+                counter.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Removes counters that were neither used nor merged for two of their windows. Called on the
+     * gossip thread only.
+     */
+    void sweep() {
+        long clock = timeSource.currentTimeMillis();
+        for (Iterator<WindowCounter> values = counters.values().iterator(); values.hasNext(); ) {
+            WindowCounter counter = values.next();
+            if (!counter.lock.tryLock()) {
+                continue;
+            }
+            try {
+                if (!counter.queued && clock - counter.touchedAt > 2 * Math.max(counter.window(), intervalMillis)) {
+                    counter.removed = true;
+                    values.remove();
+                }
+            } finally {
+                counter.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Returns the key's counter, created if absent, with its lock held.
+     */
+    private WindowCounter lock(String key) {
+        key = counterKey(key);
+        while (true) {
+            WindowCounter counter = counters.get(key);
+            if (counter == null) {
+                WindowCounter created = new WindowCounter(self, nodes);
+                counter = counters.putIfAbsent(key, created);
+                if (counter == null) {
+                    counter = created;
+                }
+            }
+            counter.lock.lock();
+            if (!counter.removed) {
+                return counter;
+            }
+            counter.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the key's counter with its lock held, or null if absent.
+     */
+    private WindowCounter find(String key) {
+        key = counterKey(key);
+        while (true) {
+            WindowCounter counter = counters.get(key);
+            if (counter == null) {
+                return null;
+            }
+            counter.lock.lock();
+            if (!counter.removed) {
+                return counter;
+            }
+            counter.lock.unlock();
+        }
+    }
+
+    /**
+     * Queues the locked counter for the next gossip round.
+     */
+    private void changed(String key, WindowCounter counter, long clock) {
+        counter.touchedAt = clock;
+        if (!counter.queued) {
+            counter.queued = true;
+            changed.offer(Map.entry(key, counter));
+        }
+    }
+
+    private void startFrame() {
+        frame.clear();
+        frame.position(FRAME_HEADER_SIZE);
+    }
+
+    private ByteBuffer finishFrame(int records) {
+        frame.putInt(0, frame.position() - Integer.BYTES);
+        frame.putInt(Integer.BYTES, self);
+        frame.putInt(2 * Integer.BYTES, records);
+        frame.flip();
+        ByteBuffer copy = ByteBuffer.allocate(frame.remaining());
+        copy.put(frame).flip();
+        return copy;
+    }
+
+    private static void reply(long[] reply, long allowed, long remaining, long retryAfter) {
+        reply[0] = allowed;
+        reply[1] = remaining;
+        reply[2] = retryAfter;
+    }
+
+    /**
+     * The key itself, or a digest of it if it is too long for a gossip record.
+     */
+    static String counterKey(String key) {
+        // UTF-8 takes at most three bytes per char
+        if (key.length() * 3 <= WindowCounter.MAX_KEY_BYTES) {
+            return key;
+        }
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= WindowCounter.MAX_KEY_BYTES) {
+            return key;
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            StringBuilder hex = new StringBuilder(KEY_DIGEST_PREFIX);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static long ttlMillis(Duration ttl) {
+        if (ttl.isZero() || ttl.isNegative()) {
+            throw new IllegalArgumentException("ttl must be greater than 0");
+        }
+        return ttl.plusNanos(999_999).toMillis();
+    }
+
+    private static String nodeId(InetSocketAddress address) {
+        return address.getHostString() + ":" + address.getPort();
+    }
+}
@@ -0,0 +1,387 @@
+package com.example.ratelimiter.gossip;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Non-blocking TCP transport of the gossip store, driven by one selector thread.
+ * <p>
+ * Every node connects to every peer (a full mesh) and only writes on its outbound connections and
+ * only reads on the inbound ones; outbound connections are still read to notice the peer closing
+ * them. Once per interval the thread encodes the store's changed counters and queues the frames on
+ * every connected peer. After connecting to a peer, and after any peer connected (it may have
+ * restarted empty), peers are sent the full state first, so nothing missed meanwhile is lost. A peer that falls too far behind is
+ * disconnected and catches up the same way after reconnecting.
+ * <p>
+ * Frames are {@code length(int) node(int) records(int) record...}, see {@link WindowCounter#write}.
+ */
+final class GossipTransport {
+
+    private static final Logger log = LoggerFactory.getLogger(GossipTransport.class);
+
+    static final int MAX_FRAME_SIZE = 64 * 1024;
+    private static final int MAX_PENDING_BYTES = 4 * 1024 * 1024;
+    private static final long MIN_RECONNECT_DELAY_NANOS = 100_000_000L;
+
+    private final GossipRateLimitStore store;
+    private final Selector selector;
+    private final ServerSocketChannel server;
+    private final List<Peer> peers = new ArrayList<>();
+    private final ByteBuffer discard = ByteBuffer.allocate(256);
+    private final long intervalNanos;
+    private final long reconnectDelayNanos;
+    private final Thread thread;
+    private volatile boolean open = true;
+
+    GossipTransport(GossipRateLimitStore store, InetSocketAddress bindAddress, List<InetSocketAddress> peerAddresses,
+                    Duration interval) {
+        this.store = store;
+        this.intervalNanos = interval.toNanos();
+        this.reconnectDelayNanos = Math.max(MIN_RECONNECT_DELAY_NANOS, intervalNanos);
+        for (InetSocketAddress address : peerAddresses) {
+            peers.add(new Peer(address));
+        }
+        try {
+            this.selector = Selector.open();
+            this.server = ServerSocketChannel.open();
+            server.bind(bindAddress);
+            server.configureBlocking(false);
+            server.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to bind gossip transport to " + bindAddress, e);
+        }
+
+        this.thread = new Thread(this::run, "rate-limiter-gossip-" + bindAddress.getPort());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    boolean isOpen() {
+        return open && thread.isAlive();
+    }
+
+    /**
+     * Number of peers with an established outbound connection.
+     */
+    int connectedPeers() {
+        int connected = 0;
+        for (Peer peer : peers) {
+            if (peer.connected) {
+                connected++;
+            }
+        }
+        return connected;
+    }
+
+    void close() {
+        open = false;
+        selector.wakeup();
+        try {
+            thread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        long nextRound = System.nanoTime();
+        try {
+            while (open) {
+                long waitMillis = (nextRound - System.nanoTime()) / 1_000_000;
+                if (waitMillis > 0) {
+                    selector.select(waitMillis);
+                } else {
+                    selector.selectNow();
+                }
+                handleSelected();
+
+                long now = System.nanoTime();
+                if (now - nextRound >= 0) {
+                    round(now);
+                    // Skip rounds missed while busy instead of running them back to back
+                    nextRound = Math.max(nextRound + intervalNanos, now);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Gossip transport stopped", e);
+        } finally {
+            open = false;
+            shutdown();
+        }
+    }
+
+    private void handleSelected() throws IOException {
+        Iterator<SelectionKey> selected = selector.selectedKeys().iterator();
+        while (selected.hasNext()) {
+            SelectionKey key = selected.next();
+            selected.remove();
+            try {
+                if (!key.isValid()) {
+                    continue;
+                }
+                if (key.isAcceptable()) {
+                    accept();
+                    continue;
+                }
+                if (key.isConnectable()) {
+                    finishConnect((Peer) key.attachment());
+                }
+                if (key.isValid() && key.isReadable()) {
+                    if (key.attachment() instanceof Peer) {
+                        readClosed((Peer) key.attachment());
+                    } else {
+                        read(key);
+                    }
+                }
+                if (key.isValid() && key.isWritable()) {
+                    flush((Peer) key.attachment());
+                }
+            } catch (IOException | RuntimeException e) {
+                drop(key, e);
+            }
+        }
+    }
+
+    /**
+     * Connects missing peers, gossips changed counters and sweeps expired ones.
+     */
+    private void round(long now) {
+        for (Peer peer : peers) {
+            if (peer.channel == null && now - peer.nextConnect >= 0) {
+                connect(peer, now);
+            }
+        }
+
+        List<ByteBuffer> deltas = store.encode(false);
+        List<ByteBuffer> full = null;
+        for (Peer peer : peers) {
+            if (!peer.connected) {
+                continue;
+            }
+            if (peer.needsFullState) {
+                if (full == null) {
+                    full = store.encode(true);
+                }
+                peer.needsFullState = false;
+                send(peer, full);
+            } else {
+                send(peer, deltas);
+            }
+        }
+
+        store.sweep();
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = server.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + MAX_FRAME_SIZE);
+        channel.register(selector, SelectionKey.OP_READ, buffer);
+        for (Peer peer : peers) {
+            if (peer.connected) {
+                peer.needsFullState = true;
+            }
+        }
+    }
+
+    private void connect(Peer peer, long now) {
+        peer.nextConnect = now + reconnectDelayNanos;
+        SocketChannel channel = null;
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            boolean connected = channel.connect(peer.address);
+            peer.channel = channel;
+            peer.key = channel.register(selector, connected ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT, peer);
+            if (connected) {
+                onConnected(peer);
+            }
+        } catch (IOException e) {
+            log.debug("Gossip peer {} unreachable: {}", peer.address, e.getMessage());
+            closeQuietly(channel);
+            peer.reset();
+        }
+    }
+
+    private void finishConnect(Peer peer) throws IOException {
+        if (peer.channel.finishConnect()) {
+            peer.key.interestOps(SelectionKey.OP_READ);
+            onConnected(peer);
+        }
+    }
+
+    private void onConnected(Peer peer) {
+        log.info("Connected to gossip peer {}", peer.address);
+        peer.connected = true;
+        peer.needsFullState = true;
+    }
+
+    private void send(Peer peer, List<ByteBuffer> frames) {
+        for (ByteBuffer frame : frames) {
+            if (peer.pendingBytes + frame.remaining() > MAX_PENDING_BYTES) {
+                log.warn("Gossip peer {} is not keeping up, reconnecting", peer.address);
+                disconnect(peer);
+                return;
+            }
+            ByteBuffer copy = frame.duplicate();
+            peer.pending.add(copy);
+            peer.pendingBytes += copy.remaining();
+        }
+        try {
+            flush(peer);
+        } catch (IOException e) {
+            log.debug("Gossip peer {} disconnected: {}", peer.address, e.getMessage());
+            disconnect(peer);
+        }
+    }
+
+    /**
+     * Writes pending frames until the socket would block, then waits for it to become writable.
+     */
+    private void flush(Peer peer) throws IOException {
+        ByteBuffer head;
+        while ((head = peer.pending.peek()) != null) {
+            int written = peer.channel.write(head);
+            peer.pendingBytes -= written;
+            if (head.hasRemaining()) {
+                peer.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                return;
+            }
+            peer.pending.poll();
+        }
+        peer.key.interestOps(SelectionKey.OP_READ);
+    }
+
+    /**
+     * Peers never write on our outbound connections: a readable one was closed by the peer.
+     */
+    private void readClosed(Peer peer) throws IOException {
+        discard.clear();
+        if (peer.channel.read(discard) < 0) {
+            throw new IOException("Connection closed by peer");
+        }
+    }
+
+    /**
+     * Reads from an inbound connection and merges every complete frame.
+     */
+    private void read(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        ByteBuffer buffer = (ByteBuffer) key.attachment();
+        if (channel.read(buffer) < 0) {
+            key.cancel();
+            channel.close();
+            return;
+        }
+        buffer.flip();
+        while (buffer.remaining() >= Integer.BYTES) {
+            int length = buffer.getInt(buffer.position());
+            if (length <= 0 || length > MAX_FRAME_SIZE) {
+                throw new IOException("Invalid gossip frame length " + length);
+            }
+            if (buffer.remaining() < Integer.BYTES + length) {
+                break;
+            }
+            int start = buffer.position() + Integer.BYTES;
+            store.merge(buffer.slice(start, length));
+            buffer.position(start + length);
+        }
+        buffer.compact();
+    }
+
+    private void drop(SelectionKey key, Exception cause) {
+        if (key.attachment() instanceof Peer) {
+            Peer peer = (Peer) key.attachment();
+            log.debug("Gossip peer {} disconnected: {}", peer.address, cause.getMessage());
+            disconnect(peer);
+        } else {
+            log.warn("Closing gossip connection from {}", remoteAddress(key), cause);
+            key.cancel();
+            closeQuietly(key.channel());
+        }
+    }
+
+    private void disconnect(Peer peer) {
+        if (peer.connected) {
+            log.info("Disconnected from gossip peer {}", peer.address);
+        }
+        if (peer.key != null) {
+            peer.key.cancel();
+        }
+        closeQuietly(peer.channel);
+        peer.reset();
+    }
+
+    private void shutdown() {
+        for (SelectionKey key : selector.keys()) {
+            closeQuietly(key.channel());
+        }
+        closeQuietly(selector);
+    }
+
+    private static Object remoteAddress(SelectionKey key) {
+        try {
+            return ((SocketChannel) key.channel()).getRemoteAddress();
+        } catch (IOException | RuntimeException e) {
+            return "unknown";
+        }
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (Exception ignored) {
+            // Closing anyway
+        }
+    }
+
+    /**
+     * Outbound connection to one peer and the frames waiting to be written to it.
+     */
+    private static final class Peer {
+
+        final InetSocketAddress address;
+        final ArrayDeque<ByteBuffer> pending = new ArrayDeque<>();
+        SocketChannel channel;
+        SelectionKey key;
+        long pendingBytes;
+        long nextConnect;
+        volatile boolean connected;
+        boolean needsFullState;
+
+        Peer(InetSocketAddress address) {
+            this.address = address;
+        }
+
+        void reset() {
+            channel = null;
+            key = null;
+            pending.clear();
+            pendingBytes = 0;
+            connected = false;
+            needsFullState = false;
+        }
+    }
+}
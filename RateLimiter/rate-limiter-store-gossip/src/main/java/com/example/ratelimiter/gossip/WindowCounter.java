@@ -0,0 +1,210 @@
+package com.example.ratelimiter.gossip;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Per-key counter state of one node: a PN-counter for the current window and one for the previous
+ * window, each with a slot per node of the cluster.
+ * <p>
+ * A node only increments its own slots; slots of other nodes are merged from gossip by taking the
+ * maximum, so merges are idempotent and may arrive late, twice or out of order. Decrements (resets
+ * and {@code set} below the current value) go to the negative half of the node's own slot. Windows
+ * are aligned to multiples of the window length, so every node agrees on which window a count
+ * belongs to.
+ * <p>
+ * Not thread-safe: callers hold {@link #lock}.
+ */
+final class WindowCounter {
+
+    /** Longest key a record carries, so that one record always fits in a gossip frame. */
+    static final int MAX_KEY_BYTES = 1024;
+
+    final ReentrantLock lock = new ReentrantLock();
+
+    private final int self;
+    private final long[] currentPositive;
+    private final long[] currentNegative;
+    private final long[] previousPositive;
+    private final long[] previousNegative;
+    private long window;
+    private long index;
+
+    // Own current count as of the gossip round before the last one; peers may not have merged the last one yet
+    private long confirmedIndex = -1;
+    private long confirmedPositive;
+    private long sentIndex = -1;
+    private long sentPositive;
+
+    /** Queued for the next gossip round. */
+    boolean queued;
+    /** Removed from the store by the sweeper; holders of a stale reference must look the key up again. */
+    boolean removed;
+    /** Store clock (ms) at the last local decision or merge. */
+    long touchedAt;
+
+    WindowCounter(int self, int nodes) {
+        this.self = self;
+        this.currentPositive = new long[nodes];
+        this.currentNegative = new long[nodes];
+        this.previousPositive = new long[nodes];
+        this.previousNegative = new long[nodes];
+    }
+
+    /**
+     * Moves on to the window containing {@code now}. Never moves back: if a node whose clock is
+     * ahead already started a later window, counts go into that window. A different window length
+     * (the policy changed) starts the counter over.
+     */
+    void advance(long window, long now) {
+        if (window != this.window) {
+            clear();
+            this.window = window;
+            this.index = now / window;
+            return;
+        }
+        long target = now / window;
+        if (target > index) {
+            moveTo(target);
+        }
+    }
+
+    long window() {
+        return window;
+    }
+
+    long index() {
+        return index;
+    }
+
+    long current() {
+        return sum(currentPositive) - sum(currentNegative);
+    }
+
+    long previous() {
+        return sum(previousPositive) - sum(previousNegative);
+    }
+
+    /**
+     * Adds to this node's count in the current window; negative deltas decrement it.
+     */
+    void add(long delta) {
+        if (delta >= 0) {
+            currentPositive[self] += delta;
+        } else {
+            currentNegative[self] -= delta;
+        }
+    }
+
+    /**
+     * Takes back an increment of this node that was never gossiped (a denied batch entry).
+     */
+    void undo(long permits) {
+        currentPositive[self] -= permits;
+    }
+
+    /**
+     * Cancels the counts of both windows on every node, as a decrement of this node's slots.
+     *
+     * @return true if anything was counted
+     */
+    boolean reset() {
+        long current = current();
+        long previous = previous();
+        currentNegative[self] += current;
+        previousNegative[self] += previous;
+        return current != 0 || previous != 0;
+    }
+
+    /**
+     * This node's count in the current window that peers may not have merged yet: everything since
+     * the gossip round before the last one, since the last round's frames may still be in flight.
+     */
+    long unconfirmed() {
+        return confirmedIndex == index ? currentPositive[self] - confirmedPositive : currentPositive[self];
+    }
+
+    /**
+     * Merges another node's slots for window {@code index} (and {@code index - 1}).
+     */
+    void merge(int node, long window, long index, long currentP, long currentN, long previousP, long previousN) {
+        if (this.window == 0) {
+            this.window = window;
+            this.index = index;
+        } else if (window != this.window) {
+            // Counted under a different policy; the local one decides
+            return;
+        }
+        if (index > this.index) {
+            moveTo(index);
+        }
+        if (index == this.index) {
+            currentPositive[node] = Math.max(currentPositive[node], currentP);
+            currentNegative[node] = Math.max(currentNegative[node], currentN);
+            previousPositive[node] = Math.max(previousPositive[node], previousP);
+            previousNegative[node] = Math.max(previousNegative[node], previousN);
+        } else if (index == this.index - 1) {
+            previousPositive[node] = Math.max(previousPositive[node], currentP);
+            previousNegative[node] = Math.max(previousNegative[node], currentN);
+        }
+    }
+
+    /**
+     * Writes this node's slots as a gossip record:
+     * {@code keyLength(short) key window index currentP currentN previousP previousN}, the key at
+     * most {@link #MAX_KEY_BYTES} long.
+     *
+     * @param markSent whether the record counts as a gossip round for {@link #unconfirmed()}
+     */
+    void write(ByteBuffer out, byte[] key, boolean markSent) {
+        out.putShort((short) key.length);
+        out.put(key);
+        out.putLong(window);
+        out.putLong(index);
+        out.putLong(currentPositive[self]);
+        out.putLong(currentNegative[self]);
+        out.putLong(previousPositive[self]);
+        out.putLong(previousNegative[self]);
+        if (markSent) {
+            confirmedIndex = sentIndex;
+            confirmedPositive = sentPositive;
+            sentIndex = index;
+            sentPositive = currentPositive[self];
+        }
+    }
+
+    static int recordSize(byte[] key) {
+        return Short.BYTES + key.length + 6 * Long.BYTES;
+    }
+
+    private void moveTo(long target) {
+        if (target == index + 1) {
+            System.arraycopy(currentPositive, 0, previousPositive, 0, currentPositive.length);
+            System.arraycopy(currentNegative, 0, previousNegative, 0, currentNegative.length);
+        } else {
+            Arrays.fill(previousPositive, 0);
+            Arrays.fill(previousNegative, 0);
+        }
+        Arrays.fill(currentPositive, 0);
+        Arrays.fill(currentNegative, 0);
+        index = target;
+    }
+
+    private void clear() {
+        Arrays.fill(currentPositive, 0);
+        Arrays.fill(currentNegative, 0);
+        Arrays.fill(previousPositive, 0);
+        Arrays.fill(previousNegative, 0);
+        confirmedIndex = -1;
+        sentIndex = -1;
+    }
+
+    private static long sum(long[] slots) {
+        long sum = 0;
+        for (long slot : slots) {
+            sum += slot;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.ratelimiter.gossip;
+
+import com.example.ratelimiter.core.api.RateLimitScript;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GossipRateLimitStoreTest {
+
+    private static final int NODES = 3;
+    private static final Duration INTERVAL = Duration.ofMillis(10);
+
+    private final List<GossipRateLimitStore> stores = new ArrayList<>();
+
+    @AfterEach
+    void close() {
+        stores.forEach(GossipRateLimitStore::close);
+    }
+
+    private void startCluster() throws IOException, InterruptedException {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (int i = 0; i < NODES; i++) {
+            try (ServerSocket socket = new ServerSocket(0)) {
+                addresses.add(new InetSocketAddress("127.0.0.1", socket.getLocalPort()));
+            }
+        }
+        for (int i = 0; i < NODES; i++) {
+            List<InetSocketAddress> peers = new ArrayList<>(addresses);
+            peers.remove(i);
+            stores.add(new GossipRateLimitStore(addresses.get(i), peers, INTERVAL));
+        }
+        awaitTrue(() -> stores.stream().allMatch(store -> store.getConnectedPeers() == NODES - 1));
+    }
+
+    @Test
+    void nodesConvergeOnTheSumOfTheirCounts() throws Exception {
+        startCluster();
+        for (int i = 0; i < NODES; i++) {
+            for (int n = 0; n <= i; n++) {
+                stores.get(i).increment("key", Duration.ofMinutes(1));
+            }
+        }
+
+        awaitTrue(() -> stores.stream().allMatch(store -> store.get("key") == 6));
+    }
+
+    @Test
+    void deleteReachesEveryNode() throws Exception {
+        startCluster();
+        stores.get(0).increment("key", Duration.ofMinutes(1));
+        stores.get(1).increment("key", Duration.ofMinutes(1));
+        awaitTrue(() -> stores.stream().allMatch(store -> store.get("key") == 2));
+
+        stores.get(2).delete("key");
+        awaitTrue(() -> stores.stream().allMatch(store -> store.get("key") == 0));
+    }
+
+    @Test
+    void oversizedKeysAreGossipedUnderADigest() throws Exception {
+        startCluster();
+        String key = "k".repeat(40_000);
+        stores.get(0).increment(key, Duration.ofMinutes(1));
+        stores.get(1).increment(key, Duration.ofMinutes(1));
+        stores.get(2).increment("short", Duration.ofMinutes(1));
+
+        // Gossip keeps flowing on the same connections after the long key
+        awaitTrue(() -> stores.stream().allMatch(store -> store.get(key) == 2 && store.get("short") == 1));
+    }
+
+    @Test
+    void longestRecordFitsInAFrame() {
+        String multiByte = "\u00e9".repeat(WindowCounter.MAX_KEY_BYTES / 2 + 1);
+        String digest = GossipRateLimitStore.counterKey(multiByte);
+        assertTrue(digest.startsWith("sha256:"));
+        assertEquals(digest, GossipRateLimitStore.counterKey(multiByte));
+
+        String longest = "k".repeat(WindowCounter.MAX_KEY_BYTES);
+        assertEquals(longest, GossipRateLimitStore.counterKey(longest));
+        assertTrue(WindowCounter.recordSize(longest.getBytes(StandardCharsets.UTF_8))
+                <= GossipTransport.MAX_FRAME_SIZE - 3 * Integer.BYTES);
+    }
+
+    @Test
+    void clusterStaysWithinTheDocumentedBound() throws Exception {
+        startCluster();
+        long limit = 300;
+        // One fixed window for the whole test, whatever the wall clock does
+        long now = 3_600_000L;
+        AtomicLong allowed = new AtomicLong();
+
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < NODES * 2; i++) {
+            GossipRateLimitStore store = stores.get(i % NODES);
+            Thread worker = new Thread(() -> {
+                for (int n = 0; n < limit; n++) {
+                    allowed.addAndGet(window(store, limit, now, 1)[0]);
+                    sleep(1);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        // At most one request per node over the limit, and the budget is not stranded on any node
+        assertTrue(allowed.get() <= limit + NODES, "allowed " + allowed.get());
+        assertTrue(allowed.get() >= limit - NODES, "allowed " + allowed.get());
+        // Once gossip settles every node sees the whole count
+        long remaining = Math.max(0, limit - allowed.get());
+        awaitTrue(() -> stores.stream().allMatch(store -> window(store, limit, now, 0)[1] == remaining));
+    }
+
+    private static long[] window(GossipRateLimitStore store, long limit, long now, long cost) {
+        return store.executeScript(RateLimitScript.FIXED_WINDOW, new String[]{"key"}, limit, 60_000, now, cost);
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "condition not met within 10s");
+            Thread.sleep(10);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.ratelimiter.gossip;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WindowCounterTest {
+
+    private static final long WINDOW = 1000;
+
+    @Test
+    void mergeKeepsTheMaximumPerNode() {
+        WindowCounter counter = new WindowCounter(0, 3);
+        counter.advance(WINDOW, 5_000);
+        counter.add(4);
+
+        counter.merge(1, WINDOW, 5, 7, 0, 0, 0);
+        counter.merge(2, WINDOW, 5, 2, 0, 0, 0);
+        assertEquals(13, counter.current());
+
+        // Repeated and stale records change nothing
+        counter.merge(1, WINDOW, 5, 7, 0, 0, 0);
+        counter.merge(1, WINDOW, 5, 3, 0, 0, 0);
+        assertEquals(13, counter.current());
+
+        // A peer's own slot is never taken from this node's record
+        counter.merge(0, WINDOW, 5, 1, 0, 0, 0);
+        assertEquals(13, counter.current());
+    }
+
+    @Test
+    void mergeOrderDoesNotMatter() {
+        WindowCounter inOrder = new WindowCounter(0, 2);
+        WindowCounter reversed = new WindowCounter(0, 2);
+        inOrder.advance(WINDOW, 5_000);
+        reversed.advance(WINDOW, 5_000);
+
+        inOrder.merge(1, WINDOW, 5, 2, 0, 0, 0);
+        inOrder.merge(1, WINDOW, 5, 6, 1, 0, 0);
+        reversed.merge(1, WINDOW, 5, 6, 1, 0, 0);
+        reversed.merge(1, WINDOW, 5, 2, 0, 0, 0);
+
+        assertEquals(5, inOrder.current());
+        assertEquals(inOrder.current(), reversed.current());
+    }
+
+    @Test
+    void mergeOfALaterWindowMovesOn() {
+        WindowCounter counter = new WindowCounter(0, 2);
+        counter.advance(WINDOW, 5_000);
+        counter.add(3);
+
+        counter.merge(1, WINDOW, 6, 2, 0, 4, 0);
+        assertEquals(6, counter.index());
+        assertEquals(2, counter.current());
+        assertEquals(7, counter.previous());
+
+        // A late record of the window that just ended lands in the previous window
+        counter.merge(1, WINDOW, 5, 5, 0, 0, 0);
+        assertEquals(2, counter.current());
+        assertEquals(8, counter.previous());
+    }
+
+    @Test
+    void advanceShiftsOneWindowAndClearsAfterAGap() {
+        WindowCounter counter = new WindowCounter(0, 1);
+        counter.advance(WINDOW, 5_000);
+        counter.add(3);
+
+        counter.advance(WINDOW, 6_200);
+        assertEquals(0, counter.current());
+        assertEquals(3, counter.previous());
+
+        counter.add(2);
+        counter.advance(WINDOW, 9_000);
+        assertEquals(0, counter.current());
+        assertEquals(0, counter.previous());
+    }
+
+    @Test
+    void advanceNeverMovesBack() {
+        WindowCounter counter = new WindowCounter(0, 1);
+        counter.advance(WINDOW, 6_000);
+        counter.add(1);
+
+        counter.advance(WINDOW, 5_500);
+        assertEquals(6, counter.index());
+        assertEquals(1, counter.current());
+    }
+
+    @Test
+    void advanceWithAnotherWindowStartsOver() {
+        WindowCounter counter = new WindowCounter(0, 1);
+        counter.advance(WINDOW, 5_000);
+        counter.add(3);
+
+        counter.advance(2 * WINDOW, 5_000);
+        assertEquals(2, counter.index());
+        assertEquals(0, counter.current());
+        assertEquals(0, counter.previous());
+    }
+
+    @Test
+    void resetCancelsEveryNodesCount() {
+        WindowCounter counter = new WindowCounter(0, 2);
+        counter.advance(WINDOW, 5_000);
+        counter.add(2);
+        counter.merge(1, WINDOW, 5, 4, 0, 1, 0);
+
+        counter.reset();
+        assertEquals(0, counter.current());
+        assertEquals(0, counter.previous());
+    }
+
+    @Test
+    void countIsConfirmedAfterTwoRounds() {
+        WindowCounter counter = new WindowCounter(0, 1);
+        ByteBuffer out = ByteBuffer.allocate(256);
+        byte[] key = {'k'};
+        counter.advance(WINDOW, 5_000);
+        counter.add(2);
+        assertEquals(2, counter.unconfirmed());
+
+        counter.write(out.clear(), key, true);
+        assertEquals(2, counter.unconfirmed());
+        counter.add(1);
+        counter.write(out.clear(), key, true);
+        assertEquals(1, counter.unconfirmed());
+        counter.write(out.clear(), key, true);
+        assertEquals(0, counter.unconfirmed());
+    }
+}
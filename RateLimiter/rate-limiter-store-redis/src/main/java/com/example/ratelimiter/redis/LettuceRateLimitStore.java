@@ -0,0 +1,220 @@
+package com.example.ratelimiter.redis;
+
+import com.example.ratelimiter.core.api.ClockMode;
+import com.example.ratelimiter.core.api.RateLimitScript;
+import com.example.ratelimiter.core.api.RateLimitStore;
+import com.example.ratelimiter.core.metrics.RateLimiterMetrics;
+import com.example.ratelimiter.core.metrics.StoreOperation;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisException;
+import io.lettuce.core.RedisNoScriptException;
+import io.lettuce.core.RedisURI;
+import io.lettuce.core.ScriptOutputType;
+import io.lettuce.core.SetArgs;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.lettuce.core.api.sync.RedisCommands;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Non-blocking Redis-backed implementation of RateLimitStore using Lettuce.
+ * <p>
+ * All callers share one thread-safe connection whose commands are written by Netty, so
+ * {@link #executeScriptAsync} never blocks the calling thread and is safe to use from
+ * reactive event loops. The blocking methods wait on the same connection.
+ * Script and batch latency is recorded through {@link RateLimiterMetrics}; there is no pool to wait on.
+ * In {@link ClockMode#SERVER} scripts read the Redis {@code TIME} instead of the caller's clock.
+ */
+public class LettuceRateLimitStore implements RateLimitStore {
+
+    private static final Logger log = LoggerFactory.getLogger(LettuceRateLimitStore.class);
+
+    private final RedisClient client;
+    private final StatefulRedisConnection<String, String> connection;
+    private final RedisAsyncCommands<String, String> async;
+    private final RedisCommands<String, String> sync;
+    private final LuaScripts scripts = new LuaScripts();
+    private final RateLimiterMetrics metrics;
+    private final ClockMode clockMode;
+
+    public LettuceRateLimitStore(String host, int port) {
+        this(RedisURI.create(host, port));
+    }
+
+    public LettuceRateLimitStore(RedisURI redisUri) {
+        this(redisUri, RateLimiterMetrics.NOOP);
+    }
+
+    public LettuceRateLimitStore(RedisURI redisUri, RateLimiterMetrics metrics) {
+        this(redisUri, metrics, ClockMode.CLIENT);
+    }
+
+    public LettuceRateLimitStore(RedisURI redisUri, RateLimiterMetrics metrics, ClockMode clockMode) {
+        this.metrics = Objects.requireNonNull(metrics, "Metrics cannot be null");
+        this.clockMode = Objects.requireNonNull(clockMode, "Clock mode cannot be null");
+        this.client = RedisClient.create(redisUri);
+        this.connection = client.connect();
+        this.async = connection.async();
+        this.sync = connection.sync();
+    }
+
+    @Override
+    public long increment(String key, Duration ttl) {
+        long ttlMillis = LuaScripts.ttlMillis(ttl);
+        try {
+            // INCR and PEXPIRE in one script, so a key can never be left without its TTL
+            List<Object> reply = evalCached(LuaScripts.INCREMENT_SOURCE, new String[]{key},
+                    new String[]{String.valueOf(ttlMillis)}).toCompletableFuture().join();
+            return LuaScripts.toLongArray(reply)[0];
+        } catch (RedisException | CompletionException e) {
+            log.error("Redis increment failed for key: {}", key, e);
+            throw new RuntimeException("Failed to increment counter", e);
+        }
+    }
+
+    @Override
+    public long get(String key) {
+        try {
+            String value = sync.get(key);
+            return value != null ? Long.parseLong(value) : 0;
+        } catch (RedisException e) {
+            log.error("Redis get failed for key: {}", key, e);
+            throw new RuntimeException("Failed to get value", e);
+        }
+    }
+
+    @Override
+    public void set(String key, long value, Duration ttl) {
+        long ttlMillis = LuaScripts.ttlMillis(ttl);
+        try {
+            sync.set(key, String.valueOf(value), SetArgs.Builder.px(ttlMillis));
+        } catch (RedisException e) {
+            log.error("Redis set failed for key: {}", key, e);
+            throw new RuntimeException("Failed to set value", e);
+        }
+    }
+
+    @Override
+    public boolean delete(String key) {
+        try {
+            return sync.del(key) > 0;
+        } catch (RedisException e) {
+            log.error("Redis delete failed for key: {}", key, e);
+            return false;
+        }
+    }
+
+    @Override
+    public Object executeScript(String script, String[] keys, String[] args) {
+        try {
+            return timed(StoreOperation.SCRIPT, System.nanoTime(), evalCached(script, keys, args)).toCompletableFuture().join();
+        } catch (CompletionException e) {
+            log.error("Redis script execution failed", e.getCause());
+            throw new RuntimeException("Failed to execute script", e.getCause());
+        }
+    }
+
+    @Override
+    public long[] executeScript(RateLimitScript script, String[] keys, long... args) {
+        try {
+            return executeScriptAsync(script, keys, args).toCompletableFuture().join();
+        } catch (CompletionException e) {
+            log.error("Redis script {} failed", script, e.getCause());
+            throw new RuntimeException("Failed to execute script", e.getCause());
+        }
+    }
+
+    @Override
+    public CompletionStage<long[]> executeScriptAsync(RateLimitScript script, String[] keys, long... args) {
+        return timed(StoreOperation.SCRIPT, System.nanoTime(), evalCached(scripts.source(script), keys, LuaScripts.toArgs(args)))
+                .thenApply(LuaScripts::toLongArray);
+    }
+
+    @Override
+    public long[][] executeBatch(RateLimitScript[] scripts, String[][] keys, long[][] args) {
+        try {
+            return executeBatchAsync(scripts, keys, args).toCompletableFuture().join();
+        } catch (CompletionException e) {
+            log.error("Redis batch of {} scripts failed", scripts.length, e.getCause());
+            throw new RuntimeException("Failed to execute script batch", e.getCause());
+        }
+    }
+
+    @Override
+    public CompletionStage<long[][]> executeBatchAsync(RateLimitScript[] scripts, String[][] keys, long[][] args) {
+        List<List<String>> batch = LuaScripts.toBatch(scripts, keys, args);
+        return timed(StoreOperation.BATCH, System.nanoTime(), evalCached(this.scripts.batchSource(),
+                batch.get(0).toArray(new String[0]), batch.get(1).toArray(new String[0])))
+                .thenApply(reply -> LuaScripts.toBatchReplies(reply, scripts.length));
+    }
+
+    @Override
+    public Map<String, Long> multiGet(String... keys) {
+        try {
+            Map<String, Long> result = new HashMap<>();
+            sync.mget(keys).forEach(kv ->
+                    result.put(kv.getKey(), kv.hasValue() ? Long.parseLong(kv.getValue()) : 0L));
+            return result;
+        } catch (RedisException e) {
+            log.error("Redis multiGet failed", e);
+            throw new RuntimeException("Failed to get multiple values", e);
+        }
+    }
+
+    @Override
+    public ClockMode getClockMode() {
+        return clockMode;
+    }
+
+    @Override
+    public boolean isHealthy() {
+        try {
+            return "PONG".equals(sync.ping());
+        } catch (Exception e) {
+            log.warn("Redis health check failed", e);
+            return false;
+        }
+    }
+
+    /**
+     * EVALSHA with a locally computed digest, falling back to EVAL on NOSCRIPT.
+     */
+    private CompletionStage<List<Object>> evalCached(String source, String[] keys, String[] args) {
+        String sha = scripts.sha(source);
+        CompletionStage<List<Object>> evalsha = async.evalsha(sha, ScriptOutputType.MULTI, keys, args);
+        return evalsha.exceptionallyCompose(e -> {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof RedisNoScriptException) {
+                log.debug("Script {} not cached on server, falling back to EVAL", sha);
+                return async.eval(source, ScriptOutputType.MULTI, keys, args);
+            }
+            return evalsha;
+        });
+    }
+
+    /**
+     * Records the latency of the operation since {@code start} when the reply arrives, whether it
+     * succeeded or failed.
+     */
+    private <T> CompletionStage<T> timed(StoreOperation operation, long start, CompletionStage<T> reply) {
+        if (metrics == RateLimiterMetrics.NOOP) {
+            return reply;
+        }
+        return reply.whenComplete((result, error) ->
+                metrics.recordStoreLatency(operation, System.nanoTime() - start));
+    }
+
+    public void close() {
+        connection.close();
+        client.shutdown();
+    }
+}
@@ -0,0 +1,253 @@
+package com.example.ratelimiter.redis;
+
+import com.example.ratelimiter.core.api.RateLimitScript;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Lua sources and SHA1 digests of the built-in scripts, shared by the Redis store implementations.
+ * Digests are computed locally so EVALSHA can be tried before the server has seen the script.
+ */
+final class LuaScripts {
+
+    private static final Logger log = LoggerFactory.getLogger(LuaScripts.class);
+
+    /**
+     * INCR that starts the key's TTL (ARGV[1], milliseconds) on the first increment, in one atomic
+     * step. Replies {@code {count}} so it shares the stores' multi-bulk script path.
+     */
+    static final String INCREMENT_SOURCE = ""
+            + "local count = redis.call('INCR', KEYS[1])\n"
+            + "if count == 1 then redis.call('PEXPIRE', KEYS[1], ARGV[1]) end\n"
+            + "return {count}\n";
+
+    private final Map<RateLimitScript, String> sources = new EnumMap<>(RateLimitScript.class);
+    private final Map<String, String> shas = new ConcurrentHashMap<>();
+    private final String batchSource;
+    private final String checkSource;
+
+    LuaScripts() {
+        for (RateLimitScript script : RateLimitScript.values()) {
+            String source = load(script);
+            if (!source.isEmpty()) {
+                sources.put(script, source);
+            }
+        }
+        this.batchSource = buildBatchSource(true);
+        this.checkSource = buildBatchSource(false);
+    }
+
+    /**
+     * Returns the Lua source of a built-in script.
+     *
+     * @throws UnsupportedOperationException if the script is not on the classpath
+     */
+    String source(RateLimitScript script) {
+        String source = sources.get(script);
+        if (source == null) {
+            throw new UnsupportedOperationException("Lua script not available: " + script);
+        }
+        return source;
+    }
+
+    /**
+     * Returns the (cached) SHA1 digest of any script source.
+     */
+    String sha(String source) {
+        return shas.computeIfAbsent(source, LuaScripts::sha1Hex);
+    }
+
+    /**
+     * Source of the batch script that runs several built-in scripts all-or-nothing.
+     */
+    String batchSource() {
+        return batchSource;
+    }
+
+    /**
+     * Source of a script taking the batch script's KEYS and ARGV that only decides every entry,
+     * without consuming anything. Its reply has the batch script's shape.
+     */
+    String checkSource() {
+        return checkSource;
+    }
+
+    /**
+     * Flattens batch entries into the batch script's KEYS and ARGV:
+     * {@code ARGV = [n, (scriptName, keyCount, argCount, args...) * n]}.
+     */
+    static List<List<String>> toBatch(RateLimitScript[] scripts, String[][] keys, long[][] args) {
+        List<String> keyList = new ArrayList<>();
+        List<String> argList = new ArrayList<>();
+        argList.add(String.valueOf(scripts.length));
+        for (int i = 0; i < scripts.length; i++) {
+            keyList.addAll(Arrays.asList(keys[i]));
+            argList.add(scripts[i].getScriptName());
+            argList.add(String.valueOf(keys[i].length));
+            argList.add(String.valueOf(args[i].length));
+            argList.addAll(Arrays.asList(toArgs(args[i])));
+        }
+        return List.of(keyList, argList);
+    }
+
+    /**
+     * Splits the flattened batch reply {@code {allAllowed, r1..., r2..., ...}} into per-entry replies.
+     */
+    static long[][] toBatchReplies(Object reply, int entries) {
+        long[] flat = toLongArray(reply);
+        int width = (flat.length - 1) / entries;
+        long[][] result = new long[entries][];
+        for (int i = 0; i < entries; i++) {
+            result[i] = Arrays.copyOfRange(flat, 1 + i * width, 1 + (i + 1) * width);
+        }
+        return result;
+    }
+
+    /**
+     * A TTL in whole milliseconds for PX/PEXPIRE, rounded up so that a sub-millisecond remainder
+     * never truncates a short TTL to zero.
+     *
+     * @throws IllegalArgumentException if the TTL is not positive
+     */
+    static long ttlMillis(Duration ttl) {
+        if (ttl.isZero() || ttl.isNegative()) {
+            throw new IllegalArgumentException("ttl must be greater than 0");
+        }
+        return ttl.plusNanos(999_999).toMillis();
+    }
+
+    static String[] toArgs(long[] args) {
+        String[] result = new String[args.length];
+        for (int i = 0; i < args.length; i++) {
+            result[i] = String.valueOf(args[i]);
+        }
+        return result;
+    }
+
+    static long[] toLongArray(Object reply) {
+        long[] result = new long[((List<?>) reply).size()];
+        copyInto(reply, result);
+        return result;
+    }
+
+    /**
+     * Copies a script reply into {@code into}, up to its length, without allocating a new array.
+     */
+    static void copyInto(Object reply, long[] into) {
+        List<?> values = (List<?>) reply;
+        int length = Math.min(values.size(), into.length);
+        for (int i = 0; i < length; i++) {
+            into[i] = ((Number) values.get(i)).longValue();
+        }
+    }
+
+    /**
+     * Wraps every built-in script as a function so one EVAL can run several of them.
+     * Each entry first runs against a read-only proxy of {@code redis} that drops writes;
+     * only if all entries allow are they run again for real, unless {@code commit} is false.
+     * Since the dry run writes nothing, no two entries may share a key.
+     */
+    private String buildBatchSource(boolean commit) {
+        StringBuilder lua = new StringBuilder();
+        lua.append("-- Batch script generated from the built-in scripts\n");
+        lua.append("local real = redis\n");
+        lua.append("local dry = {call = function(command, ...)\n");
+        lua.append("\tlocal c = string.upper(command)\n");
+        lua.append("\tif c == 'SET' or c == 'HSET' or c == 'ZADD' or c == 'PEXPIRE' or c == 'EXPIRE' then return 1 end\n");
+        lua.append("\treturn real.call(command, ...)\n");
+        lua.append("end}\n");
+        lua.append("local scripts = {}\n");
+        for (Map.Entry<RateLimitScript, String> entry : sources.entrySet()) {
+            lua.append("scripts['").append(entry.getKey().getScriptName()).append("'] = function(KEYS, ARGV, redis)\n");
+            lua.append(entry.getValue()).append("\nend\n");
+        }
+        lua.append("local commit = ").append(commit).append("\n");
+        lua.append("""
+                local n = tonumber(ARGV[1])
+                local entries = {}
+                local argv_pos = 2
+                local key_pos = 1
+                for i = 1, n do
+                	local name = ARGV[argv_pos]
+                	local key_count = tonumber(ARGV[argv_pos + 1])
+                	local arg_count = tonumber(ARGV[argv_pos + 2])
+                	argv_pos = argv_pos + 3
+                	local keys = {}
+                	for j = 1, key_count do
+                		keys[j] = KEYS[key_pos]
+                		key_pos = key_pos + 1
+                	end
+                	local args = {}
+                	for j = 1, arg_count do
+                		args[j] = ARGV[argv_pos]
+                		argv_pos = argv_pos + 1
+                	end
+                	entries[i] = {scripts[name], keys, args}
+                end
+
+                local replies = {}
+                local allowed = 1
+                for i = 1, n do
+                	replies[i] = entries[i][1](entries[i][2], entries[i][3], dry)
+                	if replies[i][1] <= 0 then
+                		allowed = 0
+                	end
+                end
+
+                if commit and allowed == 1 then
+                	for i = 1, n do
+                		replies[i] = entries[i][1](entries[i][2], entries[i][3], real)
+                	end
+                end
+
+                local result = {allowed}
+                for i = 1, n do
+                	for _, value in ipairs(replies[i]) do
+                		result[#result + 1] = value
+                	end
+                end
+                return result
+                """);
+        return lua.toString();
+    }
+
+    private static String sha1Hex(String source) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(source.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not available", e);
+        }
+    }
+
+    private static String load(RateLimitScript script) {
+        String path = "/lua/" + script.getScriptName() + ".lua";
+        try (InputStream is = LuaScripts.class.getResourceAsStream(path)) {
+            if (is == null) {
+                log.warn("Lua script {} not found on classpath", path);
+                return "";
+            }
+            return new String(is.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            log.warn("Failed to load Lua script {}", path, e);
+            return "";
+        }
+    }
+}
@@ -0,0 +1,454 @@
+package com.example.ratelimiter.redis;
+
+import com.example.ratelimiter.core.api.ClockMode;
+import com.example.ratelimiter.core.api.RateLimitScript;
+import com.example.ratelimiter.core.api.RateLimitStore;
+import com.example.ratelimiter.core.metrics.RateLimiterMetrics;
+import com.example.ratelimiter.core.metrics.StoreOperation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Redis-backed implementation of RateLimitStore over a few multiplexed, automatically pipelined
+ * connections instead of a connection pool.
+ * <p>
+ * Every caller shares the same {@code connections} sockets (see {@link RespConnection}): commands
+ * queued by many threads go out in one socket write and their replies come back in one read, so
+ * throughput grows with the number of callers rather than with a pool size, and no connection is
+ * checked out, validated or returned per operation. {@link #executeScriptAsync} never blocks, and its
+ * future fails after the timeout like a blocking call would.
+ * <p>
+ * Connections are opened by a background thread, first at construction and again whenever one
+ * fails, including when a reply is overdue; no caller ever connects a socket or waits on a lock for
+ * one. While a connection is being reopened, asynchronous calls routed to it fail at once (so a
+ * circuit breaker sees the outage immediately), and blocking calls wait for it within their timeout.
+ * A failed attempt is retried no sooner than 100ms after it started.
+ * <p>
+ * Scripts are sent with EVALSHA and fall back to EVAL on NOSCRIPT, as in {@link RedisRateLimitStore}.
+ * In {@link ClockMode#SERVER} scripts read the Redis {@code TIME} instead of the caller's clock.
+ */
+public class PipelinedRedisRateLimitStore implements RateLimitStore {
+
+    private static final Logger log = LoggerFactory.getLogger(PipelinedRedisRateLimitStore.class);
+
+    private static final int DEFAULT_CONNECTIONS = 2;
+    private static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(2);
+    private static final long RECONNECT_DELAY_MILLIS = 100;
+    private static final AtomicInteger STORE_IDS = new AtomicInteger();
+
+    private final String host;
+    private final int port;
+    private final Duration timeout;
+    private final AtomicReferenceArray<Attempt> connections;
+    private final ThreadPoolExecutor connector;
+    private final AtomicInteger nextConnection = new AtomicInteger();
+    private final String threadName = "rate-limiter-redis-" + STORE_IDS.incrementAndGet();
+    private final LuaScripts scripts = new LuaScripts();
+    private final RateLimiterMetrics metrics;
+    private final ClockMode clockMode;
+    private volatile boolean closed;
+
+    public PipelinedRedisRateLimitStore(String host, int port) {
+        this(host, port, RateLimiterMetrics.NOOP);
+    }
+
+    public PipelinedRedisRateLimitStore(String host, int port, RateLimiterMetrics metrics) {
+        this(host, port, metrics, ClockMode.CLIENT);
+    }
+
+    public PipelinedRedisRateLimitStore(String host, int port, RateLimiterMetrics metrics, ClockMode clockMode) {
+        this(host, port, DEFAULT_CONNECTIONS, DEFAULT_TIMEOUT, metrics, clockMode);
+    }
+
+    /**
+     * @param connections number of multiplexed connections, each with its own writer and reader thread
+     * @param timeout     connect timeout, and how long every call waits for its reply
+     */
+    public PipelinedRedisRateLimitStore(String host, int port, int connections, Duration timeout,
+                                        RateLimiterMetrics metrics, ClockMode clockMode) {
+        if (connections <= 0) {
+            throw new IllegalArgumentException("connections must be greater than 0");
+        }
+        Objects.requireNonNull(timeout, "Timeout cannot be null");
+        if (timeout.isZero() || timeout.isNegative()) {
+            throw new IllegalArgumentException("timeout must be greater than 0");
+        }
+        this.host = Objects.requireNonNull(host, "Host cannot be null");
+        this.port = port;
+        this.timeout = timeout;
+        this.connections = new AtomicReferenceArray<>(connections);
+        this.metrics = Objects.requireNonNull(metrics, "Metrics cannot be null");
+        this.clockMode = Objects.requireNonNull(clockMode, "Clock mode cannot be null");
+
+        this.connector = new ThreadPoolExecutor(1, 1, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(), task -> {
+            Thread thread = new Thread(task, threadName + "-connector");
+            thread.setDaemon(true);
+            return thread;
+        });
+        connector.allowCoreThreadTimeOut(true);
+        for (int i = 0; i < connections; i++) {
+            connection(i);
+        }
+    }
+
+    @Override
+    public long increment(String key, Duration ttl) {
+        long ttlMillis = LuaScripts.ttlMillis(ttl);
+        long start = System.nanoTime();
+        try {
+            // INCR and PEXPIRE in one script, so a key can never be left without its TTL
+            Object reply = await(evalCached(LuaScripts.INCREMENT_SOURCE, new String[]{key},
+                    new String[]{String.valueOf(ttlMillis)}, false));
+            return LuaScripts.toLongArray(reply)[0];
+        } catch (RuntimeException e) {
+            log.error("Redis increment failed for key: {}", key, e);
+            throw new RuntimeException("Failed to increment counter", e);
+        } finally {
+            metrics.recordStoreLatency(StoreOperation.INCREMENT, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public long get(String key) {
+        long start = System.nanoTime();
+        try {
+            String value = (String) await(send("GET", key));
+            return value != null ? Long.parseLong(value) : 0;
+        } catch (RuntimeException e) {
+            log.error("Redis get failed for key: {}", key, e);
+            throw new RuntimeException("Failed to get value", e);
+        } finally {
+            metrics.recordStoreLatency(StoreOperation.GET, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void set(String key, long value, Duration ttl) {
+        long ttlMillis = LuaScripts.ttlMillis(ttl);
+        long start = System.nanoTime();
+        try {
+            await(send("SET", key, String.valueOf(value), "PX", String.valueOf(ttlMillis)));
+        } catch (RuntimeException e) {
+            log.error("Redis set failed for key: {}", key, e);
+            throw new RuntimeException("Failed to set value", e);
+        } finally {
+            metrics.recordStoreLatency(StoreOperation.SET, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public boolean delete(String key) {
+        long start = System.nanoTime();
+        try {
+            return (Long) await(send("DEL", key)) > 0;
+        } catch (RuntimeException e) {
+            log.error("Redis delete failed for key: {}", key, e);
+            return false;
+        } finally {
+            metrics.recordStoreLatency(StoreOperation.DELETE, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Object executeScript(String script, String[] keys, String[] args) {
+        long start = System.nanoTime();
+        try {
+            return await(evalCached(script, keys, args, false));
+        } catch (RuntimeException e) {
+            log.error("Redis script execution failed", e);
+            throw new RuntimeException("Failed to execute script", e);
+        } finally {
+            metrics.recordStoreLatency(StoreOperation.SCRIPT, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public long[] executeScript(RateLimitScript script, String[] keys, long... args) {
+        return LuaScripts.toLongArray(evalScript(script, keys, args));
+    }
+
+    @Override
+    public void executeScriptInto(RateLimitScript script, String[] keys, long[] args, long[] reply) {
+        LuaScripts.copyInto(evalScript(script, keys, args), reply);
+    }
+
+    @Override
+    public CompletionStage<long[]> executeScriptAsync(RateLimitScript script, String[] keys, long... args) {
+        try {
+            return timed(StoreOperation.SCRIPT, System.nanoTime(),
+                    withDeadline(evalCached(scripts.source(script), keys, LuaScripts.toArgs(args), true)))
+                    .thenApply(LuaScripts::toLongArray);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public long[][] executeBatch(RateLimitScript[] scripts, String[][] keys, long[][] args) {
+        List<List<String>> batch = LuaScripts.toBatch(scripts, keys, args);
+        long start = System.nanoTime();
+        try {
+            return LuaScripts.toBatchReplies(await(evalCached(this.scripts.batchSource(),
+                    batch.get(0).toArray(new String[0]), batch.get(1).toArray(new String[0]), false)), scripts.length);
+        } catch (RuntimeException e) {
+            log.error("Redis batch of {} scripts failed", scripts.length, e);
+            throw new RuntimeException("Failed to execute script batch", e);
+        } finally {
+            metrics.recordStoreLatency(StoreOperation.BATCH, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public CompletionStage<long[][]> executeBatchAsync(RateLimitScript[] scripts, String[][] keys, long[][] args) {
+        List<List<String>> batch = LuaScripts.toBatch(scripts, keys, args);
+        try {
+            return timed(StoreOperation.BATCH, System.nanoTime(), withDeadline(evalCached(this.scripts.batchSource(),
+                    batch.get(0).toArray(new String[0]), batch.get(1).toArray(new String[0]), true)))
+                    .thenApply(reply -> LuaScripts.toBatchReplies(reply, scripts.length));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    @Override
+    public Map<String, Long> multiGet(String... keys) {
+        long start = System.nanoTime();
+        try {
+            String[] command = new String[keys.length + 1];
+            command[0] = "MGET";
+            System.arraycopy(keys, 0, command, 1, keys.length);
+            List<?> values = (List<?>) await(send(command));
+            Map<String, Long> result = new HashMap<>();
+            for (int i = 0; i < keys.length; i++) {
+                String value = (String) values.get(i);
+                result.put(keys[i], value != null ? Long.parseLong(value) : 0L);
+            }
+            return result;
+        } catch (RuntimeException e) {
+            log.error("Redis multiGet failed", e);
+            throw new RuntimeException("Failed to get multiple values", e);
+        } finally {
+            metrics.recordStoreLatency(StoreOperation.MULTI_GET, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public ClockMode getClockMode() {
+        return clockMode;
+    }
+
+    @Override
+    public boolean isHealthy() {
+        try {
+            return "PONG".equals(await(send("PING")));
+        } catch (Exception e) {
+            log.warn("Redis health check failed", e);
+            return false;
+        }
+    }
+
+    public void close() {
+        closed = true;
+        connector.shutdownNow();
+        for (int i = 0; i < connections.length(); i++) {
+            Attempt attempt = connections.get(i);
+            if (attempt != null) {
+                attempt.close();
+            }
+        }
+    }
+
+    private Object evalScript(RateLimitScript script, String[] keys, long[] args) {
+        String source = scripts.source(script);
+        long start = System.nanoTime();
+        try {
+            return await(evalCached(source, keys, LuaScripts.toArgs(args), false));
+        } catch (RuntimeException e) {
+            log.error("Redis script {} failed for keys: {}", script, Arrays.toString(keys), e);
+            throw new RuntimeException("Failed to execute script", e);
+        } finally {
+            metrics.recordStoreLatency(StoreOperation.SCRIPT, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * EVALSHA with a locally computed digest, falling back to EVAL on NOSCRIPT. The fallback runs on
+     * the reader thread that completed the EVALSHA, so it only ever queues the command.
+     *
+     * @param failFast whether to fail at once rather than wait for a connection being reopened
+     */
+    private CompletableFuture<Object> evalCached(String source, String[] keys, String[] args, boolean failFast) {
+        String sha = scripts.sha(source);
+        return send(failFast, evalCommand("EVALSHA", sha, keys, args)).exceptionallyCompose(e -> {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof RespConnection.ErrorReply && ((RespConnection.ErrorReply) cause).isNoScript()) {
+                // Script cache was flushed or this is a fresh server; EVAL loads it again
+                log.debug("Script {} not cached on server, falling back to EVAL", sha);
+                return send(failFast, evalCommand("EVAL", source, keys, args));
+            }
+            return CompletableFuture.failedFuture(cause);
+        });
+    }
+
+    private static String[] evalCommand(String name, String script, String[] keys, String[] args) {
+        String[] command = new String[3 + keys.length + args.length];
+        command[0] = name;
+        command[1] = script;
+        command[2] = String.valueOf(keys.length);
+        System.arraycopy(keys, 0, command, 3, keys.length);
+        System.arraycopy(args, 0, command, 3 + keys.length, args.length);
+        return command;
+    }
+
+    private CompletableFuture<Object> send(String... command) {
+        return send(false, command);
+    }
+
+    /**
+     * Queues the command on the next connection round robin. If that connection is being reopened,
+     * fails at once when {@code failFast}, or else queues the command once it is open.
+     */
+    private CompletableFuture<Object> send(boolean failFast, String... command) {
+        int index = Math.floorMod(nextConnection.getAndIncrement(), connections.length());
+        CompletableFuture<RespConnection> connection = connection(index);
+        if (failFast && !connection.isDone()) {
+            return CompletableFuture.failedFuture(new UncheckedIOException(
+                    new IOException("Reconnecting to Redis at " + host + ":" + port)));
+        }
+        return connection.thenCompose(open -> open.send(command));
+    }
+
+    /**
+     * The connection at {@code index}, starting a new attempt on the connector thread if the current
+     * one has failed.
+     */
+    private CompletableFuture<RespConnection> connection(int index) {
+        Attempt attempt = connections.get(index);
+        if (attempt != null && attempt.isOpen()) {
+            return attempt.connection;
+        }
+        if (closed) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Store is closed"));
+        }
+        if (attempt == null || attempt.canRetry()) {
+            Attempt next = new Attempt();
+            if (connections.compareAndSet(index, attempt, next)) {
+                connect(index, next);
+                return next.connection;
+            }
+            attempt = connections.get(index);
+        }
+        return attempt.connection;
+    }
+
+    private void connect(int index, Attempt attempt) {
+        try {
+            connector.execute(() -> {
+                try {
+                    attempt.connection.complete(new RespConnection(host, port, timeout, threadName + "-" + index));
+                } catch (IOException e) {
+                    log.warn("Failed to connect to Redis at {}:{}", host, port, e);
+                    attempt.connection.completeExceptionally(
+                            new UncheckedIOException("Failed to connect to Redis at " + host + ":" + port, e));
+                }
+                if (closed) {
+                    // Raced with close(), which may have looked before the connection was set
+                    attempt.close();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            attempt.connection.completeExceptionally(new IllegalStateException("Store is closed"));
+        }
+    }
+
+    /**
+     * Waits up to the timeout for a reply, unwrapping Redis and connection errors.
+     */
+    private Object await(CompletableFuture<Object> reply) {
+        try {
+            return reply.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+                    : new RuntimeException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new RuntimeException("Redis reply timed out after " + timeout.toMillis() + "ms", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for Redis", e);
+        }
+    }
+
+    /**
+     * Fails the reply after the timeout even if the connection never reports the stall.
+     */
+    private CompletableFuture<Object> withDeadline(CompletableFuture<Object> reply) {
+        return reply.orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records the latency of the operation since {@code start} when the reply arrives, whether it
+     * succeeded or failed.
+     */
+    private <T> CompletionStage<T> timed(StoreOperation operation, long start, CompletionStage<T> reply) {
+        if (metrics == RateLimiterMetrics.NOOP) {
+            return reply;
+        }
+        return reply.whenComplete((result, error) ->
+                metrics.recordStoreLatency(operation, System.nanoTime() - start));
+    }
+
+    /**
+     * One attempt to open a connection; it is replaced by the next once it fails.
+     */
+    private static final class Attempt {
+
+        final CompletableFuture<RespConnection> connection = new CompletableFuture<>();
+        final long startNanos = System.nanoTime();
+
+        boolean isOpen() {
+            RespConnection open = connection.getNow(null);
+            return open != null && open.isOpen();
+        }
+
+        /**
+         * Whether the connection closed, or the attempt failed at least the reconnect delay ago.
+         */
+        boolean canRetry() {
+            if (!connection.isDone()) {
+                return false;
+            }
+            if (connection.isCompletedExceptionally()) {
+                return System.nanoTime() - startNanos >= TimeUnit.MILLISECONDS.toNanos(RECONNECT_DELAY_MILLIS);
+            }
+            return !connection.join().isOpen();
+        }
+
+        void close() {
+            if (connection.isDone() && !connection.isCompletedExceptionally()) {
+                connection.join().close();
+            } else {
+                connection.completeExceptionally(new IllegalStateException("Store is closed"));
+            }
+        }
+    }
+}
@@ -0,0 +1,425 @@
+package com.example.ratelimiter.redis;
+
+import com.example.ratelimiter.core.api.ClockMode;
+import com.example.ratelimiter.core.api.RateLimitScript;
+import com.example.ratelimiter.core.api.RateLimitStore;
+import com.example.ratelimiter.core.metrics.RateLimiterMetrics;
+import com.example.ratelimiter.core.metrics.StoreOperation;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Connection;
+import redis.clients.jedis.ConnectionPool;
+import redis.clients.jedis.ConnectionPoolConfig;
+import redis.clients.jedis.DefaultJedisClientConfig;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.JedisClientConfig;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.params.SetParams;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
+import redis.clients.jedis.exceptions.JedisRedirectionException;
+import redis.clients.jedis.providers.ClusterConnectionProvider;
+import redis.clients.jedis.util.JedisClusterCRC16;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Redis Cluster implementation of RateLimitStore using Jedis.
+ * <p>
+ * Every store key of one logical limiter carries the same hash tag ({@code ratelimit:{key}:...}),
+ * so each built-in script touches a single slot and is routed to the node owning it, following
+ * MOVED and ASK redirections. Throughput scales with the number of primaries.
+ * <p>
+ * Batches whose entries share a slot run as one atomic script. Batches spanning slots are grouped
+ * per node and pipelined, one round trip per node, in two phases: every slot first decides its
+ * entries without consuming anything, and only if all allow does each slot run its entries for real.
+ * Across slots this is not atomic: a concurrent request landing between the phases can make a later
+ * slot deny after an earlier one consumed. Multi-gets are pipelined per node the same way.
+ * <p>
+ * In {@link ClockMode#SERVER} scripts read the {@code TIME} of the node owning their slot, so the
+ * primaries' clocks should be synchronized.
+ */
+public class RedisClusterRateLimitStore implements RateLimitStore {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisClusterRateLimitStore.class);
+
+    private static final int MAX_ATTEMPTS = 5;
+    private static final Duration MAX_TOTAL_RETRIES_DURATION = Duration.ofSeconds(10);
+
+    private final ClusterConnectionProvider provider;
+    private final JedisCluster cluster;
+    private final LuaScripts scripts = new LuaScripts();
+    private final RateLimiterMetrics metrics;
+    private final ClockMode clockMode;
+
+    public RedisClusterRateLimitStore(Set<HostAndPort> nodes) {
+        this(nodes, createDefaultPoolConfig());
+    }
+
+    public RedisClusterRateLimitStore(Set<HostAndPort> nodes, RateLimiterMetrics metrics) {
+        this(nodes, createDefaultPoolConfig(), metrics);
+    }
+
+    public RedisClusterRateLimitStore(Set<HostAndPort> nodes, RateLimiterMetrics metrics, ClockMode clockMode) {
+        this(nodes, createDefaultPoolConfig(), metrics, clockMode);
+    }
+
+    public RedisClusterRateLimitStore(Set<HostAndPort> nodes, GenericObjectPoolConfig<Connection> poolConfig) {
+        this(nodes, poolConfig, RateLimiterMetrics.NOOP);
+    }
+
+    public RedisClusterRateLimitStore(Set<HostAndPort> nodes, GenericObjectPoolConfig<Connection> poolConfig,
+                                      RateLimiterMetrics metrics) {
+        this(nodes, poolConfig, metrics, ClockMode.CLIENT);
+    }
+
+    public RedisClusterRateLimitStore(Set<HostAndPort> nodes, GenericObjectPoolConfig<Connection> poolConfig,
+                                      RateLimiterMetrics metrics, ClockMode clockMode) {
+        Objects.requireNonNull(nodes, "Nodes cannot be null");
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("nodes must not be empty");
+        }
+        JedisClientConfig clientConfig = DefaultJedisClientConfig.builder().build();
+        this.provider = new ClusterConnectionProvider(nodes, clientConfig, poolConfig);
+        this.cluster = new JedisCluster(provider, MAX_ATTEMPTS, MAX_TOTAL_RETRIES_DURATION);
+        this.metrics = Objects.requireNonNull(metrics, "Metrics cannot be null");
+        this.clockMode = Objects.requireNonNull(clockMode, "Clock mode cannot be null");
+    }
+
+    private static ConnectionPoolConfig createDefaultPoolConfig() {
+        // Pools are per node, so each can be smaller than a single-node pool
+        ConnectionPoolConfig config = new ConnectionPoolConfig();
+        config.setMaxTotal(64);
+        config.setMaxIdle(32);
+        config.setMinIdle(8);
+        config.setTestWhileIdle(true);
+        return config;
+    }
+
+    @Override
+    public long increment(String key, Duration ttl) {
+        long ttlMillis = LuaScripts.ttlMillis(ttl);
+        long start = System.nanoTime();
+        try {
+            // INCR and PEXPIRE in one script, so a key can never be left without its TTL
+            Object reply = evalCached(LuaScripts.INCREMENT_SOURCE, List.of(key),
+                    List.of(String.valueOf(ttlMillis)));
+            return LuaScripts.toLongArray(reply)[0];
+        } catch (JedisException e) {
+            log.error("Redis increment failed for key: {}", key, e);
+            throw new RuntimeException("Failed to increment counter", e);
+        } finally {
+            metrics.recordStoreLatency(StoreOperation.INCREMENT, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public long get(String key) {
+        long start = System.nanoTime();
+        try {
+            String value = cluster.get(key);
+            return value != null ? Long.parseLong(value) : 0;
+        } catch (JedisException e) {
+            log.error("Redis get failed for key: {}", key, e);
+            throw new RuntimeException("Failed to get value", e);
+        } finally {
+            metrics.recordStoreLatency(StoreOperation.GET, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public void set(String key, long value, Duration ttl) {
+        long ttlMillis = LuaScripts.ttlMillis(ttl);
+        long start = System.nanoTime();
+        try {
+            cluster.set(key, String.valueOf(value), SetParams.setParams().px(ttlMillis));
+        } catch (JedisException e) {
+            log.error("Redis set failed for key: {}", key, e);
+            throw new RuntimeException("Failed to set value", e);
+        } finally {
+            metrics.recordStoreLatency(StoreOperation.SET, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public boolean delete(String key) {
+        long start = System.nanoTime();
+        try {
+            return cluster.del(key) > 0;
+        } catch (JedisException e) {
+            log.error("Redis delete failed for key: {}", key, e);
+            return false;
+        } finally {
+            metrics.recordStoreLatency(StoreOperation.DELETE, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Object executeScript(String script, String[] keys, String[] args) {
+        long start = System.nanoTime();
+        try {
+            return evalCached(script, Arrays.asList(keys), Arrays.asList(args));
+        } catch (JedisException e) {
+            log.error("Redis script execution failed", e);
+            throw new RuntimeException("Failed to execute script", e);
+        } finally {
+            metrics.recordStoreLatency(StoreOperation.SCRIPT, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public long[] executeScript(RateLimitScript script, String[] keys, long... args) {
+        return LuaScripts.toLongArray(evalScript(script, keys, args));
+    }
+
+    @Override
+    public void executeScriptInto(RateLimitScript script, String[] keys, long[] args, long[] reply) {
+        LuaScripts.copyInto(evalScript(script, keys, args), reply);
+    }
+
+    @Override
+    public long[][] executeBatch(RateLimitScript[] scripts, String[][] keys, long[][] args) {
+        long start = System.nanoTime();
+        try {
+            Map<Integer, List<Integer>> bySlot = new LinkedHashMap<>();
+            for (int i = 0; i < scripts.length; i++) {
+                bySlot.computeIfAbsent(slotOf(keys[i]), slot -> new ArrayList<>()).add(i);
+            }
+
+            if (bySlot.size() == 1) {
+                List<List<String>> batch = LuaScripts.toBatch(scripts, keys, args);
+                return LuaScripts.toBatchReplies(
+                        evalCached(this.scripts.batchSource(), batch.get(0), batch.get(1)), scripts.length);
+            }
+            return executeCrossSlotBatch(scripts, keys, args, new ArrayList<>(bySlot.values()));
+        } catch (JedisException e) {
+            log.error("Redis batch of {} scripts failed", scripts.length, e);
+            throw new RuntimeException("Failed to execute script batch", e);
+        } finally {
+            metrics.recordStoreLatency(StoreOperation.BATCH, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public Map<String, Long> multiGet(String... keys) {
+        long start = System.nanoTime();
+        try {
+            List<List<String>> commands = new ArrayList<>(keys.length);
+            for (String key : keys) {
+                commands.add(List.of(key));
+            }
+            Object[] values = pipelined(commands, (pipeline, i) -> pipeline.get(keys[i]),
+                    i -> cluster.get(keys[i]));
+
+            Map<String, Long> result = new HashMap<>();
+            for (int i = 0; i < keys.length; i++) {
+                String value = (String) values[i];
+                result.put(keys[i], value != null ? Long.parseLong(value) : 0L);
+            }
+            return result;
+        } catch (JedisException e) {
+            log.error("Redis multiGet failed", e);
+            throw new RuntimeException("Failed to get multiple values", e);
+        } finally {
+            metrics.recordStoreLatency(StoreOperation.MULTI_GET, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public ClockMode getClockMode() {
+        return clockMode;
+    }
+
+    /**
+     * Healthy when every known node answers PING.
+     */
+    @Override
+    public boolean isHealthy() {
+        try {
+            Map<String, ConnectionPool> nodes = cluster.getClusterNodes();
+            if (nodes.isEmpty()) {
+                return false;
+            }
+            for (ConnectionPool pool : nodes.values()) {
+                try (Connection connection = pool.getResource()) {
+                    if (!connection.ping()) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        } catch (Exception e) {
+            log.warn("Redis cluster health check failed", e);
+            return false;
+        }
+    }
+
+    private Object evalScript(RateLimitScript script, String[] keys, long[] args) {
+        String source = scripts.source(script);
+        long start = System.nanoTime();
+        try {
+            return evalCached(source, Arrays.asList(keys), Arrays.asList(LuaScripts.toArgs(args)));
+        } catch (JedisException e) {
+            log.error("Redis script {} failed for keys: {}", script, Arrays.toString(keys), e);
+            throw new RuntimeException("Failed to execute script", e);
+        } finally {
+            metrics.recordStoreLatency(StoreOperation.SCRIPT, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Checks every slot's entries, then runs them for real only if all were allowed.
+     */
+    private long[][] executeCrossSlotBatch(RateLimitScript[] scripts, String[][] keys, long[][] args,
+                                           List<List<Integer>> groups) {
+        List<List<String>> groupKeys = new ArrayList<>(groups.size());
+        List<List<String>> groupArgs = new ArrayList<>(groups.size());
+        for (List<Integer> group : groups) {
+            int size = group.size();
+            RateLimitScript[] groupScripts = new RateLimitScript[size];
+            String[][] entryKeys = new String[size][];
+            long[][] entryArgs = new long[size][];
+            for (int j = 0; j < size; j++) {
+                int entry = group.get(j);
+                groupScripts[j] = scripts[entry];
+                entryKeys[j] = keys[entry];
+                entryArgs[j] = args[entry];
+            }
+            List<List<String>> batch = LuaScripts.toBatch(groupScripts, entryKeys, entryArgs);
+            groupKeys.add(batch.get(0));
+            groupArgs.add(batch.get(1));
+        }
+
+        Object[] checked = evalPipelined(this.scripts.checkSource(), groupKeys, groupArgs);
+        boolean allAllowed = true;
+        for (Object reply : checked) {
+            allAllowed &= LuaScripts.toLongArray(reply)[0] == 1;
+        }
+        Object[] replies = allAllowed ? evalPipelined(this.scripts.batchSource(), groupKeys, groupArgs) : checked;
+
+        long[][] result = new long[scripts.length][];
+        for (int g = 0; g < groups.size(); g++) {
+            List<Integer> group = groups.get(g);
+            long[][] groupReplies = LuaScripts.toBatchReplies(replies[g], group.size());
+            for (int j = 0; j < group.size(); j++) {
+                result[group.get(j)] = groupReplies[j];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Runs one script call per entry, pipelined per node.
+     */
+    private Object[] evalPipelined(String source, List<List<String>> keys, List<List<String>> args) {
+        String sha = this.scripts.sha(source);
+        return pipelined(keys, (pipeline, i) -> pipeline.evalsha(sha, keys.get(i), args.get(i)),
+                i -> evalCached(source, keys.get(i), args.get(i)));
+    }
+
+    /**
+     * Sends one command per entry, grouped by the node owning the entry's first key, with one
+     * pipeline (one round trip) per node. Entries whose reply is a redirection or NOSCRIPT are
+     * re-run with {@code fallback}, through the cluster client which follows redirections.
+     *
+     * @param keys the keys of each entry; only the first is used for routing
+     */
+    private Object[] pipelined(List<List<String>> keys, PipelinedCommand command, FallbackCommand fallback) {
+        Map<HostAndPort, List<Integer>> byNode = new LinkedHashMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            HostAndPort node = provider.getNode(JedisClusterCRC16.getSlot(keys.get(i).get(0)));
+            byNode.computeIfAbsent(node, n -> new ArrayList<>()).add(i);
+        }
+
+        List<Response<?>> responses = new ArrayList<>(Collections.nCopies(keys.size(), null));
+        List<Integer> unrouted = new ArrayList<>();
+        for (Map.Entry<HostAndPort, List<Integer>> node : byNode.entrySet()) {
+            if (node.getKey() == null) {
+                // Slot not yet known, e.g. during a resharding
+                unrouted.addAll(node.getValue());
+                continue;
+            }
+            try (Connection connection = provider.getConnection(node.getKey())) {
+                Pipeline pipeline = new Pipeline(connection);
+                for (int i : node.getValue()) {
+                    responses.set(i, command.send(pipeline, i));
+                }
+                pipeline.sync();
+            }
+        }
+
+        Object[] result = new Object[keys.size()];
+        boolean redirected = false;
+        for (int i = 0; i < result.length; i++) {
+            Response<?> response = responses.get(i);
+            if (response == null) {
+                result[i] = fallback.execute(i);
+                continue;
+            }
+            try {
+                result[i] = response.get();
+            } catch (JedisRedirectionException e) {
+                redirected = true;
+                result[i] = fallback.execute(i);
+            } catch (JedisDataException e) {
+                if (!isNoScript(e)) {
+                    throw e;
+                }
+                result[i] = fallback.execute(i);
+            }
+        }
+        if (redirected || !unrouted.isEmpty()) {
+            provider.renewSlotCache();
+        }
+        return result;
+    }
+
+    private Object evalCached(String source, List<String> keys, List<String> args) {
+        String sha = scripts.sha(source);
+        try {
+            return cluster.evalsha(sha, keys, args);
+        } catch (JedisNoScriptException e) {
+            // Script cache was flushed or this node has not seen the script; EVAL loads it again
+            log.debug("Script {} not cached on node, falling back to EVAL", sha);
+            return cluster.eval(source, keys, args);
+        }
+    }
+
+    private static boolean isNoScript(JedisDataException e) {
+        return e instanceof JedisNoScriptException || (e.getMessage() != null && e.getMessage().startsWith("NOSCRIPT"));
+    }
+
+    /**
+     * Slot shared by an entry's keys.
+     *
+     * @throws IllegalArgumentException if the keys do not share a slot
+     */
+    private static int slotOf(String[] keys) {
+        int slot = JedisClusterCRC16.getSlot(keys[0]);
+        for (int i = 1; i < keys.length; i++) {
+            if (JedisClusterCRC16.getSlot(keys[i]) != slot) {
+                throw new IllegalArgumentException("keys of one script must share a hash slot: " + Arrays.toString(keys));
+            }
+        }
+        return slot;
+    }
+
+    public void close() {
+        cluster.close();
+    }
+
+    @FunctionalInterface
+    private interface PipelinedCommand {
+        Response<?> send(Pipeline pipeline, int entry);
+    }
+
+    @FunctionalInterface
+    private interface FallbackCommand {
+        Object execute(int entry);
+    }
+}
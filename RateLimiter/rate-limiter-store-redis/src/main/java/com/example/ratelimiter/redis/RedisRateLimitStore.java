@@ -1,35 +1,62 @@
 package com.example.ratelimiter.redis;
 
+import com.example.ratelimiter.core.api.ClockMode;
+import com.example.ratelimiter.core.api.RateLimitScript;
 import com.example.ratelimiter.core.api.RateLimitStore;
+import com.example.ratelimiter.core.metrics.RateLimiterMetrics;
+import com.example.ratelimiter.core.metrics.StoreOperation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.params.SetParams;
 import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
 
-import java.io.IOException;
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.*;
 
 /**
  * Redis-backed implementation of RateLimitStore using Jedis.
+ * Scripts are sent with EVALSHA using locally computed SHA1 digests and
+ * fall back to EVAL (which also caches the script server-side) on NOSCRIPT.
+ * In {@link ClockMode#SERVER} scripts read the Redis {@code TIME} instead of the caller's clock.
  */
 public class RedisRateLimitStore implements RateLimitStore {
 
     private static final Logger log = LoggerFactory.getLogger(RedisRateLimitStore.class);
 
     private final JedisPool jedisPool;
-    private final String scriptSha;
+    private final LuaScripts scripts = new LuaScripts();
+    private final RateLimiterMetrics metrics;
+    private final ClockMode clockMode;
 
     public RedisRateLimitStore(String host, int port) {
         this(host, port, createDefaultPoolConfig());
     }
 
+    public RedisRateLimitStore(String host, int port, RateLimiterMetrics metrics) {
+        this(host, port, createDefaultPoolConfig(), metrics);
+    }
+
+    public RedisRateLimitStore(String host, int port, RateLimiterMetrics metrics, ClockMode clockMode) {
+        this(host, port, createDefaultPoolConfig(), metrics, clockMode);
+    }
+
     public RedisRateLimitStore(String host, int port, JedisPoolConfig poolConfig) {
+        this(host, port, poolConfig, RateLimiterMetrics.NOOP);
+    }
+
+    public RedisRateLimitStore(String host, int port, JedisPoolConfig poolConfig, RateLimiterMetrics metrics) {
+        this(host, port, poolConfig, metrics, ClockMode.CLIENT);
+    }
+
+    public RedisRateLimitStore(String host, int port, JedisPoolConfig poolConfig, RateLimiterMetrics metrics,
+                               ClockMode clockMode) {
         this.jedisPool = new JedisPool(poolConfig, host, port);
-        this.scriptSha = loadTokenBucketScript();
+        this.metrics = Objects.requireNonNull(metrics, "Metrics cannot be null");
+        this.clockMode = Objects.requireNonNull(clockMode, "Clock mode cannot be null");
     }
 
     private static JedisPoolConfig createDefaultPoolConfig() {
@@ -45,64 +72,105 @@ public class RedisRateLimitStore implements RateLimitStore {
 
     @Override
     public long increment(String key, Duration ttl) {
-        try (var jedis = jedisPool.getResource()) {
-            Long result = jedis.incr(key);
-            if (result == 1) {
-                // First increment, set TTL
-                jedis.expire(key, (int) ttl.getSeconds());
-            }
-            return result != null ? result : 0;
+        long ttlMillis = LuaScripts.ttlMillis(ttl);
+        long start = System.nanoTime();
+        try (var jedis = borrow()) {
+            // INCR and PEXPIRE in one script, so a key can never be left without its TTL
+            Object reply = evalCached(jedis, LuaScripts.INCREMENT_SOURCE, List.of(key),
+                    List.of(String.valueOf(ttlMillis)));
+            return LuaScripts.toLongArray(reply)[0];
         } catch (JedisException e) {
             log.error("Redis increment failed for key: {}", key, e);
             throw new RuntimeException("Failed to increment counter", e);
+        } finally {
+            metrics.recordStoreLatency(StoreOperation.INCREMENT, System.nanoTime() - start);
         }
     }
 
     @Override
     public long get(String key) {
-        try (var jedis = jedisPool.getResource()) {
+        long start = System.nanoTime();
+        try (var jedis = borrow()) {
             String value = jedis.get(key);
             return value != null ? Long.parseLong(value) : 0;
         } catch (JedisException e) {
             log.error("Redis get failed for key: {}", key, e);
             throw new RuntimeException("Failed to get value", e);
+        } finally {
+            metrics.recordStoreLatency(StoreOperation.GET, System.nanoTime() - start);
         }
     }
 
     @Override
     public void set(String key, long value, Duration ttl) {
-        try (var jedis = jedisPool.getResource()) {
-            jedis.setex(key, (int) ttl.getSeconds(), String.valueOf(value));
+        long ttlMillis = LuaScripts.ttlMillis(ttl);
+        long start = System.nanoTime();
+        try (var jedis = borrow()) {
+            jedis.set(key, String.valueOf(value), SetParams.setParams().px(ttlMillis));
         } catch (JedisException e) {
             log.error("Redis set failed for key: {}", key, e);
             throw new RuntimeException("Failed to set value", e);
+        } finally {
+            metrics.recordStoreLatency(StoreOperation.SET, System.nanoTime() - start);
         }
     }
 
     @Override
     public boolean delete(String key) {
-        try (var jedis = jedisPool.getResource()) {
+        long start = System.nanoTime();
+        try (var jedis = borrow()) {
             Long deleted = jedis.del(key);
             return deleted != null && deleted > 0;
         } catch (JedisException e) {
             log.error("Redis delete failed for key: {}", key, e);
             return false;
+        } finally {
+            metrics.recordStoreLatency(StoreOperation.DELETE, System.nanoTime() - start);
         }
     }
 
     @Override
     public Object executeScript(String script, String[] keys, String[] args) {
-        try (var jedis = jedisPool.getResource()) {
-            return jedis.eval(script, Arrays.asList(keys), Arrays.asList(args));
+        long start = System.nanoTime();
+        try (var jedis = borrow()) {
+            return evalCached(jedis, script, Arrays.asList(keys), Arrays.asList(args));
         } catch (JedisException e) {
             log.error("Redis script execution failed", e);
             throw new RuntimeException("Failed to execute script", e);
+        } finally {
+            metrics.recordStoreLatency(StoreOperation.SCRIPT, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    public long[] executeScript(RateLimitScript script, String[] keys, long... args) {
+        return LuaScripts.toLongArray(evalScript(script, keys, args));
+    }
+
+    @Override
+    public void executeScriptInto(RateLimitScript script, String[] keys, long[] args, long[] reply) {
+        LuaScripts.copyInto(evalScript(script, keys, args), reply);
+    }
+
+    @Override
+    public long[][] executeBatch(RateLimitScript[] scripts, String[][] keys, long[][] args) {
+        List<List<String>> batch = LuaScripts.toBatch(scripts, keys, args);
+        long start = System.nanoTime();
+        try (var jedis = borrow()) {
+            return LuaScripts.toBatchReplies(evalCached(jedis, this.scripts.batchSource(), batch.get(0), batch.get(1)),
+                    scripts.length);
+        } catch (JedisException e) {
+            log.error("Redis batch of {} scripts failed", scripts.length, e);
+            throw new RuntimeException("Failed to execute script batch", e);
+        } finally {
+            metrics.recordStoreLatency(StoreOperation.BATCH, System.nanoTime() - start);
         }
     }
 
     @Override
     public Map<String, Long> multiGet(String... keys) {
-        try (var jedis = jedisPool.getResource()) {
+        long start = System.nanoTime();
+        try (var jedis = borrow()) {
             List<String> values = jedis.mget(keys);
             Map<String, Long> result = new HashMap<>();
             for (int i = 0; i < keys.length; i++) {
@@ -113,9 +181,16 @@ public class RedisRateLimitStore implements RateLimitStore {
         } catch (JedisException e) {
             log.error("Redis multiGet failed", e);
             throw new RuntimeException("Failed to get multiple values", e);
+        } finally {
+            metrics.recordStoreLatency(StoreOperation.MULTI_GET, System.nanoTime() - start);
         }
     }
 
+    @Override
+    public ClockMode getClockMode() {
+        return clockMode;
+    }
+
     @Override
     public boolean isHealthy() {
         try (var jedis = jedisPool.getResource()) {
@@ -126,16 +201,37 @@ public class RedisRateLimitStore implements RateLimitStore {
         }
     }
 
-    private String loadTokenBucketScript() {
-        try (InputStream is = getClass().getResourceAsStream("/lua/token_bucket.lua")) {
-            if (is == null) {
-                log.warn("Token bucket Lua script not found, using fallback");
-                return "";
-            }
-            return new String(is.readAllBytes(), StandardCharsets.UTF_8);
-        } catch (IOException e) {
-            log.warn("Failed to load token bucket Lua script", e);
-            return "";
+    private Object evalScript(RateLimitScript script, String[] keys, long[] args) {
+        String source = scripts.source(script);
+        long start = System.nanoTime();
+        try (var jedis = borrow()) {
+            return evalCached(jedis, source, Arrays.asList(keys), Arrays.asList(LuaScripts.toArgs(args)));
+        } catch (JedisException e) {
+            log.error("Redis script {} failed for keys: {}", script, Arrays.toString(keys), e);
+            throw new RuntimeException("Failed to execute script", e);
+        } finally {
+            metrics.recordStoreLatency(StoreOperation.SCRIPT, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Takes a connection from the pool, recording how long the caller waited for it.
+     */
+    private Jedis borrow() {
+        long start = System.nanoTime();
+        Jedis jedis = jedisPool.getResource();
+        metrics.recordPoolWait(System.nanoTime() - start);
+        return jedis;
+    }
+
+    private Object evalCached(Jedis jedis, String source, List<String> keys, List<String> args) {
+        String sha = scripts.sha(source);
+        try {
+            return jedis.evalsha(sha, keys, args);
+        } catch (JedisNoScriptException e) {
+            // Script cache was flushed or this is a fresh server; EVAL loads it again
+            log.debug("Script {} not cached on server, falling back to EVAL", sha);
+            return jedis.eval(source, keys, args);
         }
     }
 
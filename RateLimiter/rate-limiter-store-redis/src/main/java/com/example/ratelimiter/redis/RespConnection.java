@@ -0,0 +1,316 @@
+package com.example.ratelimiter.redis;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * One Redis connection shared by any number of callers, pipelining their commands automatically.
+ * <p>
+ * {@link #send} puts the command on a lock-free queue and returns a future. A writer thread drains
+ * everything queued into the socket buffer and flushes it with one write; a reader thread parses
+ * replies (RESP2) and completes the futures in the order the commands were written. Under load the
+ * commands of many callers therefore share one write and one read, and no caller holds the
+ * connection while waiting for its reply.
+ * <p>
+ * Every command must be answered within the timeout from when it was queued. If the oldest command
+ * written is overdue (Redis stalled, or the TCP connection is half-open), the connection fails rather
+ * than keep every later caller waiting behind it.
+ * <p>
+ * Once the socket fails, every pending and later command completes exceptionally and
+ * {@link #isOpen()} turns false; the owner replaces the connection.
+ */
+final class RespConnection {
+
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MIN_DEADLINE_CHECK_MILLIS = 10;
+
+    private final Socket socket;
+    private final long timeoutNanos;
+    private final OutputStream out;
+    private final InputStream in;
+    private final ConcurrentLinkedQueue<Command> outbound = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Command> inflight = new ConcurrentLinkedQueue<>();
+    private final Thread writer;
+    private final Thread reader;
+    private volatile boolean writerIdle;
+    private volatile boolean open = true;
+
+    /**
+     * @param timeout connect timeout, and how long each command may wait for its reply
+     */
+    RespConnection(String host, int port, Duration timeout, String name) throws IOException {
+        this.timeoutNanos = timeout.toNanos();
+        int timeoutMillis = (int) Math.min(Integer.MAX_VALUE, Math.max(1, timeout.toMillis()));
+        this.socket = new Socket();
+        try {
+            socket.setTcpNoDelay(true);
+            socket.setKeepAlive(true);
+            socket.connect(new InetSocketAddress(host, port), timeoutMillis);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        // Reads wake up a few times per timeout to check the oldest command's deadline
+        socket.setSoTimeout(Math.max(MIN_DEADLINE_CHECK_MILLIS, timeoutMillis / 4));
+        this.out = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+        this.in = new BufferedInputStream(new DeadlineInputStream(socket.getInputStream()), BUFFER_SIZE);
+
+        this.writer = new Thread(this::writeLoop, name + "-writer");
+        this.reader = new Thread(this::readLoop, name + "-reader");
+        writer.setDaemon(true);
+        reader.setDaemon(true);
+        writer.start();
+        reader.start();
+    }
+
+    /**
+     * Queues a command for the next write.
+     *
+     * @return future completed with the reply: {@link String}, {@link Long}, {@code null} or a
+     *         {@link List} of these; completed exceptionally with {@link ErrorReply} for a Redis
+     *         error, or {@link UncheckedIOException} if the connection failed
+     */
+    CompletableFuture<Object> send(String... command) {
+        Command queued = new Command(command, System.nanoTime() + timeoutNanos);
+        if (!open) {
+            queued.reply.completeExceptionally(closedException());
+            return queued.reply;
+        }
+        outbound.offer(queued);
+        if (writerIdle) {
+            LockSupport.unpark(writer);
+        }
+        if (!open) {
+            // Raced with close(): nobody else will fail what is left in the queue
+            failPending(closedException());
+        }
+        return queued.reply;
+    }
+
+    boolean isOpen() {
+        return open;
+    }
+
+    void close() {
+        fail(new UncheckedIOException(new IOException("Connection closed")));
+    }
+
+    /**
+     * Writes queued commands until the queue is empty, then flushes once and parks until
+     * {@link #send} queues more.
+     */
+    private void writeLoop() {
+        boolean unflushed = false;
+        try {
+            while (open) {
+                Command command = outbound.poll();
+                if (command != null) {
+                    // Registered before its bytes can reach the server, so the reply always finds it
+                    inflight.offer(command);
+                    if (!open) {
+                        // Raced with fail(): it may have drained inflight before the offer
+                        failPending(closedException());
+                        return;
+                    }
+                    write(command.arguments);
+                    unflushed = true;
+                } else if (unflushed) {
+                    out.flush();
+                    unflushed = false;
+                } else {
+                    writerIdle = true;
+                    if (outbound.isEmpty()) {
+                        LockSupport.park(this);
+                    }
+                    writerIdle = false;
+                }
+            }
+        } catch (IOException e) {
+            fail(new UncheckedIOException(e));
+        }
+    }
+
+    private void readLoop() {
+        try {
+            while (open) {
+                Object reply = readReply();
+                Command command = inflight.poll();
+                if (command == null) {
+                    throw new IOException("Protocol error: reply without a pending command");
+                }
+                if (reply instanceof ErrorReply) {
+                    command.reply.completeExceptionally((ErrorReply) reply);
+                } else {
+                    command.reply.complete(reply);
+                }
+            }
+        } catch (IOException e) {
+            fail(new UncheckedIOException(e));
+        } catch (RuntimeException e) {
+            fail(new UncheckedIOException(new IOException("Protocol error", e)));
+        }
+    }
+
+    private void fail(UncheckedIOException cause) {
+        open = false;
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // Already failed
+        }
+        LockSupport.unpark(writer);
+        failPending(cause);
+    }
+
+    private void failPending(RuntimeException cause) {
+        Command command;
+        while ((command = inflight.poll()) != null) {
+            command.reply.completeExceptionally(cause);
+        }
+        while ((command = outbound.poll()) != null) {
+            command.reply.completeExceptionally(cause);
+        }
+    }
+
+    private static UncheckedIOException closedException() {
+        return new UncheckedIOException(new IOException("Connection closed"));
+    }
+
+    private void write(String[] arguments) throws IOException {
+        writeLine('*', arguments.length);
+        for (String argument : arguments) {
+            byte[] bytes = argument.getBytes(StandardCharsets.UTF_8);
+            writeLine('$', bytes.length);
+            out.write(bytes);
+            out.write(CRLF);
+        }
+    }
+
+    private void writeLine(char type, int value) throws IOException {
+        out.write(type);
+        out.write(Integer.toString(value).getBytes(StandardCharsets.US_ASCII));
+        out.write(CRLF);
+    }
+
+    private Object readReply() throws IOException {
+        int type = in.read();
+        switch (type) {
+            case '+':
+                return readLine();
+            case '-':
+                return new ErrorReply(readLine());
+            case ':':
+                return Long.parseLong(readLine());
+            case '$': {
+                int length = Integer.parseInt(readLine());
+                if (length < 0) {
+                    return null;
+                }
+                byte[] bytes = in.readNBytes(length);
+                if (bytes.length != length || in.read() != '\r' || in.read() != '\n') {
+                    throw new EOFException();
+                }
+                return new String(bytes, StandardCharsets.UTF_8);
+            }
+            case '*': {
+                int count = Integer.parseInt(readLine());
+                if (count < 0) {
+                    return null;
+                }
+                List<Object> values = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    values.add(readReply());
+                }
+                return values;
+            }
+            case -1:
+                throw new EOFException("Connection closed by server");
+            default:
+                throw new IOException("Protocol error: unexpected reply type " + (char) type);
+        }
+    }
+
+    private String readLine() throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != '\r') {
+            if (b == -1) {
+                throw new EOFException();
+            }
+            line.append((char) b);
+        }
+        if (in.read() != '\n') {
+            throw new IOException("Protocol error: expected LF");
+        }
+        return line.toString();
+    }
+
+    /**
+     * Error reply from Redis; the message starts with the error code (ERR, NOSCRIPT, WRONGTYPE, ...).
+     */
+    static final class ErrorReply extends RuntimeException {
+
+        ErrorReply(String message) {
+            super(message, null, false, false);
+        }
+
+        boolean isNoScript() {
+            return getMessage().startsWith("NOSCRIPT");
+        }
+    }
+
+    /**
+     * Socket input whose read timeouts only surface once the oldest command in flight is overdue;
+     * until then a read that timed out is retried, so an idle connection never times out.
+     */
+    private final class DeadlineInputStream extends FilterInputStream {
+
+        DeadlineInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            while (true) {
+                try {
+                    return super.read(buffer, offset, length);
+                } catch (SocketTimeoutException e) {
+                    Command oldest = inflight.peek();
+                    if (!open || (oldest != null && System.nanoTime() - oldest.deadlineNanos > 0)) {
+                        throw new SocketTimeoutException("Redis reply timed out after "
+                                + timeoutNanos / 1_000_000 + "ms");
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class Command {
+
+        final String[] arguments;
+        final long deadlineNanos;
+        final CompletableFuture<Object> reply = new CompletableFuture<>();
+
+        Command(String[] arguments, long deadlineNanos) {
+            this.arguments = arguments;
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+}
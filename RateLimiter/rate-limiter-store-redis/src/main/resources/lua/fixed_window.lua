@@ -0,0 +1,47 @@
+-- Fixed Window Rate Limiter Lua Script
+-- Windows are aligned to multiples of the window length, so every node and every key shares the
+-- same boundaries. The counter lives in one small hash: w = index of its window (timestamp / window),
+-- c = its count. A counter of an older window counts as empty; the TTL only cleans up.
+-- KEYS[1]: window counter key
+-- ARGV[1]: limit (max requests per window)
+-- ARGV[2]: window (milliseconds)
+-- ARGV[3]: current timestamp (milliseconds), or -1 to read the Redis clock
+-- ARGV[4]: cost (default 1)
+-- Returns: {allowed (1/0), remaining, retry after (milliseconds)}
+
+local count_key = KEYS[1]
+
+local limit = tonumber(ARGV[1])
+local window = tonumber(ARGV[2])
+local now = tonumber(ARGV[3])
+local cost = tonumber(ARGV[4]) or 1
+
+if now < 0 then
+	-- Server clock mode: every node decides on the same clock, which also picks the window
+	local time = redis.call('TIME')
+	now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+end
+
+local index = math.floor(now / window)
+local window_left = window - now % window
+
+local state = redis.call('HMGET', count_key, 'w', 'c')
+local stored = tonumber(state[1])
+local count = 0
+if stored ~= nil and stored > index then
+	-- A node whose clock is ahead already moved the window on: count into it rather than go back
+	index = stored
+	window_left = (index + 1) * window - now
+end
+if stored == index then
+	count = tonumber(state[2]) or 0
+end
+
+if count + cost <= limit then
+	redis.call('HSET', count_key, 'w', index, 'c', count + cost)
+	-- Kept one window longer, so a clock that lags the window's end still finds its count
+	redis.call('PEXPIRE', count_key, window_left + window)
+	return {1, limit - count - cost, 0}
+end
+
+return {0, math.max(0, limit - count), window_left}
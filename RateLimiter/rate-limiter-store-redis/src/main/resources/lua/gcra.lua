@@ -0,0 +1,38 @@
+-- Leaky Bucket (GCRA) Rate Limiter Lua Script
+-- Stores a single theoretical arrival time (TAT) per key.
+-- KEYS[1]: TAT key
+-- ARGV[1]: limit (requests per window, also the burst size)
+-- ARGV[2]: window (milliseconds)
+-- ARGV[3]: current timestamp (milliseconds), or -1 to read the Redis clock
+-- ARGV[4]: cost (default 1)
+-- Returns: {allowed (1/0), remaining, retry after (milliseconds)}
+
+local tat_key = KEYS[1]
+
+local limit = tonumber(ARGV[1])
+local window = tonumber(ARGV[2])
+local now = tonumber(ARGV[3])
+local cost = tonumber(ARGV[4]) or 1
+
+if now < 0 then
+	-- Server clock mode: every node decides on the same clock
+	local time = redis.call('TIME')
+	now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+end
+
+local emission_interval = window / limit
+
+local tat = tonumber(redis.call('GET', tat_key)) or now
+tat = math.max(tat, now)
+
+local new_tat = tat + cost * emission_interval
+local allow_at = new_tat - window
+
+if allow_at > now then
+	local remaining = math.max(0, math.floor((window - (tat - now)) / emission_interval))
+	return {0, remaining, math.ceil(allow_at - now)}
+end
+
+-- The key expires once the bucket has fully drained
+redis.call('SET', tat_key, new_tat, 'PX', math.max(1, math.ceil(new_tat - now)))
+return {1, math.floor((window - (new_tat - now)) / emission_interval), 0}
@@ -0,0 +1,63 @@
+-- Sliding Window Counter Rate Limiter Lua Script
+-- Both counters live in one small hash, rotated here when the window moves on:
+-- w = index of the current window (timestamp / window), c = its count, p = the previous window's count.
+-- KEYS[1]: window counter key
+-- ARGV[1]: limit (max requests per window)
+-- ARGV[2]: window (milliseconds)
+-- ARGV[3]: current timestamp (milliseconds), or -1 to read the Redis clock
+-- ARGV[4]: cost (default 1)
+-- Returns: {allowed (1/0), remaining, retry after (milliseconds)}
+
+local counter_key = KEYS[1]
+
+local limit = tonumber(ARGV[1])
+local window = tonumber(ARGV[2])
+local now = tonumber(ARGV[3])
+local cost = tonumber(ARGV[4]) or 1
+
+if now < 0 then
+	-- Server clock mode: every node decides on the same clock, which also picks the window
+	local time = redis.call('TIME')
+	now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+end
+
+local index = math.floor(now / window)
+local elapsed = now % window
+
+local state = redis.call('HMGET', counter_key, 'w', 'c', 'p')
+local stored = tonumber(state[1])
+local current = 0
+local previous = 0
+if stored ~= nil and stored > index then
+	-- A node whose clock is ahead already moved the window on: count into it rather than go back
+	index = stored
+	elapsed = 0
+end
+if stored == index then
+	current = tonumber(state[2]) or 0
+	previous = tonumber(state[3]) or 0
+elseif stored == index - 1 then
+	previous = tonumber(state[2]) or 0
+end
+
+-- Weight the previous window by how much of it still overlaps the sliding window
+local estimated = previous * (window - elapsed) / window + current
+
+if estimated + cost <= limit then
+	redis.call('HSET', counter_key, 'w', index, 'c', current + cost, 'p', previous)
+	-- Gone once it can no longer be the current or previous window
+	redis.call('PEXPIRE', counter_key, (index + 2) * window - now)
+	return {1, math.floor(limit - estimated - cost), 0}
+end
+
+local retry_after
+if previous > 0 and current + cost <= limit then
+	-- Previous window decays until the estimate leaves room for this request
+	local target_elapsed = window - (limit - current - cost) * window / previous
+	retry_after = math.ceil(target_elapsed - elapsed)
+else
+	-- This window alone is over: it becomes the previous window at the next boundary,
+	-- then decays like above with nothing counted in the new one
+	retry_after = window - elapsed + math.ceil(window - (limit - cost) * window / current)
+end
+return {0, math.max(0, math.floor(limit - estimated)), math.max(1, retry_after)}
@@ -0,0 +1,44 @@
+-- Sliding Window Log Rate Limiter Lua Script
+-- KEYS[1]: log key (sorted set of request timestamps)
+-- ARGV[1]: limit (max requests per window)
+-- ARGV[2]: window (milliseconds)
+-- ARGV[3]: current timestamp (milliseconds), or -1 to read the Redis clock
+-- ARGV[4]: cost (entries to add, default 1)
+-- ARGV[5]: nonce making this call's members unique
+-- Returns: {allowed (1/0), remaining, retry after (milliseconds)}
+
+local log_key = KEYS[1]
+
+local limit = tonumber(ARGV[1])
+local window = tonumber(ARGV[2])
+local now = tonumber(ARGV[3])
+local cost = tonumber(ARGV[4]) or 1
+local nonce = ARGV[5]
+
+if now < 0 then
+	-- Server clock mode: every node decides on the same clock
+	local time = redis.call('TIME')
+	now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+end
+
+-- Drop entries that fell out of the window, then count the rest
+redis.call('ZREMRANGEBYSCORE', log_key, '-inf', now - window)
+local count = redis.call('ZCARD', log_key)
+
+if count + cost <= limit then
+	for i = 1, cost do
+		redis.call('ZADD', log_key, now, now .. ':' .. nonce .. ':' .. i)
+	end
+	redis.call('PEXPIRE', log_key, window)
+	return {1, limit - count - cost, 0}
+end
+
+if cost > limit then
+	return {0, limit - count, window}
+end
+
+-- Wait until enough of the oldest entries leave the window
+local needed = count + cost - limit
+local entry = redis.call('ZRANGE', log_key, needed - 1, needed - 1, 'WITHSCORES')
+local retry_after = tonumber(entry[2]) + window - now
+return {0, limit - count, math.max(1, retry_after)}
@@ -0,0 +1,49 @@
+-- Token Bucket Rate Limiter Lua Script
+-- The bucket is one value: the time (milliseconds) at which it was empty, from which its tokens
+-- at any later time follow. Writing it also sets its expiry.
+-- KEYS[1]: bucket key
+-- ARGV[1]: bucket capacity (max tokens)
+-- ARGV[2]: refill period (milliseconds to refill an empty bucket)
+-- ARGV[3]: current timestamp (milliseconds), or -1 to read the Redis clock
+-- ARGV[4]: cost (tokens to consume, default 1)
+-- ARGV[5]: key TTL (milliseconds)
+-- Returns: {allowed (1/0), remaining tokens, retry after (milliseconds)}
+
+local bucket_key = KEYS[1]
+
+local capacity = tonumber(ARGV[1])
+local refill_period = tonumber(ARGV[2])
+local now = tonumber(ARGV[3])
+local cost = tonumber(ARGV[4]) or 1
+local ttl = tonumber(ARGV[5])
+
+if now < 0 then
+	-- Server clock mode: every node decides on the same clock
+	local time = redis.call('TIME')
+	now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+end
+
+-- A missing (expired) bucket is full
+local tokens = capacity
+local empty_at = tonumber(redis.call('GET', bucket_key))
+if empty_at ~= nil then
+	tokens = math.max(0, math.min(capacity, (now - empty_at) * capacity / refill_period))
+end
+
+-- Try to consume tokens
+if tokens >= cost then
+	tokens = tokens - cost
+
+	-- Microsecond precision, TTL set in the same command
+	redis.call('SET', bucket_key, string.format('%.3f', now - tokens * refill_period / capacity), 'PX', ttl)
+
+	-- Return success with remaining tokens
+	return {1, math.floor(tokens), 0}
+else
+	-- Calculate retry after (milliseconds)
+	local tokens_needed = cost - tokens
+	local retry_after = math.ceil(tokens_needed * refill_period / capacity)
+
+	-- Return failure with retry time
+	return {0, math.floor(tokens), retry_after}
+end
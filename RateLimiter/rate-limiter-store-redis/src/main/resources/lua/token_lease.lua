@@ -0,0 +1,41 @@
+-- Token Lease Lua Script
+-- Takes up to a requested number of whole tokens from the shared token bucket
+-- so that a node can serve them locally.
+-- KEYS[1]: bucket key (the time the bucket was empty, as written by token_bucket.lua)
+-- ARGV[1]: bucket capacity (max tokens)
+-- ARGV[2]: refill period (milliseconds to refill an empty bucket)
+-- ARGV[3]: current timestamp (milliseconds), or -1 to read the Redis clock
+-- ARGV[4]: requested lease size (tokens)
+-- ARGV[5]: key TTL (milliseconds)
+-- Returns: {granted tokens, remaining tokens, retry after (milliseconds)}
+
+local bucket_key = KEYS[1]
+
+local capacity = tonumber(ARGV[1])
+local refill_period = tonumber(ARGV[2])
+local now = tonumber(ARGV[3])
+local requested = tonumber(ARGV[4])
+local ttl = tonumber(ARGV[5])
+
+if now < 0 then
+	-- Server clock mode: every node decides on the same clock
+	local time = redis.call('TIME')
+	now = tonumber(time[1]) * 1000 + math.floor(tonumber(time[2]) / 1000)
+end
+
+local tokens = capacity
+local empty_at = tonumber(redis.call('GET', bucket_key))
+if empty_at ~= nil then
+	tokens = math.max(0, math.min(capacity, (now - empty_at) * capacity / refill_period))
+end
+
+-- Grant as many whole tokens as are available, up to the requested lease size
+local granted = math.min(requested, math.floor(tokens))
+if granted >= 1 then
+	tokens = tokens - granted
+	redis.call('SET', bucket_key, string.format('%.3f', now - tokens * refill_period / capacity), 'PX', ttl)
+	return {granted, math.floor(tokens), 0}
+end
+
+local retry_after = math.ceil((1 - tokens) * refill_period / capacity)
+return {0, 0, retry_after}
@@ -0,0 +1,211 @@
+package com.example.ratelimiter.redis;
+
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.util.JedisClusterCRC16;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * In-JVM stand-in for a Redis Cluster: several {@link EmbeddedRedisServer}s, each owning an equal
+ * range of the 16384 hash slots and its own keyspace.
+ * <p>
+ * Nodes answer {@code CLUSTER SLOTS} with the slot map, reply {@code MOVED} to commands whose keys
+ * belong to another node and {@code CROSSSLOT} to commands whose keys span slots, which is enough
+ * for cluster clients to discover the topology and route by slot. There are no replicas or failover.
+ * <p>
+ * Resharding can be simulated one slot at a time: {@link #migrateSlot} makes the owner answer
+ * {@code ASK} for the slot and the target accept it after {@code ASKING}, and {@link #moveSlot} hands
+ * the slot over so other nodes answer {@code MOVED}. Keys are not carried over: the target starts the
+ * slot empty, as if every key had already been migrated.
+ */
+public final class EmbeddedRedisCluster implements AutoCloseable {
+
+    private static final int SLOTS = 16384;
+
+    private final List<EmbeddedRedisServer> nodes = new ArrayList<>();
+    private final List<HostAndPort> addresses = new ArrayList<>();
+    private final AtomicIntegerArray owners = new AtomicIntegerArray(SLOTS);
+    private final Map<Integer, Integer> migrating = new ConcurrentHashMap<>();
+    // Set by ASKING for the next command of the connection; every connection has its own thread
+    private final ThreadLocal<Boolean> asking = ThreadLocal.withInitial(() -> false);
+
+    private EmbeddedRedisCluster(int nodeCount) throws IOException {
+        List<ServerSocket> sockets = new ArrayList<>(nodeCount);
+        for (int i = 0; i < nodeCount; i++) {
+            ServerSocket socket = new ServerSocket(0, 128, InetAddress.getLoopbackAddress());
+            sockets.add(socket);
+            addresses.add(new HostAndPort(socket.getInetAddress().getHostAddress(), socket.getLocalPort()));
+        }
+        for (int slot = 0; slot < SLOTS; slot++) {
+            owners.set(slot, (int) ((long) slot * nodeCount / SLOTS));
+        }
+
+        for (int i = 0; i < nodeCount; i++) {
+            int node = i;
+            nodes.add(new EmbeddedRedisServer(sockets.get(i), command -> route(node, command)));
+        }
+    }
+
+    /**
+     * Starts a cluster of {@code nodeCount} primaries on ephemeral loopback ports.
+     */
+    public static EmbeddedRedisCluster start(int nodeCount) throws IOException {
+        if (nodeCount <= 0) {
+            throw new IllegalArgumentException("nodeCount must be greater than 0");
+        }
+        return new EmbeddedRedisCluster(nodeCount);
+    }
+
+    /**
+     * Addresses of all nodes, usable as cluster seed nodes.
+     */
+    public Set<HostAndPort> getNodes() {
+        return new LinkedHashSet<>(addresses);
+    }
+
+    /**
+     * Index in {@link #getNodes()} of the node owning the slot.
+     */
+    public int ownerOf(int slot) {
+        return owners.get(slot);
+    }
+
+    /**
+     * Starts migrating the slot to another node: its owner answers {@code ASK} for it, and the target
+     * serves it to connections that sent {@code ASKING}. {@code CLUSTER SLOTS} still lists the owner.
+     */
+    public void migrateSlot(int slot, int node) {
+        migrating.put(slot, node);
+    }
+
+    /**
+     * Hands the slot over to the node, ending any migration of it; other nodes answer {@code MOVED}.
+     */
+    public void moveSlot(int slot, int node) {
+        owners.set(slot, node);
+        migrating.remove(slot);
+    }
+
+    @Override
+    public void close() {
+        for (EmbeddedRedisServer node : nodes) {
+            node.close();
+        }
+    }
+
+    /**
+     * Answers cluster commands and redirections for the given node; null lets the node execute the command.
+     */
+    private Object route(int node, String[] command) {
+        if (command.length == 0) {
+            return null;
+        }
+        String name = command[0].toUpperCase();
+        if (name.equals("CLUSTER")) {
+            return cluster(command);
+        }
+        if (name.equals("ASKING")) {
+            asking.set(true);
+            return Keyspace.Status.OK;
+        }
+        boolean asked = asking.get();
+        asking.set(false);
+
+        int slot = -1;
+        for (String key : keys(name, command)) {
+            int keySlot = JedisClusterCRC16.getSlot(key);
+            if (slot != -1 && keySlot != slot) {
+                throw new Keyspace.CommandException("CROSSSLOT Keys in request don't hash to the same slot");
+            }
+            slot = keySlot;
+        }
+        if (slot == -1) {
+            return null;
+        }
+        Integer target = migrating.get(slot);
+        if (target != null && target == node && asked) {
+            return null;
+        }
+        if (ownerOf(slot) != node) {
+            throw redirection("MOVED", slot, ownerOf(slot));
+        }
+        if (target != null) {
+            throw redirection("ASK", slot, target);
+        }
+        return null;
+    }
+
+    private Keyspace.CommandException redirection(String type, int slot, int node) {
+        HostAndPort address = addresses.get(node);
+        return new Keyspace.CommandException(type + " " + slot + " " + address.getHost() + ":" + address.getPort());
+    }
+
+    private Object cluster(String[] command) {
+        String subcommand = command.length > 1 ? command[1].toUpperCase() : "";
+        switch (subcommand) {
+            case "SLOTS": {
+                // One entry per run of consecutive slots with the same owner
+                List<Object> slots = new ArrayList<>();
+                int start = 0;
+                for (int slot = 1; slot <= SLOTS; slot++) {
+                    if (slot == SLOTS || owners.get(slot) != owners.get(start)) {
+                        int owner = owners.get(start);
+                        HostAndPort address = addresses.get(owner);
+                        slots.add(List.of((long) start, (long) slot - 1,
+                                List.of(address.getHost(), (long) address.getPort(), nodeId(owner))));
+                        start = slot;
+                    }
+                }
+                return slots;
+            }
+            case "MYID":
+                return nodeId(0);
+            default:
+                throw new Keyspace.CommandException("ERR unknown CLUSTER subcommand '" + subcommand + "'");
+        }
+    }
+
+    /**
+     * Keys of the commands {@link Keyspace} implements.
+     */
+    private static List<String> keys(String name, String[] command) {
+        switch (name) {
+            case "GET":
+            case "SET":
+            case "SETEX":
+            case "INCR":
+            case "INCRBY":
+            case "EXPIRE":
+            case "PEXPIRE":
+            case "PTTL":
+            case "ZADD":
+            case "ZCARD":
+            case "ZREMRANGEBYSCORE":
+            case "ZRANGE":
+                return command.length > 1 ? List.of(command[1]) : List.of();
+            case "MGET":
+            case "DEL":
+                return List.of(command).subList(1, command.length);
+            case "EVAL":
+            case "EVALSHA": {
+                int numKeys = command.length > 2 ? Integer.parseInt(command[2]) : 0;
+                return List.of(command).subList(3, Math.min(command.length, 3 + numKeys));
+            }
+            default:
+                return List.of();
+        }
+    }
+
+    private static String nodeId(int node) {
+        return String.format("%040x", node + 1);
+    }
+}
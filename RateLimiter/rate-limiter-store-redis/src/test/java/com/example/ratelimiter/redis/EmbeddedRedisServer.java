@@ -0,0 +1,220 @@
+package com.example.ratelimiter.redis;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * In-JVM stand-in for a local Redis server, speaking RESP over loopback TCP.
+ * <p>
+ * Lets the Redis stores be tested and benchmarked end to end (client, pool, sockets, protocol,
+ * scripts) without an external process. Commands from all connections are executed one at a time on
+ * a shared {@link Keyspace}, and replies are flushed once a pipelined burst has been read. Lua runs on luaj,
+ * so script execution is slower than in real Redis; absolute numbers should be taken against a
+ * real server. {@link EmbeddedRedisCluster} runs several of these as a cluster.
+ */
+public final class EmbeddedRedisServer implements AutoCloseable {
+
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private final Keyspace keyspace = new Keyspace();
+    private final Function<String[], Object> interceptor;
+    private final ServerSocket serverSocket;
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger connectionIds = new AtomicInteger();
+    private volatile boolean running = true;
+
+    /**
+     * @param interceptor sees every command first and returns a reply to send instead of executing it,
+     *                    or null to execute it on the keyspace
+     */
+    EmbeddedRedisServer(ServerSocket serverSocket, Function<String[], Object> interceptor) {
+        this.serverSocket = serverSocket;
+        this.interceptor = interceptor;
+        Thread acceptor = new Thread(this::acceptLoop, "embedded-redis-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Starts a server on an ephemeral loopback port.
+     */
+    public static EmbeddedRedisServer start() throws IOException {
+        return new EmbeddedRedisServer(new ServerSocket(0, 128, InetAddress.getLoopbackAddress()), command -> null);
+    }
+
+    public String getHost() {
+        return serverSocket.getInetAddress().getHostAddress();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) {
+            // Already closed
+        }
+        for (Socket connection : connections) {
+            closeQuietly(connection);
+        }
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                connections.add(socket);
+                Thread handler = new Thread(() -> serve(socket), "embedded-redis-conn-" + connectionIds.incrementAndGet());
+                handler.setDaemon(true);
+                handler.start();
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Embedded Redis failed to accept a connection: " + e);
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            InputStream in = new BufferedInputStream(socket.getInputStream(), 64 * 1024);
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+            while (running) {
+                String[] command = readCommand(in);
+                if (command == null) {
+                    return;
+                }
+                if (command.length > 0 && command[0].equalsIgnoreCase("QUIT")) {
+                    writeReply(out, Keyspace.Status.OK);
+                    out.flush();
+                    return;
+                }
+
+                Object reply;
+                try {
+                    reply = interceptor.apply(command);
+                    if (reply == null) {
+                        reply = keyspace.execute(command);
+                    }
+                } catch (Keyspace.CommandException e) {
+                    reply = e;
+                }
+                writeReply(out, reply);
+
+                // Flush once the client has no more pipelined commands waiting
+                if (in.available() == 0) {
+                    out.flush();
+                }
+            }
+        } catch (EOFException | SocketException e) {
+            // Client went away
+        } catch (IOException e) {
+            if (running) {
+                System.err.println("Embedded Redis connection failed: " + e);
+            }
+        } finally {
+            connections.remove(socket);
+        }
+    }
+
+    /**
+     * Reads one command: a RESP array of bulk strings, or an inline command line.
+     * Returns null at end of stream.
+     */
+    private static String[] readCommand(InputStream in) throws IOException {
+        int type = in.read();
+        if (type == -1) {
+            return null;
+        }
+        if (type != '*') {
+            String inline = (char) type + readLine(in);
+            return inline.trim().isEmpty() ? new String[0] : inline.trim().split("\\s+");
+        }
+
+        int count = Integer.parseInt(readLine(in));
+        String[] command = new String[Math.max(0, count)];
+        for (int i = 0; i < command.length; i++) {
+            if (in.read() != '$') {
+                throw new IOException("Protocol error: expected bulk string");
+            }
+            int length = Integer.parseInt(readLine(in));
+            byte[] bytes = in.readNBytes(length);
+            if (bytes.length != length || in.read() != '\r' || in.read() != '\n') {
+                throw new EOFException();
+            }
+            command[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return command;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int b;
+        while ((b = in.read()) != '\r') {
+            if (b == -1) {
+                throw new EOFException();
+            }
+            line.append((char) b);
+        }
+        if (in.read() != '\n') {
+            throw new IOException("Protocol error: expected LF");
+        }
+        return line.toString();
+    }
+
+    private static void writeReply(OutputStream out, Object reply) throws IOException {
+        if (reply == null) {
+            out.write("$-1\r\n".getBytes(StandardCharsets.US_ASCII));
+        } else if (reply instanceof Long) {
+            writeLine(out, ':', reply.toString());
+        } else if (reply instanceof String) {
+            byte[] bytes = ((String) reply).getBytes(StandardCharsets.UTF_8);
+            writeLine(out, '$', Integer.toString(bytes.length));
+            out.write(bytes);
+            out.write(CRLF);
+        } else if (reply instanceof Keyspace.Status) {
+            writeLine(out, '+', ((Keyspace.Status) reply).text());
+        } else if (reply instanceof Keyspace.CommandException) {
+            writeLine(out, '-', ((Keyspace.CommandException) reply).getMessage());
+        } else {
+            List<?> list = (List<?>) reply;
+            writeLine(out, '*', Integer.toString(list.size()));
+            for (Object element : list) {
+                writeReply(out, element);
+            }
+        }
+    }
+
+    private static void writeLine(OutputStream out, char type, String line) throws IOException {
+        out.write(type);
+        out.write(line.getBytes(StandardCharsets.UTF_8));
+        out.write(CRLF);
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+            // Best effort
+        }
+    }
+}
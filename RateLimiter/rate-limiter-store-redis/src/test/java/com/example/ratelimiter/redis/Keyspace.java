@@ -0,0 +1,592 @@
+package com.example.ratelimiter.redis;
+
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.LuaError;
+import org.luaj.vm2.LuaTable;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Varargs;
+import org.luaj.vm2.lib.VarArgFunction;
+import org.luaj.vm2.lib.jse.JsePlatform;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Single-threaded keyspace behind {@link EmbeddedRedisServer}.
+ * <p>
+ * Implements the subset of Redis used by the rate limiter stores: strings with expiry, hashes, sorted sets
+ * and Lua scripting (EVAL, EVALSHA, SCRIPT LOAD) on luaj. Commands run one at a time, like Redis,
+ * so scripts are atomic. Replies are Java objects: {@link Long}, {@link String} (bulk), {@code null},
+ * {@link List} and {@link Status}; errors are thrown as {@link CommandException}.
+ */
+final class Keyspace {
+
+    private static final MathContext LUA_NUMBER_PRECISION = new MathContext(14);
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Map<String, LuaValue> scripts = new HashMap<>();
+    private final Globals globals = JsePlatform.standardGlobals();
+
+    Keyspace() {
+        LuaTable redis = new LuaTable();
+        redis.set("call", new VarArgFunction() {
+            @Override
+            public Varargs invoke(Varargs args) {
+                try {
+                    return toLua(dispatch(toCommand(args)));
+                } catch (CommandException e) {
+                    throw new LuaError(e.getMessage());
+                }
+            }
+        });
+        globals.set("redis", redis);
+    }
+
+    synchronized Object execute(String[] command) {
+        if (command.length == 0) {
+            throw new CommandException("ERR empty command");
+        }
+        return dispatch(command);
+    }
+
+    private Object dispatch(String[] c) {
+        String name = c[0].toUpperCase();
+        switch (name) {
+            case "PING":
+                return new Status("PONG");
+            case "CLIENT":
+            case "SELECT":
+                return Status.OK;
+            case "FLUSHALL":
+            case "FLUSHDB":
+                entries.clear();
+                return Status.OK;
+            case "GET":
+                arity(c, 2);
+                return string(c[1]);
+            case "MGET": {
+                List<Object> values = new ArrayList<>(c.length - 1);
+                for (int i = 1; i < c.length; i++) {
+                    Entry entry = live(c[i]);
+                    values.add(entry != null && entry.value instanceof String ? entry.value : null);
+                }
+                return values;
+            }
+            case "SET":
+                return set(c);
+            case "SETEX":
+                arity(c, 4);
+                put(c[1], c[3], System.currentTimeMillis() + parseLong(c[2]) * 1000);
+                return Status.OK;
+            case "INCR":
+                arity(c, 2);
+                return incrBy(c[1], 1);
+            case "INCRBY":
+                arity(c, 3);
+                return incrBy(c[1], parseLong(c[2]));
+            case "EXPIRE":
+                arity(c, 3);
+                return expire(c[1], parseLong(c[2]) * 1000);
+            case "PEXPIRE":
+                arity(c, 3);
+                return expire(c[1], parseLong(c[2]));
+            case "PTTL": {
+                arity(c, 2);
+                Entry entry = live(c[1]);
+                if (entry == null) {
+                    return -2L;
+                }
+                return entry.expiresAt == 0 ? -1L : Math.max(0, entry.expiresAt - System.currentTimeMillis());
+            }
+            case "DEL": {
+                long deleted = 0;
+                for (int i = 1; i < c.length; i++) {
+                    if (live(c[i]) != null) {
+                        entries.remove(c[i]);
+                        deleted++;
+                    }
+                }
+                return deleted;
+            }
+            case "HSET":
+                return hset(c);
+            case "HGET": {
+                arity(c, 3);
+                Map<String, String> hash = hash(c[1], false);
+                return hash == null ? null : hash.get(c[2]);
+            }
+            case "HMGET": {
+                if (c.length < 3) {
+                    throw wrongArity(c);
+                }
+                Map<String, String> hash = hash(c[1], false);
+                List<Object> values = new ArrayList<>(c.length - 2);
+                for (int i = 2; i < c.length; i++) {
+                    values.add(hash == null ? null : hash.get(c[i]));
+                }
+                return values;
+            }
+            case "ZADD":
+                return zadd(c);
+            case "ZCARD": {
+                arity(c, 2);
+                SortedSet zset = zset(c[1], false);
+                return zset == null ? 0L : (long) zset.scores.size();
+            }
+            case "ZREMRANGEBYSCORE":
+                arity(c, 4);
+                return zremRangeByScore(c[1], parseScore(c[2]), parseScore(c[3]));
+            case "ZRANGE":
+                return zrange(c);
+            case "TIME": {
+                long micros = System.currentTimeMillis() * 1000;
+                return List.of(String.valueOf(micros / 1_000_000), String.valueOf(micros % 1_000_000));
+            }
+            case "EVAL":
+                return eval(compile(c[1]), c);
+            case "EVALSHA": {
+                LuaValue script = scripts.get(c[1].toLowerCase());
+                if (script == null) {
+                    throw new CommandException("NOSCRIPT No matching script. Please use EVAL.");
+                }
+                return eval(script, c);
+            }
+            case "SCRIPT":
+                return script(c);
+            default:
+                throw new CommandException("ERR unknown command '" + c[0] + "'");
+        }
+    }
+
+    private Object set(String[] c) {
+        if (c.length < 3) {
+            throw wrongArity(c);
+        }
+        long expiresAt = 0;
+        for (int i = 3; i + 1 < c.length; i += 2) {
+            String option = c[i].toUpperCase();
+            if (option.equals("PX")) {
+                expiresAt = System.currentTimeMillis() + parseLong(c[i + 1]);
+            } else if (option.equals("EX")) {
+                expiresAt = System.currentTimeMillis() + parseLong(c[i + 1]) * 1000;
+            } else {
+                throw new CommandException("ERR syntax error");
+            }
+        }
+        put(c[1], c[2], expiresAt);
+        return Status.OK;
+    }
+
+    private long incrBy(String key, long delta) {
+        Entry entry = live(key);
+        long value = entry == null ? 0 : parseLong(stringValue(entry));
+        value += delta;
+        if (entry == null) {
+            put(key, String.valueOf(value), 0);
+        } else {
+            entry.value = String.valueOf(value);
+        }
+        return value;
+    }
+
+    private long expire(String key, long ttlMillis) {
+        Entry entry = live(key);
+        if (entry == null) {
+            return 0;
+        }
+        entry.expiresAt = System.currentTimeMillis() + ttlMillis;
+        return 1;
+    }
+
+    private long hset(String[] c) {
+        if (c.length < 4 || (c.length - 2) % 2 != 0) {
+            throw wrongArity(c);
+        }
+        Map<String, String> hash = hash(c[1], true);
+        long added = 0;
+        for (int i = 2; i < c.length; i += 2) {
+            if (hash.put(c[i], c[i + 1]) == null) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    private long zadd(String[] c) {
+        if (c.length < 4 || (c.length - 2) % 2 != 0) {
+            throw wrongArity(c);
+        }
+        SortedSet zset = zset(c[1], true);
+        long added = 0;
+        for (int i = 2; i < c.length; i += 2) {
+            if (zset.add(c[i + 1], parseScore(c[i]))) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    private long zremRangeByScore(String key, double min, double max) {
+        SortedSet zset = zset(key, false);
+        if (zset == null) {
+            return 0;
+        }
+        long removed = 0;
+        Iterator<Member> members = zset.ordered.iterator();
+        while (members.hasNext()) {
+            Member member = members.next();
+            if (member.score > max) {
+                break;
+            }
+            if (member.score >= min) {
+                members.remove();
+                zset.scores.remove(member.name);
+                removed++;
+            }
+        }
+        if (zset.scores.isEmpty()) {
+            entries.remove(key);
+        }
+        return removed;
+    }
+
+    private List<Object> zrange(String[] c) {
+        if (c.length < 4) {
+            throw wrongArity(c);
+        }
+        boolean withScores = c.length > 4 && c[4].equalsIgnoreCase("WITHSCORES");
+        SortedSet zset = zset(c[1], false);
+        List<Object> result = new ArrayList<>();
+        if (zset == null) {
+            return result;
+        }
+        int size = zset.scores.size();
+        long start = parseLong(c[2]);
+        long stop = parseLong(c[3]);
+        start = start < 0 ? Math.max(0, size + start) : start;
+        stop = stop < 0 ? size + stop : Math.min(stop, size - 1);
+
+        int rank = 0;
+        for (Member member : zset.ordered) {
+            if (rank > stop) {
+                break;
+            }
+            if (rank >= start) {
+                result.add(member.name);
+                if (withScores) {
+                    result.add(formatScore(member.score));
+                }
+            }
+            rank++;
+        }
+        return result;
+    }
+
+    private Object script(String[] c) {
+        if (c.length < 2) {
+            throw wrongArity(c);
+        }
+        switch (c[1].toUpperCase()) {
+            case "LOAD":
+                arity(c, 3);
+                compile(c[2]);
+                return sha1Hex(c[2]);
+            case "EXISTS": {
+                List<Object> exists = new ArrayList<>(c.length - 2);
+                for (int i = 2; i < c.length; i++) {
+                    exists.add(scripts.containsKey(c[i].toLowerCase()) ? 1L : 0L);
+                }
+                return exists;
+            }
+            case "FLUSH":
+                scripts.clear();
+                return Status.OK;
+            default:
+                throw new CommandException("ERR unknown SCRIPT subcommand '" + c[1] + "'");
+        }
+    }
+
+    private LuaValue compile(String source) {
+        return scripts.computeIfAbsent(sha1Hex(source), sha -> {
+            try {
+                return globals.load(source, "@user_script");
+            } catch (LuaError e) {
+                throw new CommandException("ERR Error compiling script " + e.getMessage());
+            }
+        });
+    }
+
+    private Object eval(LuaValue script, String[] c) {
+        if (c.length < 3) {
+            throw wrongArity(c);
+        }
+        int numKeys = (int) parseLong(c[2]);
+        if (numKeys < 0 || 3 + numKeys > c.length) {
+            throw new CommandException("ERR Number of keys can't be greater than number of args");
+        }
+        globals.set("KEYS", toTable(c, 3, 3 + numKeys));
+        globals.set("ARGV", toTable(c, 3 + numKeys, c.length));
+        try {
+            return fromLua(script.call());
+        } catch (LuaError e) {
+            throw new CommandException("ERR Error running script: " + e.getMessage());
+        }
+    }
+
+    private Entry live(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expiresAt != 0 && entry.expiresAt <= System.currentTimeMillis()) {
+            entries.remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+    private String string(String key) {
+        Entry entry = live(key);
+        return entry == null ? null : stringValue(entry);
+    }
+
+    private void put(String key, Object value, long expiresAt) {
+        entries.put(key, new Entry(value, expiresAt));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, String> hash(String key, boolean create) {
+        Entry entry = live(key);
+        if (entry == null) {
+            if (!create) {
+                return null;
+            }
+            Map<String, String> hash = new HashMap<>();
+            put(key, hash, 0);
+            return hash;
+        }
+        if (!(entry.value instanceof Map)) {
+            throw wrongType();
+        }
+        return (Map<String, String>) entry.value;
+    }
+
+    private SortedSet zset(String key, boolean create) {
+        Entry entry = live(key);
+        if (entry == null) {
+            if (!create) {
+                return null;
+            }
+            SortedSet zset = new SortedSet();
+            put(key, zset, 0);
+            return zset;
+        }
+        if (!(entry.value instanceof SortedSet)) {
+            throw wrongType();
+        }
+        return (SortedSet) entry.value;
+    }
+
+    private static String stringValue(Entry entry) {
+        if (!(entry.value instanceof String)) {
+            throw wrongType();
+        }
+        return (String) entry.value;
+    }
+
+    /**
+     * Converts a script's return value the way Redis does: numbers truncate to integers,
+     * false becomes nil and tables become arrays up to the first nil.
+     */
+    private static Object fromLua(LuaValue value) {
+        switch (value.type()) {
+            case LuaValue.TNUMBER:
+                return (long) value.todouble();
+            case LuaValue.TSTRING:
+                return value.tojstring();
+            case LuaValue.TBOOLEAN:
+                return value.toboolean() ? 1L : null;
+            case LuaValue.TTABLE: {
+                LuaValue err = value.get("err");
+                if (!err.isnil()) {
+                    throw new CommandException(err.tojstring());
+                }
+                LuaValue ok = value.get("ok");
+                if (!ok.isnil()) {
+                    return new Status(ok.tojstring());
+                }
+                List<Object> list = new ArrayList<>();
+                for (int i = 1; !value.get(i).isnil(); i++) {
+                    list.add(fromLua(value.get(i)));
+                }
+                return list;
+            }
+            default:
+                return null;
+        }
+    }
+
+    private static LuaValue toLua(Object reply) {
+        if (reply == null) {
+            return LuaValue.FALSE;
+        }
+        if (reply instanceof Long) {
+            return LuaValue.valueOf((double) (Long) reply);
+        }
+        if (reply instanceof String) {
+            return LuaValue.valueOf((String) reply);
+        }
+        if (reply instanceof Status) {
+            LuaTable table = new LuaTable();
+            table.set("ok", LuaValue.valueOf(((Status) reply).text()));
+            return table;
+        }
+        List<?> list = (List<?>) reply;
+        LuaTable table = new LuaTable(list.size(), 0);
+        for (int i = 0; i < list.size(); i++) {
+            table.set(i + 1, toLua(list.get(i)));
+        }
+        return table;
+    }
+
+    private static String[] toCommand(Varargs args) {
+        String[] command = new String[args.narg()];
+        for (int i = 0; i < command.length; i++) {
+            LuaValue arg = args.arg(i + 1);
+            command[i] = arg.type() == LuaValue.TNUMBER ? formatNumber(arg.todouble()) : arg.tojstring();
+        }
+        return command;
+    }
+
+    /**
+     * Formats a Lua number argument the way Redis' Lua 5.1 does ({@code %.14g}); luaj's own
+     * formatting keeps too few digits for millisecond timestamps.
+     */
+    private static String formatNumber(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return String.valueOf((long) value);
+        }
+        return new BigDecimal(value).round(LUA_NUMBER_PRECISION).stripTrailingZeros().toPlainString();
+    }
+
+    private static LuaTable toTable(String[] values, int from, int to) {
+        LuaTable table = new LuaTable(to - from, 0);
+        for (int i = from; i < to; i++) {
+            table.set(i - from + 1, LuaValue.valueOf(values[i]));
+        }
+        return table;
+    }
+
+    private static void arity(String[] c, int expected) {
+        if (c.length != expected) {
+            throw wrongArity(c);
+        }
+    }
+
+    private static CommandException wrongArity(String[] c) {
+        return new CommandException("ERR wrong number of arguments for '" + c[0].toLowerCase() + "' command");
+    }
+
+    private static CommandException wrongType() {
+        return new CommandException("WRONGTYPE Operation against a key holding the wrong kind of value");
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new CommandException("ERR value is not an integer or out of range");
+        }
+    }
+
+    private static double parseScore(String value) {
+        switch (value.toLowerCase()) {
+            case "-inf":
+                return Double.NEGATIVE_INFINITY;
+            case "+inf":
+            case "inf":
+                return Double.POSITIVE_INFINITY;
+            default:
+                try {
+                    return Double.parseDouble(value);
+                } catch (NumberFormatException e) {
+                    throw new CommandException("ERR value is not a valid float");
+                }
+        }
+    }
+
+    private static String formatScore(double score) {
+        return score == Math.rint(score) && Math.abs(score) < 1e15 ? String.valueOf((long) score) : String.valueOf(score);
+    }
+
+    static String sha1Hex(String source) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(source.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not available", e);
+        }
+    }
+
+    /**
+     * Simple string reply such as {@code +OK}.
+     */
+    record Status(String text) {
+        static final Status OK = new Status("OK");
+    }
+
+    /**
+     * Error reply; the message starts with the Redis error code (ERR, NOSCRIPT, WRONGTYPE).
+     */
+    static final class CommandException extends RuntimeException {
+
+        CommandException(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    private static final class Entry {
+
+        Object value;
+        long expiresAt;
+
+        Entry(Object value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private static final class SortedSet {
+
+        final Map<String, Double> scores = new HashMap<>();
+        final TreeSet<Member> ordered = new TreeSet<>();
+
+        boolean add(String name, double score) {
+            Double previous = scores.put(name, score);
+            if (previous != null) {
+                ordered.remove(new Member(previous, name));
+            }
+            ordered.add(new Member(score, name));
+            return previous == null;
+        }
+    }
+
+    private record Member(double score, String name) implements Comparable<Member> {
+
+        @Override
+        public int compareTo(Member other) {
+            int byScore = Double.compare(score, other.score);
+            return byScore != 0 ? byScore : name.compareTo(other.name);
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.example.ratelimiter.redis;
+
+import com.example.ratelimiter.core.api.ClockMode;
+import com.example.ratelimiter.core.api.RateLimitScript;
+import com.example.ratelimiter.core.metrics.RateLimiterMetrics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.Jedis;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Behaviour against the {@link EmbeddedRedisServer} stand-in, against a Redis that accepts connections
+ * but never replies, like a half-open connection, and against one that is down.
+ */
+class PipelinedRedisRateLimitStoreTest {
+
+    private ServerSocket silentServer;
+    private final List<Socket> accepted = new CopyOnWriteArrayList<>();
+    private PipelinedRedisRateLimitStore store;
+    private EmbeddedRedisServer redis;
+    private PipelinedRedisRateLimitStore redisStore;
+
+    @BeforeEach
+    void startSilentServer() throws IOException {
+        silentServer = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(() -> {
+            try {
+                while (true) {
+                    accepted.add(silentServer.accept());
+                }
+            } catch (IOException e) {
+                // Server closed
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+        store = new PipelinedRedisRateLimitStore("127.0.0.1", silentServer.getLocalPort(), 1,
+                Duration.ofMillis(200), RateLimiterMetrics.NOOP, ClockMode.CLIENT);
+    }
+
+    @AfterEach
+    void stop() throws IOException {
+        if (redisStore != null) {
+            redisStore.close();
+            redis.close();
+        }
+        store.close();
+        silentServer.close();
+        for (Socket socket : accepted) {
+            socket.close();
+        }
+    }
+
+    @Test
+    void concurrentCallersEachGetTheirOwnReply() throws Exception {
+        startRedis(command -> null);
+        int threads = 16;
+        int calls = 200;
+        List<String> errors = new CopyOnWriteArrayList<>();
+
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int id = t;
+            Thread worker = new Thread(() -> {
+                String key = "key-" + id;
+                for (int i = 0; i < calls; i++) {
+                    long value = id * 1_000_000L + i;
+                    redisStore.set(key, value, Duration.ofMinutes(1));
+                    long read = redisStore.get(key);
+                    if (read != value) {
+                        errors.add(key + " read " + read + " instead of " + value);
+                    }
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertEquals(List.of(), errors);
+    }
+
+    @Test
+    void concurrentAsyncScriptsEachGetTheirOwnReply() throws Exception {
+        startRedis(command -> null);
+        int keys = 8;
+        int calls = 100;
+        long limit = 1000;
+        long now = System.currentTimeMillis();
+
+        List<List<CompletableFuture<long[]>>> replies = new ArrayList<>();
+        List<Thread> workers = new ArrayList<>();
+        for (int k = 0; k < keys; k++) {
+            List<CompletableFuture<long[]>> keyReplies = new CopyOnWriteArrayList<>();
+            replies.add(keyReplies);
+            String[] key = {"ratelimit:{key-" + k + "}:fw"};
+            // Each key's permits cost a different amount, so a reply routed to the wrong caller shows
+            long cost = k + 1;
+            Thread worker = new Thread(() -> {
+                for (int i = 0; i < calls; i++) {
+                    keyReplies.add(redisStore.executeScriptAsync(RateLimitScript.FIXED_WINDOW, key,
+                            limit * keys, 60_000, now, cost).toCompletableFuture());
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        for (int k = 0; k < keys; k++) {
+            long cost = k + 1;
+            Set<Long> remaining = new TreeSet<>();
+            Set<Long> expected = new TreeSet<>();
+            for (int i = 0; i < calls; i++) {
+                long[] reply = replies.get(k).get(i).get(5, TimeUnit.SECONDS);
+                assertEquals(1, reply[0]);
+                remaining.add(reply[1]);
+                expected.add(limit * keys - cost * (i + 1));
+            }
+            assertEquals(expected, remaining, "key-" + k);
+        }
+    }
+
+    @Test
+    void batchesRunAllOrNothingThroughThePipeline() throws Exception {
+        startRedis(command -> null);
+        long now = System.currentTimeMillis();
+        RateLimitScript[] scripts = {RateLimitScript.FIXED_WINDOW, RateLimitScript.FIXED_WINDOW};
+        String[][] keys = {{"ratelimit:{a}:fw"}, {"ratelimit:{b}:fw"}};
+
+        long[][] denied = redisStore.executeBatch(scripts, keys,
+                new long[][]{{5, 60_000, now, 1}, {1, 60_000, now, 2}});
+        assertEquals(1, denied[0][0]);
+        assertEquals(0, denied[1][0]);
+
+        long[][] allowed = redisStore.executeBatchAsync(scripts, keys,
+                new long[][]{{5, 60_000, now, 1}, {1, 60_000, now, 1}}).toCompletableFuture().get(5, TimeUnit.SECONDS);
+        assertArrayEquals(new long[]{1, 1}, new long[]{allowed[0][0], allowed[1][0]});
+        // Only the allowed batch was consumed
+        assertEquals(4, allowed[0][1]);
+        assertEquals(0, allowed[1][1]);
+    }
+
+    @Test
+    void flushedScriptsFallBackToEval() throws Exception {
+        AtomicInteger evals = new AtomicInteger();
+        startRedis(command -> {
+            if (command[0].equalsIgnoreCase("EVAL")) {
+                evals.incrementAndGet();
+            }
+            return null;
+        });
+        long now = System.currentTimeMillis();
+        String[] key = {"ratelimit:{key}:fw"};
+
+        // A fresh server has no scripts cached: EVALSHA, NOSCRIPT, then EVAL
+        assertEquals(4, redisStore.executeScript(RateLimitScript.FIXED_WINDOW, key, 5, 60_000, now, 1)[1]);
+        assertEquals(1, evals.get());
+        assertEquals(3, redisStore.executeScript(RateLimitScript.FIXED_WINDOW, key, 5, 60_000, now, 1)[1]);
+        assertEquals(1, evals.get());
+
+        try (Jedis jedis = new Jedis(redis.getHost(), redis.getPort())) {
+            jedis.scriptFlush();
+        }
+        long[] reply = redisStore.executeScriptAsync(RateLimitScript.FIXED_WINDOW, key, 5, 60_000, now, 1)
+                .toCompletableFuture().get(5, TimeUnit.SECONDS);
+        assertEquals(2, reply[1]);
+        assertEquals(2, evals.get());
+    }
+
+    @Test
+    void asyncCallFailsAfterTheTimeout() throws InterruptedException {
+        awaitConnected();
+        CompletableFuture<long[]> reply = store.executeScriptAsync(RateLimitScript.FIXED_WINDOW,
+                new String[]{"key"}, 10, 1000, System.currentTimeMillis(), 1).toCompletableFuture();
+
+        ExecutionException failure = assertThrows(ExecutionException.class, () -> reply.get(2, TimeUnit.SECONDS));
+        assertTrue(failure.getCause() != null);
+    }
+
+    @Test
+    void overdueReplyReplacesTheConnection() throws InterruptedException {
+        assertThrows(RuntimeException.class, () -> store.get("key"));
+        // The connection fails by itself once the reply is overdue, so the next call reconnects
+        Thread.sleep(200);
+        assertThrows(RuntimeException.class, () -> store.get("key"));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (accepted.size() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, accepted.size(), "second call should open a new connection");
+    }
+
+    @Test
+    void asyncCallsFailFastWhileRedisIsDown() throws IOException {
+        int port;
+        try (ServerSocket closed = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            port = closed.getLocalPort();
+        }
+        PipelinedRedisRateLimitStore down = new PipelinedRedisRateLimitStore("127.0.0.1", port, 2,
+                Duration.ofSeconds(2), RateLimiterMetrics.NOOP, ClockMode.CLIENT);
+        try {
+            long start = System.nanoTime();
+            for (int i = 0; i < 100; i++) {
+                CompletableFuture<long[]> reply = down.executeScriptAsync(RateLimitScript.FIXED_WINDOW,
+                        new String[]{"key"}, 10, 1000, System.currentTimeMillis(), 1).toCompletableFuture();
+                assertTrue(reply.isCompletedExceptionally());
+            }
+            // Nobody waited for a connect, let alone for the 2s timeout
+            assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+        } finally {
+            down.close();
+        }
+    }
+
+    private void startRedis(Function<String[], Object> interceptor) throws IOException {
+        redis = new EmbeddedRedisServer(new ServerSocket(0, 128, InetAddress.getLoopbackAddress()), interceptor);
+        redisStore = new PipelinedRedisRateLimitStore(redis.getHost(), redis.getPort(), 2,
+                Duration.ofSeconds(5), RateLimiterMetrics.NOOP, ClockMode.CLIENT);
+        // Connections open in the background; async calls fail fast until they are up
+        assertTrue(redisStore.isHealthy());
+        assertTrue(redisStore.isHealthy());
+    }
+
+    private void awaitConnected() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (accepted.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        // Accepted before the client finishes setting the connection up
+        Thread.sleep(50);
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.ratelimiter.redis;
+
+import com.example.ratelimiter.core.api.RateLimitScript;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisMovedDataException;
+import redis.clients.jedis.util.JedisClusterCRC16;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RedisClusterRateLimitStoreTest {
+
+    private static final long NOW = 3_600_000L;
+
+    private EmbeddedRedisCluster cluster;
+    private RedisClusterRateLimitStore store;
+
+    @BeforeEach
+    void start() throws Exception {
+        cluster = EmbeddedRedisCluster.start(3);
+        store = new RedisClusterRateLimitStore(cluster.getNodes());
+    }
+
+    @AfterEach
+    void stop() {
+        store.close();
+        cluster.close();
+    }
+
+    @Test
+    void scriptsFollowMoved() {
+        String key = "ratelimit:{moved}:fw";
+        int slot = JedisClusterCRC16.getSlot(key);
+        assertEquals(4, fixedWindow(key, 5, 1)[1]);
+
+        // The new owner starts the slot empty, so its count shows where the script ran
+        cluster.moveSlot(slot, otherNode(cluster.ownerOf(slot)));
+        assertEquals(4, fixedWindow(key, 5, 1)[1]);
+        assertEquals(3, fixedWindow(key, 5, 1)[1]);
+    }
+
+    @Test
+    void scriptsFollowAsk() {
+        String key = "ratelimit:{asked}:fw";
+        int slot = JedisClusterCRC16.getSlot(key);
+        int owner = cluster.ownerOf(slot);
+        int target = otherNode(owner);
+        assertEquals(4, fixedWindow(key, 5, 1)[1]);
+
+        cluster.migrateSlot(slot, target);
+        assertEquals(4, fixedWindow(key, 5, 1)[1]);
+        assertEquals(3, fixedWindow(key, 5, 1)[1]);
+
+        // Without ASKING the target still sends clients back to the owner
+        try (Jedis jedis = new Jedis(node(target))) {
+            assertThrows(JedisMovedDataException.class, () -> jedis.get(key));
+        }
+        cluster.moveSlot(slot, target);
+        assertEquals(2, fixedWindow(key, 5, 1)[1]);
+    }
+
+    @Test
+    void crossSlotBatchConsumesNothingUnlessEveryEntryIsAllowed() {
+        String[] keys = keysOnDifferentNodes();
+
+        long[][] denied = batch(keys, 2);
+        assertEquals(1, denied[0][0]);
+        assertEquals(0, denied[1][0]);
+        // Checked but not consumed
+        assertEquals(5, fixedWindow(keys[0], 5, 0)[1]);
+
+        long[][] allowed = batch(keys, 1);
+        assertArrayEquals(new long[]{1, 1}, new long[]{allowed[0][0], allowed[1][0]});
+        assertEquals(4, fixedWindow(keys[0], 5, 0)[1]);
+        assertEquals(0, fixedWindow(keys[1], 1, 0)[1]);
+    }
+
+    @Test
+    void crossSlotBatchFollowsRedirections() {
+        String[] keys = keysOnDifferentNodes();
+        batch(keys, 1);
+
+        int slot = JedisClusterCRC16.getSlot(keys[1]);
+        cluster.moveSlot(slot, otherNode(cluster.ownerOf(slot)));
+        long[][] replies = batch(keys, 1);
+
+        assertEquals(1, replies[0][0]);
+        assertEquals(1, replies[1][0]);
+        assertEquals(3, fixedWindow(keys[0], 5, 0)[1]);
+        // Counted afresh on the slot's new owner
+        assertEquals(0, fixedWindow(keys[1], 1, 0)[1]);
+    }
+
+    private long[] fixedWindow(String key, long limit, long cost) {
+        return store.executeScript(RateLimitScript.FIXED_WINDOW, new String[]{key}, limit, 60_000, NOW, cost);
+    }
+
+    /**
+     * One permit of the first key at limit 5, and {@code secondCost} permits of the second at limit 1.
+     */
+    private long[][] batch(String[] keys, long secondCost) {
+        return store.executeBatch(
+                new RateLimitScript[]{RateLimitScript.FIXED_WINDOW, RateLimitScript.FIXED_WINDOW},
+                new String[][]{{keys[0]}, {keys[1]}},
+                new long[][]{{5, 60_000, NOW, 1}, {1, 60_000, NOW, secondCost}});
+    }
+
+    private String[] keysOnDifferentNodes() {
+        List<String> keys = new ArrayList<>();
+        List<Integer> owners = new ArrayList<>();
+        for (int i = 0; keys.size() < 2; i++) {
+            String key = "ratelimit:{batch-" + i + "}:fw";
+            int owner = cluster.ownerOf(JedisClusterCRC16.getSlot(key));
+            if (!owners.contains(owner)) {
+                keys.add(key);
+                owners.add(owner);
+            }
+        }
+        assertNotEquals(owners.get(0), owners.get(1));
+        return keys.toArray(new String[0]);
+    }
+
+    private int otherNode(int node) {
+        return (node + 1) % cluster.getNodes().size();
+    }
+
+    private HostAndPort node(int index) {
+        return new ArrayList<>(cluster.getNodes()).get(index);
+    }
+}